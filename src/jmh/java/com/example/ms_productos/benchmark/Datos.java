@@ -0,0 +1,27 @@
+package com.example.ms_productos.benchmark;
+
+import com.example.ms_productos.model.Precio;
+import com.example.ms_productos.model.Producto;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+// Productos de ejemplo con tamaños parecidos a los reales
+final class Datos {
+
+    private static final LocalDateTime FECHA = LocalDateTime.of(2024, 1, 15, 10, 30);
+    private static final Instant ACTUALIZADO = Instant.parse("2024-02-01T08:00:00Z");
+
+    private Datos() {
+    }
+
+    static Producto producto(Long id, int i) {
+        return new Producto(id, "Producto " + i, "Descripción del producto número " + i + " del catálogo",
+                Precio.deCentavos(1000 + (i % 1000) * 10L), i % 500, true, FECHA, ACTUALIZADO, 0L);
+    }
+
+    static Producto copia(Producto p) {
+        return new Producto(p.getId(), p.getNombre(), p.getDescripcion(), p.getPrecio(), p.getStock(),
+                p.getActivo(), p.getFechaCreacion(), p.getFechaActualizacion(), p.getVersion());
+    }
+}
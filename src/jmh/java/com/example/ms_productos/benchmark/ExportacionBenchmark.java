@@ -0,0 +1,70 @@
+package com.example.ms_productos.benchmark;
+
+import com.example.ms_productos.service.ExportadorCatalogo;
+import com.example.ms_productos.service.FormatoCatalogo;
+import com.example.ms_productos.service.ProductoService;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GET /api/productos/export de 1.000.000 de productos en CSV y NDJSON, con y sin gzip, en una JVM
+ * con -Xmx64m: si la exportación juntara filas en memoria fallaría con OutOfMemoryError.
+ * Los productos se generan al pedirlos (no hay BD ni catálogo en memoria) y cada buffer se libera
+ * al recibirlo, como hace Netty al escribirlo en el socket. Mide el tiempo de la exportación
+ * completa y los bytes que salen (contador "bytes", por operación con un hilo).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx64m")
+public class ExportacionBenchmark {
+
+    private static final int PRODUCTOS = 1_000_000;
+
+    @Param({"csv", "ndjson"})
+    public String formato;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    private ExportadorCatalogo exportador;
+    private NettyDataBufferFactory buffers;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Tamanio {
+        public long bytes;
+    }
+
+    @Setup
+    public void preparar() {
+        // Sólo streamAll: el catálogo sale de un Flux.range, sin ocupar memoria
+        ProductoService service = (ProductoService) Proxy.newProxyInstance(ProductoService.class.getClassLoader(),
+                new Class<?>[]{ProductoService.class}, (proxy, metodo, args) -> switch (metodo.getName()) {
+                    case "streamAll" -> Flux.range(1, PRODUCTOS).map(i -> Datos.producto((long) i, i));
+                    default -> throw new UnsupportedOperationException(metodo.getName());
+                });
+        exportador = new ExportadorCatalogo(service, Jackson2ObjectMapperBuilder.json().build(), 500);
+        buffers = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+    }
+
+    @Benchmark
+    public long exportar(Tamanio tamanio) {
+        long[] bytes = {0};
+        exportador.exportar(FormatoCatalogo.deParametro(formato), gzip, buffers)
+                .doOnNext(buffer -> {
+                    bytes[0] += buffer.readableByteCount();
+                    DataBufferUtils.release(buffer);
+                })
+                .blockLast();
+        tamanio.bytes = bytes[0];
+        return bytes[0];
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.ms_productos.benchmark;
+
+import com.example.ms_productos.model.Producto;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.luben.zstd.Zstd;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Sincronización completa del catálogo (10.000 productos) en cada formato y compresión:
+ * CPU por operación (codificar = lo que paga el servicio, decodificar = lo que paga el cliente)
+ * y bytes en la red (contador "bytes", por operación con un hilo).
+ * <p>
+ * Niveles de compresión: los de Netty por defecto (gzip 6, zstd 3), los del servidor.
+ * CBOR se mide para comparar, pero el servicio no lo ofrece (ver CodecsConfig).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ProductoCodificacionBenchmark {
+
+    private static final int PRODUCTOS = 10_000;
+    private static final int NIVEL_ZSTD = 3;
+    private static final TypeReference<List<Producto>> LISTA = new TypeReference<>() { };
+
+    @Param({"json", "smile", "cbor"})
+    public String formato;
+
+    @Param({"ninguna", "gzip", "zstd"})
+    public String compresion;
+
+    private ObjectMapper mapper;
+    private List<Producto> catalogo;
+    private byte[] codificado;
+
+    // Tamaño de la respuesta (JMH suma el último valor de cada hilo: con un hilo, bytes por operación)
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Tamanio {
+        public long bytes;
+    }
+
+    @Setup
+    public void preparar() throws IOException {
+        mapper = switch (formato) {
+            case "smile" -> Jackson2ObjectMapperBuilder.smile().build();
+            case "cbor" -> Jackson2ObjectMapperBuilder.cbor().build();
+            default -> Jackson2ObjectMapperBuilder.json().build();
+        };
+        catalogo = new ArrayList<>(PRODUCTOS);
+        for (int i = 0; i < PRODUCTOS; i++) {
+            catalogo.add(Datos.producto((long) i + 1, i));
+        }
+        codificado = comprimir(mapper.writeValueAsBytes(catalogo));
+    }
+
+    @Benchmark
+    public byte[] codificar(Tamanio tamanio) throws IOException {
+        byte[] cuerpo = comprimir(mapper.writeValueAsBytes(catalogo));
+        tamanio.bytes = cuerpo.length;
+        return cuerpo;
+    }
+
+    @Benchmark
+    public List<Producto> decodificar() throws IOException {
+        return mapper.readValue(descomprimir(codificado), LISTA);
+    }
+
+    private byte[] comprimir(byte[] datos) throws IOException {
+        switch (compresion) {
+            case "gzip" -> {
+                ByteArrayOutputStream salida = new ByteArrayOutputStream(datos.length / 4);
+                try (GZIPOutputStream gzip = new GZIPOutputStream(salida)) {
+                    gzip.write(datos);
+                }
+                return salida.toByteArray();
+            }
+            case "zstd" -> {
+                return Zstd.compress(datos, NIVEL_ZSTD);
+            }
+            default -> {
+                return datos;
+            }
+        }
+    }
+
+    private byte[] descomprimir(byte[] datos) throws IOException {
+        switch (compresion) {
+            case "gzip" -> {
+                try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(datos))) {
+                    return gzip.readAllBytes();
+                }
+            }
+            case "zstd" -> {
+                return Zstd.decompress(datos, (int) Zstd.getFrameContentSize(datos));
+            }
+            default -> {
+                return datos;
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.ms_productos.benchmark;
+
+import com.example.ms_productos.controller.CursorPaginacion;
+import com.example.ms_productos.controller.ProductoController;
+import com.example.ms_productos.model.Producto;
+import com.example.ms_productos.repository.CambioProductoRepository;
+import com.example.ms_productos.repository.ProductoRepository;
+import com.example.ms_productos.service.AcumuladorStock;
+import com.example.ms_productos.service.FeedCambios;
+import com.example.ms_productos.service.IndiceBajoStock;
+import com.example.ms_productos.service.MetricasServicio;
+import com.example.ms_productos.service.ProductoCache;
+import com.example.ms_productos.service.ProductoServiceImpl;
+import com.example.ms_productos.service.SnapshotCatalogo;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cadena reactiva ProductoController -> ProductoServiceImpl (cache, índice de bajo stock...)
+ * con los beans reales y un repositorio en memoria: mide nuestro código, no la BD ni HTTP.
+ * Con medido=true el servicio pasa por MetricasServicio como en una petición sin muestrear
+ * (timer y contador de filas): la diferencia es lo que cuesta la instrumentación.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ProductoControllerBenchmark {
+
+    @Param({"10000"})
+    public int filas;
+
+    @Param({"false", "true"})
+    public boolean medido;
+
+    private AnnotationConfigApplicationContext contexto;
+    private ProductoController controller;
+    private Producto cambios;
+    // Sin If-None-Match / If-Modified-Since el handler sólo lee las cabeceras: se puede reutilizar
+    private MockServerWebExchange sinCondiciones;
+
+    @Setup
+    public void preparar() {
+        RepositorioEnMemoria repositorio = new RepositorioEnMemoria(filas);
+        contexto = new AnnotationConfigApplicationContext();
+        // Para los @Value con Duration ("5m", "1s") como en la aplicación
+        contexto.getBeanFactory().setConversionService(ApplicationConversionService.getSharedInstance());
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        contexto.registerBean(MeterRegistry.class, () -> meters);
+        if (medido) {
+            ObservationRegistry observaciones = ObservationRegistry.create();
+            observaciones.observationConfig().observationHandler(new DefaultMeterObservationHandler(meters));
+            contexto.registerBean(ObservationRegistry.class, () -> observaciones);
+            contexto.registerBean(MetricasServicio.class);
+        }
+        contexto.registerBean(ProductoRepository.class, repositorio::productos);
+        contexto.registerBean(CambioProductoRepository.class, RepositorioEnMemoria::cambios);
+        contexto.register(ProductoCache.class, AcumuladorStock.class, FeedCambios.class, IndiceBajoStock.class,
+                SnapshotCatalogo.class, ProductoServiceImpl.class, ProductoController.class);
+        contexto.refresh();
+        controller = contexto.getBean(ProductoController.class);
+        cambios = Datos.producto(null, 7);
+        sinCondiciones = MockServerWebExchange.from(MockServerHttpRequest.get("/"));
+    }
+
+    @TearDown
+    public void cerrar() {
+        contexto.close();
+    }
+
+    private long idAleatorio() {
+        return ThreadLocalRandom.current().nextLong(1, filas + 1);
+    }
+
+    // GET /api/productos/{id}: después del calentamiento casi todo sale de la cache
+    @Benchmark
+    public ResponseEntity<Producto> getProductoById() {
+        return controller.getProductoById(idAleatorio(), sinCondiciones).block();
+    }
+
+    // GET /api/productos?limit=100&after=...
+    @Benchmark
+    public ResponseEntity<List<?>> getPagina() {
+        String cursor = CursorPaginacion.codificar(idAleatorio() - 1);
+        return controller.getAllProductos(100, cursor, null).block();
+    }
+
+    // PUT /api/productos/{id} sin If-Match
+    @Benchmark
+    public ResponseEntity<Producto> updateProducto() {
+        return controller.updateProducto(idAleatorio(), cambios, null).block();
+    }
+}
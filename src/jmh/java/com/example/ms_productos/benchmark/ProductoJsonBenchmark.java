@@ -0,0 +1,61 @@
+package com.example.ms_productos.benchmark;
+
+import com.example.ms_productos.model.Producto;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * (De)serialización JSON de Producto con un ObjectMapper configurado como el de Spring Boot
+ * (JavaTimeModule, fechas ISO): un producto (GET /{id}) y una página de 100 (GET /).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ProductoJsonBenchmark {
+
+    private static final TypeReference<List<Producto>> LISTA = new TypeReference<>() { };
+
+    private ObjectMapper mapper;
+    private Producto producto;
+    private List<Producto> pagina;
+    private byte[] productoJson;
+    private byte[] paginaJson;
+
+    @Setup
+    public void preparar() throws Exception {
+        mapper = Jackson2ObjectMapperBuilder.json().build();
+        producto = Datos.producto(1L, 1);
+        pagina = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            pagina.add(Datos.producto((long) i + 1, i));
+        }
+        productoJson = mapper.writeValueAsBytes(producto);
+        paginaJson = mapper.writeValueAsBytes(pagina);
+    }
+
+    @Benchmark
+    public byte[] serializarProducto() throws Exception {
+        return mapper.writeValueAsBytes(producto);
+    }
+
+    @Benchmark
+    public Producto deserializarProducto() throws Exception {
+        return mapper.readValue(productoJson, Producto.class);
+    }
+
+    @Benchmark
+    public byte[] serializarPagina() throws Exception {
+        return mapper.writeValueAsBytes(pagina);
+    }
+
+    @Benchmark
+    public List<Producto> deserializarPagina() throws Exception {
+        return mapper.readValue(paginaJson, LISTA);
+    }
+}
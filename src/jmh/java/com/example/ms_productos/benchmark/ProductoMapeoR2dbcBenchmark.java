@@ -0,0 +1,102 @@
+package com.example.ms_productos.benchmark;
+
+import com.example.ms_productos.R2dbcConversionesConfig;
+import com.example.ms_productos.model.Producto;
+import io.r2dbc.h2.H2ConnectionConfiguration;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.h2.H2ConnectionOption;
+import io.r2dbc.spi.ConnectionFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.convert.MappingR2dbcConverter;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.data.r2dbc.convert.R2dbcCustomConversions;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.dialect.H2Dialect;
+import org.springframework.data.r2dbc.mapping.R2dbcMappingContext;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lectura de una página de 100 productos desde H2 embebida (R2DBC), con y sin mapear a Producto.
+ * La diferencia entre "leerFilas" y los otros dos es el costo del mapeo fila -> entidad.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ProductoMapeoR2dbcBenchmark {
+
+    private static final String PAGINA = "SELECT * FROM productos WHERE id > :id ORDER BY id LIMIT 100";
+
+    @Param({"10000"})
+    public int filas;
+
+    private DatabaseClient client;
+    private R2dbcEntityTemplate template;
+    private R2dbcConverter converter;
+
+    @Setup
+    public void preparar() {
+        // Driver y dialecto explícitos: en el jar de benchmarks los META-INF/services de varias
+        // librerías se pisan entre sí y el descubrimiento automático no encuentra H2
+        ConnectionFactory connectionFactory = new H2ConnectionFactory(H2ConnectionConfiguration.builder()
+                .inMemory("benchmark")
+                .property(H2ConnectionOption.DB_CLOSE_DELAY, "-1")
+                .build());
+        client = DatabaseClient.builder()
+                .connectionFactory(connectionFactory)
+                .bindMarkers(H2Dialect.INSTANCE.getBindMarkersFactory())
+                .build();
+        // Con los conversores de la aplicación (Precio <-> centavos)
+        template = new R2dbcEntityTemplate(client, H2Dialect.INSTANCE, new MappingR2dbcConverter(new R2dbcMappingContext(),
+                R2dbcCustomConversions.of(H2Dialect.INSTANCE, R2dbcConversionesConfig.CONVERSORES)));
+        converter = template.getConverter();
+
+        client.sql("DROP TABLE IF EXISTS productos").then().block();
+        client.sql("""
+                CREATE TABLE productos (
+                    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                    nombre VARCHAR(255), descripcion VARCHAR(1000), precio_centavos BIGINT,
+                    stock INTEGER, activo BOOLEAN, fecha_creacion TIMESTAMP,
+                    updated_at TIMESTAMP WITH TIME ZONE, version BIGINT)""")
+                .then().block();
+        Flux.range(0, filas)
+                .concatMap(i -> template.insert(Datos.producto(null, i)), 16)
+                .then().block();
+    }
+
+    private long desde() {
+        return ThreadLocalRandom.current().nextLong(0, Math.max(1, filas - 100));
+    }
+
+    // Base: sólo recorrer las filas, sin construir Producto
+    @Benchmark
+    public List<Object> leerFilas() {
+        return client.sql(PAGINA).bind("id", desde())
+                .map((row, md) -> row.get("id"))
+                .all().collectList().block();
+    }
+
+    // Como ProductoRepositoryCustomImpl (UPDATE ... RETURNING): converter.read por fila
+    @Benchmark
+    public List<Producto> mapearConConverter() {
+        return client.sql(PAGINA).bind("id", desde())
+                .map((row, md) -> converter.read(Producto.class, row, md))
+                .all().collectList().block();
+    }
+
+    // Como los métodos derivados (findByIdGreaterThanOrderByIdAsc)
+    @Benchmark
+    public List<Producto> mapearConTemplate() {
+        Query query = Query.query(Criteria.where("id").greaterThan(desde()))
+                .sort(Sort.by("id"))
+                .limit(100);
+        return template.select(Producto.class).matching(query).all().collectList().block();
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.ms_productos.benchmark;
+
+import com.example.ms_productos.model.Producto;
+import com.example.ms_productos.model.VersionProducto;
+import com.example.ms_productos.repository.CambioProductoRepository;
+import com.example.ms_productos.repository.ProductoRepository;
+import org.springframework.data.domain.Limit;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Repositorio sin BD para medir sólo controller + servicio: los productos viven en un mapa
+ * ordenado por id. Implementa nada más lo que usan los benchmarks; el resto lanza
+ * UnsupportedOperationException para que un benchmark nuevo no mida algo vacío sin darse cuenta.
+ */
+final class RepositorioEnMemoria {
+
+    private final Map<Long, Producto> productos = new ConcurrentSkipListMap<>();
+    private final AtomicLong secuencia = new AtomicLong();
+
+    RepositorioEnMemoria(int filas) {
+        for (int i = 0; i < filas; i++) {
+            guardar(Datos.producto(null, i));
+        }
+    }
+
+    ProductoRepository productos() {
+        return (ProductoRepository) Proxy.newProxyInstance(ProductoRepository.class.getClassLoader(),
+                new Class<?>[]{ProductoRepository.class}, (proxy, metodo, args) -> switch (metodo.getName()) {
+                    case "findById" -> Mono.justOrEmpty(productos.get((Long) args[0]));
+                    case "findVersionById" -> Mono.justOrEmpty(productos.get((Long) args[0])).map(VersionProducto::de);
+                    case "existsById" -> Mono.just(productos.containsKey((Long) args[0]));
+                    case "save" -> Mono.fromSupplier(() -> guardar((Producto) args[0]));
+                    case "actualizarAtomico" -> Mono.justOrEmpty(actualizar((Long) args[0], (Producto) args[1]));
+                    case "findByIdGreaterThanOrderByIdAsc" -> Flux.fromIterable(
+                                    ((ConcurrentSkipListMap<Long, Producto>) productos).tailMap((Long) args[0], false).values())
+                            .take(((Limit) args[1]).max());
+                    default -> sinSoporte(proxy, metodo, args);
+                });
+    }
+
+    static CambioProductoRepository cambios() {
+        return (CambioProductoRepository) Proxy.newProxyInstance(CambioProductoRepository.class.getClassLoader(),
+                new Class<?>[]{CambioProductoRepository.class}, RepositorioEnMemoria::sinSoporte);
+    }
+
+    // Los métodos de Object los pide el propio contenedor de Spring al registrar el bean
+    private static Object sinSoporte(Object proxy, Method metodo, Object[] args) {
+        return switch (metodo.getName()) {
+            case "toString" -> "RepositorioEnMemoria";
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            default -> throw new UnsupportedOperationException(metodo.getName());
+        };
+    }
+
+    private Producto guardar(Producto producto) {
+        if (producto.getId() == null) {
+            producto.setId(secuencia.incrementAndGet());
+            producto.setVersion(0L);
+        }
+        productos.put(producto.getId(), producto);
+        return producto;
+    }
+
+    private Producto actualizar(Long id, Producto cambios) {
+        return productos.computeIfPresent(id, (clave, actual) -> {
+            Producto nuevo = Datos.copia(cambios);
+            nuevo.setId(id);
+            nuevo.setFechaCreacion(actual.getFechaCreacion());
+            nuevo.setVersion(actual.getVersion() + 1);
+            return nuevo;
+        });
+    }
+}
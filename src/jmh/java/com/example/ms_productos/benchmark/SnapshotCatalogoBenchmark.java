@@ -0,0 +1,89 @@
+package com.example.ms_productos.benchmark;
+
+import com.example.ms_productos.model.CambioProducto;
+import com.example.ms_productos.model.FiltroProductos;
+import com.example.ms_productos.model.Precio;
+import com.example.ms_productos.model.Producto;
+import com.example.ms_productos.repository.ProductoRepository;
+import com.example.ms_productos.service.FeedCambios;
+import com.example.ms_productos.service.SnapshotCatalogo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Sort;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lecturas del modo snapshot sobre 1.000.000 de productos en memoria (sin BD): GET por id,
+ * una página y /search por rango de precio ordenado por precio (recorre las columnas enteras).
+ * Al cargar, el snapshot deja en el log los productos y la memoria estimada (~200 MB con Datos).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class SnapshotCatalogoBenchmark {
+
+    private static final int PRODUCTOS = 1_000_000;
+
+    private SnapshotCatalogo snapshot;
+    private FiltroProductos porPrecio;
+
+    @Setup
+    public void preparar() {
+        ProductoRepository repository = (ProductoRepository) Proxy.newProxyInstance(ProductoRepository.class.getClassLoader(),
+                new Class<?>[]{ProductoRepository.class}, (proxy, metodo, args) -> switch (metodo.getName()) {
+                    // La carga completa en un solo bloque
+                    case "findByIdGreaterThanOrderByIdAsc" -> (Long) args[0] == 0L
+                            ? Flux.range(1, PRODUCTOS).map(i -> Datos.producto((long) i, i))
+                            : Flux.empty();
+                    default -> throw new UnsupportedOperationException(metodo.getName());
+                });
+        // Sin cambios: el registro queda en la seq 0 y el stream nunca emite
+        FeedCambios feedCambios = new FeedCambios(RepositorioEnMemoria.cambios(), Duration.ofHours(1), 500, 10_000) {
+            @Override
+            public Mono<Long> ultimaSeq() {
+                return Mono.just(0L);
+            }
+
+            @Override
+            public Flux<CambioProducto> stream(long since) {
+                return Flux.never();
+            }
+        };
+        snapshot = new SnapshotCatalogo(repository, feedCambios, new SimpleMeterRegistry(), true, PRODUCTOS, Duration.ofMillis(50));
+        snapshot.alArrancar();
+
+        porPrecio = new FiltroProductos();
+        porPrecio.setPrecioMin(Precio.valueOf("50"));
+        porPrecio.setPrecioMax(Precio.valueOf("60"));
+        porPrecio.setOrden(FiltroProductos.Campo.PRECIO);
+        porPrecio.setDireccion(Sort.Direction.DESC);
+        porPrecio.setLimit(20);
+    }
+
+    private static long idAleatorio() {
+        return ThreadLocalRandom.current().nextLong(1, PRODUCTOS + 1);
+    }
+
+    @Benchmark
+    public Producto porId() {
+        return snapshot.porId(idAleatorio(), Mono::empty).block();
+    }
+
+    @Benchmark
+    public List<Producto> pagina() {
+        return snapshot.pagina(idAleatorio(), 100, Flux::empty).collectList().block();
+    }
+
+    @Benchmark
+    public List<Producto> buscarPorPrecio() {
+        return snapshot.buscar(porPrecio, Flux::empty).collectList().block();
+    }
+}
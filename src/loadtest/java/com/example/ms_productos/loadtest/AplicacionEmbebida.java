@@ -0,0 +1,49 @@
+package com.example.ms_productos.loadtest;
+
+import com.example.ms_productos.MsProductosApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Arranque de MsProductosApplication con el perfil loadtest contra el PostgreSQL embebido
+final class AplicacionEmbebida {
+
+    private AplicacionEmbebida() {
+    }
+
+    static SpringApplicationBuilder builder(int puertoPostgres, Path clavePublica) {
+        return new SpringApplicationBuilder(MsProductosApplication.class)
+                .profiles("loadtest")
+                .properties(propiedades(puertoPostgres, clavePublica));
+    }
+
+    static ConfigurableApplicationContext iniciar(int puertoPostgres, Path clavePublica, String[] args) {
+        return builder(puertoPostgres, clavePublica).run(argumentos(args));
+    }
+
+    // application.yml importa el Config Server y ese import no se puede desactivar desde un perfil:
+    // la prueba lee SÓLO application-loadtest.yml en lugar de application.yml
+    static String[] argumentos(String[] args) {
+        String[] argumentos = Arrays.copyOf(args, args.length + 1);
+        argumentos[args.length] = "--spring.config.name=application-loadtest";
+        return argumentos;
+    }
+
+    private static Map<String, Object> propiedades(int puertoPostgres, Path clavePublica) {
+        String host = "localhost:" + puertoPostgres + "/postgres";
+        Map<String, Object> propiedades = new HashMap<>();
+        propiedades.put("spring.r2dbc.url", "r2dbc:postgresql://" + host);
+        propiedades.put("spring.r2dbc.username", "postgres");
+        propiedades.put("spring.r2dbc.password", "postgres");
+        // Flyway usa JDBC; con R2DBC no hay DataSource de Spring, le damos su propia conexión
+        propiedades.put("spring.flyway.url", "jdbc:postgresql://" + host);
+        propiedades.put("spring.flyway.user", "postgres");
+        propiedades.put("spring.flyway.password", "postgres");
+        propiedades.put("spring.security.oauth2.resourceserver.jwt.public-key-location", clavePublica.toUri().toString());
+        return propiedades;
+    }
+}
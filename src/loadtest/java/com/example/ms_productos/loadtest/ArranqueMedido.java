@@ -0,0 +1,68 @@
+package com.example.ms_productos.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Un arranque medido (lo lanza MedicionArranque en una JVM nueva cada vez): levanta la aplicación,
+ * toma las medidas en cuanto está lista para recibir tráfico, imprime una línea
+ * "ARRANQUE {json}" y termina.
+ */
+public final class ArranqueMedido {
+
+    static final String PREFIJO = "ARRANQUE ";
+
+    private ArranqueMedido() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int puerto = Integer.parseInt(System.getProperty("loadtest.postgres.puerto"));
+        Path clavePublica = Path.of(System.getProperty("loadtest.clave-publica"));
+
+        AtomicReference<Map<String, Object>> medidas = new AtomicReference<>();
+        ConfigurableApplicationContext aplicacion = AplicacionEmbebida.builder(puerto, clavePublica)
+                .listeners(evento -> {
+                    if (evento instanceof ApplicationReadyEvent listo) {
+                        medidas.set(medir(listo.getApplicationContext()));
+                    }
+                })
+                .run(AplicacionEmbebida.argumentos(args));
+        System.out.println(PREFIJO + new ObjectMapper().writeValueAsString(medidas.get()));
+        aplicacion.close();
+        System.exit(0);
+    }
+
+    private static Map<String, Object> medir(ConfigurableApplicationContext contexto) {
+        Map<String, Object> medidas = new LinkedHashMap<>();
+        // Desde que arrancó la JVM: incluye carga de clases y el arranque de Spring
+        medidas.put("listoMs", ManagementFactory.getRuntimeMXBean().getUptime());
+        medidas.put("hilos", ManagementFactory.getThreadMXBean().getThreadCount());
+        medidas.put("clasesCargadas", ManagementFactory.getClassLoadingMXBean().getLoadedClassCount());
+        medidas.put("beans", contexto.getBeanDefinitionCount());
+        medidas.put("heapUsadoMb", ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024));
+        medidas.put("rssMb", rssMb());
+        return medidas;
+    }
+
+    // Memoria residente del proceso (Linux); -1 donde no hay /proc
+    private static long rssMb() {
+        try {
+            for (String linea : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (linea.startsWith("VmRSS:")) {
+                    return Long.parseLong(linea.replaceAll("\\D", "")) / 1024;
+                }
+            }
+        } catch (Exception e) {
+            // sin /proc
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.ms_productos.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Parámetros de la prueba (propiedades de sistema loadtest.*, ver la tarea loadTest de build.gradle).
+ * "mezcla" ajusta pesos de la forma leer=50,stock=20; las operaciones no nombradas conservan su peso.
+ */
+record Configuracion(int filas, int tasa, Duration duracion, Duration calentamiento,
+                     Map<Operacion, Integer> mezcla, Path informe) {
+
+    static Configuracion desde(Properties propiedades) {
+        Map<Operacion, Integer> mezcla = new EnumMap<>(Operacion.class);
+        for (Operacion operacion : Operacion.values()) {
+            mezcla.put(operacion, operacion.getPesoPorDefecto());
+        }
+        String ajustes = propiedades.getProperty("loadtest.mezcla", "");
+        for (String ajuste : ajustes.split(",")) {
+            if (ajuste.isBlank()) {
+                continue;
+            }
+            String[] partes = ajuste.split("=");
+            if (partes.length != 2) {
+                throw new IllegalArgumentException("loadtest.mezcla: se esperaba operacion=peso y llegó '" + ajuste + "'");
+            }
+            mezcla.put(Operacion.valueOf(partes[0].trim().toUpperCase()), Integer.parseInt(partes[1].trim()));
+        }
+        return new Configuracion(
+                Integer.parseInt(propiedades.getProperty("loadtest.filas", "10000")),
+                Integer.parseInt(propiedades.getProperty("loadtest.tasa", "500")),
+                DurationStyle.detectAndParse(propiedades.getProperty("loadtest.duracion", "60s")),
+                DurationStyle.detectAndParse(propiedades.getProperty("loadtest.calentamiento", "10s")),
+                mezcla,
+                Path.of(propiedades.getProperty("loadtest.informe",
+                        propiedades.getProperty("loadtest.informe.defecto", "informe-carga.json"))));
+    }
+
+    Map<String, Object> comoMapa() {
+        Map<String, Object> mapa = new LinkedHashMap<>();
+        mapa.put("filas", filas);
+        mapa.put("tasaPorSegundo", tasa);
+        mapa.put("duracionSegundos", duracion.toSeconds());
+        mapa.put("calentamientoSegundos", calentamiento.toSeconds());
+        Map<String, Integer> pesos = new LinkedHashMap<>();
+        mezcla.forEach((operacion, peso) -> pesos.put(operacion.name(), peso));
+        mapa.put("mezcla", pesos);
+        return mapa;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.ms_productos.loadtest;
+
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Lo que comparten las operaciones: el cliente HTTP y los ids sobre los que pueden trabajar
+final class ContextoCarga {
+
+    private final WebClient client;
+    private final long filasSembradas;
+    private final Queue<Long> creados = new ConcurrentLinkedQueue<>();
+
+    ContextoCarga(WebClient client, long filasSembradas) {
+        this.client = client;
+        this.filasSembradas = filasSembradas;
+    }
+
+    WebClient client() {
+        return client;
+    }
+
+    // Los productos sembrados tienen ids 1..filas (IDENTITY sobre la tabla vacía) y nunca se borran
+    long idExistente() {
+        return ThreadLocalRandom.current().nextLong(1, filasSembradas + 1);
+    }
+
+    void registrarCreado(long id) {
+        creados.add(id);
+    }
+
+    Long tomarCreado() {
+        return creados.poll();
+    }
+}
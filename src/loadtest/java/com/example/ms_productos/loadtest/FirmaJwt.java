@@ -0,0 +1,62 @@
+package com.example.ms_productos.loadtest;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Emisor de JWT local: un par RSA generado al arrancar. La aplicación valida con la clave
+ * pública (spring.security.oauth2.resourceserver.jwt.public-key-location), sin servidor de identidad.
+ */
+final class FirmaJwt {
+
+    private final KeyPair claves;
+
+    private FirmaJwt(KeyPair claves) {
+        this.claves = claves;
+    }
+
+    static FirmaJwt nueva() throws NoSuchAlgorithmException {
+        KeyPairGenerator generador = KeyPairGenerator.getInstance("RSA");
+        generador.initialize(2048);
+        return new FirmaJwt(generador.generateKeyPair());
+    }
+
+    // La clave pública en PEM, en un archivo temporal para la propiedad public-key-location
+    Path escribirClavePublica() throws IOException {
+        String pem = "-----BEGIN PUBLIC KEY-----\n"
+                + Base64.getMimeEncoder(64, "\n".getBytes(StandardCharsets.US_ASCII))
+                .encodeToString(claves.getPublic().getEncoded())
+                + "\n-----END PUBLIC KEY-----\n";
+        Path archivo = Files.createTempFile("loadtest-jwt", ".pem");
+        archivo.toFile().deleteOnExit();
+        return Files.writeString(archivo, pem);
+    }
+
+    String token(Duration validez) throws JOSEException {
+        Instant ahora = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject("loadtest")
+                .issueTime(Date.from(ahora))
+                .expirationTime(Date.from(ahora.plus(validez)))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.RS256), claims);
+        jwt.sign(new RSASSASigner(claves.getPrivate()));
+        return jwt.serialize();
+    }
+}
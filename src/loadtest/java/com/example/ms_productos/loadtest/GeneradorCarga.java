@@ -0,0 +1,69 @@
+package com.example.ms_productos.loadtest;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Modelo abierto: las peticiones llegan a tasa fija, respondan rápido o no. La latencia se mide
+ * desde el momento en que la petición DEBÍA salir, así una pausa del servicio (o del propio
+ * generador) aparece en los percentiles en vez de esconderse (coordinated omission).
+ * Si se acumulan MAX_EN_VUELO peticiones sin respuesta, las llegadas siguientes se cuentan
+ * como descartadas.
+ */
+final class GeneradorCarga {
+
+    static final int MAX_EN_VUELO = 2_000;
+
+    private final ContextoCarga contexto;
+    private final Operacion[] operaciones;
+    private final int[] pesosAcumulados;
+
+    GeneradorCarga(ContextoCarga contexto, Map<Operacion, Integer> mezcla) {
+        this.contexto = contexto;
+        this.operaciones = mezcla.keySet().toArray(Operacion[]::new);
+        this.pesosAcumulados = new int[operaciones.length];
+        int acumulado = 0;
+        for (int i = 0; i < operaciones.length; i++) {
+            acumulado += Math.max(0, mezcla.get(operaciones[i]));
+            pesosAcumulados[i] = acumulado;
+        }
+        if (acumulado == 0) {
+            throw new IllegalArgumentException("La mezcla no tiene ninguna operación con peso");
+        }
+    }
+
+    Informe ejecutar(int tasa, Duration duracion) {
+        Informe informe = new Informe();
+        long periodo = 1_000_000_000L / tasa;
+        long llegadas = duracion.toNanos() / periodo;
+        long inicio = System.nanoTime();
+        Flux.interval(Duration.ofNanos(periodo))
+                .take(llegadas)
+                .onBackpressureDrop(llegada -> informe.descartar())
+                .flatMap(llegada -> {
+                    // interval emite la primera llegada al cumplirse el primer período
+                    long programada = inicio + (llegada + 1) * periodo;
+                    Operacion operacion = elegir();
+                    return operacion.ejecutar(contexto)
+                            .onErrorResume(e -> Mono.just(0))
+                            .doOnNext(estado -> informe.registrar(operacion, System.nanoTime() - programada, estado));
+                }, MAX_EN_VUELO)
+                .blockLast();
+        informe.terminar(System.nanoTime() - inicio);
+        return informe;
+    }
+
+    private Operacion elegir() {
+        int valor = ThreadLocalRandom.current().nextInt(pesosAcumulados[pesosAcumulados.length - 1]);
+        for (int i = 0; i < pesosAcumulados.length; i++) {
+            if (valor < pesosAcumulados[i]) {
+                return operaciones[i];
+            }
+        }
+        return operaciones[operaciones.length - 1];
+    }
+}
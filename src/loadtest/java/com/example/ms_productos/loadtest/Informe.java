@@ -0,0 +1,126 @@
+package com.example.ms_productos.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencias (HdrHistogram, en nanosegundos) y códigos de respuesta por operación.
+ * Se puede registrar desde varios hilos a la vez.
+ */
+final class Informe {
+
+    private static final long LATENCIA_MAXIMA = Duration.ofMinutes(1).toNanos();
+
+    private final Map<Operacion, Medicion> mediciones = new EnumMap<>(Operacion.class);
+    private final Medicion total = new Medicion();
+    private final AtomicLong descartadas = new AtomicLong();
+    private volatile long duracionNanos;
+
+    Informe() {
+        for (Operacion operacion : Operacion.values()) {
+            mediciones.put(operacion, new Medicion());
+        }
+    }
+
+    void registrar(Operacion operacion, long latenciaNanos, int estado) {
+        long latencia = Math.min(latenciaNanos, LATENCIA_MAXIMA);
+        mediciones.get(operacion).registrar(latencia, estado);
+        total.registrar(latencia, estado);
+    }
+
+    // Llegadas que no se enviaron porque ya había demasiadas peticiones en vuelo
+    void descartar() {
+        descartadas.incrementAndGet();
+    }
+
+    void terminar(long duracionNanos) {
+        this.duracionNanos = duracionNanos;
+    }
+
+    Map<String, Object> comoMapa(Configuracion configuracion) {
+        Map<String, Object> mapa = new LinkedHashMap<>();
+        mapa.put("configuracion", configuracion.comoMapa());
+        mapa.put("duracionRealSegundos", duracionNanos / 1e9);
+        mapa.put("descartadas", descartadas.get());
+        mapa.put("total", total.comoMapa(duracionNanos));
+        Map<String, Object> porOperacion = new LinkedHashMap<>();
+        mediciones.forEach((operacion, medicion) -> {
+            if (medicion.histograma.getTotalCount() > 0) {
+                porOperacion.put(operacion.name(), medicion.comoMapa(duracionNanos));
+            }
+        });
+        mapa.put("operaciones", porOperacion);
+        return mapa;
+    }
+
+    String resumen() {
+        StringBuilder texto = new StringBuilder(String.format("%-12s %9s %9s %9s %9s %9s %9s%n",
+                "operacion", "peticiones", "req/s", "p50 ms", "p99 ms", "p999 ms", "errores"));
+        mediciones.forEach((operacion, medicion) -> {
+            if (medicion.histograma.getTotalCount() > 0) {
+                texto.append(medicion.linea(operacion.name(), duracionNanos));
+            }
+        });
+        texto.append(total.linea("TOTAL", duracionNanos));
+        texto.append("descartadas: ").append(descartadas.get()).append('\n');
+        return texto.toString();
+    }
+
+    private static final class Medicion {
+
+        private final Histogram histograma = new ConcurrentHistogram(LATENCIA_MAXIMA, 3);
+        private final Map<Integer, LongAdder> estados = new ConcurrentHashMap<>();
+        private final LongAdder errores = new LongAdder();
+
+        void registrar(long latencia, int estado) {
+            histograma.recordValue(latencia);
+            estados.computeIfAbsent(estado, e -> new LongAdder()).increment();
+            // 0 = fallo de red/timeout; 5xx = fallo del servicio. 4xx son respuestas esperadas (404, 409, 412)
+            if (estado == 0 || estado >= 500) {
+                errores.increment();
+            }
+        }
+
+        Map<String, Object> comoMapa(long duracionNanos) {
+            Map<String, Object> mapa = new LinkedHashMap<>();
+            mapa.put("peticiones", histograma.getTotalCount());
+            mapa.put("throughputPorSegundo", throughput(duracionNanos));
+            mapa.put("errores", errores.sum());
+            Map<String, Long> porEstado = new TreeMap<>();
+            estados.forEach((estado, cuenta) -> porEstado.put(String.valueOf(estado), cuenta.sum()));
+            mapa.put("estados", porEstado);
+            Map<String, Double> latencias = new LinkedHashMap<>();
+            latencias.put("p50", ms(histograma.getValueAtPercentile(50)));
+            latencias.put("p90", ms(histograma.getValueAtPercentile(90)));
+            latencias.put("p99", ms(histograma.getValueAtPercentile(99)));
+            latencias.put("p999", ms(histograma.getValueAtPercentile(99.9)));
+            latencias.put("max", ms(histograma.getMaxValue()));
+            latencias.put("media", ms((long) histograma.getMean()));
+            mapa.put("latenciaMs", latencias);
+            return mapa;
+        }
+
+        String linea(String nombre, long duracionNanos) {
+            return String.format("%-12s %9d %9.1f %9.2f %9.2f %9.2f %9d%n", nombre, histograma.getTotalCount(),
+                    throughput(duracionNanos), ms(histograma.getValueAtPercentile(50)),
+                    ms(histograma.getValueAtPercentile(99)), ms(histograma.getValueAtPercentile(99.9)), errores.sum());
+        }
+
+        private double throughput(long duracionNanos) {
+            return duracionNanos == 0 ? 0 : histograma.getTotalCount() * 1e9 / duracionNanos;
+        }
+
+        private static double ms(long nanos) {
+            return Math.round(nanos / 1_000.0) / 1_000.0;
+        }
+    }
+}
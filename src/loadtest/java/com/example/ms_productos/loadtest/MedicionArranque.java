@@ -0,0 +1,109 @@
+package com.example.ms_productos.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Benchmark de arranque (gradle startupBenchmark): arranca la aplicación "loadtest.arranques" veces
+ * (por defecto 5), cada una en una JVM nueva, contra el mismo PostgreSQL embebido, y escribe la
+ * mediana de tiempo hasta estar lista, RSS, hilos y clases cargadas. El primer arranque aplica las
+ * migraciones y no se cuenta.
+ */
+public final class MedicionArranque {
+
+    private MedicionArranque() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int arranques = Integer.parseInt(System.getProperty("loadtest.arranques", "5"));
+        Path archivo = Path.of(System.getProperty("loadtest.informe",
+                System.getProperty("loadtest.informe.defecto", "arranque.json")));
+
+        List<Map<String, Object>> muestras = new ArrayList<>();
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.builder().start()) {
+            Path clavePublica = FirmaJwt.nueva().escribirClavePublica();
+            arrancar(postgres.getPort(), clavePublica);
+            for (int i = 0; i < arranques; i++) {
+                muestras.add(arrancar(postgres.getPort(), clavePublica));
+            }
+        }
+
+        Map<String, Object> informe = new LinkedHashMap<>();
+        informe.put("arranques", arranques);
+        informe.put("java", System.getProperty("java.version"));
+        informe.put("procesadores", Runtime.getRuntime().availableProcessors());
+        Map<String, Object> medianas = new LinkedHashMap<>();
+        for (String medida : muestras.get(0).keySet()) {
+            medianas.put(medida, mediana(muestras, medida));
+        }
+        informe.put("mediana", medianas);
+        informe.put("muestras", muestras);
+
+        if (archivo.getParent() != null) {
+            Files.createDirectories(archivo.getParent());
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(archivo.toFile(), informe);
+        System.out.println("Arranque (mediana de " + arranques + "): " + medianas);
+        System.out.println("Informe: " + archivo.toAbsolutePath());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> arrancar(int puertoPostgres, Path clavePublica) throws Exception {
+        List<String> comando = new ArrayList<>();
+        comando.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        // Mismas opciones de memoria que la JVM del benchmark, para comparar RSS entre corridas
+        comando.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                .filter(arg -> arg.startsWith("-Xm") || arg.startsWith("-XX:"))
+                .toList());
+        comando.add("-Dloadtest.postgres.puerto=" + puertoPostgres);
+        comando.add("-Dloadtest.clave-publica=" + clavePublica);
+        comando.add("-cp");
+        comando.add(System.getProperty("java.class.path"));
+        comando.add(ArranqueMedido.class.getName());
+
+        Process proceso = new ProcessBuilder(comando).redirectErrorStream(true).start();
+        // Guardamos las últimas líneas por si el arranque falla
+        Deque<String> ultimas = new ArrayDeque<>();
+        String resultado = null;
+        try (BufferedReader salida = new BufferedReader(
+                new InputStreamReader(proceso.getInputStream(), StandardCharsets.UTF_8))) {
+            String linea;
+            while ((linea = salida.readLine()) != null) {
+                if (linea.startsWith(ArranqueMedido.PREFIJO)) {
+                    resultado = linea.substring(ArranqueMedido.PREFIJO.length());
+                }
+                ultimas.addLast(linea);
+                if (ultimas.size() > 40) {
+                    ultimas.removeFirst();
+                }
+            }
+        }
+        if (proceso.waitFor() != 0 || resultado == null) {
+            throw new IllegalStateException("El arranque falló:\n" + String.join("\n", ultimas));
+        }
+        return new ObjectMapper().readValue(resultado, Map.class);
+    }
+
+    private static double mediana(List<Map<String, Object>> muestras, String medida) {
+        double[] valores = muestras.stream()
+                .mapToDouble(m -> ((Number) m.get(medida)).doubleValue())
+                .sorted()
+                .toArray();
+        int medio = valores.length / 2;
+        return valores.length % 2 == 1 ? valores[medio] : (valores[medio - 1] + valores[medio]) / 2;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.ms_productos.loadtest;
+
+import com.example.ms_productos.CodecsConfig;
+import com.example.ms_productos.controller.CursorPaginacion;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Peticiones que genera la prueba de carga, una por endpoint de ProductoController,
+ * con su peso por defecto en la mezcla (porcentaje aproximado del total).
+ * Los streams (NDJSON y SSE) quedan fuera: son conexiones largas, no tienen latencia por petición.
+ * Cada operación devuelve el código HTTP de la respuesta.
+ */
+enum Operacion {
+
+    LEER(26, c -> c.client().get().uri("/api/productos/{id}", c.idExistente())
+            .exchangeToMono(Operacion::estado)),
+
+    // Réplica que sincroniza el catálogo: páginas grandes en Smile comprimidas con zstd
+    SINCRONIZAR(1, c -> c.client().get()
+            .uri("/api/productos?limit=500&after={cursor}", CursorPaginacion.codificar(c.idExistente()))
+            .accept(MediaType.parseMediaType(CodecsConfig.SMILE))
+            .header(HttpHeaders.ACCEPT_ENCODING, "zstd, gzip")
+            .exchangeToMono(Operacion::estado)),
+
+    // Un carrito: 20 productos en una sola petición
+    VARIOS(3, c -> c.client().get().uri("/api/productos?ids={ids}", idsCarrito(c))
+            .exchangeToMono(Operacion::estado)),
+
+    // Revalidación de una cache intermedia: los productos sembrados que nadie tocó siguen en la
+    // versión 0 y responden 304; los ya modificados, 200 con el producto
+    REVALIDAR(10, c -> c.client().get().uri("/api/productos/{id}", c.idExistente())
+            .ifNoneMatch("\"0\"")
+            .exchangeToMono(Operacion::estado)),
+
+    PAGINA(3, c -> c.client().get()
+            .uri("/api/productos?limit=50&after={cursor}", CursorPaginacion.codificar(c.idExistente()))
+            .exchangeToMono(Operacion::estado)),
+
+    // Un listado que sólo muestra nombre y precio
+    LISTADO(2, c -> c.client().get()
+            .uri("/api/productos?limit=50&fields=id,nombre,precio&after={cursor}",
+                    CursorPaginacion.codificar(c.idExistente()))
+            .exchangeToMono(Operacion::estado)),
+
+    BUSCAR(5, c -> c.client().get()
+            .uri("/api/productos/search?nombre={nombre}&modo=prefijo&sort=precio,asc&limit=20",
+                    "Producto " + aleatorio(1, 100))
+            .exchangeToMono(Operacion::estado)),
+
+    BAJO_STOCK(5, c -> c.client().get().uri("/api/productos/bajo-stock?minimo=10")
+            .exchangeToMono(Operacion::estado)),
+
+    CAMBIOS(2, c -> c.client().get().uri("/api/productos/changes?since={since}&limit=100", c.idExistente())
+            .exchangeToMono(Operacion::estado)),
+
+    CREAR(5, c -> c.client().post().uri("/api/productos")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(producto())
+            .exchangeToMono(r -> r.bodyToMono(Map.class)
+                    .doOnNext(creado -> c.registrarCreado(((Number) creado.get("id")).longValue()))
+                    .then(Mono.just(r.statusCode().value())))),
+
+    ACTUALIZAR(8, c -> c.client().put().uri("/api/productos/{id}", c.idExistente())
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(producto())
+            .exchangeToMono(Operacion::estado)),
+
+    STOCK(15, c -> c.client().put().uri("/api/productos/{id}/stock?cantidad={cantidad}", c.idExistente(), aleatorio(1, 5))
+            .exchangeToMono(Operacion::estado)),
+
+    // 409 (sin stock) es una respuesta válida, no un error
+    RESERVAR(10, c -> c.client().post().uri("/api/productos/{id}/reservas", c.idExistente())
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(Map.of("cantidad", 1))
+            .exchangeToMono(Operacion::estado)),
+
+    LOTE(1, c -> c.client().post().uri("/api/productos/batch")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(List.of(producto(), producto(), producto(), producto(), producto(),
+                    producto(), producto(), producto(), producto(), producto()))
+            .exchangeToMono(Operacion::estado)),
+
+    // Sólo borra productos creados por la propia prueba; si todavía no hay, no envía nada
+    ELIMINAR(4, c -> {
+        Long id = c.tomarCreado();
+        return id == null
+                ? Mono.empty()
+                : c.client().delete().uri("/api/productos/{id}", id).exchangeToMono(Operacion::estado);
+    });
+
+    private final int pesoPorDefecto;
+    private final Function<ContextoCarga, Mono<Integer>> peticion;
+
+    Operacion(int pesoPorDefecto, Function<ContextoCarga, Mono<Integer>> peticion) {
+        this.pesoPorDefecto = pesoPorDefecto;
+        this.peticion = peticion;
+    }
+
+    int getPesoPorDefecto() {
+        return pesoPorDefecto;
+    }
+
+    // Vacío si la operación no tenía nada que hacer (no cuenta en el informe)
+    Mono<Integer> ejecutar(ContextoCarga contexto) {
+        return Mono.defer(() -> peticion.apply(contexto));
+    }
+
+    private static Mono<Integer> estado(ClientResponse respuesta) {
+        return respuesta.releaseBody().thenReturn(respuesta.statusCode().value());
+    }
+
+    private static int aleatorio(int desde, int hasta) {
+        return ThreadLocalRandom.current().nextInt(desde, hasta + 1);
+    }
+
+    private static String idsCarrito(ContextoCarga contexto) {
+        StringBuilder ids = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            ids.append(i == 0 ? "" : ",").append(contexto.idExistente());
+        }
+        return ids.toString();
+    }
+
+    private static Map<String, Object> producto() {
+        int n = aleatorio(1, 1_000_000);
+        return Map.of("nombre", "Producto carga " + n,
+                "descripcion", "Creado por la prueba de carga",
+                "precio", aleatorio(100, 100_000) / 100.0,
+                "stock", aleatorio(0, 500));
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.ms_productos.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.Duration;
+
+/**
+ * Prueba de carga de punta a punta (gradle loadTest):
+ * 1. Arranca un PostgreSQL embebido y la aplicación con el perfil "loadtest" (sin Config Server ni Eureka).
+ * 2. Siembra "filas" productos.
+ * 3. Calienta y luego envía la mezcla de operaciones a tasa fija durante "duracion".
+ * 4. Escribe el informe JSON (p50/p99/p999 y throughput por operación) y un resumen por consola.
+ */
+public final class PruebaCarga {
+
+    private PruebaCarga() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Configuracion configuracion = Configuracion.desde(System.getProperties());
+        FirmaJwt firma = FirmaJwt.nueva();
+
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.builder().start();
+             ConfigurableApplicationContext aplicacion =
+                     AplicacionEmbebida.iniciar(postgres.getPort(), firma.escribirClavePublica(), args)) {
+
+            sembrar(postgres.getPostgresDatabase(), configuracion.filas());
+            int puerto = ((WebServerApplicationContext) aplicacion).getWebServer().getPort();
+            ContextoCarga contexto = new ContextoCarga(cliente(puerto, firma.token(Duration.ofDays(1))), configuracion.filas());
+            GeneradorCarga generador = new GeneradorCarga(contexto, configuracion.mezcla());
+
+            if (!configuracion.calentamiento().isZero()) {
+                generador.ejecutar(configuracion.tasa(), configuracion.calentamiento());
+            }
+            Informe informe = generador.ejecutar(configuracion.tasa(), configuracion.duracion());
+
+            Path archivo = configuracion.informe();
+            if (archivo.getParent() != null) {
+                Files.createDirectories(archivo.getParent());
+            }
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                    .writeValue(archivo.toFile(), informe.comoMapa(configuracion));
+            System.out.print(informe.resumen());
+            System.out.println("Informe: " + archivo.toAbsolutePath());
+        }
+    }
+
+    // Un solo INSERT ... SELECT: los ids quedan 1..filas porque la tabla está vacía
+    private static void sembrar(DataSource dataSource, int filas) throws Exception {
+        try (Connection conexion = dataSource.getConnection();
+             PreparedStatement insert = conexion.prepareStatement("""
+                     INSERT INTO productos (nombre, descripcion, precio, stock, activo, fecha_creacion)
+                     SELECT 'Producto ' || g, 'Producto sembrado número ' || g,
+                            round((random() * 1000)::numeric, 2), (random() * 500)::int, true, now()
+                     FROM generate_series(1, ?) AS g""");
+             Statement analyze = conexion.createStatement()) {
+            insert.setInt(1, filas);
+            insert.executeUpdate();
+            analyze.execute("ANALYZE");
+        }
+    }
+
+    private static WebClient cliente(int puerto, String token) {
+        ConnectionProvider conexiones = ConnectionProvider.builder("prueba-carga")
+                .maxConnections(GeneradorCarga.MAX_EN_VUELO)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        HttpClient http = HttpClient.create(conexiones).responseTimeout(Duration.ofSeconds(30));
+        return WebClient.builder()
+                .baseUrl("http://localhost:" + puerto)
+                .clientConnector(new ReactorClientHttpConnector(http))
+                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .build();
+    }
+}
@@ -0,0 +1,31 @@
+-- Esquema inicial SÓLO para la prueba de carga (BD embebida vacía).
+-- En los entornos reales lo crea el script de postgres-db y Flyway lo toma como versión 1.
+
+CREATE TABLE productos (
+    id             BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    nombre         VARCHAR(255)   NOT NULL,
+    descripcion    TEXT,
+    precio         NUMERIC(10, 2),
+    stock          INTEGER        NOT NULL DEFAULT 0,
+    activo         BOOLEAN        DEFAULT TRUE,
+    fecha_creacion TIMESTAMP      DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Suma (o resta) "cantidad" al stock; no deja el stock en negativo
+CREATE OR REPLACE FUNCTION actualizar_stock(p_producto_id BIGINT, p_cantidad INTEGER)
+RETURNS VOID AS $$
+BEGIN
+    UPDATE productos SET stock = stock + p_cantidad WHERE id = p_producto_id;
+    IF NOT FOUND THEN
+        RAISE EXCEPTION 'Producto % no encontrado', p_producto_id;
+    END IF;
+    IF (SELECT stock FROM productos WHERE id = p_producto_id) < 0 THEN
+        RAISE EXCEPTION 'Stock insuficiente para el producto %', p_producto_id;
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION productos_bajo_stock(p_minimo INTEGER)
+RETURNS TABLE (id BIGINT, nombre VARCHAR, stock INTEGER) AS $$
+    SELECT p.id, p.nombre, p.stock FROM productos p WHERE p.stock < p_minimo;
+$$ LANGUAGE sql;
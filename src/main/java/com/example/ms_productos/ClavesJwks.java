@@ -0,0 +1,131 @@
+package com.example.ms_productos;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Claves públicas (JWKS) con las que se verifican los JWT, servidas siempre desde memoria.
+ * <p>
+ * - Stale-while-revalidate: si el juego de claves tiene más de productos.jwt.jwks.refresco
+ *   (por defecto 5m) se recarga en segundo plano y mientras tanto se usan las que ya teníamos.
+ *   Si el emisor no responde seguimos con las viejas.
+ * - Rotación: un "kid" desconocido fuerza una recarga (como mucho una cada 30s) y se espera.
+ * - Sólo la primera carga bloquea una petición. Nunca hay dos cargas a la vez.
+ * - El origen es la URL del JWKS, el emisor (se busca su jwks_uri) o un archivo local.
+ */
+public class ClavesJwks {
+
+    private static final Logger log = LoggerFactory.getLogger(ClavesJwks.class);
+
+    static final Duration ENTRE_RECARGAS_FORZADAS = Duration.ofSeconds(30);
+
+    private final Supplier<Mono<JWKSet>> cargador;
+    private final long refrescoNanos;
+    private final LongSupplier reloj;
+
+    private final AtomicReference<Cargadas> actuales = new AtomicReference<>();
+    private final AtomicReference<Mono<JWKSet>> enCurso = new AtomicReference<>();
+    private volatile long ultimaForzada;
+
+    ClavesJwks(Supplier<Mono<JWKSet>> cargador, Duration refresco, LongSupplier reloj) {
+        this.cargador = cargador;
+        this.refrescoNanos = refresco.toNanos();
+        this.reloj = reloj;
+        this.ultimaForzada = reloj.getAsLong() - ENTRE_RECARGAS_FORZADAS.toNanos() - 1;
+    }
+
+    public static ClavesJwks desdeUrl(WebClient webClient, String jwkSetUri, Duration refresco) {
+        return new ClavesJwks(() -> descargar(webClient, Mono.just(jwkSetUri)), refresco, System::nanoTime);
+    }
+
+    // Sólo el emisor: la URL del JWKS sale de su documento de descubrimiento (una vez que responde)
+    public static ClavesJwks desdeEmisor(WebClient webClient, String issuerUri, Duration refresco) {
+        AtomicReference<String> descubierta = new AtomicReference<>();
+        Mono<String> jwksUri = Mono.defer(() -> Mono.justOrEmpty(descubierta.get()))
+                .switchIfEmpty(webClient.get()
+                        .uri(issuerUri.replaceAll("/$", "") + "/.well-known/openid-configuration")
+                        .retrieve()
+                        .bodyToMono(Map.class)
+                        .mapNotNull(documento -> (String) documento.get("jwks_uri"))
+                        .doOnNext(descubierta::set));
+        return new ClavesJwks(() -> descargar(webClient, jwksUri), refresco, System::nanoTime);
+    }
+
+    // Archivo JWKS local: sin red; se relee con el mismo intervalo para tomar claves rotadas.
+    // La lectura es bloqueante: corre en "bloqueante" (EjecutorBloqueante)
+    public static ClavesJwks desdeArchivo(Path archivo, Duration refresco, Scheduler bloqueante) {
+        return new ClavesJwks(() -> Mono.fromCallable(() -> JWKSet.load(archivo.toFile()))
+                .subscribeOn(bloqueante), refresco, System::nanoTime);
+    }
+
+    private static Mono<JWKSet> descargar(WebClient webClient, Mono<String> uri) {
+        return uri.flatMap(u -> webClient.get().uri(u).retrieve().bodyToMono(String.class))
+                .map(json -> {
+                    try {
+                        return JWKSet.parse(json);
+                    } catch (ParseException e) {
+                        throw new IllegalStateException("JWKS inválido: " + e.getMessage(), e);
+                    }
+                });
+    }
+
+    // Fuente de claves para NimbusReactiveJwtDecoder.withJwkSource
+    public Flux<JWK> claves(SignedJWT jwt) {
+        JWKSelector selector = new JWKSelector(JWKMatcher.forJWSHeader(jwt.getHeader()));
+        Cargadas cargadas = actuales.get();
+        if (cargadas == null) {
+            return recargar().flatMapIterable(selector::select);
+        }
+        long ahora = reloj.getAsLong();
+        if (ahora - cargadas.instante() > refrescoNanos) {
+            recargar().subscribe(null, e -> log.warn("No se pudo refrescar el JWKS, se siguen usando las claves anteriores: {}", e.getMessage()));
+        }
+        List<JWK> encontradas = selector.select(cargadas.claves());
+        if (encontradas.isEmpty() && jwt.getHeader().getKeyID() != null
+                && ahora - ultimaForzada > ENTRE_RECARGAS_FORZADAS.toNanos()) {
+            // Clave desconocida: quizá el emisor rotó. Si tampoco la trae la recarga, el token se rechaza
+            ultimaForzada = ahora;
+            return recargar()
+                    .onErrorReturn(cargadas.claves())
+                    .flatMapIterable(selector::select);
+        }
+        return Flux.fromIterable(encontradas);
+    }
+
+    private Mono<JWKSet> recargar() {
+        while (true) {
+            Mono<JWKSet> actual = enCurso.get();
+            if (actual != null) {
+                return actual;
+            }
+            Mono<JWKSet> nueva = Mono.defer(cargador)
+                    .doOnNext(claves -> actuales.set(new Cargadas(claves, reloj.getAsLong())))
+                    .doFinally(senial -> enCurso.set(null))
+                    .cache();
+            if (enCurso.compareAndSet(null, nueva)) {
+                return nueva;
+            }
+        }
+    }
+
+    private record Cargadas(JWKSet claves, long instante) {
+    }
+}
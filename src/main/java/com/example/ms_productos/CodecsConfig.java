@@ -0,0 +1,48 @@
+package com.example.ms_productos;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.MimeType;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/**
+ * Formato binario para sincronizar el catálogo sin el costo de JSON (más bytes y más CPU):
+ * las mismas respuestas se negocian con Accept: application/x-jackson-smile, y el stream del
+ * catálogo con application/stream+x-jackson-smile. Sin Accept, o con JSON, todo sigue igual:
+ * el codec de Smile va detrás del de JSON.
+ * <p>
+ * Smile y no CBOR: el Jackson2CborEncoder de Spring sólo codifica valores sueltos (su encode()
+ * falla siempre, y es lo que llama el writer de WebFlux) y, registrado como codec propio,
+ * quedaría por delante de JSON para los clientes que aceptan cualquier tipo.
+ * <p>
+ * El mapper sale del Jackson2ObjectMapperBuilder de Spring Boot, el mismo del JSON
+ * (módulos, fechas ISO, spring.jackson.*): ambos formatos llevan exactamente los mismos campos.
+ * La compresión (gzip/zstd) no es cosa de los codecs: la hace el servidor (server.compression).
+ */
+@Configuration
+public class CodecsConfig implements WebFluxConfigurer {
+
+    public static final String SMILE = "application/x-jackson-smile";
+    public static final String SMILE_STREAM = "application/stream+x-jackson-smile";
+
+    private final ObjectMapper smile;
+
+    public CodecsConfig(Jackson2ObjectMapperBuilder builder) {
+        // El builder de Spring Boot es prototype: esta instancia es sólo nuestra
+        this.smile = builder.factory(new SmileFactory()).build();
+    }
+
+    // Smile ya viene registrado por defecto, pero con un mapper propio: lo reemplazamos.
+    // Ojo: con mapper, los tipos MIME van como varargs y, si no se pasa ninguno, son los de JSON
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        MimeType[] tipos = {MimeType.valueOf(SMILE), MimeType.valueOf(SMILE_STREAM)};
+        configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(smile, tipos));
+        configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(smile, tipos));
+    }
+}
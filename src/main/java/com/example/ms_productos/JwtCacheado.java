@@ -0,0 +1,75 @@
+package com.example.ms_productos;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Guarda los JWT ya verificados, por el SHA-256 del token, hasta su "exp".
+ * Un cliente que repite su token no vuelve a pagar el parseo ni la verificación de la firma.
+ * <p>
+ * - Acotada por tamaño (productos.jwt.cache.max-size); métricas cache.* con el nombre "jwt".
+ * - Sólo se guardan tokens válidos y con "exp": los rechazados siempre pasan por el decodificador.
+ * - Un token revocado en el emisor sigue valiendo hasta su exp, igual que sin la cache.
+ */
+public class JwtCacheado implements ReactiveJwtDecoder {
+
+    public static final String NOMBRE = "jwt";
+
+    private final ReactiveJwtDecoder delegado;
+    private final Cache<ByteBuffer, Jwt> cache;
+
+    public JwtCacheado(ReactiveJwtDecoder delegado, MeterRegistry registry, long maxSize) {
+        this(delegado, registry, maxSize, Clock.systemUTC());
+    }
+
+    JwtCacheado(ReactiveJwtDecoder delegado, MeterRegistry registry, long maxSize, Clock reloj) {
+        this.delegado = delegado;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(Expiry.<ByteBuffer, Jwt>creating((clave, jwt) -> {
+                    Duration vida = Duration.between(Instant.now(reloj), jwt.getExpiresAt());
+                    return vida.isNegative() ? Duration.ZERO : vida;
+                }))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, NOMBRE);
+    }
+
+    @Override
+    public Mono<Jwt> decode(String token) {
+        ByteBuffer clave = hash(token);
+        Jwt cacheado = cache.getIfPresent(clave);
+        if (cacheado != null) {
+            return Mono.just(cacheado);
+        }
+        return delegado.decode(token)
+                .doOnNext(jwt -> {
+                    if (jwt.getExpiresAt() != null) {
+                        cache.put(clave, jwt);
+                    }
+                });
+    }
+
+    private static ByteBuffer hash(String token) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            // Toda JVM trae SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.ms_productos;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Límite de concurrencia que se ajusta solo con la latencia observada (la idea del "gradient"
+ * de Netflix concurrency-limits). Mientras la latencia de cada petición se mantiene cerca de la
+ * de referencia (una media larga), el límite crece. Cuando sube porque las peticiones hacen cola
+ * (pool de conexiones, BD), baja en proporción: lo que sobra se rechaza al momento en lugar de
+ * esperar en una cola que hace más lentas a todas.
+ */
+final class LimiteConcurrencia {
+
+    // Media de referencia: ~600 muestras
+    private static final double ALFA_REFERENCIA = 2.0 / 601;
+    // Cuánto puede subir la latencia sobre la referencia antes de bajar el límite
+    private static final double TOLERANCIA = 1.5;
+    // Cada muestra mueve el límite sólo un 20% hacia el valor calculado
+    private static final double SUAVIZADO = 0.2;
+    // Un 503 del pool es una señal clara de sobrecarga: el límite baja un 10%
+    private static final double RECORTE_SATURADO = 0.9;
+
+    private final int minimo;
+    private final int maximo;
+    private final AtomicInteger enVuelo = new AtomicInteger();
+    private volatile double limite;
+    // Se escribe bajo el lock de la instancia
+    private double rttReferencia;
+
+    LimiteConcurrencia(int inicial, int minimo, int maximo) {
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.limite = Math.max(minimo, Math.min(maximo, inicial));
+    }
+
+    // true si la petición entra; quien la obtiene debe llamar a liberar/ignorar/saturado al terminar
+    boolean adquirir() {
+        while (true) {
+            int actual = enVuelo.get();
+            if (actual >= (int) limite) {
+                return false;
+            }
+            if (enVuelo.compareAndSet(actual, actual + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // Petición terminada: su latencia ajusta el límite
+    void liberar(long rttNanos) {
+        int concurrentes = enVuelo.getAndDecrement();
+        muestra(rttNanos, concurrentes);
+    }
+
+    // Terminó sin una medida útil (el cliente cortó)
+    void ignorar() {
+        enVuelo.decrementAndGet();
+    }
+
+    // La rechazó algo de más abajo por sobrecarga (503 del pool)
+    void saturado() {
+        enVuelo.decrementAndGet();
+        synchronized (this) {
+            limite = Math.max(minimo, limite * RECORTE_SATURADO);
+        }
+    }
+
+    int getLimite() {
+        return (int) limite;
+    }
+
+    int getEnVuelo() {
+        return enVuelo.get();
+    }
+
+    private synchronized void muestra(long rttNanos, int concurrentes) {
+        double rtt = Math.max(1, rttNanos);
+        rttReferencia = rttReferencia == 0 ? rtt : rttReferencia + ALFA_REFERENCIA * (rtt - rttReferencia);
+        // Después de un pico largo la referencia quedó alta: se la acerca antes a la latencia actual
+        if (rttReferencia / rtt > 2) {
+            rttReferencia *= 0.95;
+        }
+        // Con poca carga la latencia no dice nada sobre el límite
+        if (concurrentes < limite / 2) {
+            return;
+        }
+        double gradiente = Math.max(0.5, Math.min(1.0, TOLERANCIA * rttReferencia / rtt));
+        // sqrt(limite): margen de cola que dejamos para seguir creciendo si la latencia no sube
+        double nuevo = limite * gradiente + Math.sqrt(limite);
+        nuevo = limite * (1 - SUAVIZADO) + nuevo * SUAVIZADO;
+        limite = Math.max(minimo, Math.min(maximo, nuevo));
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.ms_productos;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admisión de peticiones a /api/productos por grupo de rutas (lectura, escritura, stock, streams):
+ * <p>
+ * - Token bucket por cliente (sub del JWT) y grupo: un cliente que se pasa de su tasa recibe
+ *   429 con Retry-After, sin afectar a los demás ni a los otros grupos.
+ * - Límite de concurrencia adaptativo por grupo (LimiteConcurrencia): si la latencia sube porque
+ *   hay cola, se admiten menos peticiones a la vez y el resto recibe 503 con Retry-After.
+ *   Así una ráfaga de PUT /{id}/stock no deja sin conexiones a los GET. Los streams (NDJSON,
+ *   SSE), la importación y la exportación de archivos son conexiones largas: sólo tienen token bucket.
+ * <p>
+ * Corre después de Spring Security (getOrder), cuando el principal ya está autenticado.
+ * No bloquea: cada decisión es un cálculo en memoria.
+ * Métricas: productos.limites.rechazos (grupo, motivo) y productos.limites.concurrencia (grupo, valor).
+ */
+public class LimiteTrafico implements WebFilter, Ordered {
+
+    public static final String METRICA_RECHAZOS = "productos.limites.rechazos";
+    public static final String METRICA_CONCURRENCIA = "productos.limites.concurrencia";
+
+    static final String SIN_SUJETO = "anonimo";
+    static final String REINTENTAR_EN_SEGUNDOS = "1";
+
+    private static final String RUTA = "/api/productos";
+    private static final MediaType SMILE_STREAM = MediaType.parseMediaType(CodecsConfig.SMILE_STREAM);
+
+    /**
+     * Grupos de rutas de ProductoController con sus límites por defecto:
+     * tasa (peticiones por segundo por cliente), ráfaga y concurrencia máxima (0 = sin límite).
+     */
+    public enum Grupo {
+        LECTURA(500, 1000, 256),
+        ESCRITURA(100, 200, 64),
+        STOCK(100, 200, 64),
+        STREAM(5, 20, 0);
+
+        final double tasa;
+        final int rafaga;
+        final int concurrenciaMaxima;
+
+        Grupo(double tasa, int rafaga, int concurrenciaMaxima) {
+            this.tasa = tasa;
+            this.rafaga = rafaga;
+            this.concurrenciaMaxima = concurrenciaMaxima;
+        }
+
+        // Nombre en las propiedades (productos.limites.<clave>.*) y en las métricas
+        public String clave() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        // null si la ruta no es de la API (actuator, swagger...)
+        static Grupo de(ServerHttpRequest request) {
+            String ruta = request.getPath().pathWithinApplication().value();
+            if (!ruta.startsWith(RUTA)) {
+                return null;
+            }
+            HttpMethod metodo = request.getMethod();
+            if (HttpMethod.GET.equals(metodo) || HttpMethod.HEAD.equals(metodo)) {
+                return esStream(ruta, request.getHeaders()) ? STREAM : LECTURA;
+            }
+            if (ruta.endsWith("/stock") || ruta.endsWith("/reservas")) {
+                return STOCK;
+            }
+            // La importación dura lo que tarda en subir el archivo: como un stream, sólo token bucket
+            if (ruta.equals(RUTA + "/import")) {
+                return STREAM;
+            }
+            // POST /ids es una lectura con la lista de ids en el cuerpo
+            return ruta.equals(RUTA + "/ids") ? LECTURA : ESCRITURA;
+        }
+
+        private static boolean esStream(String ruta, HttpHeaders cabeceras) {
+            if (ruta.endsWith("/stream") || ruta.endsWith("/alertas") || ruta.equals(RUTA + "/export")) {
+                return true;
+            }
+            return cabeceras.getAccept().stream().anyMatch(tipo ->
+                    MediaType.APPLICATION_NDJSON.equalsTypeAndSubtype(tipo) || SMILE_STREAM.equalsTypeAndSubtype(tipo));
+        }
+    }
+
+    /**
+     * Límites de un grupo: tasa y ráfaga del token bucket; concurrencia inicial, mínima y
+     * máxima del límite adaptativo (máxima 0 = sin límite de concurrencia).
+     */
+    public record Limites(double tasa, int rafaga, int concurrenciaInicial, int concurrenciaMinima,
+                          int concurrenciaMaxima) {
+    }
+
+    private record Clave(String sujeto, Grupo grupo) {
+    }
+
+    private final Map<Grupo, Limites> limites;
+    private final Map<Grupo, LimiteConcurrencia> concurrencia = new EnumMap<>(Grupo.class);
+    private final Cache<Clave, CubetaTokens> cubetas;
+    private final Map<Grupo, Counter> rechazosTasa = new EnumMap<>(Grupo.class);
+    private final Map<Grupo, Counter> rechazosConcurrencia = new EnumMap<>(Grupo.class);
+
+    public LimiteTrafico(Map<Grupo, Limites> limites, long maxClientes, MeterRegistry registry) {
+        this.limites = new EnumMap<>(limites);
+        // Una cubeta sin usar se llena sola en rafaga/tasa segundos: pasado ese tiempo se puede
+        // olvidar sin cambiar nada (la próxima vez se crea llena)
+        this.cubetas = Caffeine.newBuilder()
+                .maximumSize(maxClientes)
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+        for (Grupo grupo : Grupo.values()) {
+            Limites limite = limites(grupo);
+            if (limite.concurrenciaMaxima() > 0) {
+                LimiteConcurrencia adaptativo = new LimiteConcurrencia(limite.concurrenciaInicial(),
+                        limite.concurrenciaMinima(), limite.concurrenciaMaxima());
+                concurrencia.put(grupo, adaptativo);
+                Gauge.builder(METRICA_CONCURRENCIA, adaptativo, LimiteConcurrencia::getLimite)
+                        .description("Límite de concurrencia adaptativo del grupo de rutas")
+                        .tags("grupo", grupo.clave(), "valor", "limite")
+                        .register(registry);
+                Gauge.builder(METRICA_CONCURRENCIA, adaptativo, LimiteConcurrencia::getEnVuelo)
+                        .description("Peticiones del grupo de rutas en curso")
+                        .tags("grupo", grupo.clave(), "valor", "en_vuelo")
+                        .register(registry);
+            }
+            rechazosTasa.put(grupo, rechazos(registry, grupo, "tasa"));
+            rechazosConcurrencia.put(grupo, rechazos(registry, grupo, "concurrencia"));
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        // Después de la cadena de Spring Security (-100): el principal ya está autenticado
+        return 0;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        Grupo grupo = Grupo.de(exchange.getRequest());
+        if (grupo == null) {
+            return chain.filter(exchange);
+        }
+        return exchange.getPrincipal()
+                .map(Principal::getName)
+                .defaultIfEmpty(SIN_SUJETO)
+                .flatMap(sujeto -> admitir(exchange, chain, grupo, sujeto));
+    }
+
+    private Mono<Void> admitir(ServerWebExchange exchange, WebFilterChain chain, Grupo grupo, String sujeto) {
+        long espera = cubetas.get(new Clave(sujeto, grupo), clave -> nuevaCubeta(grupo)).tomar(System.nanoTime());
+        if (espera > 0) {
+            rechazosTasa.get(grupo).increment();
+            return rechazar(exchange, HttpStatus.TOO_MANY_REQUESTS, segundos(espera));
+        }
+        LimiteConcurrencia limite = concurrencia.get(grupo);
+        if (limite == null) {
+            return chain.filter(exchange);
+        }
+        if (!limite.adquirir()) {
+            rechazosConcurrencia.get(grupo).increment();
+            return rechazar(exchange, HttpStatus.SERVICE_UNAVAILABLE, REINTENTAR_EN_SEGUNDOS);
+        }
+        long inicio = System.nanoTime();
+        return chain.filter(exchange)
+                .doFinally(senal -> {
+                    HttpStatusCode estado = exchange.getResponse().getStatusCode();
+                    if (senal == SignalType.CANCEL) {
+                        limite.ignorar();
+                    } else if (estado != null && estado.value() == HttpStatus.SERVICE_UNAVAILABLE.value()) {
+                        limite.saturado();
+                    } else {
+                        limite.liberar(System.nanoTime() - inicio);
+                    }
+                });
+    }
+
+    private CubetaTokens nuevaCubeta(Grupo grupo) {
+        Limites limite = limites(grupo);
+        return new CubetaTokens(limite.tasa(), limite.rafaga(), System.nanoTime());
+    }
+
+    private Limites limites(Grupo grupo) {
+        Limites limite = limites.get(grupo);
+        return limite != null ? limite : new Limites(grupo.tasa, grupo.rafaga, 0, 0, 0);
+    }
+
+    private static Mono<Void> rechazar(ServerWebExchange exchange, HttpStatus estado, String reintentar) {
+        exchange.getResponse().setStatusCode(estado);
+        exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, reintentar);
+        return exchange.getResponse().setComplete();
+    }
+
+    // Retry-After va en segundos enteros: redondeamos hacia arriba (mínimo 1)
+    private static String segundos(long nanos) {
+        return Long.toString(Math.max(1, (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    private static Counter rechazos(MeterRegistry registry, Grupo grupo, String motivo) {
+        return Counter.builder(METRICA_RECHAZOS)
+                .description("Peticiones rechazadas por límite de tasa (429) o de concurrencia (503)")
+                .tags("grupo", grupo.clave(), "motivo", motivo)
+                .register(registry);
+    }
+
+    // Token bucket de un cliente en un grupo; cada operación es un cálculo corto bajo su lock
+    static final class CubetaTokens {
+
+        private final double tokensPorNano;
+        private final double capacidad;
+        private double tokens;
+        private long ultimo;
+
+        CubetaTokens(double tasaPorSegundo, int capacidad, long ahora) {
+            this.tokensPorNano = tasaPorSegundo / TimeUnit.SECONDS.toNanos(1);
+            this.capacidad = capacidad;
+            this.tokens = capacidad;
+            this.ultimo = ahora;
+        }
+
+        // 0 si había un token (y se consume); si no, nanos hasta que haya uno
+        synchronized long tomar(long ahora) {
+            tokens = Math.min(capacidad, tokens + (ahora - ultimo) * tokensPorNano);
+            ultimo = ahora;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return tokensPorNano > 0 ? (long) Math.ceil((1 - tokens) / tokensPorNano) : Long.MAX_VALUE;
+        }
+    }
+}
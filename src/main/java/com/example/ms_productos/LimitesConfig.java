@@ -0,0 +1,51 @@
+package com.example.ms_productos;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Límites de tráfico de la API (LimiteTrafico), por grupo de rutas: lectura, escritura, stock y stream.
+ * <p>
+ * - productos.limites.&lt;grupo&gt;.tasa / .rafaga: peticiones por segundo y ráfaga de cada cliente
+ *   (sub del JWT). Por defecto: lectura 500/1000, escritura y stock 100/200, stream 5/20.
+ * - productos.limites.&lt;grupo&gt;.concurrencia-inicial / -minima / -maxima: límite adaptativo
+ *   del grupo (por defecto 20, 4 y 256 para lectura o 64 para escritura y stock).
+ *   Con concurrencia-maxima: 0 el grupo no tiene límite de concurrencia (stream nunca lo tiene).
+ * - productos.limites.max-clientes: clientes recordados (por defecto 100.000).
+ * - productos.limites.habilitado: false quita el filtro.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "productos.limites", name = "habilitado", matchIfMissing = true)
+public class LimitesConfig {
+
+    private static final String PREFIJO = "productos.limites.";
+
+    @Bean
+    public LimiteTrafico limiteTrafico(Environment entorno, MeterRegistry registry,
+                                       @Value("${productos.limites.max-clientes:100000}") long maxClientes) {
+        Map<LimiteTrafico.Grupo, LimiteTrafico.Limites> limites = new EnumMap<>(LimiteTrafico.Grupo.class);
+        for (LimiteTrafico.Grupo grupo : LimiteTrafico.Grupo.values()) {
+            limites.put(grupo, limites(entorno, grupo));
+        }
+        return new LimiteTrafico(limites, maxClientes, registry);
+    }
+
+    static LimiteTrafico.Limites limites(Environment entorno, LimiteTrafico.Grupo grupo) {
+        String prefijo = PREFIJO + grupo.clave() + ".";
+        int maxima = grupo == LimiteTrafico.Grupo.STREAM ? 0
+                : entorno.getProperty(prefijo + "concurrencia-maxima", Integer.class, grupo.concurrenciaMaxima);
+        return new LimiteTrafico.Limites(
+                entorno.getProperty(prefijo + "tasa", Double.class, grupo.tasa),
+                entorno.getProperty(prefijo + "rafaga", Integer.class, grupo.rafaga),
+                entorno.getProperty(prefijo + "concurrencia-inicial", Integer.class, 20),
+                entorno.getProperty(prefijo + "concurrencia-minima", Integer.class, 4),
+                maxima);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.ms_productos;
+
+import com.example.ms_productos.service.MetricasServicio;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Métricas del camino caliente:
+ * <p>
+ * - productos.servicio: latencia de cada método de ProductoService (MetricasServicio), con tags
+ *   metodo, resultado y error, y productos.servicio.filas con lo que emiten los Flux.
+ * - Buckets de SLO (productos.metricas.slo, por defecto 5ms a 2s) en los timers productos.servicio
+ *   y productos.repositorio: con histogram_quantile o contando los buckets se sabe qué parte de
+ *   las llamadas cumple cada objetivo, y comparando servicio y repositorio, si el tiempo se va en
+ *   la BD o en nuestro código. Son unos pocos buckets fijos, no el histograma completo.
+ * <p>
+ * Las trazas se muestrean (management.tracing.sampling.probability, por defecto 0.1): sólo las
+ * peticiones muestreadas abren un span por método del servicio; las demás sólo pagan el timer.
+ */
+@Configuration
+public class MetricasConfig {
+
+    private static final Set<String> CON_SLO = Set.of("productos.servicio", "productos.repositorio");
+
+    @Bean
+    public static MetricasServicio metricasServicio(ObjectProvider<ObservationRegistry> observaciones,
+                                                    ObjectProvider<MeterRegistry> registry) {
+        return new MetricasServicio(observaciones, registry);
+    }
+
+    @Bean
+    public MeterFilter sloProductos(@Value("${productos.metricas.slo:5ms,10ms,25ms,50ms,100ms,250ms,500ms,1s,2s}")
+                                    Duration[] slo) {
+        double[] nanos = Arrays.stream(slo).mapToDouble(Duration::toNanos).sorted().toArray();
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (id.getType() != Meter.Type.TIMER || !CON_SLO.contains(id.getName())) {
+                    return config;
+                }
+                return DistributionStatisticConfig.builder()
+                        .serviceLevelObjectives(nanos)
+                        .build()
+                        .merge(config);
+            }
+        };
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.ms_productos;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.R2dbcTimeoutException;
+import io.r2dbc.spi.Wrapped;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.pool.PoolAcquirePendingLimitException;
+
+/**
+ * Envuelve el pool para medir cuánto se espera por una conexión (productos.r2dbc.acquire,
+ * con tag resultado = ok | saturado | error) y convertir "no hay conexión a tiempo" en
+ * PoolSaturadoException. Implementa Wrapped: las métricas r2dbc.pool.* del actuator
+ * siguen encontrando el ConnectionPool de adentro.
+ */
+public class PoolMedido implements ConnectionFactory, Wrapped<ConnectionFactory>, Disposable {
+
+    static final String METRICA_ACQUIRE = "productos.r2dbc.acquire";
+
+    private final ConnectionFactory pool;
+    private final MeterRegistry registry;
+
+    public PoolMedido(ConnectionFactory pool, MeterRegistry registry) {
+        this.pool = pool;
+        this.registry = registry;
+    }
+
+    @Override
+    public Mono<Connection> create() {
+        return Mono.defer(() -> {
+            Timer.Sample espera = Timer.start(registry);
+            return Mono.<Connection>from(pool.create())
+                    .doOnSuccess(conexion -> espera.stop(timer("ok")))
+                    // El timeout de maxAcquireTime sólo puede venir de la espera por el pool
+                    .onErrorMap(e -> e instanceof PoolAcquirePendingLimitException || e instanceof R2dbcTimeoutException,
+                            e -> new PoolSaturadoException("Pool de conexiones saturado: " + e.getMessage(), e))
+                    .doOnError(e -> espera.stop(timer(e instanceof PoolSaturadoException ? "saturado" : "error")));
+        });
+    }
+
+    private Timer timer(String resultado) {
+        return Timer.builder(METRICA_ACQUIRE)
+                .description("Espera para obtener una conexión del pool R2DBC")
+                .tag("resultado", resultado)
+                .register(registry);
+    }
+
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        return pool.getMetadata();
+    }
+
+    @Override
+    public ConnectionFactory unwrap() {
+        return pool;
+    }
+
+    @Override
+    public void dispose() {
+        if (pool instanceof Disposable disposable) {
+            disposable.dispose();
+        }
+    }
+}
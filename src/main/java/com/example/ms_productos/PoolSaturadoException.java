@@ -0,0 +1,23 @@
+package com.example.ms_productos;
+
+/**
+ * No se pudo obtener una conexión del pool R2DBC: la cola de espera está llena
+ * (productos.r2dbc.pool.max-pendientes) o se agotó productos.r2dbc.pool.max-acquire-time.
+ * La API responde 503 en vez de dejar la petición esperando.
+ */
+public class PoolSaturadoException extends RuntimeException {
+
+    public PoolSaturadoException(String mensaje, Throwable causa) {
+        super(mensaje, causa);
+    }
+
+    // DatabaseClient y el TransactionManager la envuelven en sus propias excepciones: se busca en las causas
+    public static boolean enCausas(Throwable error) {
+        for (Throwable causa = error; causa != null; causa = causa.getCause()) {
+            if (causa instanceof PoolSaturadoException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.ms_productos;
+
+import com.example.ms_productos.model.Precio;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.r2dbc.convert.R2dbcCustomConversions;
+import org.springframework.data.r2dbc.dialect.PostgresDialect;
+
+import java.util.List;
+
+/**
+ * Tipos propios en las columnas: Precio <-> precio_centavos (BIGINT). El driver lee un long, no un
+ * BigDecimal como con NUMERIC, y los filtros de /search comparan enteros (Criteria con un Precio
+ * se traduce a su valor en centavos).
+ * <p>
+ * Reemplaza el R2dbcCustomConversions de Spring Boot: mismo dialecto (la BD es PostgreSQL) más
+ * estos conversores. Los benchmarks con H2 usan CONVERSORES con su propio dialecto.
+ */
+@Configuration
+public class R2dbcConversionesConfig {
+
+    public static final List<Converter<?, ?>> CONVERSORES = List.of(new PrecioACentavos(), new CentavosAPrecio());
+
+    @Bean
+    public R2dbcCustomConversions r2dbcCustomConversions() {
+        return R2dbcCustomConversions.of(PostgresDialect.INSTANCE, CONVERSORES);
+    }
+
+    @WritingConverter
+    static final class PrecioACentavos implements Converter<Precio, Long> {
+
+        @Override
+        public Long convert(Precio precio) {
+            return precio.getCentavos();
+        }
+    }
+
+    @ReadingConverter
+    static final class CentavosAPrecio implements Converter<Long, Precio> {
+
+        @Override
+        public Precio convert(Long centavos) {
+            return Precio.deCentavos(centavos);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.ms_productos;
+
+import com.example.ms_productos.repository.MetricasRepositorio;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+
+/**
+ * Pool de conexiones R2DBC con valores explícitos (productos.r2dbc.pool.*) en lugar del pool por
+ * defecto de Spring Boot (10 conexiones, espera sin límite).
+ * <p>
+ * - max-size: por defecto 2 conexiones por núcleo (mínimo 4); min-idle: la cuarta parte.
+ * - max-pendientes: peticiones que pueden esperar conexión (por defecto 32 por conexión). Si se
+ *   llena, o si se agota max-acquire-time (por defecto 2s), la API responde 503 al momento.
+ *   Con -1 la cola no tiene límite.
+ * - Métricas: r2dbc.pool.* del actuator (acquired, idle, pending...) y productos.r2dbc.acquire.
+ * - productos.repositorio: latencia de cada método de los repositorios (MetricasRepositorio).
+ * La URL, usuario y contraseña siguen siendo los de spring.r2dbc.*; si la URL trae "pool:" se ignora.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "spring.r2dbc", name = "url")
+@EnableConfigurationProperties(R2dbcProperties.class)
+public class R2dbcPoolConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public PoolMedido connectionFactory(R2dbcProperties r2dbc, MeterRegistry registry,
+                                        @Value("${productos.r2dbc.pool.max-size:0}") int maxSize,
+                                        @Value("${productos.r2dbc.pool.min-idle:-1}") int minIdle,
+                                        @Value("${productos.r2dbc.pool.max-pendientes:0}") int maxPendientes,
+                                        @Value("${productos.r2dbc.pool.max-acquire-time:2s}") Duration maxAcquireTime,
+                                        @Value("${productos.r2dbc.pool.max-create-connection-time:5s}") Duration maxCreateConnectionTime,
+                                        @Value("${productos.r2dbc.pool.max-idle-time:10m}") Duration maxIdleTime,
+                                        @Value("${productos.r2dbc.pool.max-life-time:30m}") Duration maxLifeTime) {
+        ConnectionFactoryOptions.Builder opciones = ConnectionFactoryOptions
+                .parse(r2dbc.getUrl().replaceFirst("^r2dbc:pool:", "r2dbc:")).mutate();
+        if (StringUtils.hasText(r2dbc.getUsername())) {
+            opciones.option(ConnectionFactoryOptions.USER, r2dbc.getUsername());
+        }
+        if (StringUtils.hasText(r2dbc.getPassword())) {
+            opciones.option(ConnectionFactoryOptions.PASSWORD, r2dbc.getPassword());
+        }
+        ConnectionFactory conexiones = ConnectionFactories.get(opciones.build());
+
+        int tamanio = maxSize > 0 ? maxSize : tamanioPorDefecto(Runtime.getRuntime().availableProcessors());
+        int ociosas = minIdle >= 0 ? Math.min(minIdle, tamanio) : Math.max(1, tamanio / 4);
+        int pendientes = maxPendientes != 0 ? maxPendientes : tamanio * 32;
+
+        ConnectionPoolConfiguration configuracion = ConnectionPoolConfiguration.builder(conexiones)
+                .name("productos")
+                .initialSize(ociosas)
+                .minIdle(ociosas)
+                .maxSize(tamanio)
+                .maxAcquireTime(maxAcquireTime)
+                .maxCreateConnectionTime(maxCreateConnectionTime)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .customizer(pool -> pool.maxPendingAcquire(pendientes < 0 ? Integer.MAX_VALUE : pendientes))
+                .build();
+        return new PoolMedido(new ConnectionPool(configuracion), registry);
+    }
+
+    @Bean
+    public static MetricasRepositorio metricasRepositorio(ObjectProvider<MeterRegistry> registry) {
+        return new MetricasRepositorio(registry);
+    }
+
+    // Cada consulta ocupa la conexión sólo mientras corre: con ~2 por núcleo se satura la CPU
+    // antes que el pool, sin abrirle a PostgreSQL más conexiones de las que aprovecha
+    static int tamanioPorDefecto(int nucleos) {
+        return Math.max(4, nucleos * 2);
+    }
+}
@@ -1,11 +1,36 @@
 package com.example.ms_productos;
 
+import com.example.ms_productos.service.EjecutorBloqueante;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.OAuth2ResourceServerProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.converter.RsaKeyConverters;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+import org.springframework.security.oauth2.jwt.JwtClaimValidator;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
 import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 @Configuration
 @EnableWebFluxSecurity
@@ -26,4 +51,63 @@ public class SecurityConfig {
 
         return http.build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Decodificador de JWT en lugar del que arma Spring Boot: los tokens verificados se guardan
+     * hasta su exp (JwtCacheado) y las claves del emisor se refrescan en segundo plano (ClavesJwks),
+     * así una caída breve del emisor no corta el servicio.
+     * Origen de las claves, en este orden: public-key-location (PEM), productos.jwt.jwks.archivo
+     * (JWKS local), jwk-set-uri o el documento de descubrimiento de issuer-uri.
+     */
+    @Bean
+    public ReactiveJwtDecoder jwtDecoder(OAuth2ResourceServerProperties propiedades, WebClient.Builder webClient,
+                                         MeterRegistry registry, EjecutorBloqueante bloqueante,
+                                         @Value("${productos.jwt.cache.max-size:10000}") long maxSize,
+                                         @Value("${productos.jwt.jwks.archivo:}") String archivoJwks,
+                                         @Value("${productos.jwt.jwks.refresco:5m}") Duration refresco) throws IOException {
+        OAuth2ResourceServerProperties.Jwt jwt = propiedades.getJwt();
+        List<String> algoritmos = jwt.getJwsAlgorithms();
+        NimbusReactiveJwtDecoder decodificador;
+        if (jwt.getPublicKeyLocation() != null) {
+            RSAPublicKey clave;
+            try (InputStream pem = jwt.getPublicKeyLocation().getInputStream()) {
+                clave = RsaKeyConverters.x509().convert(pem);
+            }
+            decodificador = NimbusReactiveJwtDecoder.withPublicKey(clave)
+                    .signatureAlgorithm(SignatureAlgorithm.from(algoritmos.get(0)))
+                    .build();
+        } else {
+            ClavesJwks claves;
+            if (StringUtils.hasText(archivoJwks)) {
+                claves = ClavesJwks.desdeArchivo(Path.of(archivoJwks), refresco, bloqueante.getScheduler());
+            } else if (StringUtils.hasText(jwt.getJwkSetUri())) {
+                claves = ClavesJwks.desdeUrl(webClient.build(), jwt.getJwkSetUri(), refresco);
+            } else if (StringUtils.hasText(jwt.getIssuerUri())) {
+                claves = ClavesJwks.desdeEmisor(webClient.build(), jwt.getIssuerUri(), refresco);
+            } else {
+                throw new IllegalStateException("Falta la clave para validar JWT: configure public-key-location, "
+                        + "productos.jwt.jwks.archivo, jwk-set-uri o issuer-uri");
+            }
+            NimbusReactiveJwtDecoder.JwkSourceReactiveJwtDecoderBuilder builder =
+                    NimbusReactiveJwtDecoder.withJwkSource(claves::claves);
+            algoritmos.forEach(algoritmo -> builder.jwsAlgorithm(SignatureAlgorithm.from(algoritmo)));
+            decodificador = builder.build();
+        }
+        decodificador.setJwtValidator(validador(jwt));
+        return new JwtCacheado(decodificador, registry, maxSize);
+    }
+
+    // Las mismas validaciones que aplica Spring Boot: fechas, emisor y audiencia si están configurados
+    private static OAuth2TokenValidator<Jwt> validador(OAuth2ResourceServerProperties.Jwt jwt) {
+        List<OAuth2TokenValidator<Jwt>> validadores = new ArrayList<>();
+        validadores.add(StringUtils.hasText(jwt.getIssuerUri())
+                ? JwtValidators.createDefaultWithIssuer(jwt.getIssuerUri())
+                : JwtValidators.createDefault());
+        List<String> audiencias = jwt.getAudiences();
+        if (!audiencias.isEmpty()) {
+            validadores.add(new JwtClaimValidator<Collection<String>>(JwtClaimNames.AUD,
+                    aud -> aud != null && aud.stream().anyMatch(audiencias::contains)));
+        }
+        return new DelegatingOAuth2TokenValidator<>(validadores);
+    }
+}
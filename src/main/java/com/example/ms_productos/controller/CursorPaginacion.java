@@ -0,0 +1,73 @@
+package com.example.ms_productos.controller;
+
+import com.example.ms_productos.model.FiltroProductos;
+import com.example.ms_productos.model.Producto;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Codifica/decodifica el cursor opaco que devolvemos en la cabecera X-Next-Cursor.
+ * El cliente no debe interpretarlo: sólo lo reenvía en el parámetro "after".
+ */
+public final class CursorPaginacion {
+
+    public static final String CABECERA = "X-Next-Cursor";
+
+    private CursorPaginacion() {
+    }
+
+    public static String codificar(Long ultimoId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(ultimoId.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Devuelve el último id entregado, o null si no hay cursor (primera página).
+     * Un cursor mal formado es un 400, no un 500.
+     */
+    public static Long decodificar(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String valor = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            return Long.valueOf(valor);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cursor inválido");
+        }
+    }
+
+    // --- Cursor de /search: columna de orden + id + valor de la columna del último producto ---
+    // Si el valor es null (p. ej. un producto sin precio) el cursor lleva sólo "orden|id"
+
+    public static String codificarBusqueda(FiltroProductos.Campo orden, Producto ultimo) {
+        Object valor = orden.valorDe(ultimo);
+        String texto = orden.name() + "|" + ultimo.getId() + (valor == null ? "" : "|" + valor);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Carga en el filtro la posición del cursor. El cursor sólo vale para el mismo orden
+     * con el que se generó: si el cliente cambia "sort" debe empezar sin cursor.
+     */
+    public static void aplicarBusqueda(String cursor, FiltroProductos filtro) {
+        if (cursor == null || cursor.isBlank()) {
+            return;
+        }
+        try {
+            String texto = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] partes = texto.split("\\|", 3);
+            FiltroProductos.Campo orden = FiltroProductos.Campo.valueOf(partes[0]);
+            if (partes.length < 2 || orden != filtro.getOrden()) {
+                throw new IllegalArgumentException("El cursor no corresponde al orden pedido");
+            }
+            filtro.setDespuesDeId(Long.valueOf(partes[1]));
+            filtro.setDespuesDeValor(partes.length == 3 ? orden.parsear(partes[2]) : null);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cursor inválido");
+        }
+    }
+}
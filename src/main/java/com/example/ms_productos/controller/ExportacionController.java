@@ -0,0 +1,46 @@
+package com.example.ms_productos.controller;
+
+import com.example.ms_productos.service.ExportadorCatalogo;
+import com.example.ms_productos.service.FormatoCatalogo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/api/productos/export")
+public class ExportacionController {
+
+    static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+
+    @Autowired
+    private ExportadorCatalogo exportador;
+
+    // GET /api/productos/export?format=csv|ndjson&gzip=true
+    // Descarga del catálogo completo; se escribe directo en la respuesta, bloque a bloque.
+    // Con gzip=true el archivo es productos.csv.gz (application/gzip)
+    @GetMapping
+    public Mono<Void> exportar(@RequestParam(defaultValue = "csv") String format,
+                               @RequestParam(defaultValue = "false") boolean gzip,
+                               ServerHttpResponse response) {
+        FormatoCatalogo formato;
+        try {
+            formato = FormatoCatalogo.deParametro(format);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        String archivo = "productos" + formato.getExtension() + (gzip ? ".gz" : "");
+        HttpHeaders cabeceras = response.getHeaders();
+        cabeceras.setContentType(gzip ? GZIP : formato.getTipo());
+        cabeceras.setContentDisposition(ContentDisposition.attachment().filename(archivo).build());
+        return response.writeWith(exportador.exportar(formato, gzip, response.bufferFactory()));
+    }
+}
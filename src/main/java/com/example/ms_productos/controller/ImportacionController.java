@@ -0,0 +1,81 @@
+package com.example.ms_productos.controller;
+
+import com.example.ms_productos.model.EstadoImportacion;
+import com.example.ms_productos.service.FormatoCatalogo;
+import com.example.ms_productos.service.ImportacionExistenteException;
+import com.example.ms_productos.service.ImportadorCatalogo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePartEvent;
+import org.springframework.http.codec.multipart.PartEvent;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.regex.Pattern;
+
+@RestController
+@RequestMapping("/api/productos/import")
+public class ImportacionController {
+
+    static final String PARTE_ARCHIVO = "archivo";
+    // Opcional: el id de la importación lo elige el cliente, para seguir el progreso durante la subida
+    static final String CABECERA_ID = "X-Importacion-Id";
+    private static final Pattern ID_VALIDO = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    @Autowired
+    private ImportadorCatalogo importador;
+
+    // POST /api/productos/import (multipart, parte "archivo": CSV con cabecera o NDJSON)
+    // Se lee con PartEvent, a medida que llega, en lugar de FilePart (que guarda el archivo en disco).
+    // Responde al terminar, con el estado final y Location al estado de la importación.
+    // Con X-Importacion-Id (letras, dígitos, "-" y "_") GET /import/{id} responde desde que empieza
+    // la subida; si esa instancia ya tiene una importación con el mismo id, 409
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Mono<ResponseEntity<EstadoImportacion>> importar(@RequestBody Flux<PartEvent> partes,
+                                                            @RequestHeader(value = CABECERA_ID, required = false) String id) {
+        if (id != null && !ID_VALIDO.matcher(id).matches()) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    CABECERA_ID + " admite hasta 64 letras, dígitos, \"-\" o \"_\""));
+        }
+        return partes.windowUntil(PartEvent::isLast)
+                .concatMap(parte -> parte.<EstadoImportacion>switchOnFirst((primero, eventos) -> {
+                    if (primero.get() instanceof FilePartEvent archivo && PARTE_ARCHIVO.equals(archivo.name())) {
+                        FormatoCatalogo formato =
+                                FormatoCatalogo.de(archivo.headers().getContentType(), archivo.filename());
+                        if (formato == null) {
+                            return Mono.error(new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE,
+                                    "El archivo debe ser CSV (text/csv, .csv) o NDJSON (application/x-ndjson, .ndjson)"));
+                        }
+                        return importador.importar(id, formato, eventos.map(PartEvent::content));
+                    }
+                    // Otras partes del formulario: se descartan
+                    return eventos.doOnNext(evento -> DataBufferUtils.release(evento.content())).then(Mono.empty());
+                }))
+                .next()
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Falta la parte \"" + PARTE_ARCHIVO + "\"")))
+                .map(estado -> ResponseEntity.created(URI.create("/api/productos/import/" + estado.getId())).body(estado))
+                .onErrorMap(IllegalArgumentException.class, e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()))
+                .onErrorMap(ImportacionExistenteException.class, e -> new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage()));
+    }
+
+    // GET /api/productos/import/{id}: progreso (filas, creados, actualizados, errores) mientras corre
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<EstadoImportacion>> getImportacion(@PathVariable String id) {
+        return importador.estado(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    // GET /api/productos/import: las importaciones recientes de esta instancia
+    @GetMapping
+    public Flux<EstadoImportacion> getImportaciones() {
+        return importador.recientes();
+    }
+}
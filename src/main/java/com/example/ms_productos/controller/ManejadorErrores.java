@@ -0,0 +1,36 @@
+package com.example.ms_productos.controller;
+
+import com.example.ms_productos.PoolSaturadoException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import reactor.core.publisher.Mono;
+
+/**
+ * Errores comunes a todos los endpoints.
+ * <p>
+ * Sin conexión libre en el pool (cola llena o espera agotada) respondemos 503 con Retry-After:
+ * el cliente reintenta en vez de quedarse colgado hasta su propio timeout.
+ */
+@RestControllerAdvice
+public class ManejadorErrores {
+
+    static final String REINTENTAR_EN_SEGUNDOS = "1";
+
+    // DatabaseClient envuelve el fallo al obtener la conexión en DataAccessResourceFailureException;
+    // las transacciones (guardarLote: /batch, /import) en CannotCreateTransactionException
+    @ExceptionHandler({DataAccessResourceFailureException.class, CannotCreateTransactionException.class,
+            PoolSaturadoException.class})
+    public Mono<ResponseEntity<Void>> sinConexion(Exception e) {
+        if (PoolSaturadoException.enCausas(e)) {
+            return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, REINTENTAR_EN_SEGUNDOS)
+                    .build());
+        }
+        return Mono.error(e);
+    }
+}
@@ -1,37 +1,243 @@
 package com.example.ms_productos.controller;
 
+import com.example.ms_productos.CodecsConfig;
+import com.example.ms_productos.model.AlertaStock;
+import com.example.ms_productos.model.CambioProducto;
+import com.example.ms_productos.model.CampoProducto;
+import com.example.ms_productos.model.FiltroProductos;
+import com.example.ms_productos.model.Precio;
 import com.example.ms_productos.model.Producto;
+import com.example.ms_productos.model.ProductosPorId;
+import com.example.ms_productos.model.Reserva;
+import com.example.ms_productos.model.ResultadoLote;
+import com.example.ms_productos.model.VersionProducto;
+import com.example.ms_productos.service.ConflictoVersionException;
 import com.example.ms_productos.service.ProductoService;
+import com.example.ms_productos.service.StockInsuficienteException;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api/productos") // URL endpoints
 public class ProductoController {
 
+    static final int LIMITE_DEFECTO = 100;
+    static final int LIMITE_MAXIMO = 1000;
+    static final int BLOQUE_STREAM = 500;
+    static final int MAX_IDS = 200;
+
     @Autowired
     private ProductoService service;
 
-    // GET /api/productos
+    // GET /api/productos?limit=&after=&fields=
+    // Página por cursor: si hay más resultados, la cabecera X-Next-Cursor trae el valor para "after".
+    // Con fields=id,nombre,precio sólo se leen y se devuelven esos campos
     @GetMapping
-    public Flux<Producto> getAllProductos() {
-        return service.findAll();
+    public Mono<ResponseEntity<List<?>>> getAllProductos(
+            @RequestParam(defaultValue = "" + LIMITE_DEFECTO) int limit,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) String fields) {
+        int tamanio = tamanioPagina(limit);
+        Long afterId = CursorPaginacion.decodificar(after);
+        Set<CampoProducto> campos = campos(fields);
+        Flux<Producto> filas = campos == null
+                ? service.findPage(afterId, tamanio + 1)
+                : service.findPage(afterId, tamanio + 1, campos);
+        return pagina(filas, tamanio, ultimo -> CursorPaginacion.codificar(ultimo.getId()), campos);
+    }
+
+    // GET /api/productos?ids=1,2,3
+    // Varios productos en una petición (en el orden pedido); los ids que no existen van en "noEncontrados"
+    @GetMapping(params = "ids")
+    public Mono<ResponseEntity<ProductosPorId>> getProductosPorIds(@RequestParam List<Long> ids) {
+        return service.findByIds(validarIds(ids))
+                .map(resultado -> ResponseEntity.ok()
+                        .eTag(etagPagina(resultado.getProductos(), resultado.getNoEncontrados().toString()))
+                        .varyBy(HttpHeaders.ACCEPT)
+                        .body(resultado));
+    }
+
+    // POST /api/productos/ids  (cuerpo: [1, 2, 3])
+    // Lo mismo que ?ids= cuando la lista no cabe cómodamente en la URL
+    @PostMapping("/ids")
+    public Mono<ProductosPorId> postProductosPorIds(@RequestBody List<Long> ids) {
+        return service.findByIds(validarIds(ids));
+    }
+
+    private static List<Long> validarIds(List<Long> ids) {
+        if (ids.size() > MAX_IDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Como máximo " + MAX_IDS + " ids por petición");
+        }
+        return ids;
+    }
+
+    // GET /api/productos/search?nombre=&modo=&precioMin=&precioMax=&stockMin=&stockMax=&activo=&sort=&limit=&after=
+    // Todos los filtros son opcionales; "sort" = columna[,asc|desc] (id, nombre, precio, stock)
+    @GetMapping("/search")
+    public Mono<ResponseEntity<List<?>>> buscarProductos(
+            @RequestParam(required = false) String nombre,
+            @RequestParam(defaultValue = "contiene") String modo,
+            @RequestParam(required = false) Precio precioMin,
+            @RequestParam(required = false) Precio precioMax,
+            @RequestParam(required = false) Integer stockMin,
+            @RequestParam(required = false) Integer stockMax,
+            @RequestParam(required = false) Boolean activo,
+            @RequestParam(defaultValue = "id,asc") String sort,
+            @RequestParam(defaultValue = "" + LIMITE_DEFECTO) int limit,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) String fields) {
+        FiltroProductos filtro = new FiltroProductos();
+        filtro.setNombre(nombre);
+        filtro.setPrecioMin(precioMin);
+        filtro.setPrecioMax(precioMax);
+        filtro.setStockMin(stockMin);
+        filtro.setStockMax(stockMax);
+        filtro.setActivo(activo);
+        try {
+            filtro.setModoNombre(FiltroProductos.ModoNombre.valueOf(modo.trim().toUpperCase()));
+            String[] partesOrden = sort.split(",");
+            filtro.setOrden(FiltroProductos.Campo.deColumna(partesOrden[0].trim()));
+            if (partesOrden.length > 1) {
+                filtro.setDireccion(Sort.Direction.fromString(partesOrden[1].trim()));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        CursorPaginacion.aplicarBusqueda(after, filtro);
+        Set<CampoProducto> campos = campos(fields);
+        filtro.setCampos(campos);
+
+        int tamanio = tamanioPagina(limit);
+        filtro.setLimit(tamanio + 1);
+        return pagina(service.buscar(filtro), tamanio,
+                ultimo -> CursorPaginacion.codificarBusqueda(filtro.getOrden(), ultimo), campos);
+    }
+
+    private static int tamanioPagina(int limit) {
+        return Math.min(Math.max(limit, 1), LIMITE_MAXIMO);
+    }
+
+    // Un campo que no existe es un 400
+    private static Set<CampoProducto> campos(String fields) {
+        try {
+            return CampoProducto.parsear(fields);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // Con fields= cada producto se serializa como un mapa con sólo esos campos
+    private static List<?> cuerpo(List<Producto> productos, Set<CampoProducto> campos) {
+        return campos == null
+                ? productos
+                : productos.stream().map(producto -> CampoProducto.proyectar(producto, campos)).toList();
+    }
+
+    // Los campos pedidos cambian el cuerpo, así que también entran en el ETag de la página
+    private static String conCampos(String extra, Set<CampoProducto> campos) {
+        return campos == null ? extra : extra + "|" + campos;
+    }
+
+    // Las consultas piden una fila de más: si llega, existe una página siguiente y va su cursor
+    private static Mono<ResponseEntity<List<?>>> pagina(Flux<Producto> filas, int tamanio,
+                                                       Function<Producto, String> cursor, Set<CampoProducto> campos) {
+        return filas.collectList()
+                .map(productos -> {
+                    if (productos.size() <= tamanio) {
+                        return ResponseEntity.ok()
+                                .eTag(etagPagina(productos, conCampos(null, campos)))
+                                .varyBy(HttpHeaders.ACCEPT)
+                                .body(cuerpo(productos, campos));
+                    }
+                    List<Producto> pagina = productos.subList(0, tamanio);
+                    String siguiente = cursor.apply(pagina.get(tamanio - 1));
+                    return ResponseEntity.ok()
+                            .header(CursorPaginacion.CABECERA, siguiente)
+                            .eTag(etagPagina(pagina, conCampos(siguiente, campos)))
+                            .varyBy(HttpHeaders.ACCEPT)
+                            .body(cuerpo(pagina, campos));
+                });
+    }
+
+    /**
+     * ETag de una lista de productos: hash de los ids y versiones que contiene y de "extra"
+     * (lo demás que lleva la respuesta: el cursor siguiente o los ids no encontrados).
+     * Con el mismo ETag el cuerpo es el mismo, así un If-None-Match que coincide se responde 304
+     * (lo hace el propio ResponseEntity) y no se envía la lista otra vez.
+     * No hay Last-Modified: si se borra un producto la lista cambia sin que su fecha máxima avance.
+     */
+    static String etagPagina(List<Producto> productos, String extra) {
+        StringBuilder contenido = new StringBuilder(productos.size() * 12);
+        for (Producto producto : productos) {
+            contenido.append(producto.getId()).append(':').append(producto.getVersion()).append(';');
+        }
+        contenido.append(extra);
+        return "\"" + DigestUtils.md5DigestAsHex(contenido.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    // GET /api/productos (Accept: application/x-ndjson o application/stream+x-jackson-smile)
+    // Catálogo completo en streaming, un producto por línea, respetando la backpressure del cliente
+    @GetMapping(produces = {MediaType.APPLICATION_NDJSON_VALUE, CodecsConfig.SMILE_STREAM})
+    public Flux<Producto> streamProductos() {
+        return service.streamAll(BLOQUE_STREAM);
     }
 
     // GET /api/productos/{id}
+    // Con If-None-Match / If-Modified-Since primero se comparan sólo la versión y la fecha:
+    // si el cliente ya tiene la última, 304 sin leer el producto completo
     @GetMapping("/{id}")
-    public Mono<ResponseEntity<Producto>> getProductoById(@PathVariable Long id) {
+    public Mono<ResponseEntity<Producto>> getProductoById(@PathVariable Long id, ServerWebExchange exchange) {
+        HttpHeaders cabeceras = exchange.getRequest().getHeaders();
+        if (cabeceras.getIfNoneMatch().isEmpty() && cabeceras.getIfModifiedSince() < 0) {
+            return productoCompleto(id);
+        }
+        return service.findVersion(id)
+                .flatMap(version -> noModificado(exchange, version)
+                        ? Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).<Producto>build())
+                        : productoCompleto(id))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    private Mono<ResponseEntity<Producto>> productoCompleto(Long id) {
         return service.findById(id)
-                .map(producto -> ResponseEntity.ok(producto)) // Devuelve 200 OK si lo encuentra
+                .map(producto -> {
+                    // Vary: Accept -> una cache intermedia guarda aparte el JSON y el Smile
+                    ResponseEntity.BodyBuilder ok = ResponseEntity.ok().eTag(etag(producto)).varyBy(HttpHeaders.ACCEPT);
+                    if (producto.getFechaActualizacion() != null) {
+                        ok.lastModified(producto.getFechaActualizacion());
+                    }
+                    return ok.body(producto); // Devuelve 200 OK si lo encuentra
+                })
                 .defaultIfEmpty(ResponseEntity.notFound().build()); // Devuelve 404 si no
     }
 
+    // checkNotModified aplica las reglas de HTTP (If-None-Match manda sobre If-Modified-Since)
+    // y deja ETag y Last-Modified en la respuesta
+    // (sin fecha se pasa Instant.MIN, que checkNotModified ignora)
+    private static boolean noModificado(ServerWebExchange exchange, VersionProducto version) {
+        Instant fecha = version.getFechaActualizacion() != null ? version.getFechaActualizacion() : Instant.MIN;
+        return exchange.checkNotModified(etag(version.getVersion()), fecha);
+    }
+
     // POST /api/productos
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED) // Devuelve un código 201 Created
@@ -39,11 +245,29 @@ public class ProductoController {
         return service.save(producto);
     }
 
+    // POST /api/productos/batch
+    // Acepta un array JSON o un stream NDJSON; devuelve un resultado por producto (en orden)
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<ResultadoLote> createProductosBatch(@RequestBody Flux<Producto> productos) {
+        return service.saveBatch(productos);
+    }
+
     // PUT /api/productos/{id}
+    // Con If-Match (ETag del GET) sólo actualiza si nadie lo modificó antes; si no, 412
     @PutMapping("/{id}")
-    public Mono<ResponseEntity<Producto>> updateProducto(@PathVariable Long id, @RequestBody Producto producto) {
-        return service.update(id, producto)
-                .map(updatedProducto -> ResponseEntity.ok(updatedProducto))
+    public Mono<ResponseEntity<Producto>> updateProducto(@PathVariable Long id, @RequestBody Producto producto,
+                                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long versionEsperada;
+        try {
+            versionEsperada = versionDeIfMatch(ifMatch);
+        } catch (IllegalArgumentException e) {
+            // Un If-Match que no es un ETag nuestro nunca puede coincidir
+            return Mono.just(ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build());
+        }
+        return service.update(id, producto, versionEsperada)
+                .map(updatedProducto -> ResponseEntity.ok().eTag(etag(updatedProducto)).body(updatedProducto))
+                .onErrorResume(ConflictoVersionException.class,
+                        e -> Mono.just(ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build()))
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
@@ -57,18 +281,93 @@ public class ProductoController {
     // - Endpoints de Procedimientos Almacenados ---
 
     // PUT /api/productos/{id}/stock
-    //   RequestParam para recibir la cantidad
+    //   RequestParam para recibir la cantidad; 409 si el stock quedaría en negativo
     @PutMapping("/{id}/stock")
     public Mono<ResponseEntity<Void>> actualizarStock(@PathVariable Long id, @RequestParam Integer cantidad) {
         return service.actualizarStock(id, cantidad)
                 .then(Mono.just(ResponseEntity.ok().<Void>build())) // Devuelve 200 OK
+                .onErrorResume(StockInsuficienteException.class,
+                        e -> Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).<Void>build()))
                 .defaultIfEmpty(ResponseEntity.notFound().build()); // Devuelve 404 si el ID no existe
     }
 
+    // POST /api/productos/{id}/reservas
+    // Descuenta stock sólo si alcanza: 200 con el stock restante, 409 si no alcanza, 404 si no existe
+    @PostMapping("/{id}/reservas")
+    public Mono<ResponseEntity<Reserva>> reservarStock(@PathVariable Long id, @Valid @RequestBody Reserva reserva) {
+        return service.reservarStock(id, reserva.getCantidad())
+                .map(stock -> ResponseEntity.ok(new Reserva(id, reserva.getCantidad(), stock)))
+                .onErrorResume(StockInsuficienteException.class,
+                        e -> Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).<Reserva>build()))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    // --- Registro de cambios (sincronización incremental) ---
+
+    // GET /api/productos/changes?since=&limit=
+    // Eventos posteriores al de seq "since", en orden de confirmación; el consumidor guarda la última seq que procesó
+    @GetMapping("/changes")
+    public Flux<CambioProducto> getCambios(@RequestParam(defaultValue = "0") long since,
+                                           @RequestParam(defaultValue = "" + LIMITE_DEFECTO) int limit) {
+        return service.findCambios(Math.max(since, 0), tamanioPagina(limit));
+    }
+
+    // GET /api/productos/changes/stream?since=  (Server-Sent Events)
+    // Cada evento lleva id = seq: al reconectar, el navegador/cliente envía Last-Event-ID y se sigue desde ahí
+    @GetMapping(value = "/changes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<CambioProducto>> streamCambios(
+            @RequestParam(defaultValue = "0") long since,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long ultimoEvento) {
+        long desde = ultimoEvento != null ? ultimoEvento : Math.max(since, 0);
+        return service.streamCambios(desde)
+                .map(cambio -> ServerSentEvent.builder(cambio)
+                        .id(String.valueOf(cambio.getSeq()))
+                        .event(cambio.getTipo().name())
+                        .build());
+    }
+
     // GET /api/productos/bajo-stock
     //  un RequestParam para recibir el mínimo
     @GetMapping("/bajo-stock")
-    public Flux<Producto> getProductosBajoStock(@RequestParam Integer minimo) {
-        return service.findBajoStock(minimo);
+    public Flux<?> getProductosBajoStock(@RequestParam Integer minimo,
+                                         @RequestParam(required = false) String fields) {
+        Set<CampoProducto> campos = campos(fields);
+        if (campos == null) {
+            return service.findBajoStock(minimo);
+        }
+        return service.findBajoStock(minimo, campos)
+                .map(producto -> CampoProducto.proyectar(producto, campos));
+    }
+
+    // GET /api/productos/bajo-stock/alertas?minimo=10 (SSE): en vez de consultar /bajo-stock cada pocos
+    // segundos, el panel recibe un evento cuando un producto cruza el umbral en cualquier sentido
+    @GetMapping(value = "/bajo-stock/alertas", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<AlertaStock>> alertasBajoStock(@RequestParam int minimo) {
+        return service.alertasBajoStock(minimo)
+                .map(alerta -> ServerSentEvent.builder(alerta)
+                        .event(alerta.getTipo().name())
+                        .build());
+    }
+
+    // --- ETag a partir de la versión de la fila ---
+
+    static String etag(Producto producto) {
+        return etag(producto.getVersion());
+    }
+
+    static String etag(Long version) {
+        return "\"" + (version == null ? 0 : version) + "\"";
+    }
+
+    // null = sin If-Match (o "*"): actualizar sin comprobar versión
+    static Long versionDeIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String valor = ifMatch.trim();
+        if (valor.length() < 2 || !valor.startsWith("\"") || !valor.endsWith("\"")) {
+            throw new IllegalArgumentException("ETag inválido: " + ifMatch);
+        }
+        return Long.valueOf(valor.substring(1, valor.length() - 1));
     }
-}
\ No newline at end of file
+}
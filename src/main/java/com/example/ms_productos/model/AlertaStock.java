@@ -0,0 +1,23 @@
+package com.example.ms_productos.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Un producto cruzó el umbral pedido en GET /api/productos/bajo-stock/alertas.
+ * BAJO_UMBRAL: pasó a tener menos stock que el umbral; SOBRE_UMBRAL: se repuso.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertaStock {
+
+    public enum Tipo { BAJO_UMBRAL, SOBRE_UMBRAL }
+
+    private Long productoId;
+    private String nombre;
+    private Integer stockAnterior; // null si antes no estaba en el rango vigilado
+    private Integer stock;
+    private Tipo tipo;
+}
@@ -0,0 +1,43 @@
+package com.example.ms_productos.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * Evento del registro de cambios (tabla productos_cambios, la llena un trigger).
+ * "seq" identifica el evento: los consumidores guardan la del último que procesaron y piden desde ahí.
+ * Los eventos se entregan en el orden en que quedan definitivos, (txid, seq), que no siempre es
+ * el de seq (ver CambioProductoRepository).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("productos_cambios")
+public class CambioProducto {
+
+    public enum Tipo { CREADO, ACTUALIZADO, STOCK, ELIMINADO }
+
+    @Id
+    private Long seq;
+
+    private Long productoId;
+    private Tipo tipo;
+    private Integer stock; // stock después del cambio (null en ELIMINADO)
+    private LocalDateTime fecha;
+
+    // Transacción que lo generó: ordena el registro junto con seq (no se expone en el JSON)
+    @JsonIgnore
+    private Long txid;
+
+    // Posterior en el orden del registro a la posición (txid, seq)
+    public boolean posteriorA(long txidCursor, long seqCursor) {
+        long propio = txid == null ? 0 : txid;
+        return propio != txidCursor ? propio > txidCursor : seq > seqCursor;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.ms_productos.model;
+
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Campos de Producto que se pueden pedir con "fields=" (sparse fieldsets): el nombre en el JSON
+ * y la columna de la tabla. Sólo se leen de la BD y se serializan los pedidos.
+ */
+public enum CampoProducto {
+    ID("id", "id", Producto::getId),
+    NOMBRE("nombre", "nombre", Producto::getNombre),
+    DESCRIPCION("descripcion", "descripcion", Producto::getDescripcion),
+    PRECIO("precio", "precio", Producto::getPrecio),
+    STOCK("stock", "stock", Producto::getStock),
+    ACTIVO("activo", "activo", Producto::getActivo),
+    FECHA_CREACION("fechaCreacion", "fecha_creacion", Producto::getFechaCreacion),
+    FECHA_ACTUALIZACION("fechaActualizacion", "updated_at", Producto::getFechaActualizacion),
+    VERSION("version", "version", Producto::getVersion);
+
+    private final String propiedad;
+    private final String columna;
+    private final Function<Producto, Object> getter;
+
+    CampoProducto(String propiedad, String columna, Function<Producto, Object> getter) {
+        this.propiedad = propiedad;
+        this.columna = columna;
+        this.getter = getter;
+    }
+
+    public String getColumna() {
+        return columna;
+    }
+
+    /**
+     * "id,nombre,precio" -> los campos pedidos; null si no se pidió ninguno (producto completo).
+     * Un nombre que no existe es IllegalArgumentException.
+     */
+    public static Set<CampoProducto> parsear(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<CampoProducto> campos = EnumSet.noneOf(CampoProducto.class);
+        for (String nombre : fields.split(",")) {
+            campos.add(dePropiedad(nombre.trim()));
+        }
+        return campos;
+    }
+
+    private static CampoProducto dePropiedad(String propiedad) {
+        for (CampoProducto campo : values()) {
+            if (campo.propiedad.equalsIgnoreCase(propiedad)) {
+                return campo;
+            }
+        }
+        throw new IllegalArgumentException("Campo desconocido: " + propiedad);
+    }
+
+    // Sólo los campos pedidos, en el orden de siempre, para serializar
+    public static Map<String, Object> proyectar(Producto producto, Set<CampoProducto> campos) {
+        Map<String, Object> parcial = new LinkedHashMap<>();
+        for (CampoProducto campo : campos) {
+            parcial.put(campo.propiedad, campo.getter.apply(producto));
+        }
+        return parcial;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.ms_productos.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Estado de una importación del catálogo (POST /api/productos/import, GET /api/productos/import/{id}).
+ * "filas" cuenta las filas de datos leídas hasta ahora (sin cabecera ni líneas en blanco);
+ * "detalleErrores" trae sólo los primeros errores, "errores" los cuenta todos.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EstadoImportacion {
+
+    public enum Estado { EN_CURSO, COMPLETADA, FALLIDA, CANCELADA }
+
+    private String id;
+    private Estado estado;
+    private String formato;
+    private Instant inicio;
+    private Instant fin; // null mientras está en curso
+    private long filas;
+    private long creados;
+    private long actualizados;
+    private long errores;
+    private List<ErrorFila> detalleErrores;
+    private String mensaje; // motivo si FALLIDA
+
+    /** Fila rechazada: "linea" es la línea del archivo, empezando en 1. */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ErrorFila {
+        private long linea;
+        private String error;
+    }
+}
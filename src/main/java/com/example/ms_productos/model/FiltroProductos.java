@@ -0,0 +1,82 @@
+package com.example.ms_productos.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Sort;
+
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Filtros de GET /api/productos/search. Todos son opcionales; los que vienen se combinan con AND
+ * y se traducen a UNA consulta parametrizada (ver ProductoRepositoryCustomImpl#buscar).
+ */
+@Data
+@NoArgsConstructor
+public class FiltroProductos {
+
+    public enum ModoNombre { PREFIJO, CONTIENE }
+
+    /**
+     * Columnas por las que se puede ordenar. El orden siempre se desempata por id,
+     * y el cursor guarda (valor de la columna, id) del último producto entregado.
+     */
+    public enum Campo {
+        ID("id", Producto::getId, Long::valueOf),
+        NOMBRE("nombre", Producto::getNombre, s -> s),
+        PRECIO("precio", Producto::getPrecio, Precio::valueOf),
+        STOCK("stock", Producto::getStock, Integer::valueOf);
+
+        private final String columna;
+        private final Function<Producto, Object> getter;
+        private final Function<String, Object> parser;
+
+        Campo(String columna, Function<Producto, Object> getter, Function<String, Object> parser) {
+            this.columna = columna;
+            this.getter = getter;
+            this.parser = parser;
+        }
+
+        public String getColumna() {
+            return columna;
+        }
+
+        public Object valorDe(Producto producto) {
+            return getter.apply(producto);
+        }
+
+        public Object parsear(String valor) {
+            return parser.apply(valor);
+        }
+
+        public static Campo deColumna(String columna) {
+            for (Campo campo : values()) {
+                if (campo.columna.equalsIgnoreCase(columna)) {
+                    return campo;
+                }
+            }
+            throw new IllegalArgumentException("No se puede ordenar por " + columna);
+        }
+    }
+
+    private String nombre;
+    private ModoNombre modoNombre = ModoNombre.CONTIENE;
+    // En centavos: la consulta compara la columna entera precio_centavos
+    private Precio precioMin;
+    private Precio precioMax;
+    private Integer stockMin;
+    private Integer stockMax;
+    private Boolean activo;
+
+    private Campo orden = Campo.ID;
+    private Sort.Direction direccion = Sort.Direction.ASC;
+    private int limit;
+
+    // Keyset: valor de la columna de orden e id del último producto de la página anterior
+    // (con despuesDeId y sin valor, ese producto tenía la columna en null)
+    private Object despuesDeValor;
+    private Long despuesDeId;
+
+    // Columnas a leer (fields=); null = todas. Siempre se leen además id, version y la columna de orden
+    private Set<CampoProducto> campos;
+}
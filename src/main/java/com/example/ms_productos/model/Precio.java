@@ -0,0 +1,192 @@
+package com.example.ms_productos.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.io.IOException;
+
+/**
+ * Precio en centavos (unidades menores de la moneda del catálogo, 2 decimales como NUMERIC(10,2)).
+ * Comparaciones, rangos y sumas son exactas: no hay double ni BigDecimal de por medio.
+ * <p>
+ * En JSON (y CSV, Smile) sigue siendo un número, "10.50": se escribe dígito a dígito desde el long.
+ * Se lee desde un número o un texto ("10", "10.5", "10.50"); más de 2 decimales distintos de 0 o
+ * más de 8 dígitos enteros es un error, igual que un texto que no es un número.
+ * En la BD va en la columna precio_centavos (BIGINT, migración V7; ver R2dbcConversionesConfig).
+ */
+@JsonSerialize(using = Precio.Serializador.class)
+@JsonDeserialize(using = Precio.Deserializador.class)
+public final class Precio implements Comparable<Precio> {
+
+    public static final Precio CERO = new Precio(0);
+
+    // "-92233720368547758.08": alcanza para cualquier escribir()
+    public static final int MAX_CARACTERES = 21;
+
+    private final long centavos;
+
+    private Precio(long centavos) {
+        this.centavos = centavos;
+    }
+
+    public static Precio deCentavos(long centavos) {
+        return centavos == 0 ? CERO : new Precio(centavos);
+    }
+
+    /**
+     * "10", "10.5", "-3.25" -> Precio. Texto inválido o con más de 2 decimales:
+     * IllegalArgumentException (NumberFormatException). Spring lo usa también para los @RequestParam.
+     */
+    public static Precio valueOf(String texto) {
+        Precio precio = parsear(texto.toCharArray(), 0, texto.length());
+        if (precio == null) {
+            throw new NumberFormatException("Precio inválido: " + texto);
+        }
+        return precio;
+    }
+
+    public long getCentavos() {
+        return centavos;
+    }
+
+    public boolean esNegativo() {
+        return centavos < 0;
+    }
+
+    // Escribe "10.50" en "destino" desde "desde"; devuelve la posición siguiente
+    public int escribir(char[] destino, int desde) {
+        // Con el signo del valor (Math.abs(Long.MIN_VALUE) no existe): cada resto va de -9 a 9
+        long resto = centavos;
+        int fin = desde + longitud();
+        int i = fin;
+        destino[--i] = (char) ('0' + Math.abs(resto % 10));
+        resto /= 10;
+        destino[--i] = (char) ('0' + Math.abs(resto % 10));
+        resto /= 10;
+        destino[--i] = '.';
+        do {
+            destino[--i] = (char) ('0' + Math.abs(resto % 10));
+            resto /= 10;
+        } while (resto != 0);
+        if (centavos < 0) {
+            destino[--i] = '-';
+        }
+        return fin;
+    }
+
+    private int longitud() {
+        long enteros = Math.abs(centavos / 100);
+        int digitos = 1;
+        while (enteros >= 10) {
+            enteros /= 10;
+            digitos++;
+        }
+        return digitos + 3 + (centavos < 0 ? 1 : 0);
+    }
+
+    // null si no es un precio válido
+    static Precio parsear(char[] texto, int desde, int largo) {
+        int i = desde;
+        int fin = desde + largo;
+        while (i < fin && Character.isWhitespace(texto[i])) {
+            i++;
+        }
+        while (fin > i && Character.isWhitespace(texto[fin - 1])) {
+            fin--;
+        }
+        boolean negativo = i < fin && texto[i] == '-';
+        if (negativo || i < fin && texto[i] == '+') {
+            i++;
+        }
+        long enteros = 0;
+        int digitos = 0;
+        for (; i < fin && texto[i] >= '0' && texto[i] <= '9'; i++, digitos++) {
+            // Hasta 8 dígitos enteros (los ceros a la izquierda no cuentan): el trigger de V7 sigue
+            // copiando precio_centavos a la columna vieja precio, NUMERIC(10,2), y un valor mayor
+            // haría fallar el INSERT/UPDATE en la BD en vez de ser un precio inválido (400)
+            if (enteros >= 10_000_000) {
+                return null;
+            }
+            enteros = enteros * 10 + (texto[i] - '0');
+        }
+        long fraccion = 0;
+        int decimales = 0;
+        if (i < fin && texto[i] == '.') {
+            for (i++; i < fin && texto[i] >= '0' && texto[i] <= '9'; i++, decimales++) {
+                if (decimales < 2) {
+                    fraccion = fraccion * 10 + (texto[i] - '0');
+                } else if (texto[i] != '0') {
+                    return null;
+                }
+            }
+        }
+        if (i != fin || digitos + decimales == 0) {
+            return null;
+        }
+        if (decimales == 1) {
+            fraccion *= 10;
+        }
+        long centavos = enteros * 100 + fraccion;
+        return deCentavos(negativo ? -centavos : centavos);
+    }
+
+    @Override
+    public int compareTo(Precio otro) {
+        return Long.compare(centavos, otro.centavos);
+    }
+
+    @Override
+    public boolean equals(Object otro) {
+        return otro instanceof Precio precio && precio.centavos == centavos;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(centavos);
+    }
+
+    @Override
+    public String toString() {
+        char[] texto = new char[MAX_CARACTERES];
+        return new String(texto, 0, escribir(texto, 0));
+    }
+
+    // Un número JSON con los dígitos tal cual (writeNumber sobre los caracteres, sin String)
+    static final class Serializador extends JsonSerializer<Precio> {
+
+        @Override
+        public void serialize(Precio precio, JsonGenerator generador, SerializerProvider proveedor) throws IOException {
+            char[] texto = new char[MAX_CARACTERES];
+            generador.writeNumber(texto, 0, precio.escribir(texto, 0));
+        }
+    }
+
+    // Número o texto; se leen los caracteres del parser, sin pasar por double ni BigDecimal
+    static final class Deserializador extends JsonDeserializer<Precio> {
+
+        @Override
+        public Precio deserialize(JsonParser parser, DeserializationContext contexto) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT
+                    || token == JsonToken.VALUE_STRING) {
+                Precio precio = parsear(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                if (precio != null) {
+                    return precio;
+                }
+                String texto = parser.getText();
+                return (Precio) (token == JsonToken.VALUE_STRING
+                        ? contexto.handleWeirdStringValue(Precio.class, texto, "no es un precio con hasta 2 decimales")
+                        : contexto.handleWeirdNumberValue(Precio.class, parser.getNumberValue(),
+                        "no es un precio con hasta 2 decimales"));
+            }
+            return (Precio) contexto.handleUnexpectedToken(Precio.class, parser);
+        }
+    }
+}
@@ -1,13 +1,14 @@
 package com.example.ms_productos.model;
 
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 
 @Data //  Anotación  Lombok
@@ -16,14 +17,24 @@ import java.time.LocalDateTime;
 @Table("productos") //   R2DBC (reemplaza a @Entity)
 public class Producto {
 
+    // IDENTITY en la BD: R2DBC omite el id null en el INSERT y lee el generado
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     private String nombre;
     private String descripcion;
-    private Double precio;
+    // Centavos en la columna precio_centavos (V7); en JSON sigue siendo un número con 2 decimales
+    @Column("precio_centavos")
+    private Precio precio;
     private Integer stock;
     private Boolean activo;
     private LocalDateTime fechaCreacion;
+
+    // Última modificación (Last-Modified). La renueva el trigger de V6 en cualquier UPDATE
+    @Column("updated_at")
+    private Instant fechaActualizacion;
+
+    // Control optimista: la BD la incrementa en cada UPDATE (se expone como ETag)
+    @Version
+    private Long version;
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.example.ms_productos.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Respuesta de la consulta por varios ids (GET /api/productos?ids=, POST /api/productos/ids).
+ * "productos" sigue el orden de los ids pedidos; los que no existen van en "noEncontrados".
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductosPorId {
+
+    private List<Producto> productos;
+    private List<Long> noEncontrados;
+}
@@ -0,0 +1,25 @@
+package com.example.ms_productos.model;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Cuerpo de POST /api/productos/{id}/reservas (cantidad a descontar) y su respuesta
+ * (stock que queda después de reservar).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Reserva {
+
+    private Long productoId;
+
+    @NotNull
+    @Min(1)
+    private Integer cantidad;
+
+    private Integer stockRestante;
+}
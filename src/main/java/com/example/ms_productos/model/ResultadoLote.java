@@ -0,0 +1,22 @@
+package com.example.ms_productos.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resultado de un producto dentro de POST /api/productos/batch.
+ * "indice" es la posición del producto en el cuerpo de la petición.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoLote {
+
+    public enum Estado { CREADO, ACTUALIZADO, ERROR }
+
+    private long indice;
+    private Long id;
+    private Estado estado;
+    private String error;
+}
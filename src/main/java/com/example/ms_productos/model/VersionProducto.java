@@ -0,0 +1,24 @@
+package com.example.ms_productos.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Validadores de un producto (ETag = versión, Last-Modified = fecha de actualización).
+ * Alcanza para responder un GET condicional con 304 sin leer la fila completa.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VersionProducto {
+
+    private Long version;
+    private Instant fechaActualizacion;
+
+    public static VersionProducto de(Producto producto) {
+        return new VersionProducto(producto.getVersion(), producto.getFechaActualizacion());
+    }
+}
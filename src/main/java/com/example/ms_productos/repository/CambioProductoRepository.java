@@ -0,0 +1,43 @@
+package com.example.ms_productos.repository;
+
+import com.example.ms_productos.model.CambioProducto;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Lectura del registro de cambios en el orden en que los eventos quedan definitivos.
+ * <p>
+ * Una seq se toma al escribir, no al hacer commit: una transacción abierta puede tener la seq 6
+ * (invisible) mientras otra con txid menor ya confirmó la 7. Por eso el registro no se recorre
+ * por seq sino por (txid, seq), y sólo hasta el xmin del snapshot: toda transacción con
+ * txid < xmin ya terminó, así que esas filas no cambian más, y las que se confirmen después tendrán
+ * txid >= xmin, es decir, quedan detrás de todo lo ya entregado. La seq sigue siendo el cursor:
+ * de la fila "since" se toma su txid (de la anterior más cercana si no existe).
+ */
+@Repository
+public interface CambioProductoRepository extends R2dbcRepository<CambioProducto, Long> {
+
+    String DESDE = "(txid, seq) > (COALESCE((SELECT d.txid FROM productos_cambios d WHERE d.seq <= :since "
+            + "ORDER BY d.seq DESC LIMIT 1), 0), :since)";
+
+    String DEFINITIVO = "txid < txid_snapshot_xmin(txid_current_snapshot())";
+
+    // Eventos posteriores a "since", en orden (txid, seq): no se "salta" ninguno al avanzar el cursor
+    @Query("SELECT seq, producto_id, tipo, stock, fecha, txid FROM productos_cambios "
+            + "WHERE " + DESDE + " AND " + DEFINITIVO + " "
+            + "ORDER BY txid, seq LIMIT :limit")
+    Flux<CambioProducto> findDesde(Long since, int limit);
+
+    // Último evento definitivo (mismo orden que findDesde): punto de partida del stream en vivo
+    @Query("SELECT COALESCE((SELECT seq FROM productos_cambios WHERE " + DEFINITIVO + " "
+            + "ORDER BY txid DESC, seq DESC LIMIT 1), 0)")
+    Mono<Long> findUltimaSeq();
+
+    // txid de la posición "since" (el mismo que usa findDesde): para comparar eventos con el cursor
+    @Query("SELECT COALESCE((SELECT txid FROM productos_cambios WHERE seq <= :since "
+            + "ORDER BY seq DESC LIMIT 1), 0)")
+    Mono<Long> findTxidDe(Long since);
+}
@@ -0,0 +1,114 @@
+package com.example.ms_productos.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide cada método de ProductoRepository y CambioProductoRepository: timer productos.repositorio
+ * con tags repositorio, metodo y resultado (ok | error | cancelado). El tiempo va desde la
+ * suscripción hasta el último elemento, así incluye la espera por la conexión del pool. Los timers
+ * de cada método se resuelven al crear el proxy, no en cada consulta.
+ */
+public class MetricasRepositorio implements BeanPostProcessor {
+
+    static final String METRICA = "productos.repositorio";
+
+    // El registry se busca al crear el proxy: un BeanPostProcessor no debe forzar beans antes de tiempo
+    private final ObjectProvider<MeterRegistry> registry;
+
+    public MetricasRepositorio(ObjectProvider<MeterRegistry> registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof ProductoRepository) {
+            return medir(bean, ProductoRepository.class);
+        }
+        if (bean instanceof CambioProductoRepository) {
+            return medir(bean, CambioProductoRepository.class);
+        }
+        return bean;
+    }
+
+    private Object medir(Object repositorio, Class<?> tipo) {
+        MeterRegistry meters = registry.getIfAvailable();
+        if (meters == null) {
+            return repositorio;
+        }
+        String nombre = tipo.getSimpleName();
+        Map<Method, Metodo> metodos = new HashMap<>();
+        for (Method metodo : tipo.getMethods()) {
+            if (Mono.class.isAssignableFrom(metodo.getReturnType()) || Flux.class.isAssignableFrom(metodo.getReturnType())) {
+                metodos.put(metodo, new Metodo(meters, nombre, metodo.getName()));
+            }
+        }
+        ProxyFactory fabrica = new ProxyFactory(repositorio);
+        fabrica.addInterface(tipo);
+        fabrica.addAdvice((MethodInterceptor) invocacion -> {
+            Object resultado = invocacion.proceed();
+            Metodo metodo = metodos.get(invocacion.getMethod());
+            if (metodo == null) {
+                return resultado;
+            }
+            if (resultado instanceof Mono<?> mono) {
+                return Mono.defer(() -> {
+                    long inicio = System.nanoTime();
+                    return mono.doFinally(senial -> metodo.registrar(senial, inicio));
+                });
+            }
+            if (resultado instanceof Flux<?> flux) {
+                return Flux.defer(() -> {
+                    long inicio = System.nanoTime();
+                    return flux.doFinally(senial -> metodo.registrar(senial, inicio));
+                });
+            }
+            return resultado;
+        });
+        return fabrica.getProxy(repositorio.getClass().getClassLoader());
+    }
+
+    // Los tres timers de un método, uno por resultado
+    private static final class Metodo {
+
+        private final Timer ok;
+        private final Timer error;
+        private final Timer cancelado;
+
+        Metodo(MeterRegistry meters, String repositorio, String metodo) {
+            this.ok = timer(meters, repositorio, metodo, "ok");
+            this.error = timer(meters, repositorio, metodo, "error");
+            this.cancelado = timer(meters, repositorio, metodo, "cancelado");
+        }
+
+        void registrar(SignalType senial, long inicio) {
+            Timer timer = switch (senial) {
+                case ON_ERROR -> error;
+                case CANCEL -> cancelado;
+                default -> ok;
+            };
+            timer.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static Timer timer(MeterRegistry meters, String repositorio, String metodo, String resultado) {
+        return Timer.builder(METRICA)
+                .description("Latencia de cada consulta del repositorio")
+                .tag("repositorio", repositorio)
+                .tag("metodo", metodo)
+                .tag("resultado", resultado)
+                .register(meters);
+    }
+}
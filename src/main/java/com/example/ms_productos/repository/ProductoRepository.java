@@ -1,6 +1,8 @@
 package com.example.ms_productos.repository;
 
 import com.example.ms_productos.model.Producto;
+import com.example.ms_productos.model.VersionProducto;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository; // <-- 1. No es JpaRepository
@@ -9,7 +11,7 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Repository
-public interface ProductoRepository extends R2dbcRepository<Producto, Long> { // <-- 2. Es R2dbcRepository
+public interface ProductoRepository extends R2dbcRepository<Producto, Long>, ProductoRepositoryCustom { // <-- 2. Es R2dbcRepository
 
     /**
      * Tarea 2.5: Llamada al procedimiento almacenado "actualizar_stock".
@@ -27,4 +29,23 @@ public interface ProductoRepository extends R2dbcRepository<Producto, Long> { //
      * la tabla que retorna la función (id, nombre, stock)
      */
     Flux<Producto> findByStockLessThan(Integer minimo);
-}
\ No newline at end of file
+
+    /**
+     * Paginación por cursor (keyset sobre id): trae los siguientes "limit" productos
+     * con id mayor al último entregado. Usa el índice de la PK, así el costo no crece
+     * con la página como pasaría con OFFSET.
+     */
+    Flux<Producto> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    // Sólo los validadores del producto, para los GET condicionales (If-None-Match / If-Modified-Since)
+    @Query("SELECT version, updated_at AS fecha_actualizacion FROM productos WHERE id = :id")
+    Mono<VersionProducto> findVersionById(Long id);
+
+    /**
+     * Varios productos en una consulta. Los ids van como UN parámetro array (= ANY), no como
+     * IN ($1, $2...): la sentencia es la misma para cualquier cantidad de ids y PostgreSQL
+     * reutiliza su plan. El orden del resultado no está definido.
+     */
+    @Query("SELECT * FROM productos WHERE id = ANY(:ids)")
+    Flux<Producto> findAllByIdEn(Long[] ids);
+}
@@ -0,0 +1,40 @@
+package com.example.ms_productos.repository;
+
+import com.example.ms_productos.model.FiltroProductos;
+import com.example.ms_productos.model.Producto;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Consultas que no se pueden expresar con métodos derivados ni @Query
+ * (se implementan a mano en ProductoRepositoryCustomImpl con DatabaseClient).
+ */
+public interface ProductoRepositoryCustom {
+
+    /**
+     * Guarda un bloque de productos en UNA transacción usando sentencias por lotes
+     * (Statement.add()): INSERT para los que no traen id y UPDATE para los que sí.
+     * Devuelve los ids en el mismo orden de entrada; null si el UPDATE no encontró la fila.
+     */
+    Mono<List<Long>> guardarLote(List<Producto> productos);
+
+    /**
+     * Actualiza el producto en una sola sentencia (UPDATE ... RETURNING *), sin leerlo antes.
+     * Si "versionEsperada" no es null sólo actualiza cuando la fila sigue en esa versión.
+     * Vacío si no existe el id o si la versión no coincide.
+     */
+    Mono<Producto> actualizarAtomico(Long id, Producto cambios, Long versionEsperada);
+
+    /**
+     * Descuenta "cantidad" sólo si hay stock suficiente, en un único UPDATE condicional.
+     * Devuelve el stock que queda; vacío si no existe el id o no alcanza el stock.
+     */
+    Mono<Integer> reservarStock(Long id, int cantidad);
+
+    /**
+     * Búsqueda con filtros y paginación keyset, resuelta en la BD con una sola consulta.
+     */
+    Flux<Producto> buscar(FiltroProductos filtro);
+}
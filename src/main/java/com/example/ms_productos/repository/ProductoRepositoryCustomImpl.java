@@ -0,0 +1,256 @@
+package com.example.ms_productos.repository;
+
+import com.example.ms_productos.model.FiltroProductos;
+import com.example.ms_productos.model.Precio;
+import com.example.ms_productos.model.Producto;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+public class ProductoRepositoryCustomImpl implements ProductoRepositoryCustom {
+
+    static final String INSERT_PRODUCTO =
+            "INSERT INTO productos (nombre, descripcion, precio_centavos, stock, activo, fecha_creacion) "
+                    + "VALUES ($1, $2, $3, $4, $5, $6)";
+
+    static final String UPDATE_PRODUCTO =
+            "UPDATE productos SET nombre = $1, descripcion = $2, precio_centavos = $3, stock = $4, activo = $5 "
+                    + "WHERE id = $6";
+
+    // La versión la sube el trigger trg_productos_version; aquí sólo se compara
+    static final String UPDATE_RETURNING =
+            "UPDATE productos SET nombre = :nombre, descripcion = :descripcion, precio_centavos = :precio, "
+                    + "stock = :stock, activo = :activo "
+                    + "WHERE id = :id AND (CAST(:version AS BIGINT) IS NULL OR version = :version) "
+                    + "RETURNING *";
+
+    // La condición stock >= cantidad y el descuento van en la misma sentencia: no hay sobreventa
+    static final String UPDATE_RESERVA =
+            "UPDATE productos SET stock = stock - :cantidad WHERE id = :id AND stock >= :cantidad RETURNING stock";
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final R2dbcConverter converter;
+    private final R2dbcEntityTemplate template;
+
+    public ProductoRepositoryCustomImpl(DatabaseClient databaseClient, TransactionalOperator transactionalOperator,
+                                        R2dbcConverter converter, R2dbcEntityTemplate template) {
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = transactionalOperator;
+        this.converter = converter;
+        this.template = template;
+    }
+
+    @Override
+    public Mono<List<Long>> guardarLote(List<Producto> productos) {
+        List<Producto> nuevos = productos.stream().filter(p -> p.getId() == null).toList();
+        List<Producto> existentes = productos.stream().filter(p -> p.getId() != null).toList();
+
+        // Las dos sentencias van por la misma conexión (y transacción), una detrás de otra:
+        // el UPDATE se lanza cuando terminó el INSERT (si el INSERT falla, no se ejecuta)
+        Mono<List<Long>> lote = databaseClient.inConnection(conexion ->
+                insertar(conexion, nuevos).collectList()
+                        .flatMap(ids -> actualizar(conexion, existentes).collectList()
+                                .map(actualizados -> combinar(productos, ids, actualizados))));
+        return lote.as(transactionalOperator::transactional);
+    }
+
+    @Override
+    public Mono<Producto> actualizarAtomico(Long id, Producto cambios, Long versionEsperada) {
+        DatabaseClient.GenericExecuteSpec sentencia = databaseClient.sql(UPDATE_RETURNING);
+        sentencia = bind(sentencia, "nombre", cambios.getNombre(), String.class);
+        sentencia = bind(sentencia, "descripcion", cambios.getDescripcion(), String.class);
+        sentencia = bind(sentencia, "precio", centavos(cambios.getPrecio()), Long.class);
+        sentencia = bind(sentencia, "stock", cambios.getStock(), Integer.class);
+        sentencia = bind(sentencia, "activo", cambios.getActivo(), Boolean.class);
+        sentencia = bind(sentencia, "version", versionEsperada, Long.class);
+        return sentencia.bind("id", id)
+                // Mapeamos la fila devuelta con el mismo converter que usa el repositorio
+                .map((row, metadata) -> converter.read(Producto.class, row, metadata))
+                .one();
+    }
+
+    @Override
+    public Mono<Integer> reservarStock(Long id, int cantidad) {
+        return databaseClient.sql(UPDATE_RESERVA)
+                .bind("cantidad", cantidad)
+                .bind("id", id)
+                .map((row, metadata) -> row.get("stock", Integer.class))
+                .one();
+    }
+
+    @Override
+    public Flux<Producto> buscar(FiltroProductos filtro) {
+        return template.select(Producto.class)
+                .matching(consultaBusqueda(filtro))
+                .all();
+    }
+
+    // Traduce los filtros a Criteria: todos los valores viajan como parámetros, nunca concatenados
+    static Query consultaBusqueda(FiltroProductos filtro) {
+        Criteria criteria = Criteria.empty();
+        if (filtro.getNombre() != null && !filtro.getNombre().isBlank()) {
+            String texto = escaparLike(filtro.getNombre().trim());
+            String patron = filtro.getModoNombre() == FiltroProductos.ModoNombre.PREFIJO
+                    ? texto + "%"
+                    : "%" + texto + "%";
+            // ignoreCase -> UPPER(nombre) LIKE UPPER(:patron), cubierto por idx_productos_nombre_trgm
+            criteria = criteria.and(Criteria.where("nombre").like(patron).ignoreCase(true));
+        }
+        if (filtro.getPrecioMin() != null) {
+            criteria = criteria.and(Criteria.where("precio").greaterThanOrEquals(filtro.getPrecioMin()));
+        }
+        if (filtro.getPrecioMax() != null) {
+            criteria = criteria.and(Criteria.where("precio").lessThanOrEquals(filtro.getPrecioMax()));
+        }
+        if (filtro.getStockMin() != null) {
+            criteria = criteria.and(Criteria.where("stock").greaterThanOrEquals(filtro.getStockMin()));
+        }
+        if (filtro.getStockMax() != null) {
+            criteria = criteria.and(Criteria.where("stock").lessThanOrEquals(filtro.getStockMax()));
+        }
+        if (filtro.getActivo() != null) {
+            criteria = criteria.and(Criteria.where("activo").is(filtro.getActivo()));
+        }
+        if (filtro.getDespuesDeId() != null) {
+            criteria = criteria.and(despuesDe(filtro));
+        }
+
+        String columna = filtro.getOrden().getColumna();
+        Sort orden = filtro.getOrden() == FiltroProductos.Campo.ID
+                ? Sort.by(filtro.getDireccion(), "id")
+                : Sort.by(filtro.getDireccion(), columna).and(Sort.by(filtro.getDireccion(), "id"));
+        Query consulta = Query.query(criteria).sort(orden);
+        if (filtro.getLimit() > 0) {
+            consulta = consulta.limit(filtro.getLimit());
+        }
+        if (filtro.getCampos() != null) {
+            // Proyección en el SELECT: las demás propiedades quedan en null.
+            // id y columna de orden hacen falta para el cursor; version, para el ETag de la página
+            Set<String> columnas = new LinkedHashSet<>(List.of("id", "version", columna));
+            filtro.getCampos().forEach(campo -> columnas.add(campo.getColumna()));
+            consulta = consulta.columns(columnas);
+        }
+        return consulta;
+    }
+
+    // Keyset: (columna, id) estrictamente después del último producto entregado.
+    // PostgreSQL pone los null al final en ASC y al principio en DESC; "columna > valor" nunca los
+    // incluye, así que van en su propia rama (y un valor null en el cursor se compara con IS NULL)
+    private static Criteria despuesDe(FiltroProductos filtro) {
+        boolean asc = filtro.getDireccion().isAscending();
+        Long id = filtro.getDespuesDeId();
+        Criteria porId = asc ? Criteria.where("id").greaterThan(id) : Criteria.where("id").lessThan(id);
+        if (filtro.getOrden() == FiltroProductos.Campo.ID) {
+            return porId;
+        }
+        String columna = filtro.getOrden().getColumna();
+        Object valor = filtro.getDespuesDeValor();
+        if (valor == null) {
+            // ASC: quedan los null con id mayor; DESC: los null con id menor y todos los que tienen valor
+            Criteria nulos = Criteria.where(columna).isNull().and(porId);
+            return asc ? nulos : nulos.or(Criteria.where(columna).isNotNull());
+        }
+        Criteria porValor = asc ? Criteria.where(columna).greaterThan(valor) : Criteria.where(columna).lessThan(valor);
+        Criteria despues = porValor.or(Criteria.where(columna).is(valor).and(porId));
+        return asc ? despues.or(Criteria.where(columna).isNull()) : despues;
+    }
+
+    private static String escaparLike(String texto) {
+        return texto.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    // Un único INSERT con un juego de parámetros por producto; devuelve los ids generados en orden
+    private Flux<Long> insertar(Connection conexion, List<Producto> nuevos) {
+        if (nuevos.isEmpty()) {
+            return Flux.empty();
+        }
+        Statement insert = conexion.createStatement(INSERT_PRODUCTO).returnGeneratedValues("id");
+        for (int i = 0; i < nuevos.size(); i++) {
+            if (i > 0) {
+                insert.add();
+            }
+            Producto p = nuevos.get(i);
+            bindCampos(insert, p);
+            bind(insert, 5, p.getFechaCreacion(), LocalDateTime.class);
+        }
+        return Flux.from(insert.execute())
+                .concatMap(result -> result.map((row, metadata) -> row.get("id", Long.class)));
+    }
+
+    // Un único UPDATE por lotes; devuelve las filas afectadas por cada producto, en orden
+    private Flux<Long> actualizar(Connection conexion, List<Producto> existentes) {
+        if (existentes.isEmpty()) {
+            return Flux.empty();
+        }
+        Statement update = conexion.createStatement(UPDATE_PRODUCTO);
+        for (int i = 0; i < existentes.size(); i++) {
+            if (i > 0) {
+                update.add();
+            }
+            Producto p = existentes.get(i);
+            bindCampos(update, p);
+            update.bind(5, p.getId());
+        }
+        return Flux.from(update.execute())
+                .concatMap(Result::getRowsUpdated);
+    }
+
+    // Reordena los resultados según la lista original
+    private List<Long> combinar(List<Producto> productos, List<Long> idsNuevos, List<Long> filasActualizadas) {
+        Iterator<Long> nuevos = idsNuevos.iterator();
+        Iterator<Long> actualizados = filasActualizadas.iterator();
+        List<Long> ids = new ArrayList<>(productos.size());
+        for (Producto p : productos) {
+            if (p.getId() == null) {
+                ids.add(nuevos.next());
+            } else {
+                ids.add(actualizados.next() > 0 ? p.getId() : null);
+            }
+        }
+        return ids;
+    }
+
+    private static void bindCampos(Statement statement, Producto p) {
+        bind(statement, 0, p.getNombre(), String.class);
+        bind(statement, 1, p.getDescripcion(), String.class);
+        bind(statement, 2, centavos(p.getPrecio()), Long.class);
+        bind(statement, 3, p.getStock(), Integer.class);
+        bind(statement, 4, p.getActivo(), Boolean.class);
+    }
+
+    // SQL a mano: el Precio se escribe como en R2dbcConversionesConfig (centavos en un BIGINT)
+    private static Long centavos(Precio precio) {
+        return precio == null ? null : precio.getCentavos();
+    }
+
+    private static void bind(Statement statement, int indice, Object valor, Class<?> tipo) {
+        if (valor == null) {
+            statement.bindNull(indice, tipo);
+        } else {
+            statement.bind(indice, valor);
+        }
+    }
+
+    // Igual que el de arriba, para los parámetros con nombre de DatabaseClient
+    private static DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec sentencia,
+                                                          String nombre, Object valor, Class<?> tipo) {
+        return valor == null ? sentencia.bindNull(nombre, tipo) : sentencia.bind(nombre, valor);
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.ms_productos.service;
+
+import com.example.ms_productos.PoolSaturadoException;
+import com.example.ms_productos.repository.ProductoRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Junta los ajustes de stock de un mismo producto que llegan dentro de una ventana corta
+ * (productos.stock.ventana, por defecto 5ms) o hasta "max-operaciones", y los aplica con
+ * UNA llamada a actualizar_stock con la suma de las cantidades.
+ * <p>
+ * Cada llamador recibe su Mono cuando el lote que contiene su cantidad quedó escrito en la BD.
+ * Con ventana 0 no se acumula nada: cada ajuste va directo a la BD.
+ * <p>
+ * Si la función rechaza la suma (p. ej. "Stock insuficiente" cerca de cero), los ajustes del lote
+ * se vuelven a aplicar uno por uno, en el orden de llegada, y cada llamador recibe su propio
+ * resultado: igual que sin acumular. Con el pool saturado no se reintenta (sería más carga).
+ */
+@Component
+public class AcumuladorStock {
+
+    private static final int SHARDS = 64;
+
+    private final ProductoRepository repository;
+    private final Duration ventana;
+    private final int maxOperaciones;
+    private final Scheduler scheduler = Schedulers.parallel();
+
+    // Lotes abiertos por producto; cada shard de ids tiene su propio lock
+    private final Map<Long, Lote> pendientes = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[SHARDS];
+
+    private final DistributionSummary operacionesPorFlush;
+    private final MeterRegistry registry;
+    private final Timer flushOk;
+    private final Timer flushError;
+
+    public AcumuladorStock(ProductoRepository repository, MeterRegistry registry,
+                           @Value("${productos.stock.ventana:5ms}") Duration ventana,
+                           @Value("${productos.stock.max-operaciones:256}") int maxOperaciones) {
+        this.repository = repository;
+        this.registry = registry;
+        this.ventana = ventana;
+        this.maxOperaciones = maxOperaciones;
+        for (int i = 0; i < SHARDS; i++) {
+            locks[i] = new Object();
+        }
+        // Ajustes que se fusionaron en cada llamada a la BD (el "merge ratio")
+        this.operacionesPorFlush = DistributionSummary.builder("productos.stock.operaciones.por.flush")
+                .description("Ajustes de stock fusionados en cada llamada a actualizar_stock")
+                .register(registry);
+        this.flushOk = timerFlush(registry, "ok");
+        this.flushError = timerFlush(registry, "error");
+    }
+
+    public Mono<Void> ajustar(Long productoId, int cantidad) {
+        if (ventana.isZero() || maxOperaciones <= 1) {
+            return repository.actualizarStock(productoId, cantidad);
+        }
+        return Mono.create(sink -> encolar(productoId, cantidad, sink));
+    }
+
+    private void encolar(Long productoId, int cantidad, MonoSink<Void> sink) {
+        Lote cerrado = null;
+        Lote lleno = null;
+        synchronized (lock(productoId)) {
+            Lote lote = pendientes.get(productoId);
+            // Si la suma se saliera de un int, cerramos el lote actual y abrimos otro
+            if (lote != null && !lote.admite(cantidad)) {
+                pendientes.remove(productoId);
+                cerrado = lote;
+                lote = null;
+            }
+            if (lote == null) {
+                lote = abrirLote(productoId);
+            }
+            lote.agregar(cantidad, sink);
+            if (lote.sinks.size() >= maxOperaciones) {
+                pendientes.remove(productoId);
+                lleno = lote;
+            }
+        }
+        // La escritura se lanza fuera del lock
+        if (cerrado != null) {
+            flush(productoId, cerrado);
+        }
+        if (lleno != null) {
+            flush(productoId, lleno);
+        }
+    }
+
+    private Lote abrirLote(Long productoId) {
+        Lote lote = new Lote();
+        pendientes.put(productoId, lote);
+        scheduler.schedule(() -> vencer(productoId, lote), ventana.toNanos(), TimeUnit.NANOSECONDS);
+        return lote;
+    }
+
+    // Fin de la ventana: si el lote sigue abierto (no se llenó antes) se escribe
+    private void vencer(Long productoId, Lote lote) {
+        synchronized (lock(productoId)) {
+            if (!pendientes.remove(productoId, lote)) {
+                return;
+            }
+        }
+        flush(productoId, lote);
+    }
+
+    private void flush(Long productoId, Lote lote) {
+        operacionesPorFlush.record(lote.sinks.size());
+        Timer.Sample inicio = Timer.start(registry);
+        repository.actualizarStock(productoId, lote.delta)
+                .subscribe(null,
+                        error -> {
+                            inicio.stop(flushError);
+                            if (lote.sinks.size() == 1 || PoolSaturadoException.enCausas(error)) {
+                                lote.sinks.forEach(s -> s.error(error));
+                            } else {
+                                unoPorUno(productoId, lote);
+                            }
+                        },
+                        () -> {
+                            inicio.stop(flushOk);
+                            lote.sinks.forEach(MonoSink::success);
+                        });
+    }
+
+    // La suma no entró: cada ajuste con su propia llamada, uno detrás de otro y en el orden de llegada
+    private void unoPorUno(Long productoId, Lote lote) {
+        Flux.range(0, lote.sinks.size())
+                .concatMap(i -> repository.actualizarStock(productoId, lote.cantidades.get(i))
+                        .doOnSuccess(nada -> lote.sinks.get(i).success())
+                        .onErrorResume(error -> {
+                            lote.sinks.get(i).error(error);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    private static Timer timerFlush(MeterRegistry registry, String resultado) {
+        return Timer.builder("productos.stock.flush")
+                .description("Latencia de cada llamada a actualizar_stock con ajustes fusionados")
+                .tag("resultado", resultado)
+                .register(registry);
+    }
+
+    private Object lock(Long productoId) {
+        return locks[Math.floorMod(productoId.hashCode(), SHARDS)];
+    }
+
+    // Ajustes acumulados de un producto: se accede siempre bajo el lock de su shard
+    private static final class Lote {
+        private int delta;
+        private final List<Integer> cantidades = new ArrayList<>();
+        private final List<MonoSink<Void>> sinks = new ArrayList<>();
+
+        boolean admite(int cantidad) {
+            long suma = (long) delta + cantidad;
+            return suma >= Integer.MIN_VALUE && suma <= Integer.MAX_VALUE;
+        }
+
+        void agregar(int cantidad, MonoSink<Void> sink) {
+            delta += cantidad;
+            cantidades.add(cantidad);
+            sinks.add(sink);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.ms_productos.service;
+
+/**
+ * El producto existe pero ya no está en la versión que el cliente envió en If-Match
+ * (alguien lo modificó antes). El controlador lo traduce a 412 Precondition Failed.
+ */
+public class ConflictoVersionException extends RuntimeException {
+
+    public ConflictoVersionException(Long id, Long versionEsperada) {
+        super("El producto " + id + " ya no está en la versión " + versionEsperada);
+    }
+}
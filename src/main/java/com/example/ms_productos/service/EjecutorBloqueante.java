@@ -0,0 +1,94 @@
+package com.example.ms_productos.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Dónde corre el trabajo bloqueante (archivos, librerías síncronas...) para que nunca ocupe un
+ * hilo de Netty ni de Schedulers.parallel(): cada sección bloqueante conocida pasa por llamar().
+ * En los tests BlockHound falla si algo bloquea en esos hilos.
+ * <p>
+ * - productos.bloqueante.hilos-virtuales: auto (por defecto) usa un hilo virtual por tarea si la
+ *   JVM es 21 o más nueva; false, o en Java 17, un boundedElastic propio.
+ * - productos.bloqueante.max-hilos / max-en-cola: límites de ese boundedElastic (por defecto
+ *   10 hilos por núcleo y 100.000 tareas esperando).
+ * Es un scheduler aparte del boundedElastic global: un import lento no demora a los demás que lo usan.
+ */
+@Component
+public class EjecutorBloqueante implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(EjecutorBloqueante.class);
+
+    private static final String NOMBRE = "productos-bloqueante";
+
+    private final Scheduler scheduler;
+
+    @Autowired
+    public EjecutorBloqueante(@Value("${productos.bloqueante.hilos-virtuales:auto}") String hilosVirtuales,
+                              @Value("${productos.bloqueante.max-hilos:0}") int maxHilos,
+                              @Value("${productos.bloqueante.max-en-cola:100000}") int maxEnCola) {
+        ExecutorService virtuales = usarHilosVirtuales(hilosVirtuales) ? hilosVirtuales() : null;
+        if (virtuales != null) {
+            this.scheduler = Schedulers.fromExecutorService(virtuales, NOMBRE);
+        } else {
+            int hilos = maxHilos > 0 ? maxHilos : 10 * Runtime.getRuntime().availableProcessors();
+            this.scheduler = Schedulers.newBoundedElastic(hilos, maxEnCola, NOMBRE);
+        }
+        log.info("Trabajo bloqueante en {}", virtuales != null ? "hilos virtuales" : "boundedElastic");
+    }
+
+    // Para tests y benchmarks: cualquier scheduler
+    public EjecutorBloqueante(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Corre "tarea" en el scheduler de trabajo bloqueante; el resultado vuelve al flujo reactivo
+     * (vacío si devuelve null).
+     */
+    public <T> Mono<T> llamar(Callable<T> tarea) {
+        return Mono.fromCallable(tarea).subscribeOn(scheduler);
+    }
+
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+
+    static boolean usarHilosVirtuales(String valor) {
+        boolean disponibles = Runtime.version().feature() >= 21;
+        if ("auto".equalsIgnoreCase(valor)) {
+            return disponibles;
+        }
+        if (Boolean.parseBoolean(valor) && !disponibles) {
+            log.warn("productos.bloqueante.hilos-virtuales=true necesita Java 21+; se usa boundedElastic");
+            return false;
+        }
+        return Boolean.parseBoolean(valor);
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() es de Java 21; compilamos para 17
+    private static ExecutorService hilosVirtuales() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Sin hilos virtuales ({}); se usa boundedElastic", e.toString());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.ms_productos.service;
+
+import com.example.ms_productos.model.Precio;
+import com.example.ms_productos.model.Producto;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.csv.CsvFactory;
+import com.fasterxml.jackson.dataformat.csv.CsvGenerator;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exportación del catálogo completo (GET /api/productos/export) en CSV o NDJSON, opcionalmente gzip.
+ * <p>
+ * Las filas salen de streamAll (keyset por bloques, como el stream NDJSON) y se escriben con un
+ * generador de Jackson directamente en los DataBuffer de la respuesta (en Netty, buffers del pool):
+ * ni un String ni un byte[] por fila. Cada productos.exportacion.filas-por-buffer filas se entrega
+ * un buffer y el siguiente bloque no se lee hasta que el cliente pide más, así que la memoria no
+ * depende del tamaño de la tabla. Con gzip el Deflater comprime a medida que se escribe; si se
+ * corta la descarga se libera igual (Flux.using).
+ * <p>
+ * CSV: las mismas columnas que acepta la importación (LectorCsv.COLUMNAS), así el archivo se puede
+ * volver a importar. NDJSON: el producto completo, como GET /api/productos con application/x-ndjson.
+ */
+@Component
+public class ExportadorCatalogo {
+
+    static final int BLOQUE_LECTURA = 500;
+
+    private static final CsvSchema COLUMNAS_CSV = CsvSchema.builder()
+            .addColumns(LectorCsv.COLUMNAS, CsvSchema.ColumnType.STRING)
+            .build()
+            .withHeader();
+
+    private final ProductoService service;
+    private final ObjectMapper mapper;
+    private final ObjectWriter json;
+    // Comillas sólo donde hacen falta (separador, comillas, saltos de línea), no por cada espacio
+    private final CsvFactory csv = CsvFactory.builder()
+            .enable(CsvGenerator.Feature.STRICT_CHECK_FOR_QUOTING)
+            .build();
+    private final int filasPorBuffer;
+
+    @Autowired
+    public ExportadorCatalogo(ProductoService service,
+                              ObjectMapper mapper,
+                              @Value("${productos.exportacion.filas-por-buffer:500}") int filasPorBuffer) {
+        this.service = service;
+        this.mapper = mapper;
+        // Sin flush por fila: el generador vuelca en el buffer al cerrar cada bloque
+        this.json = mapper.writerFor(Producto.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.filasPorBuffer = filasPorBuffer;
+    }
+
+    /** El catálogo como una serie de buffers de "buffers"; quien los recibe los libera. */
+    public Flux<DataBuffer> exportar(FormatoCatalogo formato, boolean gzip, DataBufferFactory buffers) {
+        return Flux.using(() -> new Escritor(formato, gzip, buffers),
+                        escritor -> service.streamAll(BLOQUE_LECTURA)
+                                .buffer(filasPorBuffer)
+                                .<DataBuffer>handle((bloque, sink) -> {
+                                    DataBuffer buffer = escritor.escribir(bloque);
+                                    // Con gzip, un bloque puede quedar entero dentro del Deflater
+                                    if (buffer.readableByteCount() > 0) {
+                                        sink.next(buffer);
+                                    } else {
+                                        DataBufferUtils.release(buffer);
+                                    }
+                                })
+                                .concatWith(Mono.fromSupplier(escritor::terminar)),
+                        Escritor::cerrar)
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+
+    // Un generador para toda la exportación; en cada bloque escribe en un buffer nuevo
+    private final class Escritor {
+
+        private final DataBufferFactory buffers;
+        private final Destino destino = new Destino();
+        private final GZIPOutputStream gzip;
+        private final JsonGenerator generador;
+        private final boolean esCsv;
+        // Los dígitos de cada precio, reutilizados fila a fila
+        private final char[] digitos = new char[Precio.MAX_CARACTERES];
+        private int tamanioEstimado = 4096;
+        // La cabecera del gzip se escribe al crearlo, antes de que haya un buffer: va en el primero
+        private byte[] pendiente;
+
+        Escritor(FormatoCatalogo formato, boolean comprimir, DataBufferFactory buffers) throws IOException {
+            this.buffers = buffers;
+            if (comprimir) {
+                ByteArrayOutputStream cabecera = new ByteArrayOutputStream(16);
+                destino.actual = cabecera;
+                this.gzip = new GZIPOutputStream(destino, 8192);
+                this.pendiente = cabecera.toByteArray();
+                destino.actual = OutputStream.nullOutputStream();
+            } else {
+                this.gzip = null;
+            }
+            OutputStream salida = gzip != null ? gzip : destino;
+            this.esCsv = formato == FormatoCatalogo.CSV;
+            if (esCsv) {
+                CsvGenerator generadorCsv = csv.createGenerator(salida);
+                generadorCsv.setSchema(COLUMNAS_CSV);
+                this.generador = generadorCsv;
+            } else {
+                this.generador = mapper.getFactory().createGenerator(salida);
+                this.generador.setRootValueSeparator(null);
+            }
+        }
+
+        DataBuffer escribir(List<Producto> bloque) {
+            return enBuffer(() -> {
+                for (Producto producto : bloque) {
+                    if (esCsv) {
+                        filaCsv(producto);
+                    } else {
+                        json.writeValue(generador, producto);
+                        generador.writeRaw('\n');
+                    }
+                }
+                generador.flush();
+            });
+        }
+
+        // Lo que quedó en el generador y, con gzip, en el Deflater, más el pie del gzip
+        DataBuffer terminar() {
+            return enBuffer(() -> {
+                generador.flush();
+                if (gzip != null) {
+                    gzip.finish();
+                }
+            });
+        }
+
+        private DataBuffer enBuffer(Escritura escritura) {
+            DataBuffer buffer = buffers.allocateBuffer(tamanioEstimado);
+            destino.actual = buffer.asOutputStream();
+            try {
+                if (pendiente != null) {
+                    destino.write(pendiente, 0, pendiente.length);
+                    pendiente = null;
+                }
+                escritura.escribir();
+            } catch (IOException e) {
+                DataBufferUtils.release(buffer);
+                throw new UncheckedIOException(e);
+            } catch (RuntimeException e) {
+                DataBufferUtils.release(buffer);
+                throw e;
+            } finally {
+                destino.actual = OutputStream.nullOutputStream();
+            }
+            // El próximo bloque será parecido: se pide de una vez el tamaño que hizo falta
+            tamanioEstimado = Math.max(tamanioEstimado, buffer.readableByteCount());
+            return buffer;
+        }
+
+        private void filaCsv(Producto producto) throws IOException {
+            generador.writeStartObject();
+            campo("id", producto.getId());
+            campo("nombre", producto.getNombre());
+            campo("descripcion", producto.getDescripcion());
+            campo("precio", producto.getPrecio());
+            campo("stock", producto.getStock());
+            campo("activo", producto.getActivo());
+            generador.writeEndObject();
+        }
+
+        private void campo(String nombre, Object valor) throws IOException {
+            generador.writeFieldName(nombre);
+            // Números y booleanos sin pasar por un String
+            if (valor == null) {
+                generador.writeNull();
+            } else if (valor instanceof Long numero) {
+                generador.writeNumber(numero);
+            } else if (valor instanceof Integer numero) {
+                generador.writeNumber(numero);
+            } else if (valor instanceof Precio precio) {
+                generador.writeNumber(digitos, 0, precio.escribir(digitos, 0));
+            } else if (valor instanceof Boolean booleano) {
+                generador.writeBoolean(booleano);
+            } else {
+                generador.writeString(valor.toString());
+            }
+        }
+
+        // Sin ir al Destino: si se cortó a mitad de bloque no hay buffer donde escribir
+        void cerrar() {
+            try {
+                generador.close();
+                if (gzip != null) {
+                    gzip.close(); // libera la memoria nativa del Deflater
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private interface Escritura {
+        void escribir() throws IOException;
+    }
+
+    // Salida del generador (o del gzip): el buffer del bloque que se está escribiendo
+    private static final class Destino extends OutputStream {
+
+        private OutputStream actual = OutputStream.nullOutputStream();
+
+        @Override
+        public void write(int b) throws IOException {
+            actual.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            actual.write(b, off, len);
+        }
+    }
+}
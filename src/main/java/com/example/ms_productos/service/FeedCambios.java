@@ -0,0 +1,98 @@
+package com.example.ms_productos.service;
+
+import com.example.ms_productos.model.CambioProducto;
+import com.example.ms_productos.repository.CambioProductoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lectura del registro de cambios (productos_cambios).
+ * <p>
+ * El stream en vivo es UN solo poller por réplica (productos.cambios.intervalo, por defecto 1s),
+ * compartido por todos los suscriptores y activo sólo mientras haya alguno. Como lee de la tabla,
+ * también ve los cambios hechos por otras réplicas o directamente en la BD.
+ */
+@Component
+public class FeedCambios {
+
+    private static final Logger log = LoggerFactory.getLogger(FeedCambios.class);
+
+    private final CambioProductoRepository repository;
+    private final int tamanioLote;
+    private final int bufferSuscriptor;
+    private final Flux<CambioProducto> vivo;
+
+    public FeedCambios(CambioProductoRepository repository,
+                       @Value("${productos.cambios.intervalo:1s}") Duration intervalo,
+                       @Value("${productos.cambios.tamanio-lote:500}") int tamanioLote,
+                       @Value("${productos.cambios.buffer-suscriptor:10000}") int bufferSuscriptor) {
+        this.repository = repository;
+        this.tamanioLote = tamanioLote;
+        this.bufferSuscriptor = bufferSuscriptor;
+        this.vivo = Mono.defer(repository::findUltimaSeq)
+                .flatMapMany(inicio -> {
+                    AtomicLong cursor = new AtomicLong(inicio);
+                    return Flux.interval(intervalo)
+                            // Si una lectura tarda más que el intervalo, se salta el tick
+                            .onBackpressureDrop()
+                            .concatMap(tick -> leerDesde(cursor.get())
+                                    .doOnNext(cambio -> cursor.set(cambio.getSeq()))
+                                    // Un fallo de la BD no corta el stream: se reintenta en el siguiente tick
+                                    .onErrorResume(e -> {
+                                        log.warn("No se pudo leer productos_cambios: {}", e.getMessage());
+                                        return Flux.empty();
+                                    }), 1);
+                })
+                .share();
+    }
+
+    // Posición actual del registro: quien carga un estado completo sigue el stream desde aquí
+    public Mono<Long> ultimaSeq() {
+        return repository.findUltimaSeq();
+    }
+
+    // Una página de cambios posteriores a "since"
+    public Flux<CambioProducto> pagina(long since, int limit) {
+        return repository.findDesde(since, limit);
+    }
+
+    /**
+     * Todos los cambios posteriores a "since" y luego los nuevos a medida que aparecen.
+     * Nos suscribimos al poller a la vez que leemos el histórico (mergeSequential guarda lo que
+     * llegue mientras tanto), así no se pierde nada entre ambos; los repetidos se filtran por su
+     * posición (txid, seq) en el registro.
+     * Un suscriptor que no consume y llena su buffer recibe un error: debe reconectar con su última seq.
+     */
+    public Flux<CambioProducto> stream(long since) {
+        return repository.findTxidDe(since).flatMapMany(txid -> {
+            AtomicReference<Posicion> visto = new AtomicReference<>(new Posicion(txid, since));
+            Flux<CambioProducto> nuevos = vivo.onBackpressureBuffer(bufferSuscriptor, BufferOverflowStrategy.ERROR);
+            return Flux.mergeSequential(leerDesde(since), nuevos)
+                    .filter(cambio -> cambio.posteriorA(visto.get().txid(), visto.get().seq()))
+                    .doOnNext(cambio -> visto.set(
+                            new Posicion(cambio.getTxid() == null ? 0 : cambio.getTxid(), cambio.getSeq())));
+        });
+    }
+
+    // Último evento entregado a un suscriptor
+    private record Posicion(long txid, long seq) {
+    }
+
+    // Lee por lotes hasta alcanzar el final del registro
+    private Flux<CambioProducto> leerDesde(long since) {
+        return repository.findDesde(since, tamanioLote).collectList()
+                .expand(lote -> lote.size() < tamanioLote
+                        ? Mono.empty()
+                        : repository.findDesde(lote.get(lote.size() - 1).getSeq(), tamanioLote).collectList())
+                .concatMapIterable(lote -> lote);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.ms_productos.service;
+
+import org.springframework.http.MediaType;
+
+import java.util.Locale;
+
+/**
+ * Formatos de archivo del catálogo para importar (POST /api/productos/import) y exportar
+ * (GET /api/productos/export): CSV con cabecera o NDJSON, un producto por línea.
+ */
+public enum FormatoCatalogo {
+    CSV(MediaType.parseMediaType("text/csv;charset=UTF-8"), ".csv"),
+    NDJSON(MediaType.APPLICATION_NDJSON, ".ndjson");
+
+    private final MediaType tipo;
+    private final String extension;
+
+    FormatoCatalogo(MediaType tipo, String extension) {
+        this.tipo = tipo;
+        this.extension = extension;
+    }
+
+    public MediaType getTipo() {
+        return tipo;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /** Por el Content-Type y, si no lo dice, por la extensión del archivo; null si no es ninguno. */
+    public static FormatoCatalogo de(MediaType tipo, String archivo) {
+        if (tipo != null) {
+            for (FormatoCatalogo formato : values()) {
+                if (formato.tipo.equalsTypeAndSubtype(tipo)) {
+                    return formato;
+                }
+            }
+        }
+        String nombre = archivo == null ? "" : archivo.toLowerCase(Locale.ROOT);
+        if (nombre.endsWith(".csv")) {
+            return CSV;
+        }
+        if (nombre.endsWith(".ndjson") || nombre.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        return null;
+    }
+
+    /** "csv" o "ndjson" (sin distinguir mayúsculas); IllegalArgumentException si es otro. */
+    public static FormatoCatalogo deParametro(String valor) {
+        for (FormatoCatalogo formato : values()) {
+            if (formato.name().equalsIgnoreCase(valor)) {
+                return formato;
+            }
+        }
+        throw new IllegalArgumentException("Formato desconocido: " + valor + " (csv o ndjson)");
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.ms_productos.service;
+
+/**
+ * El cliente eligió el id de la importación (X-Importacion-Id) y esta instancia ya tiene una con
+ * ese id. El controlador lo traduce a 409 Conflict.
+ */
+public class ImportacionExistenteException extends RuntimeException {
+
+    public ImportacionExistenteException(String id) {
+        super("Ya existe una importación con el id " + id);
+    }
+}
@@ -0,0 +1,277 @@
+package com.example.ms_productos.service;
+
+import com.example.ms_productos.model.EstadoImportacion;
+import com.example.ms_productos.model.Producto;
+import com.example.ms_productos.model.ResultadoLote;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.StringDecoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Importación del catálogo desde un archivo CSV o NDJSON (POST /api/productos/import).
+ * <p>
+ * El archivo no se junta en memoria ni en disco: los DataBuffer se cortan en líneas a medida que
+ * llegan, cada línea se convierte en un producto y se guardan en bloques de
+ * productos.batch.tamanio-lote con saveBatch (un bloque por transacción, uno por vez). Hasta que
+ * un bloque no está guardado no se pide más contenido, así que la subida avanza al ritmo de la BD
+ * (backpressure hasta el cliente). Una fila que no se puede leer o que no pasa la validación
+ * queda como error con su número de línea; no corta la importación. Sí la cortan una cabecera CSV
+ * inválida o una línea de más de productos.importacion.max-linea (IllegalArgumentException).
+ * <p>
+ * El estado de cada importación (filas, creados, actualizados, errores) se actualiza por bloque y
+ * se consulta con estado(id) mientras corre. Se guardan en memoria las últimas
+ * productos.importacion.max-trabajos, hasta productos.importacion.retencion sin consultarse.
+ * Son de esta instancia: con varias réplicas el estado está en la que recibió la subida.
+ * No bloquea: separar líneas y leer CSV/JSON es CPU sobre lo que ya llegó.
+ */
+@Component
+public class ImportadorCatalogo {
+
+    private static final ResolvableType LINEA = ResolvableType.forClass(String.class);
+    private static final String BOM = "\uFEFF";
+
+    private final ProductoService service;
+    private final ObjectReader json;
+    private final StringDecoder lineas;
+    private final int tamanioLote;
+    private final int maxLinea;
+    private final int maxErrores;
+    private final Cache<String, Trabajo> trabajos;
+    private final Clock reloj = Clock.systemUTC();
+
+    @Autowired
+    public ImportadorCatalogo(ProductoService service,
+                              ObjectMapper mapper,
+                              @Value("${productos.batch.tamanio-lote:500}") int tamanioLote,
+                              @Value("${productos.importacion.max-linea:64KB}") DataSize maxLinea,
+                              @Value("${productos.importacion.max-errores:100}") int maxErrores,
+                              @Value("${productos.importacion.max-trabajos:100}") int maxTrabajos,
+                              @Value("${productos.importacion.retencion:24h}") Duration retencion) {
+        this.service = service;
+        this.json = mapper.readerFor(Producto.class);
+        this.tamanioLote = tamanioLote;
+        this.maxLinea = (int) maxLinea.toBytes();
+        this.maxErrores = maxErrores;
+        this.lineas = StringDecoder.textPlainOnly(List.of("\r\n", "\n"), true);
+        this.lineas.setMaxInMemorySize(this.maxLinea);
+        this.trabajos = Caffeine.newBuilder()
+                .maximumSize(maxTrabajos)
+                .expireAfterAccess(retencion)
+                .build();
+    }
+
+    /**
+     * Importa "contenido" y termina con el estado final (COMPLETADA aunque haya filas con error).
+     * La importación queda registrada desde la suscripción; si el cliente corta la subida queda
+     * CANCELADA, con lo que se llegó a guardar.
+     */
+    public Mono<EstadoImportacion> importar(FormatoCatalogo formato, Flux<DataBuffer> contenido) {
+        return importar(null, formato, contenido);
+    }
+
+    /**
+     * Igual, con el id que eligió el cliente (null: uno nuevo). Así puede consultar estado(id)
+     * mientras la subida todavía no terminó. Si ya hay una importación con ese id, termina con
+     * ImportacionExistenteException sin leer el contenido.
+     */
+    public Mono<EstadoImportacion> importar(String id, FormatoCatalogo formato, Flux<DataBuffer> contenido) {
+        return Mono.defer(() -> {
+            Trabajo trabajo = new Trabajo(id != null ? id : UUID.randomUUID().toString(), formato,
+                    Instant.now(reloj), maxErrores);
+            if (trabajos.asMap().putIfAbsent(trabajo.id, trabajo) != null) {
+                return Mono.error(new ImportacionExistenteException(trabajo.id));
+            }
+            Lector lector = formato == FormatoCatalogo.CSV ? new LectorFilasCsv() : new LectorFilasJson();
+            return lineas.decode(contenido, LINEA, MimeTypeUtils.TEXT_PLAIN, null)
+                    .index()
+                    .<Fila>handle((linea, sink) -> {
+                        Fila fila = lector.leer(linea.getT1() + 1, linea.getT2());
+                        if (fila != null) {
+                            sink.next(fila);
+                        }
+                    })
+                    .buffer(tamanioLote)
+                    .concatMap(bloque -> guardar(trabajo, bloque))
+                    .onErrorMap(DataBufferLimitException.class,
+                            e -> new IllegalArgumentException("Línea de más de " + maxLinea + " bytes"))
+                    .doOnError(e -> trabajo.terminar(EstadoImportacion.Estado.FALLIDA, e.getMessage(), Instant.now(reloj)))
+                    .doOnCancel(() -> trabajo.terminar(EstadoImportacion.Estado.CANCELADA, null, Instant.now(reloj)))
+                    .then(Mono.fromSupplier(() ->
+                            trabajo.terminar(EstadoImportacion.Estado.COMPLETADA, null, Instant.now(reloj))));
+        });
+    }
+
+    /** Estado actual de una importación; vacío si no existe o ya se olvidó. */
+    public Mono<EstadoImportacion> estado(String id) {
+        Trabajo trabajo = trabajos.getIfPresent(id);
+        return trabajo == null ? Mono.empty() : Mono.just(trabajo.estado());
+    }
+
+    /** Las importaciones que se recuerdan, de la más reciente a la más antigua. */
+    public Flux<EstadoImportacion> recientes() {
+        return Flux.fromIterable(trabajos.asMap().values())
+                .map(Trabajo::estado)
+                .sort(Comparator.comparing(EstadoImportacion::getInicio).reversed());
+    }
+
+    private Mono<Void> guardar(Trabajo trabajo, List<Fila> bloque) {
+        List<Producto> productos = new ArrayList<>(bloque.size());
+        List<Long> lineasProductos = new ArrayList<>(bloque.size());
+        for (Fila fila : bloque) {
+            if (fila.error() != null) {
+                trabajo.error(fila.linea(), fila.error());
+            } else {
+                productos.add(fila.producto());
+                lineasProductos.add(fila.linea());
+            }
+        }
+        trabajo.leidas(bloque.size());
+        if (productos.isEmpty()) {
+            return Mono.empty();
+        }
+        // Menos de tamanioLote productos: saveBatch los guarda en una sola transacción
+        return service.saveBatch(Flux.fromIterable(productos))
+                .doOnNext(resultado -> trabajo.resultado(lineasProductos.get((int) resultado.getIndice()), resultado))
+                .then();
+    }
+
+    // Una línea con contenido: el producto o por qué no se pudo leer
+    private record Fila(long linea, Producto producto, String error) {
+    }
+
+    private interface Lector {
+        // null si la línea no es un producto (en blanco, cabecera); IllegalArgumentException corta la importación
+        Fila leer(long numero, String linea);
+    }
+
+    private final class LectorFilasJson implements Lector {
+        @Override
+        public Fila leer(long numero, String linea) {
+            if (linea.isBlank()) {
+                return null;
+            }
+            try {
+                return new Fila(numero, json.readValue(numero == 1 ? sinBom(linea) : linea), null);
+            } catch (JsonProcessingException e) {
+                return new Fila(numero, null, mensaje(e));
+            }
+        }
+    }
+
+    private static final class LectorFilasCsv implements Lector {
+        private LectorCsv csv;
+
+        @Override
+        public Fila leer(long numero, String linea) {
+            if (linea.isBlank()) {
+                return null;
+            }
+            if (csv == null) {
+                csv = LectorCsv.desdeCabecera(numero == 1 ? sinBom(linea) : linea);
+                return null;
+            }
+            try {
+                return new Fila(numero, csv.leer(linea), null);
+            } catch (JsonProcessingException e) {
+                return new Fila(numero, null, mensaje(e));
+            }
+        }
+    }
+
+    // Excel suele empezar los CSV en UTF-8 con BOM
+    private static String sinBom(String linea) {
+        return linea.startsWith(BOM) ? linea.substring(1) : linea;
+    }
+
+    // Sin la ubicación ni el contenido de la línea, que ya van aparte
+    static String mensaje(JsonProcessingException e) {
+        if (e instanceof MismatchedInputException desajuste && !desajuste.getPath().isEmpty()) {
+            String campo = desajuste.getPath().get(desajuste.getPath().size() - 1).getFieldName();
+            if (e instanceof InvalidFormatException formato) {
+                return "Valor inválido para " + campo + ": " + formato.getValue();
+            }
+            return "Valor inválido para " + campo;
+        }
+        return e.getOriginalMessage();
+    }
+
+    // Lo escribe el flujo de la importación (un bloque por vez) y lo leen las consultas de estado
+    private static final class Trabajo {
+        private final String id;
+        private final FormatoCatalogo formato;
+        private final Instant inicio;
+        private final int maxErrores;
+        private final List<EstadoImportacion.ErrorFila> detalleErrores = new ArrayList<>();
+        private EstadoImportacion.Estado estado = EstadoImportacion.Estado.EN_CURSO;
+        private Instant fin;
+        private long filas;
+        private long creados;
+        private long actualizados;
+        private long errores;
+        private String mensaje;
+
+        Trabajo(String id, FormatoCatalogo formato, Instant inicio, int maxErrores) {
+            this.id = id;
+            this.formato = formato;
+            this.inicio = inicio;
+            this.maxErrores = maxErrores;
+        }
+
+        synchronized void leidas(int cantidad) {
+            filas += cantidad;
+        }
+
+        synchronized void error(long linea, String error) {
+            errores++;
+            if (detalleErrores.size() < maxErrores) {
+                detalleErrores.add(new EstadoImportacion.ErrorFila(linea, error));
+            }
+        }
+
+        synchronized void resultado(long linea, ResultadoLote resultado) {
+            switch (resultado.getEstado()) {
+                case CREADO -> creados++;
+                case ACTUALIZADO -> actualizados++;
+                case ERROR -> error(linea, resultado.getError());
+            }
+        }
+
+        // Sólo el primer final cuenta (un error llega también como cancelación de lo anterior)
+        synchronized EstadoImportacion terminar(EstadoImportacion.Estado estadoFinal, String mensaje, Instant ahora) {
+            if (estado == EstadoImportacion.Estado.EN_CURSO) {
+                estado = estadoFinal;
+                this.mensaje = mensaje;
+                fin = ahora;
+            }
+            return estado();
+        }
+
+        synchronized EstadoImportacion estado() {
+            return new EstadoImportacion(id, estado, formato.name(), inicio, fin, filas, creados, actualizados,
+                    errores, List.copyOf(detalleErrores), mensaje);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.ms_productos.service;
+
+import com.example.ms_productos.model.AlertaStock;
+import com.example.ms_productos.model.CambioProducto;
+import com.example.ms_productos.model.Producto;
+import com.example.ms_productos.repository.ProductoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Vista en memoria de los productos con stock menor que productos.bajo-stock.umbral-maximo
+ * (por defecto 100), ordenada por stock. GET /api/productos/bajo-stock con minimo <= umbral
+ * se responde desde aquí sin consultar la BD.
+ * <p>
+ * - Se carga la primera vez que se usa (findByStockLessThan, que usa el índice parcial de V5).
+ * - Luego se mantiene con las escrituras de esta réplica (save/update/reservas) y con el
+ *   registro de cambios (FeedCambios), que trae también los ajustes de stock hechos por la
+ *   función de la BD, por otras réplicas o directamente en la tabla.
+ * - Mientras se carga, o si el feed falla, se responde desde la BD; el siguiente uso vuelve a cargar.
+ */
+@Component
+public class IndiceBajoStock {
+
+    private static final Logger log = LoggerFactory.getLogger(IndiceBajoStock.class);
+
+    // El predicado del índice parcial de V5 (stock < 100): con un umbral mayor, la carga
+    // (findByStockLessThan(umbralMaximo)) ya no lo podría usar y recorrería toda la tabla
+    static final int UMBRAL_INDICE = 100;
+
+    private static final Comparator<Clave> ORDEN =
+            Comparator.comparingInt(Clave::stock).thenComparingLong(Clave::id);
+
+    private final ProductoRepository repository;
+    private final FeedCambios feedCambios;
+    private final int umbralMaximo;
+
+    // Productos por (stock, id) y la clave vigente de cada id; se escriben bajo el lock de la instancia
+    private final ConcurrentSkipListMap<Clave, Producto> porStock = new ConcurrentSkipListMap<>(ORDEN);
+    private final Map<Long, Clave> claves = new ConcurrentHashMap<>();
+
+    private final Sinks.Many<Transicion> transiciones = Sinks.many().multicast().directBestEffort();
+    private final AtomicBoolean iniciado = new AtomicBoolean();
+    private volatile boolean listo;
+
+    public IndiceBajoStock(ProductoRepository repository, FeedCambios feedCambios,
+                           @Value("${productos.bajo-stock.umbral-maximo:100}") int umbralMaximo) {
+        if (umbralMaximo > UMBRAL_INDICE) {
+            throw new IllegalStateException("productos.bajo-stock.umbral-maximo (" + umbralMaximo
+                    + ") no puede superar " + UMBRAL_INDICE + ", el umbral del índice idx_productos_bajo_stock (V5); "
+                    + "para subirlo hace falta una migración que recree el índice");
+        }
+        this.repository = repository;
+        this.feedCambios = feedCambios;
+        this.umbralMaximo = umbralMaximo;
+    }
+
+    // Productos con stock < minimo, de menor a mayor stock
+    public Flux<Producto> bajoStock(int minimo) {
+        return bajoStock(minimo, () -> repository.findByStockLessThan(minimo));
+    }
+
+    // Igual, pero si hay que ir a la BD se usa "desdeBd" (p. ej. una consulta con menos columnas)
+    public Flux<Producto> bajoStock(int minimo, Supplier<Flux<Producto>> desdeBd) {
+        iniciar();
+        if (!listo || minimo > umbralMaximo) {
+            return Flux.defer(desdeBd);
+        }
+        return Flux.defer(() -> Flux.fromIterable(porStock.headMap(new Clave(minimo, Long.MIN_VALUE)).values()));
+    }
+
+    /**
+     * Avisos cada vez que un producto baja de "minimo" o vuelve a superarlo.
+     * Sólo se vigilan umbrales hasta umbral-maximo (por encima no hay datos en memoria).
+     */
+    public Flux<AlertaStock> alertas(int minimo) {
+        iniciar();
+        return transiciones.asFlux()
+                .handle((t, sink) -> {
+                    boolean antesBajo = t.anterior() != null && t.anterior() < minimo;
+                    boolean ahoraBajo = t.producto().getStock() != null && t.producto().getStock() < minimo;
+                    if (antesBajo != ahoraBajo) {
+                        sink.next(new AlertaStock(t.producto().getId(), t.producto().getNombre(),
+                                t.anterior(), t.producto().getStock(),
+                                ahoraBajo ? AlertaStock.Tipo.BAJO_UMBRAL : AlertaStock.Tipo.SOBRE_UMBRAL));
+                    }
+                });
+    }
+
+    boolean isListo() {
+        return listo;
+    }
+
+    // --- Escrituras de esta réplica ---
+
+    // Fila completa recién escrita (save/update)
+    public void actualizar(Producto producto) {
+        if (listo) {
+            aplicar(producto, true);
+        }
+    }
+
+    // Sólo conocemos el stock nuevo (reservas): si el producto no estaba, lo traerá el feed
+    public void actualizarStock(Long id, int stock) {
+        if (!listo) {
+            return;
+        }
+        Producto actual = buscarEnIndice(id);
+        if (actual != null) {
+            aplicar(conStock(actual, stock), true);
+        } else if (stock >= umbralMaximo) {
+            eliminar(id);
+        }
+    }
+
+    public void eliminar(Long id) {
+        synchronized (this) {
+            Clave clave = claves.remove(id);
+            if (clave != null) {
+                porStock.remove(clave);
+            }
+        }
+    }
+
+    // --- Carga y seguimiento del registro de cambios ---
+
+    private void iniciar() {
+        if (!iniciado.compareAndSet(false, true)) {
+            return;
+        }
+        // Primero la posición del registro y luego la carga: lo que cambie durante la carga
+        // llega después por el stream y se vuelve a aplicar (aplicar es idempotente)
+        Mono.defer(feedCambios::ultimaSeq)
+                .flatMapMany(seq -> repository.findByStockLessThan(umbralMaximo)
+                        .doOnNext(p -> aplicar(p, false))
+                        .thenMany(Flux.defer(() -> {
+                            listo = true;
+                            log.info("Índice de bajo stock cargado: {} productos con stock < {}", claves.size(), umbralMaximo);
+                            return feedCambios.stream(seq);
+                        })))
+                .concatMap(this::aplicarCambio)
+                .subscribe(null, error -> {
+                    log.warn("Índice de bajo stock desactivado hasta el próximo uso: {}", error.getMessage());
+                    reiniciar();
+                });
+    }
+
+    private void reiniciar() {
+        listo = false;
+        synchronized (this) {
+            porStock.clear();
+            claves.clear();
+        }
+        iniciado.set(false);
+    }
+
+    private Mono<Void> aplicarCambio(CambioProducto cambio) {
+        Long id = cambio.getProductoId();
+        if (cambio.getTipo() == CambioProducto.Tipo.ELIMINADO) {
+            eliminar(id);
+            return Mono.empty();
+        }
+        Integer stock = cambio.getStock();
+        if (stock == null || stock >= umbralMaximo) {
+            Producto actual = buscarEnIndice(id);
+            if (actual != null) {
+                aplicar(conStock(actual, stock), true);
+            }
+            return Mono.empty();
+        }
+        Producto actual = buscarEnIndice(id);
+        if (actual != null && cambio.getTipo() == CambioProducto.Tipo.STOCK) {
+            aplicar(conStock(actual, stock), true);
+            return Mono.empty();
+        }
+        // Entra al rango o cambió algo más que el stock: hace falta la fila completa
+        return repository.findById(id)
+                .doOnNext(p -> aplicar(p, true))
+                .then();
+    }
+
+    private Producto buscarEnIndice(Long id) {
+        Clave clave = claves.get(id);
+        return clave == null ? null : porStock.get(clave);
+    }
+
+    private void aplicar(Producto producto, boolean avisar) {
+        Integer anterior;
+        synchronized (this) {
+            Clave vieja = claves.remove(producto.getId());
+            anterior = vieja == null ? null : vieja.stock();
+            if (vieja != null) {
+                porStock.remove(vieja);
+            }
+            Integer stock = producto.getStock();
+            if (stock != null && stock < umbralMaximo) {
+                Clave nueva = new Clave(stock, producto.getId());
+                porStock.put(nueva, producto);
+                claves.put(producto.getId(), nueva);
+            }
+        }
+        if (avisar && !Objects.equals(anterior, producto.getStock())) {
+            transiciones.tryEmitNext(new Transicion(producto, anterior));
+        }
+    }
+
+    // Los productos del índice se entregan a los clientes: nunca se modifican, se reemplazan
+    private static Producto conStock(Producto producto, Integer stock) {
+        Producto copia = new Producto();
+        BeanUtils.copyProperties(producto, copia);
+        copia.setStock(stock);
+        return copia;
+    }
+
+    record Clave(int stock, long id) {
+    }
+
+    // anterior es null si el producto no estaba en el índice (stock >= umbral-maximo o desconocido)
+    private record Transicion(Producto producto, Integer anterior) {
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.ms_productos.service;
+
+import com.example.ms_productos.model.Producto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Filas CSV de una importación, de a una línea: la cabecera dice qué columnas trae el archivo
+ * (id, nombre, descripcion, precio, stock, activo, en cualquier orden; nombre es obligatoria).
+ * Separador "," o ";" (el de Excel en español), según la cabecera. Admite valores entre comillas,
+ * pero no saltos de línea dentro de un valor: cada línea del archivo es un producto.
+ * Un valor vacío es null.
+ */
+final class LectorCsv {
+
+    static final List<String> COLUMNAS = List.of("id", "nombre", "descripcion", "precio", "stock", "activo");
+
+    private static final CsvMapper CSV = CsvMapper.builder()
+            .enable(CsvParser.Feature.TRIM_SPACES)
+            .enable(CsvParser.Feature.EMPTY_STRING_AS_NULL)
+            .enable(CsvParser.Feature.FAIL_ON_MISSING_COLUMNS)
+            .build();
+
+    private final ObjectReader filas;
+
+    private LectorCsv(ObjectReader filas) {
+        this.filas = filas;
+    }
+
+    /** Lector para las filas que siguen a "cabecera"; IllegalArgumentException si no sirve. */
+    static LectorCsv desdeCabecera(String cabecera) {
+        char separador = cabecera.indexOf(';') >= 0 && cabecera.indexOf(',') < 0 ? ';' : ',';
+        String[] nombres;
+        try {
+            nombres = CSV.readerFor(String[].class)
+                    .with(CsvSchema.emptySchema().withColumnSeparator(separador))
+                    .readValue(cabecera);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cabecera CSV inválida: " + e.getOriginalMessage());
+        }
+        CsvSchema.Builder schema = CsvSchema.builder().setColumnSeparator(separador);
+        Set<String> vistas = new HashSet<>();
+        for (String nombre : nombres) {
+            String columna = nombre == null ? "" : nombre.trim().toLowerCase(Locale.ROOT);
+            if (!COLUMNAS.contains(columna)) {
+                throw new IllegalArgumentException("Columna desconocida: " + nombre + " (válidas: " + COLUMNAS + ")");
+            }
+            if (!vistas.add(columna)) {
+                throw new IllegalArgumentException("Columna repetida: " + nombre);
+            }
+            schema.addColumn(columna);
+        }
+        if (!vistas.contains("nombre")) {
+            throw new IllegalArgumentException("Falta la columna nombre");
+        }
+        return new LectorCsv(CSV.readerFor(Producto.class).with(schema.build()));
+    }
+
+    /** La fila como producto; JsonProcessingException si un valor no tiene el tipo de su columna. */
+    Producto leer(String linea) throws JsonProcessingException {
+        return filas.readValue(linea);
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.ms_productos.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.handler.TracingObservationHandler;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.reactivestreams.Publisher;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.ResolvableType;
+import reactor.core.observability.DefaultSignalListener;
+import reactor.core.observability.SignalListener;
+import reactor.core.observability.SignalListenerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide cada método de ProductoService: timer productos.servicio con tags metodo, resultado
+ * (ok | vacio | error | cancelado) y error (clase de la excepción o "none"), con los buckets de SLO
+ * de MetricasConfig. Los métodos que devuelven Flux suman además las filas emitidas en
+ * productos.servicio.filas. Como MetricasRepositorio, el tiempo va desde la suscripción hasta la
+ * última señal.
+ * <p>
+ * Sólo si la traza de la petición está muestreada la llamada es además una Observation (span
+ * hijo del de la petición, con el repositorio y R2DBC debajo), que deja el mismo timer. Las demás
+ * llamadas registran el timer directamente, con los meters de cada método resueltos al crear el
+ * proxy: una observación por llamada costaba más que el propio GET desde la cache.
+ */
+public class MetricasServicio implements BeanPostProcessor {
+
+    static final String METRICA = "productos.servicio";
+    static final String METRICA_FILAS = "productos.servicio.filas";
+
+    private static final String SIN_ERROR = "none";
+
+    private final ObjectProvider<ObservationRegistry> observaciones;
+    private final ObjectProvider<MeterRegistry> registry;
+
+    public MetricasServicio(ObjectProvider<ObservationRegistry> observaciones, ObjectProvider<MeterRegistry> registry) {
+        this.observaciones = observaciones;
+        this.registry = registry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof ProductoService) {
+            return medir(bean);
+        }
+        return bean;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object medir(Object servicio) {
+        MeterRegistry meters = registry.getIfAvailable();
+        if (meters == null) {
+            return servicio;
+        }
+        ObservationRegistry observations = observaciones.getIfAvailable(() -> ObservationRegistry.NOOP);
+        Map<Method, Metodo> metodos = new HashMap<>();
+        for (Method metodo : ProductoService.class.getMethods()) {
+            metodos.put(metodo, new Metodo(metodo, meters, observations));
+        }
+        ProxyFactory fabrica = new ProxyFactory(servicio);
+        fabrica.addInterface(ProductoService.class);
+        fabrica.addAdvice((MethodInterceptor) invocacion -> {
+            Object resultado = invocacion.proceed();
+            Metodo metodo = metodos.get(invocacion.getMethod());
+            if (metodo == null) {
+                return resultado;
+            }
+            if (resultado instanceof Mono<?> mono) {
+                return ((Mono<Object>) mono).tap(metodo);
+            }
+            if (resultado instanceof Flux<?> flux) {
+                return ((Flux<Object>) flux).tap(metodo);
+            }
+            return resultado;
+        });
+        return fabrica.getProxy(servicio.getClass().getClassLoader());
+    }
+
+    // Lo que no cambia entre llamadas a un método; crea la Medicion de cada suscripción
+    private static final class Metodo implements SignalListenerFactory<Object, Void> {
+
+        private final MeterRegistry meters;
+        private final ObservationRegistry observations;
+        private final String nombre;
+        private final String nombreSpan;
+        // Mono<Void>: terminar vacío es lo normal
+        private final boolean sinValor;
+        private final Timer ok;
+        private final Timer vacio;
+        private final Timer cancelado;
+        // Sólo para los Flux
+        private final Counter filas;
+
+        Metodo(Method metodo, MeterRegistry meters, ObservationRegistry observations) {
+            this.meters = meters;
+            this.observations = observations;
+            this.nombre = metodo.getName();
+            this.nombreSpan = "productoService " + nombre;
+            this.sinValor = ResolvableType.forMethodReturnType(metodo).getGeneric(0).resolve() == Void.class;
+            this.ok = timer(meters, nombre, "ok", SIN_ERROR);
+            this.vacio = timer(meters, nombre, "vacio", SIN_ERROR);
+            this.cancelado = timer(meters, nombre, "cancelado", SIN_ERROR);
+            this.filas = Flux.class.isAssignableFrom(metodo.getReturnType())
+                    ? Counter.builder(METRICA_FILAS)
+                            .description("Elementos emitidos por los métodos del servicio que devuelven Flux")
+                            .tag("metodo", nombre)
+                            .register(meters)
+                    : null;
+        }
+
+        @Override
+        public Void initializePublisherState(Publisher<?> source) {
+            return null;
+        }
+
+        @Override
+        public SignalListener<Object> createListener(Publisher<?> source, ContextView contexto, Void estado) {
+            return new Medicion(this, contexto);
+        }
+    }
+
+    // Mismos tags que deja DefaultMeterObservationHandler para las llamadas observadas
+    private static Timer timer(MeterRegistry meters, String metodo, String resultado, String error) {
+        return Timer.builder(METRICA)
+                .description("Latencia de cada método de ProductoService")
+                .tag("metodo", metodo)
+                .tag("resultado", resultado)
+                .tag("error", error)
+                .register(meters);
+    }
+
+    // Una suscripción (tap: un solo operador para todas las señales, que llegan en serie)
+    private static final class Medicion extends DefaultSignalListener<Object> {
+
+        private final Metodo metodo;
+        // null si la traza no se muestrea: entonces se mide con el timer e "inicio"
+        private final Observation observacion;
+        private long inicio;
+        private long elementos;
+        private Throwable error;
+
+        Medicion(Metodo metodo, ContextView contexto) {
+            this.metodo = metodo;
+            Observation padre = contexto.getOrDefault(ObservationThreadLocalAccessor.KEY, null);
+            this.observacion = muestreada(padre)
+                    ? Observation.createNotStarted(METRICA, metodo.observations)
+                            .contextualName(metodo.nombreSpan)
+                            .parentObservation(padre)
+                            .lowCardinalityKeyValue("metodo", metodo.nombre)
+                    : null;
+        }
+
+        @Override
+        public void doFirst() {
+            if (observacion != null) {
+                observacion.start();
+            } else {
+                inicio = System.nanoTime();
+            }
+        }
+
+        @Override
+        public void doOnNext(Object valor) {
+            elementos++;
+        }
+
+        @Override
+        public void doOnError(Throwable error) {
+            this.error = error;
+        }
+
+        // Lo que se llame dentro (repositorio, R2DBC) cuelga de esta observación
+        @Override
+        public Context addToContext(Context contexto) {
+            return observacion == null ? contexto : contexto.put(ObservationThreadLocalAccessor.KEY, observacion);
+        }
+
+        @Override
+        public void doFinally(SignalType senal) {
+            String resultado;
+            if (error != null) {
+                resultado = "error";
+            } else if (senal == SignalType.CANCEL) {
+                resultado = "cancelado";
+            } else if (elementos == 0 && metodo.filas == null && !metodo.sinValor) {
+                resultado = "vacio";
+            } else {
+                resultado = "ok";
+            }
+            if (observacion != null) {
+                if (error != null) {
+                    observacion.error(error);
+                }
+                observacion.lowCardinalityKeyValue("resultado", resultado).stop();
+            } else {
+                Timer timer = switch (resultado) {
+                    case "error" -> timer(metodo.meters, metodo.nombre, resultado, error.getClass().getSimpleName());
+                    case "cancelado" -> metodo.cancelado;
+                    case "vacio" -> metodo.vacio;
+                    default -> metodo.ok;
+                };
+                timer.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            }
+            if (metodo.filas != null && elementos > 0) {
+                metodo.filas.increment(elementos);
+            }
+        }
+
+        // La decisión de muestreo la toma el tracer al abrir el span de la petición
+        private static boolean muestreada(Observation padre) {
+            if (padre == null || padre.isNoop()) {
+                return false;
+            }
+            TracingObservationHandler.TracingContext traza =
+                    padre.getContextView().get(TracingObservationHandler.TracingContext.class);
+            Span span = traza != null ? traza.getSpan() : null;
+            return span != null && Boolean.TRUE.equals(span.context().sampled());
+        }
+    }
+}
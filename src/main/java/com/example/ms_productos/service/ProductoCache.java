@@ -0,0 +1,65 @@
+package com.example.ms_productos.service;
+
+import com.example.ms_productos.model.Producto;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Cache read-through de productos por id (GET /api/productos/{id}).
+ * - Acotada por tamaño y TTL (productos.cache.*).
+ * - Las cargas no bloquean: guardamos el CompletableFuture de la consulta R2DBC,
+ *   así N misses concurrentes del mismo id esperan la MISMA consulta.
+ * - Las métricas (cache.gets, cache.evictions...) salen por el actuator con el nombre "productos".
+ */
+@Component
+public class ProductoCache {
+
+    public static final String NOMBRE = "productos";
+
+    private final AsyncCache<Long, Producto> cache;
+
+    public ProductoCache(MeterRegistry registry,
+                         @Value("${productos.cache.max-size:10000}") long maxSize,
+                         @Value("${productos.cache.ttl:5m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(registry, cache, NOMBRE);
+    }
+
+    /**
+     * Devuelve el producto desde la cache o lo carga con "cargador".
+     * Si el cargador no encuentra nada (Mono vacío) no se guarda nada en la cache.
+     */
+    public Mono<Producto> get(Long id, Function<Long, Mono<Producto>> cargador) {
+        // suppressCancel: si un cliente cancela no debe cancelar la carga que comparten los demás
+        return Mono.fromFuture(() -> cache.get(id, (clave, executor) -> cargador.apply(clave).toFuture()), true);
+    }
+
+    // El producto si ya está cargado en la cache; null si no está (o su carga sigue en curso)
+    public Producto enMemoria(Long id) {
+        CompletableFuture<Producto> entrada = cache.getIfPresent(id);
+        return entrada != null && entrada.isDone() && !entrada.isCompletedExceptionally() ? entrada.join() : null;
+    }
+
+    // Refresca la entrada con el valor recién escrito (save/update)
+    public void put(Producto producto) {
+        cache.put(producto.getId(), CompletableFuture.completedFuture(producto));
+    }
+
+    // Descarta la entrada (delete, cambios de stock hechos en la BD)
+    public void invalidar(Long id) {
+        cache.synchronous().invalidate(id);
+    }
+}
@@ -1,22 +1,78 @@
 package com.example.ms_productos.service;
 
+import com.example.ms_productos.model.AlertaStock;
+import com.example.ms_productos.model.CambioProducto;
+import com.example.ms_productos.model.CampoProducto;
+import com.example.ms_productos.model.FiltroProductos;
 import com.example.ms_productos.model.Producto;
+import com.example.ms_productos.model.ProductosPorId;
+import com.example.ms_productos.model.ResultadoLote;
+import com.example.ms_productos.model.VersionProducto;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Set;
+
 /**
  * Define la lógica de negocio para el ms-productos.
  * ( Tarea 2.6 para ser reactivo)
  */
 public interface ProductoService {
 
-    Flux<Producto> findAll(); // GET /api/productos
+    Flux<Producto> findAll();
+
+    /**
+     * Una página del catálogo ordenada por id. "afterId" es el último id ya entregado
+     * (null para la primera página).
+     */
+    Flux<Producto> findPage(Long afterId, int limit); // GET /api/productos?limit=&after=
+
+    /**
+     * La misma página leyendo sólo las columnas de "campos" (más id y version); las demás
+     * propiedades quedan en null. Con campos null es la página completa.
+     */
+    Flux<Producto> findPage(Long afterId, int limit, Set<CampoProducto> campos); // GET /api/productos?fields=
+
+    /**
+     * Todo el catálogo como stream, leído por bloques de "tamanioBloque" filas
+     * a medida que el consumidor los pide (backpressure).
+     */
+    Flux<Producto> streamAll(int tamanioBloque); // GET /api/productos (application/x-ndjson)
 
     Mono<Producto> findById(Long id); // GET /api/productos/{id}
 
+    /**
+     * Versión y fecha de actualización del producto, sin leer la fila completa si no está en la
+     * cache. Vacío si no existe.
+     */
+    Mono<VersionProducto> findVersion(Long id); // GET /api/productos/{id} condicional
+
+    /**
+     * Varios productos por id: los que están en la cache salen de ahí y el resto con una sola
+     * consulta. Respeta el orden pedido (sin repetidos) e informa los ids que no existen.
+     */
+    Mono<ProductosPorId> findByIds(List<Long> ids); // GET /api/productos?ids=, POST /api/productos/ids
+
+    Flux<Producto> buscar(FiltroProductos filtro); // GET /api/productos/search
+
     Mono<Producto> save(Producto producto); // POST /api/productos
 
-    Mono<Producto> update(Long id, Producto producto); // PUT /api/productos/{id}
+    default Mono<Producto> update(Long id, Producto producto) { // PUT /api/productos/{id}
+        return update(id, producto, null);
+    }
+
+    /**
+     * Actualización atómica. Si "versionEsperada" no es null y la fila cambió de versión
+     * termina con ConflictoVersionException; vacío si el producto no existe.
+     */
+    Mono<Producto> update(Long id, Producto producto, Long versionEsperada); // PUT con If-Match
+
+    /**
+     * Alta/actualización masiva: los productos se escriben en bloques (una transacción por bloque).
+     * Emite un resultado por producto, en el mismo orden de entrada.
+     */
+    Flux<ResultadoLote> saveBatch(Flux<Producto> productos); // POST /api/productos/batch
 
     Mono<Void> delete(Long id); // DELETE /api/productos/{id}
 
@@ -26,4 +82,24 @@ public interface ProductoService {
     Mono<Void> actualizarStock(Long productoId, Integer cantidad); // PUT /api/productos/{id}/stock
 
     Flux<Producto> findBajoStock(Integer minimo); // GET /api/productos/bajo-stock
-}
\ No newline at end of file
+
+    // Igual; si la consulta va a la BD sólo lee las columnas de "campos" (null = todas)
+    Flux<Producto> findBajoStock(Integer minimo, Set<CampoProducto> campos); // GET /api/productos/bajo-stock?fields=
+
+    // Productos que bajan de "minimo" o vuelven a superarlo (GET /api/productos/bajo-stock/alertas)
+    Flux<AlertaStock> alertasBajoStock(int minimo);
+
+    /**
+     * Reserva (descuenta) stock en una sola ida a la BD. Devuelve el stock restante;
+     * StockInsuficienteException si no alcanza; vacío si el producto no existe.
+     */
+    Mono<Integer> reservarStock(Long productoId, int cantidad); // POST /api/productos/{id}/reservas
+
+    /**
+     * Registro de cambios: eventos posteriores al de seq "since", en el orden en que quedaron
+     * confirmados (los consumidores sincronizan de forma incremental guardando la última seq procesada).
+     */
+    Flux<CambioProducto> findCambios(long since, int limit); // GET /api/productos/changes
+
+    Flux<CambioProducto> streamCambios(long since); // GET /api/productos/changes/stream (SSE)
+}
@@ -1,12 +1,34 @@
 package com.example.ms_productos.service;
 
+import com.example.ms_productos.PoolSaturadoException;
+import com.example.ms_productos.model.AlertaStock;
+import com.example.ms_productos.model.CambioProducto;
+import com.example.ms_productos.model.CampoProducto;
+import com.example.ms_productos.model.FiltroProductos;
 import com.example.ms_productos.model.Producto;
+import com.example.ms_productos.model.ProductosPorId;
+import com.example.ms_productos.model.ResultadoLote;
+import com.example.ms_productos.model.VersionProducto;
 import com.example.ms_productos.repository.ProductoRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 @Service
 public class ProductoServiceImpl implements ProductoService {
@@ -14,54 +36,312 @@ public class ProductoServiceImpl implements ProductoService {
     @Autowired
     private ProductoRepository repository;
 
+    @Autowired
+    private ProductoCache cache;
+
+    @Autowired
+    private AcumuladorStock acumuladorStock;
+
+    @Autowired
+    private FeedCambios feedCambios;
+
+    @Autowired
+    private IndiceBajoStock indiceBajoStock;
+
+    // Modo snapshot: con la copia en memoria cargada, las lecturas no van a la BD
+    @Autowired
+    private SnapshotCatalogo snapshot;
+
+    // Cuántos productos se escriben por transacción en POST /api/productos/batch
+    @Value("${productos.batch.tamanio-lote:500}")
+    private int tamanioLote;
+
+    // La zona horaria se resuelve aquí, al crear el servicio: la primera vez lee /etc/localtime,
+    // y LocalDateTime.now() la resolvía en el primer POST, en un hilo de Netty
+    private final Clock reloj = Clock.systemDefaultZone();
+
     @Override
     public Flux<Producto> findAll() {
-        return repository.findAll();
+        return snapshot.todos(repository::findAll);
+    }
+
+    @Override
+    public Flux<Producto> findPage(Long afterId, int limit) {
+        // Los ids son IDENTITY (positivos), 0 equivale a "desde el principio"
+        long desde = afterId == null ? 0L : afterId;
+        return snapshot.pagina(desde, limit, () -> repository.findByIdGreaterThanOrderByIdAsc(desde, Limit.of(limit)));
+    }
+
+    @Override
+    public Flux<Producto> findPage(Long afterId, int limit, Set<CampoProducto> campos) {
+        if (campos == null) {
+            return findPage(afterId, limit);
+        }
+        // La misma consulta keyset que /search (orden por id), con las columnas elegidas
+        FiltroProductos filtro = new FiltroProductos();
+        filtro.setDespuesDeId(afterId);
+        filtro.setLimit(limit);
+        filtro.setCampos(campos);
+        // Desde el snapshot salen las filas completas: el controller proyecta los campos igual
+        return snapshot.pagina(afterId == null ? 0L : afterId, limit, () -> repository.buscar(filtro));
+    }
+
+    @Override
+    public Flux<Producto> streamAll(int tamanioBloque) {
+        // Recorremos la tabla por bloques (keyset sobre id) en vez de un solo SELECT sin límite:
+        // el siguiente bloque sólo se pide cuando el anterior ya se consumió
+        return findPage(null, tamanioBloque).collectList()
+                .expand(bloque -> bloque.size() < tamanioBloque
+                        ? Mono.empty()
+                        : findPage(bloque.get(bloque.size() - 1).getId(), tamanioBloque).collectList())
+                .concatMapIterable(bloque -> bloque);
     }
 
     @Override
     public Mono<Producto> findById(Long id) {
-        return repository.findById(id);
+        // Endpoint más usado: pasa por la cache (read-through)
+        return snapshot.porId(id, () -> cache.get(id, repository::findById));
+    }
+
+    @Override
+    public Mono<VersionProducto> findVersion(Long id) {
+        // Si el producto ya está en la cache se responde con él, igual que el GET completo
+        return snapshot.version(id, () -> {
+            Producto enCache = cache.enMemoria(id);
+            return enCache != null ? Mono.just(VersionProducto.de(enCache)) : repository.findVersionById(id);
+        });
+    }
+
+    @Override
+    public Mono<ProductosPorId> findByIds(List<Long> ids) {
+        return snapshot.porIds(ids, () -> {
+            List<Long> pedidos = ids.stream().filter(Objects::nonNull).distinct().toList();
+            Map<Long, Producto> encontrados = new HashMap<>();
+            List<Long> sinCache = new ArrayList<>();
+            for (Long id : pedidos) {
+                Producto enCache = cache.enMemoria(id);
+                if (enCache != null) {
+                    encontrados.put(id, enCache);
+                } else {
+                    sinCache.add(id);
+                }
+            }
+            Flux<Producto> leidos = sinCache.isEmpty()
+                    ? Flux.empty()
+                    // Lo leído queda en la cache para los GET por id que sigan
+                    : repository.findAllByIdEn(sinCache.toArray(Long[]::new)).doOnNext(cache::put);
+            return leidos.doOnNext(producto -> encontrados.put(producto.getId(), producto))
+                    .then(Mono.fromSupplier(() -> {
+                        List<Producto> productos = new ArrayList<>(pedidos.size());
+                        List<Long> noEncontrados = new ArrayList<>();
+                        for (Long id : pedidos) {
+                            Producto producto = encontrados.get(id);
+                            if (producto != null) {
+                                productos.add(producto);
+                            } else {
+                                noEncontrados.add(id);
+                            }
+                        }
+                        return new ProductosPorId(productos, noEncontrados);
+                    }));
+        });
+    }
+
+    @Override
+    public Flux<Producto> buscar(FiltroProductos filtro) {
+        // Filtros, orden y límite se resuelven en la BD (una sola consulta parametrizada),
+        // o recorriendo las columnas del snapshot en modo snapshot
+        return snapshot.buscar(filtro, () -> repository.buscar(filtro));
     }
 
     @Override
     public Mono<Producto> save(Producto producto) {
-        // Asignamos los valores por defecto  Tarea 2.3
-        producto.setActivo(true);
-        producto.setFechaCreacion(LocalDateTime.now());
-        return repository.save(producto);
+        aplicarValoresPorDefecto(producto);
+        return repository.save(producto)
+                .doOnNext(cache::put)
+                .doOnNext(indiceBajoStock::actualizar)
+                .doOnNext(snapshot::actualizar);
     }
 
     @Override
-    public Mono<Producto> update(Long id, Producto productoRequest) {
-        return repository.findById(id)
-                .flatMap(existingProducto -> {
-                    // Actualizamos los campos
-                    existingProducto.setNombre(productoRequest.getNombre());
-                    existingProducto.setDescripcion(productoRequest.getDescripcion());
-                    existingProducto.setPrecio(productoRequest.getPrecio());
-                    existingProducto.setStock(productoRequest.getStock());
-                    existingProducto.setActivo(productoRequest.getActivo());
-                    return repository.save(existingProducto);
+    public Mono<Producto> update(Long id, Producto productoRequest, Long versionEsperada) {
+        // Un solo UPDATE ... RETURNING: sin leer antes, sin ventana para perder escrituras
+        return repository.actualizarAtomico(id, productoRequest, versionEsperada)
+                .switchIfEmpty(Mono.defer(() -> versionEsperada == null
+                        ? Mono.empty()
+                        // No se actualizó nada: ¿no existe o cambió la versión? (sólo en el camino de fallo)
+                        : repository.existsById(id).flatMap(existe -> existe
+                                ? Mono.error(new ConflictoVersionException(id, versionEsperada))
+                                : Mono.empty())))
+                .doOnNext(cache::put)
+                .doOnNext(indiceBajoStock::actualizar)
+                .doOnNext(snapshot::actualizar);
+    }
+
+    @Override
+    public Flux<ResultadoLote> saveBatch(Flux<Producto> productos) {
+        // concatMap: un solo bloque en vuelo, el siguiente se lee cuando el anterior terminó
+        return productos.index()
+                .buffer(tamanioLote)
+                .concatMap(this::guardarBloque);
+    }
+
+    private Flux<ResultadoLote> guardarBloque(List<Tuple2<Long, Producto>> bloque) {
+        List<ResultadoLote> resultados = new ArrayList<>(bloque.size());
+        List<Tuple2<Long, Producto>> validos = new ArrayList<>(bloque.size());
+        for (Tuple2<Long, Producto> item : bloque) {
+            String error = validar(item.getT2());
+            if (error != null) {
+                resultados.add(new ResultadoLote(item.getT1(), item.getT2().getId(), ResultadoLote.Estado.ERROR, error));
+            } else {
+                if (item.getT2().getId() == null) {
+                    aplicarValoresPorDefecto(item.getT2());
+                }
+                validos.add(item);
+            }
+        }
+        if (validos.isEmpty()) {
+            return Flux.fromIterable(resultados);
+        }
+
+        return repository.guardarLote(validos.stream().map(Tuple2::getT2).toList())
+                .map(ids -> {
+                    for (int i = 0; i < validos.size(); i++) {
+                        resultados.add(resultadoGuardado(validos.get(i), ids.get(i)));
+                    }
+                    return resultados;
+                })
+                // Si falla el bloque la transacción se revierte: todos sus productos quedan en ERROR.
+                // Sin conexión en el pool no: el error sigue hasta la respuesta (503 con Retry-After)
+                .onErrorResume(e -> !PoolSaturadoException.enCausas(e), e -> {
+                    validos.forEach(item -> resultados.add(new ResultadoLote(
+                            item.getT1(), item.getT2().getId(), ResultadoLote.Estado.ERROR, e.getMessage())));
+                    return Mono.just(resultados);
+                })
+                .flatMapIterable(lista -> {
+                    lista.sort(Comparator.comparingLong(ResultadoLote::getIndice));
+                    return lista;
                 });
     }
 
+    private ResultadoLote resultadoGuardado(Tuple2<Long, Producto> item, Long id) {
+        Producto producto = item.getT2();
+        if (producto.getId() == null) {
+            return new ResultadoLote(item.getT1(), id, ResultadoLote.Estado.CREADO, null);
+        }
+        // El UPDATE no cambia fecha de creación: invalidamos en vez de refrescar la cache
+        cache.invalidar(producto.getId());
+        if (id == null) {
+            return new ResultadoLote(item.getT1(), producto.getId(), ResultadoLote.Estado.ERROR, "Producto no encontrado");
+        }
+        return new ResultadoLote(item.getT1(), id, ResultadoLote.Estado.ACTUALIZADO, null);
+    }
+
+    private String validar(Producto producto) {
+        if (producto.getNombre() == null || producto.getNombre().isBlank()) {
+            return "El nombre es obligatorio";
+        }
+        if (producto.getPrecio() != null && producto.getPrecio().esNegativo()) {
+            return "El precio no puede ser negativo";
+        }
+        if (producto.getStock() != null && producto.getStock() < 0) {
+            return "El stock no puede ser negativo";
+        }
+        return null;
+    }
+
+    // Asignamos los valores por defecto  Tarea 2.3
+    private void aplicarValoresPorDefecto(Producto producto) {
+        producto.setActivo(true);
+        producto.setFechaCreacion(LocalDateTime.now(reloj));
+        // La precisión de PostgreSQL: lo que queda en la cache es igual a lo que se guardó
+        producto.setFechaActualizacion(Instant.now(reloj).truncatedTo(ChronoUnit.MICROS));
+    }
+
     @Override
     public Mono<Void> delete(Long id) {
-        return repository.deleteById(id);
+        return repository.deleteById(id)
+                .doOnTerminate(() -> {
+                    cache.invalidar(id);
+                    indiceBajoStock.eliminar(id);
+                    snapshot.eliminar(id);
+                });
     }
 
     // -- Métodos de Procedimientos Almacenados ---
 
     @Override
     public Mono<Void> actualizarStock(Long productoId, Integer cantidad) {
-        // Llama al metodo que definimos en el repositorio
-        return repository.actualizarStock(productoId, cantidad);
+        // Los ajustes del mismo producto se fusionan en una sola llamada a actualizar_stock;
+        // el Mono termina cuando la suma que incluye esta cantidad ya está en la BD.
+        // El stock lo cambia la función de la BD: invalidamos para que la próxima lectura lo recargue.
+        // El índice de bajo stock se entera por el registro de cambios (trae el stock resultante);
+        // el snapshot relee la fila antes de responder, para que el ETag siguiente ya sea el nuevo
+        return acumuladorStock.ajustar(productoId, cantidad)
+                // La función no deja el stock en negativo: es un 409, como una reserva que no alcanza
+                .onErrorMap(StockInsuficienteException::enCausas, e -> new StockInsuficienteException(productoId, -cantidad))
+                .doOnTerminate(() -> cache.invalidar(productoId))
+                .then(Mono.defer(() -> snapshot.refrescar(productoId)));
+    }
+
+    @Override
+    public Mono<Integer> reservarStock(Long productoId, int cantidad) {
+        // No pasa por el acumulador: cada reserva necesita su propia respuesta (alcanza o no)
+        return repository.reservarStock(productoId, cantidad)
+                .doOnNext(stock -> {
+                    cache.invalidar(productoId);
+                    indiceBajoStock.actualizarStock(productoId, stock);
+                })
+                .flatMap(stock -> snapshot.refrescar(productoId).thenReturn(stock))
+                // No se descontó nada: sólo en este camino averiguamos si es 404 o 409
+                .switchIfEmpty(Mono.defer(() -> repository.existsById(productoId)
+                        .flatMap(existe -> existe
+                                ? Mono.error(new StockInsuficienteException(productoId, cantidad))
+                                : Mono.empty())));
     }
 
     @Override
     public Flux<Producto> findBajoStock(Integer minimo) {
-        // Llama al metodo que definimos en el repositorio
-        return repository.findByStockLessThan(minimo);
+        // Los umbrales habituales se responden desde memoria; el resto va a la BD
+        // (en modo snapshot, todos desde memoria)
+        return snapshot.buscar(filtroBajoStock(minimo), () -> indiceBajoStock.bajoStock(minimo));
+    }
+
+    @Override
+    public Flux<Producto> findBajoStock(Integer minimo, Set<CampoProducto> campos) {
+        if (campos == null) {
+            return findBajoStock(minimo);
+        }
+        // Desde memoria ya no se lee nada de la BD; si hay que consultarla, sólo las columnas pedidas
+        return snapshot.buscar(filtroBajoStock(minimo), () -> indiceBajoStock.bajoStock(minimo, () -> {
+            FiltroProductos filtro = filtroBajoStock(minimo);
+            filtro.setCampos(campos);
+            return repository.buscar(filtro);
+        }));
+    }
+
+    // stock < minimo, de menor a mayor stock
+    private static FiltroProductos filtroBajoStock(int minimo) {
+        FiltroProductos filtro = new FiltroProductos();
+        filtro.setStockMax(minimo - 1);
+        filtro.setOrden(FiltroProductos.Campo.STOCK);
+        return filtro;
+    }
+
+    @Override
+    public Flux<AlertaStock> alertasBajoStock(int minimo) {
+        return indiceBajoStock.alertas(minimo);
+    }
+
+    // -- Registro de cambios ---
+
+    @Override
+    public Flux<CambioProducto> findCambios(long since, int limit) {
+        return feedCambios.pagina(since, limit);
+    }
+
+    @Override
+    public Flux<CambioProducto> streamCambios(long since) {
+        return feedCambios.stream(since);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,249 @@
+package com.example.ms_productos.service;
+
+import com.example.ms_productos.model.CambioProducto;
+import com.example.ms_productos.model.FiltroProductos;
+import com.example.ms_productos.model.Producto;
+import com.example.ms_productos.model.ProductosPorId;
+import com.example.ms_productos.model.VersionProducto;
+import com.example.ms_productos.repository.ProductoRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Modo snapshot (productos.snapshot.habilitado, por defecto false): cada réplica guarda una copia
+ * compacta de toda la tabla productos (TablaProductos) y responde desde ella findAll, las páginas
+ * y el stream, GET por id (y su versión), GET por varios ids, /search y /bajo-stock, sin ir a la BD.
+ * Pensado para réplicas de lectura con catálogos que entran en memoria (ver el costo por fila en
+ * TablaProductos: ~53 bytes más los textos).
+ * <p>
+ * - Se carga al arrancar (y la primera vez que se usa), por bloques keyset de productos.snapshot.tamanio-lote.
+ * - Luego se mantiene como IndiceBajoStock: con las escrituras de esta réplica y con el registro de
+ *   cambios (FeedCambios). Para CREADO/ACTUALIZADO/STOCK se leen las filas de todos los cambios que
+ *   llegan juntos (productos.snapshot.ventana) con una sola consulta. Un STOCK también lleva otra
+ *   version y otro updated_at (triggers de la BD): con sólo el stock, ETag y Last-Modified quedarían viejos.
+ * - Mientras se carga, si está deshabilitado o si el feed falla, cada método usa "desdeBd";
+ *   el siguiente uso vuelve a cargar. El orden por nombre siempre va a la BD (collation).
+ * Métricas: productos.snapshot.productos y productos.snapshot.bytes (estimación de la memoria).
+ */
+@Component
+public class SnapshotCatalogo {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotCatalogo.class);
+
+    private final ProductoRepository repository;
+    private final FeedCambios feedCambios;
+    private final boolean habilitado;
+    private final int tamanioLote;
+    private final Duration ventana;
+
+    private final TablaProductos tabla = new TablaProductos();
+    private final AtomicBoolean iniciado = new AtomicBoolean();
+    private volatile boolean listo;
+
+    public SnapshotCatalogo(ProductoRepository repository, FeedCambios feedCambios, MeterRegistry registry,
+                            @Value("${productos.snapshot.habilitado:false}") boolean habilitado,
+                            @Value("${productos.snapshot.tamanio-lote:1000}") int tamanioLote,
+                            @Value("${productos.snapshot.ventana:50ms}") Duration ventana) {
+        this.repository = repository;
+        this.feedCambios = feedCambios;
+        this.habilitado = habilitado;
+        this.tamanioLote = tamanioLote;
+        this.ventana = ventana;
+        if (habilitado) {
+            Gauge.builder("productos.snapshot.productos", tabla, TablaProductos::tamanio)
+                    .description("Productos en el snapshot en memoria")
+                    .register(registry);
+            Gauge.builder("productos.snapshot.bytes", tabla, TablaProductos::bytes)
+                    .description("Memoria estimada del snapshot (columnas y textos)")
+                    .baseUnit("bytes")
+                    .register(registry);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void alArrancar() {
+        if (habilitado) {
+            iniciar();
+        }
+    }
+
+    // --- Lecturas: desde memoria si el snapshot está listo, si no con "desdeBd" ---
+
+    public Flux<Producto> todos(Supplier<Flux<Producto>> desdeBd) {
+        if (!disponible()) {
+            return Flux.defer(desdeBd);
+        }
+        // Por bloques, como streamAll: no se arma una lista con toda la tabla
+        return Mono.fromSupplier(() -> tabla.pagina(0L, tamanioLote))
+                .expand(bloque -> bloque.size() < tamanioLote
+                        ? Mono.empty()
+                        : Mono.fromSupplier(() -> tabla.pagina(bloque.get(bloque.size() - 1).getId(), tamanioLote)))
+                .concatMapIterable(bloque -> bloque);
+    }
+
+    public Flux<Producto> pagina(long despuesDe, int limit, Supplier<Flux<Producto>> desdeBd) {
+        if (!disponible()) {
+            return Flux.defer(desdeBd);
+        }
+        return Flux.defer(() -> Flux.fromIterable(tabla.pagina(despuesDe, limit)));
+    }
+
+    public Mono<Producto> porId(Long id, Supplier<Mono<Producto>> desdeBd) {
+        if (!disponible()) {
+            return Mono.defer(desdeBd);
+        }
+        return Mono.fromSupplier(() -> tabla.porId(id));
+    }
+
+    public Mono<VersionProducto> version(Long id, Supplier<Mono<VersionProducto>> desdeBd) {
+        if (!disponible()) {
+            return Mono.defer(desdeBd);
+        }
+        return Mono.fromSupplier(() -> tabla.porId(id)).map(VersionProducto::de);
+    }
+
+    public Mono<ProductosPorId> porIds(List<Long> ids, Supplier<Mono<ProductosPorId>> desdeBd) {
+        if (!disponible()) {
+            return Mono.defer(desdeBd);
+        }
+        return Mono.fromSupplier(() -> {
+            List<Producto> productos = new ArrayList<>(ids.size());
+            List<Long> noEncontrados = new ArrayList<>();
+            for (Long id : ids.stream().filter(Objects::nonNull).distinct().toList()) {
+                Producto producto = tabla.porId(id);
+                if (producto != null) {
+                    productos.add(producto);
+                } else {
+                    noEncontrados.add(id);
+                }
+            }
+            return new ProductosPorId(productos, noEncontrados);
+        });
+    }
+
+    public Flux<Producto> buscar(FiltroProductos filtro, Supplier<Flux<Producto>> desdeBd) {
+        if (!disponible() || filtro.getOrden() == FiltroProductos.Campo.NOMBRE) {
+            return Flux.defer(desdeBd);
+        }
+        return Flux.defer(() -> Flux.fromIterable(tabla.buscar(filtro)));
+    }
+
+    boolean isListo() {
+        return listo;
+    }
+
+    private boolean disponible() {
+        if (!habilitado) {
+            return false;
+        }
+        iniciar();
+        return listo;
+    }
+
+    // --- Escrituras de esta réplica (el feed las trae igual, esto sólo adelanta la copia) ---
+
+    public void actualizar(Producto producto) {
+        if (listo) {
+            tabla.poner(producto);
+        }
+    }
+
+    // El stock lo cambia una función de la BD, que además sube version y updated_at: se vuelve a
+    // leer la fila entera. Si la lectura falla no se propaga (el stock ya cambió): llega por el feed
+    public Mono<Void> refrescar(Long id) {
+        return Mono.defer(() -> listo
+                ? repository.findById(id).doOnNext(tabla::poner).then().onErrorResume(e -> Mono.empty())
+                : Mono.empty());
+    }
+
+    public void eliminar(Long id) {
+        if (listo) {
+            tabla.quitar(id);
+        }
+    }
+
+    // --- Carga y seguimiento del registro de cambios ---
+
+    private void iniciar() {
+        if (!iniciado.compareAndSet(false, true)) {
+            return;
+        }
+        // Primero la posición del registro y luego la carga: lo que cambie durante la carga
+        // llega después por el stream y se vuelve a aplicar (poner es idempotente)
+        Mono.defer(feedCambios::ultimaSeq)
+                .flatMapMany(seq -> cargar()
+                        .thenMany(Flux.defer(() -> {
+                            listo = true;
+                            log.info("Snapshot del catálogo cargado: {} productos, ~{} MB", tabla.tamanio(),
+                                    tabla.bytes() / (1024 * 1024));
+                            return feedCambios.stream(seq);
+                        })))
+                // Los cambios que llegan juntos (p. ej. una importación) se aplican con una sola lectura
+                .bufferTimeout(tamanioLote, ventana, true)
+                .concatMap(this::aplicarCambios)
+                .subscribe(null, error -> {
+                    log.warn("Snapshot del catálogo desactivado hasta el próximo uso: {}", error.getMessage());
+                    reiniciar();
+                });
+    }
+
+    private Mono<Void> cargar() {
+        return repository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(tamanioLote)).collectList()
+                .expand(bloque -> bloque.size() < tamanioLote
+                        ? Mono.empty()
+                        : repository.findByIdGreaterThanOrderByIdAsc(bloque.get(bloque.size() - 1).getId(),
+                                Limit.of(tamanioLote)).collectList())
+                .doOnNext(bloque -> bloque.forEach(tabla::poner))
+                .then();
+    }
+
+    private void reiniciar() {
+        listo = false;
+        tabla.vaciar();
+        iniciado.set(false);
+    }
+
+    private Mono<Void> aplicarCambios(List<CambioProducto> cambios) {
+        // Ids cuya fila hay que leer; en el orden de los cambios para que un ELIMINADO posterior gane
+        Set<Long> leer = new LinkedHashSet<>();
+        for (CambioProducto cambio : cambios) {
+            Long id = cambio.getProductoId();
+            switch (cambio.getTipo()) {
+                case ELIMINADO -> {
+                    tabla.quitar(id);
+                    leer.remove(id);
+                }
+                // STOCK también: la fila trae la version y el updated_at que puso el trigger
+                default -> leer.add(id);
+            }
+        }
+        if (leer.isEmpty()) {
+            return Mono.empty();
+        }
+        return repository.findAllByIdEn(leer.toArray(Long[]::new))
+                .doOnNext(producto -> {
+                    leer.remove(producto.getId());
+                    tabla.poner(producto);
+                })
+                // Los que ya no están se borraron después del cambio (su ELIMINADO viene detrás)
+                .then(Mono.fromRunnable(() -> leer.forEach(tabla::quitar)));
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.ms_productos.service;
+
+/**
+ * El producto existe pero no tiene stock suficiente para la reserva o el descuento.
+ * El controlador lo traduce a 409 Conflict.
+ */
+public class StockInsuficienteException extends RuntimeException {
+
+    // Texto de la excepción que lanza la función actualizar_stock de la BD
+    private static final String MENSAJE_BD = "Stock insuficiente";
+
+    public StockInsuficienteException(Long id, int cantidad) {
+        super("Stock insuficiente para descontar " + cantidad + " unidades del producto " + id);
+    }
+
+    // El error de actualizar_stock llega envuelto (R2DBC, Spring): se busca en las causas
+    public static boolean enCausas(Throwable error) {
+        for (Throwable causa = error; causa != null; causa = causa.getCause()) {
+            if (causa.getMessage() != null && causa.getMessage().contains(MENSAJE_BD)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,457 @@
+package com.example.ms_productos.service;
+
+import com.example.ms_productos.model.FiltroProductos;
+import com.example.ms_productos.model.Precio;
+import com.example.ms_productos.model.Producto;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+/**
+ * Copia de la tabla productos en columnas: un array de primitivos por columna, con las filas
+ * ordenadas por id (búsqueda binaria). Un Producto sólo se crea al entregarlo.
+ * <p>
+ * Por fila: id, precio (centavos), fecha de creación, updated_at y versión en long (8 bytes cada uno),
+ * stock en int (4), activo en un byte y dos referencias (4 + 4 con compressed oops) = 53 bytes,
+ * unos 53 MB por millón de productos (hasta 80 MB con el margen de crecimiento de los arrays).
+ * A eso se suman los textos: ~40 bytes + 1 por carácter (Latin-1) por cada nombre distinto
+ * (se internan) y cada descripción.
+ * <p>
+ * Un solo escritor a la vez (write lock de un StampedLock); las lecturas son optimistas: leen sin
+ * lock y se repiten si hubo una escritura en el medio, así nunca bloquean un hilo de Netty.
+ * Los recorridos largos van por tramos de BLOQUE filas, cada uno con su propia validación.
+ */
+final class TablaProductos {
+
+    static final int BYTES_POR_FILA = 8 + 8 + 4 + 1 + 8 + 8 + 8 + 4 + 4;
+
+    // Filas leídas con una misma validación al recorrer la tabla
+    private static final int BLOQUE = 4096;
+    private static final int CAPACIDAD_INICIAL = 1024;
+
+    // null en las columnas de primitivos
+    private static final long NULO = Long.MIN_VALUE;
+    private static final int STOCK_NULO = Integer.MIN_VALUE;
+    private static final byte ACTIVO_NULO = 0;
+    private static final byte ACTIVO_NO = 1;
+    private static final byte ACTIVO_SI = 2;
+    // null al ordenar por precio o stock: después de cualquier valor
+    private static final long CLAVE_NULA = Long.MAX_VALUE;
+
+    private final StampedLock lock = new StampedLock();
+    // Al crecer se reemplaza entera: quien lee toma la referencia una vez por tramo
+    private volatile Columnas columnas = new Columnas(CAPACIDAD_INICIAL);
+    private volatile long bytesTexto;
+
+    private static final class Columnas {
+
+        final long[] ids;
+        final long[] precios;
+        final int[] stocks;
+        final byte[] activos;
+        final String[] nombres;
+        final String[] descripciones;
+        final long[] creados;
+        final long[] actualizados;
+        final long[] versiones;
+        int tamanio;
+
+        Columnas(int capacidad) {
+            ids = new long[capacidad];
+            precios = new long[capacidad];
+            stocks = new int[capacidad];
+            activos = new byte[capacidad];
+            nombres = new String[capacidad];
+            descripciones = new String[capacidad];
+            creados = new long[capacidad];
+            actualizados = new long[capacidad];
+            versiones = new long[capacidad];
+        }
+
+        int capacidad() {
+            return ids.length;
+        }
+
+        // Posición del primer id mayor que "id"
+        int despuesDe(long id) {
+            int i = Arrays.binarySearch(ids, 0, tamanio, id);
+            return i >= 0 ? i + 1 : -i - 1;
+        }
+    }
+
+    // --- Escrituras ---
+
+    /**
+     * Inserta o reemplaza la fila del producto. Si ya hay una versión más nueva se ignora:
+     * una lectura de la BD que llega tarde no pisa una escritura posterior.
+     */
+    void poner(Producto producto) {
+        long id = producto.getId();
+        long stamp = lock.writeLock();
+        try {
+            Columnas c = columnas;
+            int i = Arrays.binarySearch(c.ids, 0, c.tamanio, id);
+            if (i >= 0) {
+                if (producto.getVersion() != null && c.versiones[i] != NULO && producto.getVersion() < c.versiones[i]) {
+                    return;
+                }
+                bytesTexto -= texto(c.nombres[i]) + texto(c.descripciones[i]);
+            } else {
+                i = -i - 1;
+                c = abrirHueco(c, i);
+                c.ids[i] = id;
+            }
+            c.precios[i] = centavos(producto.getPrecio());
+            c.stocks[i] = producto.getStock() == null ? STOCK_NULO : producto.getStock();
+            c.activos[i] = producto.getActivo() == null ? ACTIVO_NULO : producto.getActivo() ? ACTIVO_SI : ACTIVO_NO;
+            c.nombres[i] = producto.getNombre() == null ? null : producto.getNombre().intern();
+            c.descripciones[i] = producto.getDescripcion();
+            c.creados[i] = microsegundos(producto.getFechaCreacion());
+            c.actualizados[i] = microsegundos(producto.getFechaActualizacion());
+            c.versiones[i] = producto.getVersion() == null ? NULO : producto.getVersion();
+            bytesTexto += texto(c.nombres[i]) + texto(c.descripciones[i]);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void quitar(long id) {
+        long stamp = lock.writeLock();
+        try {
+            Columnas c = columnas;
+            int i = Arrays.binarySearch(c.ids, 0, c.tamanio, id);
+            if (i < 0) {
+                return;
+            }
+            bytesTexto -= texto(c.nombres[i]) + texto(c.descripciones[i]);
+            int siguientes = c.tamanio - i - 1;
+            System.arraycopy(c.ids, i + 1, c.ids, i, siguientes);
+            System.arraycopy(c.precios, i + 1, c.precios, i, siguientes);
+            System.arraycopy(c.stocks, i + 1, c.stocks, i, siguientes);
+            System.arraycopy(c.activos, i + 1, c.activos, i, siguientes);
+            System.arraycopy(c.nombres, i + 1, c.nombres, i, siguientes);
+            System.arraycopy(c.descripciones, i + 1, c.descripciones, i, siguientes);
+            System.arraycopy(c.creados, i + 1, c.creados, i, siguientes);
+            System.arraycopy(c.actualizados, i + 1, c.actualizados, i, siguientes);
+            System.arraycopy(c.versiones, i + 1, c.versiones, i, siguientes);
+            c.tamanio--;
+            c.nombres[c.tamanio] = null;
+            c.descripciones[c.tamanio] = null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void vaciar() {
+        long stamp = lock.writeLock();
+        try {
+            columnas = new Columnas(CAPACIDAD_INICIAL);
+            bytesTexto = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Deja libre la posición i (los ids llegan casi siempre en orden: suele ser el final)
+    private Columnas abrirHueco(Columnas c, int i) {
+        int siguientes = c.tamanio - i;
+        Columnas destino = c;
+        if (c.tamanio == c.capacidad()) {
+            destino = new Columnas(c.capacidad() + (c.capacidad() >> 1));
+            copiar(c, 0, destino, 0, i);
+        }
+        copiar(c, i, destino, i + 1, siguientes);
+        destino.tamanio = c.tamanio + 1;
+        if (destino != c) {
+            columnas = destino;
+        }
+        return destino;
+    }
+
+    private static void copiar(Columnas origen, int desde, Columnas destino, int hasta, int filas) {
+        System.arraycopy(origen.ids, desde, destino.ids, hasta, filas);
+        System.arraycopy(origen.precios, desde, destino.precios, hasta, filas);
+        System.arraycopy(origen.stocks, desde, destino.stocks, hasta, filas);
+        System.arraycopy(origen.activos, desde, destino.activos, hasta, filas);
+        System.arraycopy(origen.nombres, desde, destino.nombres, hasta, filas);
+        System.arraycopy(origen.descripciones, desde, destino.descripciones, hasta, filas);
+        System.arraycopy(origen.creados, desde, destino.creados, hasta, filas);
+        System.arraycopy(origen.actualizados, desde, destino.actualizados, hasta, filas);
+        System.arraycopy(origen.versiones, desde, destino.versiones, hasta, filas);
+    }
+
+    // --- Lecturas ---
+
+    int tamanio() {
+        return leer(c -> c.tamanio);
+    }
+
+    // Estimación de la memoria ocupada: columnas (con su capacidad) más textos
+    long bytes() {
+        return (long) columnas.capacidad() * BYTES_POR_FILA + bytesTexto;
+    }
+
+    Producto porId(long id) {
+        return leer(c -> {
+            int i = Arrays.binarySearch(c.ids, 0, c.tamanio, id);
+            return i >= 0 ? fila(c, i) : null;
+        });
+    }
+
+    // Hasta "limite" productos con id mayor que "despuesDe", por id
+    List<Producto> pagina(long despuesDe, int limite) {
+        return leer(c -> {
+            int desde = c.despuesDe(despuesDe);
+            int hasta = (int) Math.min(c.tamanio, (long) desde + limite);
+            List<Producto> pagina = new ArrayList<>(Math.max(hasta - desde, 0));
+            for (int i = desde; i < hasta; i++) {
+                pagina.add(fila(c, i));
+            }
+            return pagina;
+        });
+    }
+
+    /**
+     * Lo mismo que ProductoRepositoryCustomImpl#buscar: filtros con AND, orden por id, precio o stock
+     * (desempate por id, null al final en ASC y al principio en DESC, como PostgreSQL), keyset y límite.
+     * El orden por nombre no se resuelve aquí (PostgreSQL ordena con la collation de la BD).
+     */
+    List<Producto> buscar(FiltroProductos filtro) {
+        Condiciones condiciones = new Condiciones(filtro);
+        return filtro.getOrden() == FiltroProductos.Campo.ID
+                ? porOrdenDeId(condiciones, filtro.getDireccion().isAscending(), filtro.getLimit())
+                : porValor(condiciones, filtro);
+    }
+
+    // Se recorre en el orden pedido y se corta al llegar al límite
+    private List<Producto> porOrdenDeId(Condiciones condiciones, boolean asc, int limite) {
+        List<Producto> encontrados = new ArrayList<>();
+        long ultimo = condiciones.despuesDeId != null ? condiciones.despuesDeId : asc ? Long.MIN_VALUE : Long.MAX_VALUE;
+        boolean fin = false;
+        while (!fin && (limite <= 0 || encontrados.size() < limite)) {
+            long desdeId = ultimo;
+            int faltan = limite <= 0 ? Integer.MAX_VALUE : limite - encontrados.size();
+            Tramo<Producto> tramo = leer(c -> {
+                List<Producto> filas = new ArrayList<>();
+                int paso = asc ? 1 : -1;
+                int i = asc ? c.despuesDe(desdeId) : c.despuesDe(desdeId - 1) - 1;
+                int vistas = 0;
+                for (; i >= 0 && i < c.tamanio && vistas < BLOQUE && filas.size() < faltan; i += paso, vistas++) {
+                    if (condiciones.cumple(c, i)) {
+                        filas.add(fila(c, i));
+                    }
+                }
+                // El próximo tramo empieza después de la última fila vista
+                return new Tramo<>(filas, vistas == 0 ? desdeId : c.ids[i - paso], i < 0 || i >= c.tamanio);
+            });
+            encontrados.addAll(tramo.filas());
+            ultimo = tramo.ultimoId();
+            fin = tramo.termino();
+        }
+        return encontrados;
+    }
+
+    // Toda la tabla por tramos; con límite se guardan sólo los "limite" primeros (montículo)
+    private List<Producto> porValor(Condiciones condiciones, FiltroProductos filtro) {
+        boolean porPrecio = filtro.getOrden() == FiltroProductos.Campo.PRECIO;
+        Comparator<Candidato> ascendente = Comparator.comparingLong(Candidato::clave).thenComparingLong(Candidato::id);
+        Comparator<Candidato> orden = filtro.getDireccion().isAscending() ? ascendente : ascendente.reversed();
+        int limite = filtro.getLimit();
+        // El peor de los elegidos arriba, para descartarlo cuando llega uno mejor
+        PriorityQueue<Candidato> elegidos = new PriorityQueue<>(orden.reversed());
+        List<Candidato> todos = new ArrayList<>();
+        long ultimo = Long.MIN_VALUE;
+        boolean fin = false;
+        while (!fin) {
+            long desdeId = ultimo;
+            Candidato peor = limite > 0 && elegidos.size() >= limite ? elegidos.peek() : null;
+            Tramo<Candidato> tramo = leer(c -> {
+                List<Candidato> filas = new ArrayList<>();
+                int desde = c.despuesDe(desdeId);
+                int hasta = Math.min(c.tamanio, desde + BLOQUE);
+                for (int i = desde; i < hasta; i++) {
+                    if (!condiciones.cumple(c, i)) {
+                        continue;
+                    }
+                    long clave = porPrecio ? clavePrecio(c.precios[i]) : claveStock(c.stocks[i]);
+                    if (condiciones.despuesDelCursor(clave, c.ids[i])
+                            && (peor == null || orden.compare(new Candidato(clave, c.ids[i], null), peor) < 0)) {
+                        // Sólo se crea el Producto de los que pueden quedar en la respuesta
+                        filas.add(new Candidato(clave, c.ids[i], fila(c, i)));
+                    }
+                }
+                return new Tramo<>(filas, hasta > desde ? c.ids[hasta - 1] : desdeId, hasta >= c.tamanio);
+            });
+            for (Candidato candidato : tramo.filas()) {
+                if (limite <= 0) {
+                    todos.add(candidato);
+                } else if (elegidos.size() < limite) {
+                    elegidos.add(candidato);
+                } else if (orden.compare(candidato, elegidos.peek()) < 0) {
+                    elegidos.poll();
+                    elegidos.add(candidato);
+                }
+            }
+            ultimo = tramo.ultimoId();
+            fin = tramo.termino();
+        }
+        List<Candidato> resultado = limite > 0 ? new ArrayList<>(elegidos) : todos;
+        resultado.sort(orden);
+        return resultado.stream().map(Candidato::producto).toList();
+    }
+
+    // precio (centavos) y stock se comparan como long, igual que el valor del cursor; null es el mayor
+    private static long clavePrecio(long centavos) {
+        return centavos == NULO ? CLAVE_NULA : centavos;
+    }
+
+    private static long claveStock(int stock) {
+        return stock == STOCK_NULO ? CLAVE_NULA : stock;
+    }
+
+    /**
+     * Lectura optimista: si hubo una escritura mientras tanto (o se está escribiendo) se repite.
+     * Las escrituras tocan una fila (o mueven un tramo de arrays) y sueltan el lock enseguida.
+     */
+    private <T> T leer(Function<Columnas, T> lectura) {
+        while (true) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                T resultado = lectura.apply(columnas);
+                if (lock.validate(stamp)) {
+                    return resultado;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private static Producto fila(Columnas c, int i) {
+        byte activo = c.activos[i];
+        return new Producto(c.ids[i], c.nombres[i], c.descripciones[i],
+                c.precios[i] == NULO ? null : Precio.deCentavos(c.precios[i]),
+                c.stocks[i] == STOCK_NULO ? null : c.stocks[i],
+                activo == ACTIVO_NULO ? null : activo == ACTIVO_SI,
+                c.creados[i] == NULO ? null : LocalDateTime.ofEpochSecond(Math.floorDiv(c.creados[i], 1_000_000L),
+                        (int) Math.floorMod(c.creados[i], 1_000_000L) * 1000, ZoneOffset.UTC),
+                c.actualizados[i] == NULO ? null : Instant.ofEpochSecond(Math.floorDiv(c.actualizados[i], 1_000_000L),
+                        Math.floorMod(c.actualizados[i], 1_000_000L) * 1000),
+                c.versiones[i] == NULO ? null : c.versiones[i]);
+    }
+
+    private static long centavos(Precio precio) {
+        return precio == null ? NULO : precio.getCentavos();
+    }
+
+    // PostgreSQL guarda microsegundos
+    private static long microsegundos(LocalDateTime fecha) {
+        return fecha == null ? NULO : fecha.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + fecha.getNano() / 1000;
+    }
+
+    private static long microsegundos(Instant fecha) {
+        return fecha == null ? NULO : fecha.getEpochSecond() * 1_000_000L + fecha.getNano() / 1000;
+    }
+
+    // Objeto String (24) + cabecera del byte[] (16) + un byte por carácter
+    private static long texto(String valor) {
+        return valor == null ? 0 : 40 + valor.length();
+    }
+
+    private record Candidato(long clave, long id, Producto producto) {
+    }
+
+    // Lo leído en un tramo y el id donde sigue el próximo
+    private record Tramo<T>(List<T> filas, long ultimoId, boolean termino) {
+    }
+
+    // Los filtros de FiltroProductos, evaluados sobre las columnas sin crear el Producto
+    private static final class Condiciones {
+
+        final String nombre;
+        final boolean prefijo;
+        // En centavos; sin filtro, los extremos de long
+        final long precioMin;
+        final long precioMax;
+        final boolean porPrecio;
+        final Integer stockMin;
+        final Integer stockMax;
+        final byte activo;
+        final Long despuesDeId;
+        final boolean asc;
+        final long despuesDeValor;
+        final boolean porValor;
+
+        Condiciones(FiltroProductos filtro) {
+            String texto = filtro.getNombre() == null || filtro.getNombre().isBlank() ? null : filtro.getNombre().trim();
+            this.nombre = texto;
+            this.prefijo = filtro.getModoNombre() == FiltroProductos.ModoNombre.PREFIJO;
+            this.precioMin = filtro.getPrecioMin() == null ? Long.MIN_VALUE : filtro.getPrecioMin().getCentavos();
+            this.precioMax = filtro.getPrecioMax() == null ? Long.MAX_VALUE : filtro.getPrecioMax().getCentavos();
+            this.porPrecio = filtro.getPrecioMin() != null || filtro.getPrecioMax() != null;
+            this.stockMin = filtro.getStockMin();
+            this.stockMax = filtro.getStockMax();
+            this.activo = filtro.getActivo() == null ? ACTIVO_NULO : filtro.getActivo() ? ACTIVO_SI : ACTIVO_NO;
+            this.despuesDeId = filtro.getDespuesDeId();
+            this.asc = filtro.getDireccion().isAscending();
+            this.porValor = filtro.getOrden() != FiltroProductos.Campo.ID && despuesDeId != null;
+            // Cursor en una fila con la columna en null: su clave es la de los null (la mayor)
+            Object valor = filtro.getDespuesDeValor();
+            this.despuesDeValor = !porValor ? 0 : valor == null ? CLAVE_NULA
+                    : valor instanceof Precio precio ? precio.getCentavos() : ((Number) valor).longValue();
+        }
+
+        boolean cumple(Columnas c, int i) {
+            if (nombre != null && !coincide(c.nombres[i])) {
+                return false;
+            }
+            long precio = c.precios[i];
+            if (porPrecio && (precio == NULO || precio < precioMin || precio > precioMax)) {
+                return false;
+            }
+            int stock = c.stocks[i];
+            if ((stockMin != null || stockMax != null) && stock == STOCK_NULO) {
+                return false;
+            }
+            if (stockMin != null && stock < stockMin || stockMax != null && stock > stockMax) {
+                return false;
+            }
+            return activo == ACTIVO_NULO || c.activos[i] == activo;
+        }
+
+        // (clave, id) estrictamente después del cursor; null es la clave mayor, como en el orden de PostgreSQL
+        boolean despuesDelCursor(long clave, long id) {
+            if (!porValor) {
+                return true;
+            }
+            int comparacion = Long.compare(clave, despuesDeValor);
+            if (comparacion == 0) {
+                return asc ? id > despuesDeId : id < despuesDeId;
+            }
+            return asc ? comparacion > 0 : comparacion < 0;
+        }
+
+        // UPPER(nombre) LIKE UPPER(patrón): sin distinguir mayúsculas y sin crear Strings
+        private boolean coincide(String valor) {
+            if (valor == null) {
+                return false;
+            }
+            if (prefijo) {
+                return valor.regionMatches(true, 0, nombre, 0, nombre.length());
+            }
+            for (int desde = 0; desde + nombre.length() <= valor.length(); desde++) {
+                if (valor.regionMatches(true, desde, nombre, 0, nombre.length())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
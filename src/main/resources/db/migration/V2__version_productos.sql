@@ -0,0 +1,16 @@
+-- Versión de fila para control optimista (@Version en Producto, ETag / If-Match en PUT)
+ALTER TABLE productos ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+-- Cualquier UPDATE (incluida la función actualizar_stock) incrementa la versión,
+-- así el ETag cambia aunque la escritura no venga de la aplicación.
+CREATE OR REPLACE FUNCTION productos_incrementar_version() RETURNS trigger AS $$
+BEGIN
+    NEW.version := OLD.version + 1;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_productos_version ON productos;
+CREATE TRIGGER trg_productos_version
+    BEFORE UPDATE ON productos
+    FOR EACH ROW EXECUTE FUNCTION productos_incrementar_version();
@@ -0,0 +1,10 @@
+-- Índices para GET /api/productos/search
+
+-- Rangos de precio/stock y paginación keyset ordenando por esas columnas (desempate por id)
+CREATE INDEX IF NOT EXISTS idx_productos_precio_id ON productos (precio, id);
+CREATE INDEX IF NOT EXISTS idx_productos_stock_id ON productos (stock, id);
+
+-- Búsqueda por nombre (prefijo o "contiene", sin distinguir mayúsculas).
+-- La consulta compara UPPER(nombre) LIKE UPPER(:patron), por eso el índice es sobre UPPER(nombre).
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS idx_productos_nombre_trgm ON productos USING gin (UPPER(nombre) gin_trgm_ops);
@@ -0,0 +1,33 @@
+-- Registro de cambios de productos para GET /api/productos/changes y el stream SSE.
+-- Cada INSERT/UPDATE/DELETE sobre productos deja un evento con una secuencia creciente.
+CREATE TABLE IF NOT EXISTS productos_cambios (
+    seq         BIGSERIAL PRIMARY KEY,
+    producto_id BIGINT      NOT NULL,
+    tipo        VARCHAR(12) NOT NULL,
+    stock       INTEGER,
+    fecha       TIMESTAMP   NOT NULL DEFAULT now(),
+    -- Transacción que generó el evento: la lectura descarta los de transacciones aún abiertas
+    txid        BIGINT      NOT NULL DEFAULT txid_current()
+);
+
+CREATE OR REPLACE FUNCTION productos_registrar_cambio() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO productos_cambios (producto_id, tipo, stock) VALUES (NEW.id, 'CREADO', NEW.stock);
+    ELSIF TG_OP = 'DELETE' THEN
+        INSERT INTO productos_cambios (producto_id, tipo) VALUES (OLD.id, 'ELIMINADO');
+    ELSIF (NEW.nombre, NEW.descripcion, NEW.precio, NEW.activo)
+            IS NOT DISTINCT FROM (OLD.nombre, OLD.descripcion, OLD.precio, OLD.activo) THEN
+        -- Sólo cambió el stock (actualizar_stock, reservas)
+        INSERT INTO productos_cambios (producto_id, tipo, stock) VALUES (NEW.id, 'STOCK', NEW.stock);
+    ELSE
+        INSERT INTO productos_cambios (producto_id, tipo, stock) VALUES (NEW.id, 'ACTUALIZADO', NEW.stock);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_productos_cambios ON productos;
+CREATE TRIGGER trg_productos_cambios
+    AFTER INSERT OR UPDATE OR DELETE ON productos
+    FOR EACH ROW EXECUTE FUNCTION productos_registrar_cambio();
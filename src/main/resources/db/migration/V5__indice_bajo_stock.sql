@@ -0,0 +1,4 @@
+-- Índice parcial para GET /api/productos/bajo-stock (findByStockLessThan).
+-- Sólo contiene los productos con poco stock, así es pequeño y barato de mantener.
+-- El umbral debe coincidir con productos.bajo-stock.umbral-maximo (por defecto 100).
+CREATE INDEX IF NOT EXISTS idx_productos_bajo_stock ON productos (stock, id) WHERE stock < 100;
@@ -0,0 +1,27 @@
+-- Fecha de la última modificación de cada fila (Last-Modified / If-Modified-Since en los GET)
+ALTER TABLE productos ADD COLUMN IF NOT EXISTS updated_at TIMESTAMPTZ NOT NULL DEFAULT now();
+
+-- El mismo trigger que sube la versión renueva updated_at en cualquier UPDATE (también los de
+-- actualizar_stock o hechos a mano), salvo que la aplicación ya haya puesto la fecha nueva.
+CREATE OR REPLACE FUNCTION productos_incrementar_version() RETURNS trigger AS $$
+BEGIN
+    NEW.version := OLD.version + 1;
+    IF NEW.updated_at IS NULL OR NEW.updated_at = OLD.updated_at THEN
+        NEW.updated_at := now();
+    END IF;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+-- En los INSERT que envían la columna en NULL se usa la fecha actual
+CREATE OR REPLACE FUNCTION productos_fecha_alta() RETURNS trigger AS $$
+BEGIN
+    NEW.updated_at := COALESCE(NEW.updated_at, now());
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_productos_fecha_alta ON productos;
+CREATE TRIGGER trg_productos_fecha_alta
+    BEFORE INSERT ON productos
+    FOR EACH ROW EXECUTE FUNCTION productos_fecha_alta();
@@ -0,0 +1,41 @@
+-- Precio en centavos (BIGINT): la aplicación lee y escribe precio_centavos (Producto.precio es un
+-- Precio con un long), y los rangos y el orden de /search comparan enteros.
+ALTER TABLE productos ADD COLUMN IF NOT EXISTS precio_centavos BIGINT;
+
+-- Camino de migración: la columna precio (NUMERIC) se mantiene, porque la siguen escribiendo
+-- el script de postgres-db y cualquier acceso directo a la tabla. Un trigger copia el valor que
+-- cambió a la otra columna; cuando nadie use precio, se puede borrar junto con el trigger.
+CREATE OR REPLACE FUNCTION productos_sincronizar_precio() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        IF NEW.precio_centavos IS NOT NULL THEN
+            NEW.precio := NEW.precio_centavos / 100.0;
+        ELSIF NEW.precio IS NOT NULL THEN
+            NEW.precio_centavos := round(NEW.precio * 100);
+        END IF;
+    ELSIF NEW.precio_centavos IS DISTINCT FROM OLD.precio_centavos THEN
+        NEW.precio := NEW.precio_centavos / 100.0;
+    ELSIF NEW.precio IS DISTINCT FROM OLD.precio THEN
+        NEW.precio_centavos := round(NEW.precio * 100);
+    END IF;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_productos_precio ON productos;
+CREATE TRIGGER trg_productos_precio
+    BEFORE INSERT OR UPDATE ON productos
+    FOR EACH ROW EXECUTE FUNCTION productos_sincronizar_precio();
+
+-- Copia de los precios existentes. Sin los triggers de versión y de cambios: el producto no
+-- cambió para los clientes (ni ETag nuevo ni un evento por fila en productos_cambios)
+ALTER TABLE productos DISABLE TRIGGER trg_productos_version;
+ALTER TABLE productos DISABLE TRIGGER trg_productos_cambios;
+UPDATE productos SET precio_centavos = round(precio * 100)
+    WHERE precio IS NOT NULL AND precio_centavos IS NULL;
+ALTER TABLE productos ENABLE TRIGGER trg_productos_version;
+ALTER TABLE productos ENABLE TRIGGER trg_productos_cambios;
+
+-- Rangos de precio y keyset ordenando por precio, ahora sobre la columna entera (reemplaza al de V3)
+CREATE INDEX IF NOT EXISTS idx_productos_precio_centavos_id ON productos (precio_centavos, id);
+DROP INDEX IF EXISTS idx_productos_precio_id;
@@ -0,0 +1,4 @@
+-- El registro de cambios se lee en orden (txid, seq) hasta el xmin del snapshot (ver
+-- CambioProductoRepository): una seq se toma al escribir, no al confirmar, así que recorrerlo
+-- por seq puede saltarse la de una transacción que todavía estaba abierta.
+CREATE INDEX IF NOT EXISTS idx_productos_cambios_txid_seq ON productos_cambios (txid, seq);
@@ -0,0 +1,23 @@
+package com.example.ms_productos;
+
+import reactor.blockhound.BlockHound;
+import reactor.blockhound.integration.BlockHoundIntegration;
+
+/**
+ * Lo único que BlockHound deja bloquear en los hilos de Reactor/Netty durante los tests
+ * (se registra en META-INF/services; blockhound-junit-platform lo instala antes del primer test).
+ * Sólo cargas que ocurren una vez por JVM y luego quedan en memoria, como la carga de clases,
+ * y lecturas que el sistema operativo nunca hace esperar.
+ */
+public class BloqueosPermitidos implements BlockHoundIntegration {
+
+    @Override
+    public void applyTo(BlockHound.Builder builder) {
+        // Hibernate Validator lee sus ValidationMessages de un jar con el primer error de validación;
+        // el JDK guarda el ResourceBundle (WebFlux siempre usa el locale por defecto)
+        builder.allowBlockingCallsInside("org.hibernate.validator.resourceloading.PlatformResourceBundleLocator",
+                "loadBundle");
+        // SecureRandom (UUID.randomUUID, boundary de multipart) lee /dev/urandom, que no bloquea
+        builder.allowBlockingCallsInside("java.security.SecureRandom", "nextBytes");
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.ms_productos;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ClavesJwksTest {
+
+    private static final Duration REFRESCO = Duration.ofMinutes(5);
+
+    private RSAKey clave1;
+    private RSAKey clave2;
+
+    // Cada carga toma la siguiente respuesta de la cola
+    private final Deque<Mono<JWKSet>> respuestas = new ArrayDeque<>();
+    private final AtomicInteger cargas = new AtomicInteger();
+    private final AtomicLong reloj = new AtomicLong();
+    private ClavesJwks claves;
+
+    @BeforeEach
+    void setUp() throws JOSEException {
+        clave1 = new RSAKeyGenerator(2048).keyID("k1").generate();
+        clave2 = new RSAKeyGenerator(2048).keyID("k2").generate();
+        claves = new ClavesJwks(() -> {
+            cargas.incrementAndGet();
+            return respuestas.pop();
+        }, REFRESCO, reloj::get);
+    }
+
+    private static SignedJWT firmado(RSAKey clave) throws JOSEException {
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(clave.getKeyID()).build(),
+                new JWTClaimsSet.Builder().subject("cliente").build());
+        jwt.sign(new RSASSASigner(clave));
+        return jwt;
+    }
+
+    private static JWKSet publicas(RSAKey... claves) {
+        return new JWKSet(Arrays.stream(claves).map(k -> (JWK) k.toPublicJWK()).toList());
+    }
+
+    @Test
+    void testClaves_PrimeraCargaYLuegoDesdeMemoria() throws JOSEException {
+        respuestas.add(Mono.just(publicas(clave1)));
+
+        StepVerifier.create(claves.claves(firmado(clave1)))
+                .expectNextMatches(k -> "k1".equals(k.getKeyID()))
+                .verifyComplete();
+        StepVerifier.create(claves.claves(firmado(clave1))).expectNextCount(1).verifyComplete();
+
+        assertEquals(1, cargas.get());
+    }
+
+    @Test
+    void testClaves_VencidasSeSirvenMientrasSeRefrescan() throws JOSEException {
+        respuestas.add(Mono.just(publicas(clave1)));
+        claves.claves(firmado(clave1)).blockLast();
+
+        // El emisor no responde: se siguen usando las claves anteriores
+        reloj.addAndGet(REFRESCO.toNanos() + 1);
+        respuestas.add(Mono.error(new IllegalStateException("emisor caído")));
+        StepVerifier.create(claves.claves(firmado(clave1)))
+                .expectNextMatches(k -> "k1".equals(k.getKeyID()))
+                .verifyComplete();
+        assertEquals(2, cargas.get());
+
+        // Vuelve el emisor: el siguiente uso refresca en segundo plano
+        respuestas.add(Mono.just(publicas(clave1, clave2)));
+        claves.claves(firmado(clave1)).blockLast();
+        StepVerifier.create(claves.claves(firmado(clave2))).expectNextCount(1).verifyComplete();
+        assertEquals(3, cargas.get());
+    }
+
+    @Test
+    void testClaves_KidDesconocidoFuerzaUnaRecarga() throws JOSEException {
+        respuestas.add(Mono.just(publicas(clave1)));
+        claves.claves(firmado(clave1)).blockLast();
+
+        // El emisor rotó a k2
+        respuestas.add(Mono.just(publicas(clave1, clave2)));
+        StepVerifier.create(claves.claves(firmado(clave2)))
+                .expectNextMatches(k -> "k2".equals(k.getKeyID()))
+                .verifyComplete();
+
+        // Un kid que nadie conoce no dispara recargas en cada petición
+        RSAKey ajena = new RSAKeyGenerator(2048).keyID("k3").generate();
+        StepVerifier.create(claves.claves(firmado(ajena))).verifyComplete();
+        assertEquals(2, cargas.get());
+    }
+
+    @Test
+    void testDesdeArchivo(@TempDir Path directorio) throws Exception {
+        Path archivo = Files.writeString(directorio.resolve("jwks.json"), publicas(clave1).toString());
+
+        StepVerifier.create(ClavesJwks.desdeArchivo(archivo, REFRESCO, Schedulers.boundedElastic()).claves(firmado(clave1)))
+                .expectNextMatches(k -> "k1".equals(k.getKeyID()))
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.ms_productos;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JwtCacheadoTest {
+
+    private static final Instant AHORA = Instant.parse("2026-01-01T10:00:00Z");
+
+    @Mock
+    private ReactiveJwtDecoder delegado;
+
+    private JwtCacheado cacheado;
+
+    @BeforeEach
+    void setUp() {
+        cacheado = new JwtCacheado(delegado, new SimpleMeterRegistry(), 100, Clock.fixed(AHORA, ZoneOffset.UTC));
+    }
+
+    private static Jwt jwt(Instant exp) {
+        return Jwt.withTokenValue("t").header("alg", "RS256").subject("cliente")
+                .issuedAt(AHORA.minusSeconds(60)).expiresAt(exp).build();
+    }
+
+    @Test
+    void testDecode_ElMismoTokenSeVerificaUnaVez() {
+        Jwt valido = jwt(AHORA.plusSeconds(300));
+        when(delegado.decode("token-a")).thenReturn(Mono.just(valido));
+
+        StepVerifier.create(cacheado.decode("token-a")).expectNext(valido).verifyComplete();
+        StepVerifier.create(cacheado.decode("token-a")).expectNext(valido).verifyComplete();
+
+        verify(delegado, times(1)).decode("token-a");
+    }
+
+    @Test
+    void testDecode_TokensRechazadosNoSeGuardan() {
+        when(delegado.decode("malo")).thenReturn(Mono.error(new BadJwtException("firma inválida")));
+
+        StepVerifier.create(cacheado.decode("malo")).verifyError(BadJwtException.class);
+        StepVerifier.create(cacheado.decode("malo")).verifyError(BadJwtException.class);
+
+        verify(delegado, times(2)).decode("malo");
+    }
+
+    @Test
+    void testDecode_YaVencidoNoQuedaEnCache() {
+        // El decodificador real lo rechazaría; aquí comprobamos que la cache no lo conserva
+        Jwt vencido = jwt(AHORA.minusSeconds(1));
+        when(delegado.decode("viejo")).thenReturn(Mono.just(vencido));
+
+        cacheado.decode("viejo").block();
+        cacheado.decode("viejo").block();
+
+        verify(delegado, times(2)).decode("viejo");
+    }
+}
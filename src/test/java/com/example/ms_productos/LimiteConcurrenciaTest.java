@@ -0,0 +1,88 @@
+package com.example.ms_productos;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LimiteConcurrenciaTest {
+
+    private static final long RAPIDA = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long LENTA = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // Ocupa todo el límite y libera cada petición con la latencia dada
+    private static void ronda(LimiteConcurrencia limite, long rtt) {
+        int admitidas = 0;
+        while (limite.adquirir()) {
+            admitidas++;
+        }
+        for (int i = 0; i < admitidas; i++) {
+            limite.liberar(rtt);
+        }
+    }
+
+    @Test
+    void testAdquirir_RechazaAlLlegarAlLimite() {
+        LimiteConcurrencia limite = new LimiteConcurrencia(2, 1, 10);
+
+        assertTrue(limite.adquirir());
+        assertTrue(limite.adquirir());
+        assertFalse(limite.adquirir());
+        assertEquals(2, limite.getEnVuelo());
+
+        limite.ignorar();
+        assertTrue(limite.adquirir());
+    }
+
+    @Test
+    void testLatenciaEstable_ElLimiteCrece() {
+        LimiteConcurrencia limite = new LimiteConcurrencia(10, 4, 100);
+
+        for (int i = 0; i < 20; i++) {
+            ronda(limite, RAPIDA);
+        }
+
+        assertTrue(limite.getLimite() > 10, "límite: " + limite.getLimite());
+        assertEquals(0, limite.getEnVuelo());
+    }
+
+    @Test
+    void testLatenciaEnAumento_ElLimiteBaja() {
+        LimiteConcurrencia limite = new LimiteConcurrencia(50, 4, 100);
+        for (int i = 0; i < 5; i++) {
+            ronda(limite, RAPIDA);
+        }
+        int antes = limite.getLimite();
+
+        for (int i = 0; i < 5; i++) {
+            ronda(limite, LENTA);
+        }
+
+        assertTrue(limite.getLimite() < antes, "antes: " + antes + ", después: " + limite.getLimite());
+        assertTrue(limite.getLimite() >= 4);
+    }
+
+    @Test
+    void testPocaCarga_ElLimiteNoCambia() {
+        LimiteConcurrencia limite = new LimiteConcurrencia(20, 4, 100);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limite.adquirir());
+            limite.liberar(i % 2 == 0 ? RAPIDA : LENTA);
+        }
+
+        assertEquals(20, limite.getLimite());
+    }
+
+    @Test
+    void testSaturado_RecortaElLimite() {
+        LimiteConcurrencia limite = new LimiteConcurrencia(20, 4, 100);
+
+        assertTrue(limite.adquirir());
+        limite.saturado();
+
+        assertEquals(18, limite.getLimite());
+        assertEquals(0, limite.getEnVuelo());
+    }
+}
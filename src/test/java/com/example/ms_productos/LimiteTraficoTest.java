@@ -0,0 +1,134 @@
+package com.example.ms_productos;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LimiteTraficoTest {
+
+    private SimpleMeterRegistry registry;
+    private LimiteTrafico filtro;
+    private final AtomicInteger atendidas = new AtomicInteger();
+    private final WebFilterChain cadena = exchange -> Mono.fromRunnable(atendidas::incrementAndGet);
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        // Escritura: 2 por cliente sin reponer en el test (tasa mínima); stock: concurrencia 1
+        filtro = new LimiteTrafico(Map.of(
+                LimiteTrafico.Grupo.ESCRITURA, new LimiteTrafico.Limites(0.001, 2, 20, 4, 64),
+                LimiteTrafico.Grupo.STOCK, new LimiteTrafico.Limites(100, 100, 1, 1, 1)), 1000, registry);
+    }
+
+    private static MockServerWebExchange exchange(MockServerHttpRequest.BaseBuilder<?> request, String sujeto) {
+        return MockServerWebExchange.builder(request)
+                .principal(new TestingAuthenticationToken(sujeto, null))
+                .build();
+    }
+
+    private static MockServerWebExchange post(String sujeto) {
+        return exchange(MockServerHttpRequest.post("/api/productos"), sujeto);
+    }
+
+    private double rechazos(String grupo, String motivo) {
+        return registry.get(LimiteTrafico.METRICA_RECHAZOS).tags("grupo", grupo, "motivo", motivo).counter().count();
+    }
+
+    @Test
+    void testTasa_SuperadaEs429ConRetryAfterSoloParaEseCliente() {
+        StepVerifier.create(filtro.filter(post("a"), cadena)).verifyComplete();
+        StepVerifier.create(filtro.filter(post("a"), cadena)).verifyComplete();
+
+        MockServerWebExchange rechazada = post("a");
+        StepVerifier.create(filtro.filter(rechazada, cadena)).verifyComplete();
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, rechazada.getResponse().getStatusCode());
+        assertNotNull(rechazada.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertTrue(Long.parseLong(rechazada.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER)) >= 1);
+
+        // Otro cliente, y el mismo cliente en otro grupo, siguen pasando
+        StepVerifier.create(filtro.filter(post("b"), cadena)).verifyComplete();
+        StepVerifier.create(filtro.filter(exchange(MockServerHttpRequest.get("/api/productos/1"), "a"), cadena))
+                .verifyComplete();
+
+        assertEquals(4, atendidas.get());
+        assertEquals(1, rechazos("escritura", "tasa"));
+    }
+
+    @Test
+    void testConcurrencia_AgotadaEs503HastaQueTermine() {
+        Sinks.Empty<Void> enCurso = Sinks.empty();
+        AtomicInteger terminadas = new AtomicInteger();
+        // La primera ocupa el único lugar mientras no termine
+        filtro.filter(exchange(MockServerHttpRequest.put("/api/productos/1/stock"), "a"), exchange -> enCurso.asMono())
+                .subscribe(null, null, terminadas::incrementAndGet);
+
+        MockServerWebExchange rechazada = exchange(MockServerHttpRequest.put("/api/productos/1/stock"), "b");
+        StepVerifier.create(filtro.filter(rechazada, cadena)).verifyComplete();
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rechazada.getResponse().getStatusCode());
+        assertEquals(LimiteTrafico.REINTENTAR_EN_SEGUNDOS, rechazada.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(1, rechazos("stock", "concurrencia"));
+        assertEquals(0, atendidas.get());
+
+        enCurso.tryEmitEmpty();
+        assertEquals(1, terminadas.get());
+        assertEquals(0, registry.get(LimiteTrafico.METRICA_CONCURRENCIA)
+                .tags("grupo", "stock", "valor", "en_vuelo").gauge().value());
+        MockServerWebExchange despues = exchange(MockServerHttpRequest.put("/api/productos/1/stock"), "b");
+        StepVerifier.create(filtro.filter(despues, cadena)).verifyComplete();
+        assertNull(despues.getResponse().getStatusCode());
+        assertEquals(1, atendidas.get());
+    }
+
+    @Test
+    void testSinSujeto_CuentaComoAnonimo() {
+        StepVerifier.create(filtro.filter(MockServerWebExchange.from(MockServerHttpRequest.post("/api/productos")), cadena))
+                .verifyComplete();
+        StepVerifier.create(filtro.filter(MockServerWebExchange.from(MockServerHttpRequest.post("/api/productos")), cadena))
+                .verifyComplete();
+        MockServerWebExchange rechazada = MockServerWebExchange.from(MockServerHttpRequest.post("/api/productos"));
+        StepVerifier.create(filtro.filter(rechazada, cadena)).verifyComplete();
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, rechazada.getResponse().getStatusCode());
+    }
+
+    @Test
+    void testFueraDeLaApi_NoSeLimita() {
+        for (int i = 0; i < 5; i++) {
+            StepVerifier.create(filtro.filter(exchange(MockServerHttpRequest.post("/actuator/refresh"), "a"), cadena))
+                    .verifyComplete();
+        }
+        assertEquals(5, atendidas.get());
+    }
+
+    @Test
+    void testGrupos() {
+        assertEquals(LimiteTrafico.Grupo.LECTURA, LimiteTrafico.Grupo.de(MockServerHttpRequest.get("/api/productos").build()));
+        assertEquals(LimiteTrafico.Grupo.LECTURA, LimiteTrafico.Grupo.de(MockServerHttpRequest.post("/api/productos/ids").build()));
+        assertEquals(LimiteTrafico.Grupo.STREAM, LimiteTrafico.Grupo.de(MockServerHttpRequest.get("/api/productos")
+                .accept(MediaType.APPLICATION_NDJSON).build()));
+        assertEquals(LimiteTrafico.Grupo.STREAM, LimiteTrafico.Grupo.de(MockServerHttpRequest.get("/api/productos/changes/stream").build()));
+        assertEquals(LimiteTrafico.Grupo.STREAM, LimiteTrafico.Grupo.de(MockServerHttpRequest.get("/api/productos/bajo-stock/alertas").build()));
+        assertEquals(LimiteTrafico.Grupo.STOCK, LimiteTrafico.Grupo.de(MockServerHttpRequest.put("/api/productos/1/stock").build()));
+        assertEquals(LimiteTrafico.Grupo.STOCK, LimiteTrafico.Grupo.de(MockServerHttpRequest.post("/api/productos/1/reservas").build()));
+        assertEquals(LimiteTrafico.Grupo.ESCRITURA, LimiteTrafico.Grupo.de(MockServerHttpRequest.post("/api/productos/batch").build()));
+        assertEquals(LimiteTrafico.Grupo.STREAM, LimiteTrafico.Grupo.de(MockServerHttpRequest.post("/api/productos/import").build()));
+        assertEquals(LimiteTrafico.Grupo.LECTURA, LimiteTrafico.Grupo.de(MockServerHttpRequest.get("/api/productos/import/abc").build()));
+        assertEquals(LimiteTrafico.Grupo.STREAM, LimiteTrafico.Grupo.de(MockServerHttpRequest.get("/api/productos/export").build()));
+        assertEquals(LimiteTrafico.Grupo.ESCRITURA, LimiteTrafico.Grupo.de(MockServerHttpRequest.delete("/api/productos/1").build()));
+        assertNull(LimiteTrafico.Grupo.de(MockServerHttpRequest.get("/actuator/health").build()));
+    }
+}
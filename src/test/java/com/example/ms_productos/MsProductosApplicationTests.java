@@ -1,9 +1,10 @@
 package com.example.ms_productos;
 
+import com.example.ms_productos.repository.CambioProductoRepository;
 import com.example.ms_productos.repository.ProductoRepository;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
 
 // ¡Ya NO necesitamos las propiedades de 'exclude' o 'properties' aquí!
 // El 'application.yml' de test se encargará de apagar todo.
@@ -13,9 +14,12 @@ class MsProductosApplicationTests {
     // Solo necesitamos el mock del repo,
     // porque la auto-configuración de la BD (que apagaremos en el YML)
     // lo requiere para arrancar.
-    @MockBean
+    @MockitoBean
     private ProductoRepository productoRepository;
 
+    @MockitoBean
+    private CambioProductoRepository cambioProductoRepository;
+
     @Test
     void contextLoads() {
     }
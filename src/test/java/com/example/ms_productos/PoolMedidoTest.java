@@ -0,0 +1,77 @@
+package com.example.ms_productos;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.R2dbcTimeoutException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.pool.PoolAcquirePendingLimitException;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PoolMedidoTest {
+
+    @Mock
+    private ConnectionFactory pool;
+
+    @Mock
+    private Connection conexion;
+
+    private SimpleMeterRegistry registry;
+    private PoolMedido medido;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        medido = new PoolMedido(pool, registry);
+    }
+
+    private long esperas(String resultado) {
+        return registry.get(PoolMedido.METRICA_ACQUIRE).tag("resultado", resultado).timer().count();
+    }
+
+    @Test
+    void testCreate_MideLaEspera() {
+        doReturn(Mono.just(conexion)).when(pool).create();
+
+        StepVerifier.create(medido.create()).expectNext(conexion).verifyComplete();
+        assertEquals(1, esperas("ok"));
+    }
+
+    @Test
+    void testCreate_ColaLlenaEsPoolSaturado() {
+        doReturn(Mono.error(new PoolAcquirePendingLimitException(64))).when(pool).create();
+
+        StepVerifier.create(medido.create()).verifyError(PoolSaturadoException.class);
+        assertEquals(1, esperas("saturado"));
+    }
+
+    @Test
+    void testCreate_EsperaAgotadaEsPoolSaturado() {
+        doReturn(Mono.error(new R2dbcTimeoutException("Connection acquisition timed out"))).when(pool).create();
+
+        StepVerifier.create(medido.create()).verifyError(PoolSaturadoException.class);
+    }
+
+    @Test
+    void testCreate_OtrosErroresPasanIgual() {
+        doReturn(Mono.error(new IllegalStateException("sin red"))).when(pool).create();
+
+        StepVerifier.create(medido.create()).verifyError(IllegalStateException.class);
+        assertEquals(1, esperas("error"));
+    }
+
+    @Test
+    void testTamanioPorDefecto() {
+        assertEquals(4, R2dbcPoolConfig.tamanioPorDefecto(1));
+        assertEquals(16, R2dbcPoolConfig.tamanioPorDefecto(8));
+    }
+}
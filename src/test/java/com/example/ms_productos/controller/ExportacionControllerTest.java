@@ -0,0 +1,85 @@
+package com.example.ms_productos.controller;
+
+import com.example.ms_productos.model.Precio;
+import com.example.ms_productos.model.Producto;
+import com.example.ms_productos.service.ExportadorCatalogo;
+import com.example.ms_productos.service.ProductoService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.reactive.server.SecurityMockServerConfigurers.mockJwt;
+
+// El controller con el ExportadorCatalogo real: sólo el servicio es un mock
+@WebFluxTest(ExportacionController.class)
+@Import(ExportadorCatalogo.class)
+class ExportacionControllerTest {
+
+    @Autowired
+    private WebTestClient webClient;
+
+    @MockitoBean
+    private ProductoService productoService;
+
+    @MockitoBean
+    private ReactiveJwtDecoder jwtDecoder;
+
+    @BeforeEach
+    void setUp() {
+        when(productoService.streamAll(anyInt())).thenAnswer(invocacion -> Flux.just(
+                new Producto(1L, "Mesa", "Roble", Precio.valueOf("120.0"), 4, true, null, null, 0L),
+                new Producto(2L, "Silla", null, Precio.valueOf("35.5"), 10, false, null, null, 0L)));
+    }
+
+    @Test
+    void testExportarCsv_ComoDescarga() {
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos/export?format=csv")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("text/csv;charset=UTF-8")
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"productos.csv\"")
+                .expectBody(String.class)
+                .isEqualTo("id,nombre,descripcion,precio,stock,activo\n1,Mesa,Roble,120.00,4,true\n2,Silla,,35.50,10,false\n");
+    }
+
+    @Test
+    void testExportarNdjsonGzip() throws IOException {
+        byte[] cuerpo = webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos/export?format=ndjson&gzip=true")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.parseMediaType("application/gzip"))
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"productos.ndjson.gz\"")
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+
+        String ndjson = new String(new GZIPInputStream(new ByteArrayInputStream(cuerpo)).readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals(2, ndjson.split("\n").length);
+    }
+
+    @Test
+    void testExportar_FormatoDesconocidoEs400() {
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos/export?format=xlsx")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+}
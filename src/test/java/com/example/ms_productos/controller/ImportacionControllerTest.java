@@ -0,0 +1,173 @@
+package com.example.ms_productos.controller;
+
+import com.example.ms_productos.model.EstadoImportacion;
+import com.example.ms_productos.model.Producto;
+import com.example.ms_productos.model.ResultadoLote;
+import com.example.ms_productos.service.ImportadorCatalogo;
+import com.example.ms_productos.service.ProductoService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.reactive.server.SecurityMockServerConfigurers.csrf;
+import static org.springframework.security.test.web.reactive.server.SecurityMockServerConfigurers.mockJwt;
+
+// El controller con el ImportadorCatalogo real: sólo el servicio es un mock
+@WebFluxTest(ImportacionController.class)
+@Import(ImportadorCatalogo.class)
+class ImportacionControllerTest {
+
+    @Autowired
+    private WebTestClient webClient;
+
+    @MockitoBean
+    private ProductoService productoService;
+
+    @MockitoBean
+    private ReactiveJwtDecoder jwtDecoder;
+
+    @BeforeEach
+    void setUp() {
+        when(productoService.saveBatch(any())).thenAnswer(invocacion -> {
+            Flux<Producto> productos = invocacion.getArgument(0);
+            return productos.index().map(item -> item.getT2().getId() == null
+                    ? new ResultadoLote(item.getT1(), 10L + item.getT1(), ResultadoLote.Estado.CREADO, null)
+                    : new ResultadoLote(item.getT1(), item.getT2().getId(), ResultadoLote.Estado.ACTUALIZADO, null));
+        });
+    }
+
+    private static MultipartBodyBuilder archivo(String contenido, String nombre, MediaType tipo) {
+        MultipartBodyBuilder partes = new MultipartBodyBuilder();
+        partes.part("descripcion", "catálogo de prueba");
+        partes.part(ImportacionController.PARTE_ARCHIVO, new ByteArrayResource(contenido.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public String getFilename() {
+                return nombre;
+            }
+        }).contentType(tipo);
+        return partes;
+    }
+
+    private WebTestClient.ResponseSpec importar(MultipartBodyBuilder partes) {
+        return webClient.mutateWith(mockJwt()).mutateWith(csrf())
+                .post().uri("/api/productos/import")
+                .body(BodyInserters.fromMultipartData(partes.build()))
+                .exchange();
+    }
+
+    private WebTestClient.ResponseSpec importarConId(MultipartBodyBuilder partes, String id) {
+        return webClient.mutateWith(mockJwt()).mutateWith(csrf())
+                .post().uri("/api/productos/import")
+                .header(ImportacionController.CABECERA_ID, id)
+                .body(BodyInserters.fromMultipartData(partes.build()))
+                .exchange();
+    }
+
+    @Test
+    void testImportarCsv_CreadoConLocationYEstado() {
+        String csv = "id,nombre,precio\n,Mesa,10\n3,Silla,5\n,Lámpara,-\n";
+
+        EstadoImportacion estado = importar(archivo(csv, "catalogo.csv", MediaType.parseMediaType("text/csv")))
+                .expectStatus().isCreated()
+                .expectBody(EstadoImportacion.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertNotNull(estado);
+        assertEquals(EstadoImportacion.Estado.COMPLETADA, estado.getEstado());
+        assertEquals(3, estado.getFilas());
+        assertEquals(1, estado.getCreados());
+        assertEquals(1, estado.getActualizados());
+        assertEquals(1, estado.getErrores());
+        assertEquals(4, estado.getDetalleErrores().get(0).getLinea());
+
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos/import/" + estado.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(estado.getId())
+                .jsonPath("$.estado").isEqualTo("COMPLETADA");
+
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos/import")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].id").isEqualTo(estado.getId());
+    }
+
+    @Test
+    void testImportarNdjson_PorExtension() {
+        importar(archivo("{\"nombre\":\"Mesa\"}\n{\"id\":4,\"nombre\":\"Silla\"}\n", "catalogo.ndjson",
+                MediaType.APPLICATION_OCTET_STREAM))
+                .expectStatus().isCreated()
+                .expectHeader().value(HttpHeaders.LOCATION, location -> assertEquals(0, location.indexOf("/api/productos/import/")))
+                .expectBody()
+                .jsonPath("$.formato").isEqualTo("NDJSON")
+                .jsonPath("$.creados").isEqualTo(1)
+                .jsonPath("$.actualizados").isEqualTo(1);
+    }
+
+    // Con X-Importacion-Id el cliente conoce el id antes de subir el archivo
+    @Test
+    void testImportar_ConIdDelCliente() {
+        String csv = "nombre\nMesa\n";
+        importarConId(archivo(csv, "catalogo.csv", MediaType.parseMediaType("text/csv")), "catalogo-marzo")
+                .expectStatus().isCreated()
+                .expectHeader().valueEquals(HttpHeaders.LOCATION, "/api/productos/import/catalogo-marzo")
+                .expectBody()
+                .jsonPath("$.id").isEqualTo("catalogo-marzo");
+
+        // Repetido: 409; con caracteres que no van en una URL: 400
+        importarConId(archivo(csv, "catalogo.csv", MediaType.parseMediaType("text/csv")), "catalogo-marzo")
+                .expectStatus().isEqualTo(409);
+        importarConId(archivo(csv, "catalogo.csv", MediaType.parseMediaType("text/csv")), "../otro")
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void testImportar_CabeceraInvalidaEs400() {
+        importar(archivo("nombre,color\nMesa,rojo\n", "catalogo.csv", MediaType.parseMediaType("text/csv")))
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void testImportar_FormatoDesconocidoEs415() {
+        importar(archivo("%PDF", "catalogo.pdf", MediaType.APPLICATION_PDF))
+                .expectStatus().isEqualTo(415);
+    }
+
+    @Test
+    void testImportar_SinArchivoEs400() {
+        MultipartBodyBuilder partes = new MultipartBodyBuilder();
+        partes.part("descripcion", "sin archivo");
+
+        importar(partes).expectStatus().isBadRequest();
+    }
+
+    @Test
+    void testGetImportacion_NoExisteEs404() {
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos/import/no-existe")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+}
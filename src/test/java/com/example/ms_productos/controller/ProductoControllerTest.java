@@ -1,17 +1,41 @@
 package com.example.ms_productos.controller;
 
 // Imports de tus clases
+import com.example.ms_productos.CodecsConfig;
+import com.example.ms_productos.PoolSaturadoException;
+import com.example.ms_productos.model.AlertaStock;
+import com.example.ms_productos.model.CambioProducto;
+import com.example.ms_productos.model.CampoProducto;
+import com.example.ms_productos.model.FiltroProductos;
+import com.example.ms_productos.model.Precio;
 import com.example.ms_productos.model.Producto;
+import com.example.ms_productos.model.ProductosPorId;
+import com.example.ms_productos.model.Reserva;
+import com.example.ms_productos.model.ResultadoLote;
+import com.example.ms_productos.model.VersionProducto;
+import com.example.ms_productos.service.ConflictoVersionException;
 import com.example.ms_productos.service.ProductoService;
+import com.example.ms_productos.service.StockInsuficienteException;
 
 // --- Imports de PRUEBA WEB ---
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.data.domain.Sort;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import com.fasterxml.jackson.core.type.TypeReference;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import static org.springframework.security.test.web.reactive.server.SecurityMockServerConfigurers.csrf;
 
@@ -21,9 +45,17 @@ import reactor.core.publisher.Mono;
 
 import static org.springframework.security.test.web.reactive.server.SecurityMockServerConfigurers.mockJwt;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 // Imports estáticos
 import static org.mockito.Mockito.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 // 1. Le decimos que SÓLO pruebe esta clase controladora
 @WebFluxTest(ProductoController.class)
@@ -52,14 +84,13 @@ class ProductoControllerTest {
         mockProducto.setId(1L);
         mockProducto.setNombre("Teclado");
 
-        // Mock: "Cuando el controlador llame a productoService.findAll(),
+        // Mock: "Cuando el controlador pida la primera página (límite por defecto + 1),
         //       devuelve nuestro productoMock"
-        when(productoService.findAll()).thenReturn(Flux.just(mockProducto));
+        when(productoService.findPage(null, 101)).thenReturn(Flux.just(mockProducto));
 
         // --- 2. Ejecución (Act) ---
 
         // Hacemos una petición GET falsa a "/api/productos"
-        // (¡Asumo que tu endpoint es "/api/productos"!)
         webClient.mutateWith(mockJwt()) // <-- ¡Inyectamos un token falso!
                 .get().uri("/api/productos")
                 .accept(MediaType.APPLICATION_JSON)
@@ -69,14 +100,296 @@ class ProductoControllerTest {
 
                 // Esperamos que el estado sea 200 OK
                 .expectStatus().isOk()
+                // Es la última página: no hay cursor siguiente
+                .expectHeader().doesNotExist(CursorPaginacion.CABECERA)
                 // Verificamos que el JSON devuelto tenga el ID 1
                 .expectBody()
                 .jsonPath("$[0].id").isEqualTo(1)
                 .jsonPath("$[0].nombre").isEqualTo("Teclado");
 
         // Verificamos que el controlador SÍ llamó al servicio
-        verify(productoService, times(1)).findAll();
+        verify(productoService, times(1)).findPage(null, 101);
     }
+
+    // --- GET /api/productos con cursor: hay página siguiente ---
+    @Test
+    void testGetProductos_ConCursorSiguiente() {
+        // --- 1. Preparación (Arrange) ---
+        Producto p3 = new Producto();
+        p3.setId(3L);
+        Producto p4 = new Producto();
+        p4.setId(4L);
+        Producto p5 = new Producto();
+        p5.setId(5L);
+
+        // Pedimos limit=2 después del id 2: el servicio devuelve 3 (uno de más)
+        when(productoService.findPage(2L, 3)).thenReturn(Flux.just(p3, p4, p5));
+
+        // --- 2. Ejecución (Act) ---
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos?limit=2&after={cursor}", CursorPaginacion.codificar(2L))
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+
+                // --- 3. Verificación (Assert) ---
+                .expectStatus().isOk()
+                // El cursor apunta al último producto entregado (id 4)
+                .expectHeader().valueEquals(CursorPaginacion.CABECERA, CursorPaginacion.codificar(4L))
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[1].id").isEqualTo(4);
+    }
+
+    // --- Camino Triste: cursor mal formado ---
+    @Test
+    void testGetProductos_CursorInvalido() {
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos?after=no-es-un-cursor")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isBadRequest(); // <-- ¡Esperamos un 400!
+
+        verify(productoService, never()).findPage(any(), anyInt());
+    }
+
+    // --- GET /api/productos?fields=: sólo los campos pedidos ---
+    @Test
+    void testGetProductos_ConCampos() {
+        // --- 1. Preparación (Arrange) ---
+        Producto p1 = new Producto();
+        p1.setId(1L);
+        p1.setNombre("Teclado");
+        p1.setPrecio(Precio.valueOf("25.0"));
+        p1.setVersion(3L);
+        Set<CampoProducto> campos = Set.of(CampoProducto.ID, CampoProducto.NOMBRE, CampoProducto.PRECIO);
+        when(productoService.findPage(null, 101, campos)).thenReturn(Flux.just(p1));
+
+        // --- 2. Ejecución (Act) ---
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos?fields=id,nombre,precio")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+
+                // --- 3. Verificación (Assert) ---
+                .expectStatus().isOk()
+                // La página proyectada no comparte ETag con la completa
+                .expectHeader().value(HttpHeaders.ETAG,
+                        etag -> assertNotEquals(ProductoController.etagPagina(List.of(p1), null), etag))
+                .expectBody()
+                .jsonPath("$[0].nombre").isEqualTo("Teclado")
+                .jsonPath("$[0].precio").isEqualTo(25.0)
+                // Lo que no se pidió no se serializa (ni siquiera como null)
+                .jsonPath("$[0].version").doesNotExist()
+                .jsonPath("$[0].descripcion").doesNotExist();
+
+        verify(productoService, never()).findPage(any(), anyInt());
+    }
+
+    // --- Camino Triste: campo desconocido -> 400 ---
+    @Test
+    void testGetProductos_CampoDesconocido() {
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos?fields=id,clave")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verifyNoInteractions(productoService);
+    }
+
+    // --- GET /api/productos en streaming (NDJSON) ---
+    @Test
+    void testStreamProductos() {
+        // --- 1. Preparación (Arrange) ---
+        Producto p1 = new Producto();
+        p1.setId(1L);
+        Producto p2 = new Producto();
+        p2.setId(2L);
+        when(productoService.streamAll(anyInt())).thenReturn(Flux.just(p1, p2));
+
+        // --- 2. Ejecución (Act) ---
+        Flux<Producto> resultado = webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+
+                // --- 3. Verificación (Assert) ---
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(Producto.class)
+                .getResponseBody();
+
+        StepVerifier.create(resultado)
+                .expectNextMatches(p -> p.getId() == 1L)
+                .expectNextMatches(p -> p.getId() == 2L)
+                .verifyComplete();
+    }
+
+    // --- GET /api/productos en Smile: la misma página, negociada con Accept ---
+    @Test
+    void testGetProductos_Smile() throws Exception {
+        // --- 1. Preparación (Arrange) ---
+        Producto p1 = new Producto();
+        p1.setId(1L);
+        p1.setNombre("Teclado");
+        p1.setFechaActualizacion(Instant.parse("2024-02-01T08:00:00Z"));
+        when(productoService.findPage(null, 101)).thenReturn(Flux.just(p1));
+
+        // --- 2. Ejecución (Act) ---
+        byte[] cuerpo = webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos")
+                .accept(MediaType.parseMediaType(CodecsConfig.SMILE))
+                .exchange()
+
+                // --- 3. Verificación (Assert) ---
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(CodecsConfig.SMILE)
+                // El ETag es el mismo en todos los formatos: Vary le dice a las caches que los separen
+                .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .expectBody(byte[].class)
+                .returnResult().getResponseBody();
+
+        List<Producto> productos = Jackson2ObjectMapperBuilder.smile().build()
+                .readValue(cuerpo, new TypeReference<List<Producto>>() { });
+        assertEquals(List.of(p1), productos);
+    }
+
+    // --- Sin Accept (*/*) se sigue respondiendo JSON ---
+    @Test
+    void testGetProductos_SinAcceptEsJson() {
+        when(productoService.findPage(null, 101)).thenReturn(Flux.empty());
+
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON);
+    }
+
+    // --- GET /api/productos en streaming Smile ---
+    @Test
+    void testStreamProductos_Smile() {
+        Producto p1 = new Producto();
+        p1.setId(1L);
+        Producto p2 = new Producto();
+        p2.setId(2L);
+        when(productoService.streamAll(anyInt())).thenReturn(Flux.just(p1, p2));
+
+        Flux<Producto> resultado = webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos")
+                .accept(MediaType.parseMediaType(CodecsConfig.SMILE_STREAM))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(CodecsConfig.SMILE_STREAM)
+                .returnResult(Producto.class)
+                .getResponseBody();
+
+        StepVerifier.create(resultado)
+                .expectNextMatches(p -> p.getId() == 1L)
+                .expectNextMatches(p -> p.getId() == 2L)
+                .verifyComplete();
+    }
+
+    // --- GET /api/productos/search ---
+    @Test
+    void testBuscarProductos() {
+        // --- 1. Preparación (Arrange) ---
+        Producto p1 = new Producto();
+        p1.setId(3L);
+        p1.setPrecio(Precio.valueOf("20.0"));
+        Producto p2 = new Producto();
+        p2.setId(8L);
+        p2.setPrecio(Precio.valueOf("15.0"));
+        Producto p3 = new Producto();
+        p3.setId(9L);
+        ArgumentCaptor<FiltroProductos> filtro = ArgumentCaptor.forClass(FiltroProductos.class);
+        when(productoService.buscar(filtro.capture())).thenReturn(Flux.just(p1, p2, p3));
+
+        // --- 2. Ejecución (Act) ---
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos/search?nombre=mon&modo=prefijo&precioMax=50&activo=true&sort=precio,desc&limit=2")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+
+                // --- 3. Verificación (Assert) ---
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(CursorPaginacion.CABECERA,
+                        CursorPaginacion.codificarBusqueda(FiltroProductos.Campo.PRECIO, p2))
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2);
+
+        // Los parámetros llegan como filtro al servicio (con una fila de más para el cursor)
+        FiltroProductos enviado = filtro.getValue();
+        assertEquals("mon", enviado.getNombre());
+        assertEquals(FiltroProductos.ModoNombre.PREFIJO, enviado.getModoNombre());
+        assertEquals(Precio.valueOf("50.00"), enviado.getPrecioMax());
+        assertEquals(true, enviado.getActivo());
+        assertEquals(FiltroProductos.Campo.PRECIO, enviado.getOrden());
+        assertEquals(Sort.Direction.DESC, enviado.getDireccion());
+        assertEquals(3, enviado.getLimit());
+    }
+
+    // --- GET /api/productos/search con el cursor de la página anterior ---
+    @Test
+    void testBuscarProductos_ConCursor() {
+        Producto ultimo = new Producto();
+        ultimo.setId(8L);
+        ultimo.setStock(4);
+        ArgumentCaptor<FiltroProductos> filtro = ArgumentCaptor.forClass(FiltroProductos.class);
+        when(productoService.buscar(filtro.capture())).thenReturn(Flux.empty());
+
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos/search?sort=stock&fields=nombre&after={cursor}",
+                        CursorPaginacion.codificarBusqueda(FiltroProductos.Campo.STOCK, ultimo))
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk();
+
+        assertEquals(8L, filtro.getValue().getDespuesDeId());
+        assertEquals(4, filtro.getValue().getDespuesDeValor());
+        assertEquals(Set.of(CampoProducto.NOMBRE), filtro.getValue().getCampos());
+    }
+
+    // --- Cursor de un producto sin precio (el primero en precio DESC): no es un 400 ---
+    @Test
+    void testBuscarProductos_CursorConPrecioNull() {
+        Producto ultimo = new Producto();
+        ultimo.setId(8L);
+        ArgumentCaptor<FiltroProductos> filtro = ArgumentCaptor.forClass(FiltroProductos.class);
+        when(productoService.buscar(filtro.capture())).thenReturn(Flux.empty());
+
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos/search?sort=precio,desc&after={cursor}",
+                        CursorPaginacion.codificarBusqueda(FiltroProductos.Campo.PRECIO, ultimo))
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk();
+
+        assertEquals(8L, filtro.getValue().getDespuesDeId());
+        assertNull(filtro.getValue().getDespuesDeValor());
+    }
+
+    // --- Camino Triste: orden desconocido o cursor de otro orden -> 400 ---
+    @Test
+    void testBuscarProductos_ParametrosInvalidos() {
+        Producto ultimo = new Producto();
+        ultimo.setId(8L);
+        ultimo.setStock(4);
+
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos/search?sort=descripcion")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos/search?sort=precio&after={cursor}",
+                        CursorPaginacion.codificarBusqueda(FiltroProductos.Campo.STOCK, ultimo))
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verify(productoService, never()).buscar(any());
+    }
+
     @Test
     void testGetProductoById_Success() {
         // --- 1. Preparación (Arrange) ---
@@ -96,6 +409,7 @@ class ProductoControllerTest {
 
                 // --- 3. Verificación (Assert) ---
                 .expectStatus().isOk() // Esperamos un 200 OK
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"0\"") // Sin versión todavía
                 .expectBody()
                 .jsonPath("$.id").isEqualTo(productoId)
                 .jsonPath("$.nombre").isEqualTo("Mouse");
@@ -125,6 +439,152 @@ class ProductoControllerTest {
         // Verificamos que se llamó al servicio
         verify(productoService, times(1)).findById(idNoExistente);
     }
+
+    // --- GET condicional: 304 con sólo los validadores ---
+    @Test
+    void testGetProductoById_IfNoneMatchCoincide304() {
+        // --- 1. Preparación (Arrange) ---
+        Instant fecha = Instant.parse("2026-03-01T12:00:00Z");
+        when(productoService.findVersion(1L)).thenReturn(Mono.just(new VersionProducto(5L, fecha)));
+
+        // --- 2. Ejecución (Act) y 3. Verificación (Assert) ---
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos/{id}", 1L)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"5\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"5\"")
+                .expectBody().isEmpty();
+
+        // No se leyó el producto completo
+        verify(productoService, never()).findById(1L);
+    }
+
+    @Test
+    void testGetProductoById_IfModifiedSince304() {
+        Instant fecha = Instant.parse("2026-03-01T12:00:00Z");
+        when(productoService.findVersion(1L)).thenReturn(Mono.just(new VersionProducto(5L, fecha)));
+
+        HttpHeaders condicion = new HttpHeaders();
+        condicion.setIfModifiedSince(fecha.plusSeconds(60));
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos/{id}", 1L)
+                .headers(h -> h.addAll(condicion))
+                .exchange()
+                .expectStatus().isNotModified();
+
+        verify(productoService, never()).findById(1L);
+    }
+
+    @Test
+    void testGetProductoById_ConVersionNuevaDevuelveElProducto() {
+        // --- 1. Preparación (Arrange) ---
+        Instant fecha = Instant.parse("2026-03-01T12:00:00Z");
+        Producto mockProducto = new Producto();
+        mockProducto.setId(1L);
+        mockProducto.setVersion(6L);
+        mockProducto.setFechaActualizacion(fecha);
+        when(productoService.findVersion(1L)).thenReturn(Mono.just(new VersionProducto(6L, fecha)));
+        when(productoService.findById(1L)).thenReturn(Mono.just(mockProducto));
+
+        // --- 2. Ejecución (Act) y 3. Verificación (Assert) ---
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos/{id}", 1L)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"5\"")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"6\"")
+                .expectHeader().lastModified(fecha.toEpochMilli())
+                .expectBody().jsonPath("$.version").isEqualTo(6);
+    }
+
+    @Test
+    void testGetProductoById_CondicionalNoExiste404() {
+        when(productoService.findVersion(99L)).thenReturn(Mono.empty());
+
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos/{id}", 99L)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"1\"")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    // --- Páginas: ETag por contenido, el mismo If-None-Match da 304 ---
+    @Test
+    void testGetPagina_IfNoneMatch304() {
+        // --- 1. Preparación (Arrange) ---
+        Producto p1 = new Producto();
+        p1.setId(1L);
+        p1.setVersion(2L);
+        when(productoService.findPage(null, 101)).thenReturn(Flux.just(p1));
+
+        // --- 2. Ejecución (Act) ---
+        String etag = webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Producto.class)
+                .getResponseHeaders().getETag();
+
+        // --- 3. Verificación (Assert) ---
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos")
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .exchange()
+                .expectStatus().isNotModified();
+
+        // Si cambia la versión de un producto cambia el ETag
+        p1.setVersion(3L);
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos")
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    // --- Pool de conexiones saturado: 503 con Retry-After ---
+    @Test
+    void testGetProductoById_PoolSaturado() {
+        // --- 1. Preparación (Arrange) ---
+        // Así llega el error: DatabaseClient envuelve el fallo al pedir la conexión
+        when(productoService.findById(1L)).thenReturn(Mono.error(new DataAccessResourceFailureException(
+                "Failed to obtain R2DBC Connection", new PoolSaturadoException("Pool de conexiones saturado", null))));
+
+        // --- 2. Ejecución (Act) y 3. Verificación (Assert) ---
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos/{id}", 1L)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+                .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "1");
+    }
+
+    // Las transacciones (POST /batch, /import) fallan con CannotCreateTransactionException
+    @Test
+    void testCreateProductosBatch_PoolSaturado() {
+        when(productoService.saveBatch(any())).thenReturn(Flux.error(new CannotCreateTransactionException(
+                "Could not open R2DBC Connection for transaction", new PoolSaturadoException("Pool de conexiones saturado", null))));
+
+        webClient.mutateWith(mockJwt())
+                .mutateWith(csrf())
+                .post().uri("/api/productos/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[{\"nombre\":\"Teclado\"}]")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+                .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "1");
+    }
+
+    // Otro fallo de la BD no se disfraza de 503
+    @Test
+    void testGetProductoById_OtroErrorDeBD() {
+        when(productoService.findById(1L)).thenReturn(Mono.error(
+                new DataAccessResourceFailureException("Conexión rechazada")));
+
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos/{id}", 1L)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
     @Test
     void testCreateProducto_Success() {
         // --- 1. Preparación (Arrange) ---
@@ -132,13 +592,13 @@ class ProductoControllerTest {
         // 1a. El producto que "enviamos" en el body (sin ID)
         Producto productoInput = new Producto();
         productoInput.setNombre("Monitor");
-        productoInput.setPrecio(250.0);
+        productoInput.setPrecio(Precio.valueOf("250.0"));
 
         // 1b. El producto que "devuelve" el servicio (con ID)
         Producto productoMock = new Producto();
         productoMock.setId(10L);
         productoMock.setNombre("Monitor");
-        productoMock.setPrecio(250.0);
+        productoMock.setPrecio(Precio.valueOf("250.0"));
 
         // Mock: "Cuando el servicio guarde (save), devuelve el mock con ID"
         when(productoService.save(any(Producto.class))).thenReturn(Mono.just(productoMock));
@@ -163,6 +623,93 @@ class ProductoControllerTest {
         // Verificamos que se llamó al servicio
         verify(productoService, times(1)).save(any(Producto.class));
     }
+    // --- GET /api/productos?ids= (varios productos en una petición) ---
+    @Test
+    void testGetProductosPorIds() {
+        // --- 1. Preparación (Arrange) ---
+        Producto p3 = new Producto();
+        p3.setId(3L);
+        Producto p1 = new Producto();
+        p1.setId(1L);
+        when(productoService.findByIds(List.of(3L, 1L, 7L)))
+                .thenReturn(Mono.just(new ProductosPorId(List.of(p3, p1), List.of(7L))));
+
+        // --- 2. Ejecución (Act) y 3. Verificación (Assert) ---
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos?ids=3,1,7")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.ETAG)
+                .expectBody()
+                .jsonPath("$.productos[0].id").isEqualTo(3)
+                .jsonPath("$.productos[1].id").isEqualTo(1)
+                .jsonPath("$.noEncontrados[0]").isEqualTo(7);
+
+        // No se confunde con la página del catálogo
+        verify(productoService, never()).findPage(any(), anyInt());
+    }
+
+    @Test
+    void testGetProductosPorIds_DemasiadosIds400() {
+        String ids = LongStream.rangeClosed(1, ProductoController.MAX_IDS + 1)
+                .mapToObj(String::valueOf).collect(Collectors.joining(","));
+
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos?ids=" + ids)
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verify(productoService, never()).findByIds(any());
+    }
+
+    // --- POST /api/productos/ids (la lista en el cuerpo) ---
+    @Test
+    void testPostProductosPorIds() {
+        Producto p2 = new Producto();
+        p2.setId(2L);
+        when(productoService.findByIds(List.of(2L, 5L)))
+                .thenReturn(Mono.just(new ProductosPorId(List.of(p2), List.of(5L))));
+
+        webClient.mutateWith(mockJwt())
+                .mutateWith(csrf())
+                .post().uri("/api/productos/ids")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[2, 5]")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.productos[0].id").isEqualTo(2)
+                .jsonPath("$.noEncontrados[0]").isEqualTo(5);
+    }
+
+    // --- POST /api/productos/batch (NDJSON) ---
+    @Test
+    void testCreateProductosBatch() {
+        // --- 1. Preparación (Arrange) ---
+        when(productoService.saveBatch(any())).thenAnswer(invocation -> {
+            Flux<Producto> productos = invocation.getArgument(0);
+            return productos.index().map(item ->
+                    new ResultadoLote(item.getT1(), 100L + item.getT1(), ResultadoLote.Estado.CREADO, null));
+        });
+
+        // --- 2. Ejecución (Act) ---
+        webClient
+                .mutateWith(mockJwt())
+                .mutateWith(csrf())
+                .post().uri("/api/productos/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"nombre\":\"A\"}\n{\"nombre\":\"B\"}\n")
+                .exchange()
+
+                // --- 3. Verificación (Assert) ---
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[1].id").isEqualTo(101)
+                .jsonPath("$[1].estado").isEqualTo("CREADO");
+    }
+
     @Test
     void testUpdateProducto_Success() {
         // --- 1. Preparación (Arrange) ---
@@ -171,16 +718,17 @@ class ProductoControllerTest {
         // 1a. Los "nuevos datos" que enviamos en el body
         Producto productoInput = new Producto();
         productoInput.setNombre("Monitor Gamer");
-        productoInput.setPrecio(300.0);
+        productoInput.setPrecio(Precio.valueOf("300.0"));
 
         // 1b. El producto "actualizado" que devuelve el servicio
         Producto productoMock = new Producto();
         productoMock.setId(productoId);
         productoMock.setNombre("Monitor Gamer");
-        productoMock.setPrecio(300.0);
+        productoMock.setPrecio(Precio.valueOf("300.0"));
 
         // Mock: "Cuando el servicio actualice, devuelve el mock"
-        when(productoService.update(eq(productoId), any(Producto.class))).thenReturn(Mono.just(productoMock));
+        productoMock.setVersion(4L);
+        when(productoService.update(eq(productoId), any(Producto.class), isNull())).thenReturn(Mono.just(productoMock));
 
         // --- 2. Ejecución (Act) ---
         webClient
@@ -194,12 +742,13 @@ class ProductoControllerTest {
 
                 // --- 3. Verificación (Assert) ---
                 .expectStatus().isOk() // Esperamos un 200 OK
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"4\"") // La nueva versión
                 .expectBody()
                 .jsonPath("$.id").isEqualTo(productoId)
                 .jsonPath("$.nombre").isEqualTo("Monitor Gamer");
 
         // Verificamos que se llamó al servicio
-        verify(productoService, times(1)).update(eq(productoId), any(Producto.class));
+        verify(productoService, times(1)).update(eq(productoId), any(Producto.class), isNull());
     }
 
     // --- AÑADE ESTA PRUEBA (Camino Triste: PUT /api/productos/{id} No Encontrado) ---
@@ -210,7 +759,7 @@ class ProductoControllerTest {
         Producto productoInput = new Producto(); // El body (aunque no importa)
 
         // Mock: "Cuando el servicio intente actualizar, devuelve vacío"
-        when(productoService.update(eq(idNoExistente), any(Producto.class))).thenReturn(Mono.empty());
+        when(productoService.update(eq(idNoExistente), any(Producto.class), isNull())).thenReturn(Mono.empty());
 
         // --- 2. Ejecución (Act) ---
         webClient
@@ -225,7 +774,45 @@ class ProductoControllerTest {
                 .expectStatus().isNotFound(); // <-- ¡Esperamos un 404 Not Found!
 
         // Verificamos que se llamó al servicio
-        verify(productoService, times(1)).update(eq(idNoExistente), any(Producto.class));
+        verify(productoService, times(1)).update(eq(idNoExistente), any(Producto.class), isNull());
+    }
+
+    // --- PUT con If-Match: alguien lo modificó antes -> 412 ---
+    @Test
+    void testUpdateProducto_VersionDesactualizada() {
+        // --- 1. Preparación (Arrange) ---
+        long productoId = 1L;
+        when(productoService.update(eq(productoId), any(Producto.class), eq(3L)))
+                .thenReturn(Mono.error(new ConflictoVersionException(productoId, 3L)));
+
+        // --- 2. Ejecución (Act) ---
+        webClient
+                .mutateWith(mockJwt())
+                .mutateWith(csrf())
+                .put().uri("/api/productos/{id}", productoId)
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new Producto()), Producto.class)
+                .exchange()
+
+                // --- 3. Verificación (Assert) ---
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED); // <-- ¡412!
+    }
+
+    // --- PUT con un If-Match que no es un ETag nuestro -> 412 sin llamar al servicio ---
+    @Test
+    void testUpdateProducto_IfMatchInvalido() {
+        webClient
+                .mutateWith(mockJwt())
+                .mutateWith(csrf())
+                .put().uri("/api/productos/{id}", 1L)
+                .header(HttpHeaders.IF_MATCH, "W/\"abc\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new Producto()), Producto.class)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        verify(productoService, never()).update(anyLong(), any(Producto.class), any());
     }
     @Test
     void testDeleteProducto_Success() {
@@ -274,6 +861,128 @@ class ProductoControllerTest {
         verify(productoService, times(1)).actualizarStock(productoId, cantidad);
     }
 
+    // --- Camino Triste: el stock quedaría en negativo -> 409 ---
+    @Test
+    void testActualizarStock_SinStock() {
+        when(productoService.actualizarStock(1L, -50)).thenReturn(Mono.error(new StockInsuficienteException(1L, 50)));
+
+        webClient
+                .mutateWith(mockJwt())
+                .mutateWith(csrf())
+                .put().uri("/api/productos/{id}/stock?cantidad={stock}", 1L, -50)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    // --- POST /api/productos/{id}/reservas ---
+    @Test
+    void testReservarStock_Success() {
+        // --- 1. Preparación (Arrange) ---
+        when(productoService.reservarStock(1L, 3)).thenReturn(Mono.just(7));
+
+        // --- 2. Ejecución (Act) ---
+        webClient
+                .mutateWith(mockJwt())
+                .mutateWith(csrf())
+                .post().uri("/api/productos/{id}/reservas", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new Reserva(null, 3, null))
+                .exchange()
+
+                // --- 3. Verificación (Assert) ---
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.productoId").isEqualTo(1)
+                .jsonPath("$.cantidad").isEqualTo(3)
+                .jsonPath("$.stockRestante").isEqualTo(7);
+    }
+
+    // --- Camino Triste: no alcanza el stock -> 409 ---
+    @Test
+    void testReservarStock_SinStock() {
+        when(productoService.reservarStock(1L, 50)).thenReturn(Mono.error(new StockInsuficienteException(1L, 50)));
+
+        webClient
+                .mutateWith(mockJwt())
+                .mutateWith(csrf())
+                .post().uri("/api/productos/{id}/reservas", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new Reserva(null, 50, null))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT); // <-- ¡409!
+    }
+
+    // --- Camino Triste: producto inexistente -> 404 ---
+    @Test
+    void testReservarStock_NoExiste() {
+        when(productoService.reservarStock(99L, 1)).thenReturn(Mono.empty());
+
+        webClient
+                .mutateWith(mockJwt())
+                .mutateWith(csrf())
+                .post().uri("/api/productos/{id}/reservas", 99L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new Reserva(null, 1, null))
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    // --- Camino Triste: cantidad inválida -> 400 sin tocar el servicio ---
+    @Test
+    void testReservarStock_CantidadInvalida() {
+        webClient
+                .mutateWith(mockJwt())
+                .mutateWith(csrf())
+                .post().uri("/api/productos/{id}/reservas", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new Reserva(null, 0, null))
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verify(productoService, never()).reservarStock(anyLong(), anyInt());
+    }
+
+    // --- GET /api/productos/changes ---
+    @Test
+    void testGetCambios() {
+        CambioProducto cambio = new CambioProducto(11L, 1L, CambioProducto.Tipo.STOCK, 4, null, null);
+        when(productoService.findCambios(10L, 50)).thenReturn(Flux.just(cambio));
+
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos/changes?since=10&limit=50")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].seq").isEqualTo(11)
+                .jsonPath("$[0].tipo").isEqualTo("STOCK");
+    }
+
+    // --- GET /api/productos/changes/stream (SSE), reanudando con Last-Event-ID ---
+    @Test
+    void testStreamCambios() {
+        // --- 1. Preparación (Arrange) ---
+        CambioProducto cambio = new CambioProducto(21L, 2L, CambioProducto.Tipo.ELIMINADO, null, null, null);
+        when(productoService.streamCambios(20L)).thenReturn(Flux.just(cambio));
+
+        // --- 2. Ejecución (Act) ---
+        Flux<ServerSentEvent<CambioProducto>> eventos = webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos/changes/stream?since=5")
+                .header("Last-Event-ID", "20") // <-- gana sobre "since"
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<CambioProducto>>() { })
+                .getResponseBody();
+
+        // --- 3. Verificación (Assert) ---
+        StepVerifier.create(eventos)
+                .expectNextMatches(evento -> "21".equals(evento.id())
+                        && "ELIMINADO".equals(evento.event())
+                        && evento.data().getProductoId() == 2L)
+                .verifyComplete();
+    }
+
     // --- AÑADE ESTA PRUEBA (GET /api/productos/bajo-stock) ---
     @Test
     void testGetProductosBajoStock_Success() {
@@ -305,4 +1014,49 @@ class ProductoControllerTest {
         // Verificamos que se llamó al servicio
         verify(productoService, times(1)).findBajoStock(stockMinimo);
     }
-}
\ No newline at end of file
+
+    // --- GET /api/productos/bajo-stock?fields= ---
+    @Test
+    void testGetProductosBajoStock_ConCampos() {
+        Producto mockProducto = new Producto();
+        mockProducto.setId(5L);
+        mockProducto.setNombre("ProductoBajoStock");
+        mockProducto.setStock(5);
+        Set<CampoProducto> campos = Set.of(CampoProducto.ID, CampoProducto.STOCK);
+        when(productoService.findBajoStock(10, campos)).thenReturn(Flux.just(mockProducto));
+
+        webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos/bajo-stock?minimo=10&fields=id,stock")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].id").isEqualTo(5)
+                .jsonPath("$[0].stock").isEqualTo(5)
+                .jsonPath("$[0].nombre").doesNotExist();
+    }
+
+    // --- GET /api/productos/bajo-stock/alertas (SSE) ---
+    @Test
+    void testAlertasBajoStock() {
+        // --- 1. Preparación (Arrange) ---
+        AlertaStock alerta = new AlertaStock(5L, "Teclado", 12, 8, AlertaStock.Tipo.BAJO_UMBRAL);
+        when(productoService.alertasBajoStock(10)).thenReturn(Flux.just(alerta));
+
+        // --- 2. Ejecución (Act) ---
+        Flux<ServerSentEvent<AlertaStock>> eventos = webClient.mutateWith(mockJwt())
+                .get().uri("/api/productos/bajo-stock/alertas?minimo=10")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<AlertaStock>>() { })
+                .getResponseBody();
+
+        // --- 3. Verificación (Assert) ---
+        StepVerifier.create(eventos)
+                .expectNextMatches(evento -> "BAJO_UMBRAL".equals(evento.event())
+                        && evento.data().getProductoId() == 5L
+                        && evento.data().getStock() == 8)
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.ms_productos.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrecioTest {
+
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Test
+    void testTexto_SiempreConDosDecimales() {
+        assertEquals("10.50", Precio.valueOf("10.5").toString());
+        assertEquals("0.05", Precio.deCentavos(5).toString());
+        assertEquals("-0.50", Precio.deCentavos(-50).toString());
+        assertEquals("-12.00", Precio.valueOf(" -12 ").toString());
+        assertEquals(1999, Precio.valueOf("19.990").getCentavos());
+        assertEquals(Long.MIN_VALUE, Precio.deCentavos(Long.MIN_VALUE).getCentavos());
+        assertEquals("-92233720368547758.08", Precio.deCentavos(Long.MIN_VALUE).toString());
+    }
+
+    @Test
+    void testTexto_InvalidoEsNumberFormatException() {
+        assertThrows(NumberFormatException.class, () -> Precio.valueOf("abc"));
+        assertThrows(NumberFormatException.class, () -> Precio.valueOf("1.005"));
+        assertThrows(NumberFormatException.class, () -> Precio.valueOf("."));
+        assertThrows(NumberFormatException.class, () -> Precio.valueOf(""));
+        assertThrows(NumberFormatException.class, () -> Precio.valueOf("1e3"));
+        assertThrows(NumberFormatException.class, () -> Precio.valueOf("1234567890123456"));
+        // 9 dígitos enteros no entran en precio NUMERIC(10,2), que el trigger de V7 sigue escribiendo
+        assertThrows(NumberFormatException.class, () -> Precio.valueOf("123456789"));
+        assertThrows(NumberFormatException.class, () -> Precio.valueOf("-100000000.00"));
+        assertEquals(9999999999L, Precio.valueOf("99999999.99").getCentavos());
+        assertEquals(-100, Precio.valueOf("-0000000001").getCentavos());
+    }
+
+    @Test
+    void testJson_NumeroExactoDeIdaYVuelta() throws Exception {
+        Producto producto = new Producto();
+        producto.setPrecio(Precio.valueOf("0.3"));
+
+        String json = mapper.writeValueAsString(producto);
+
+        // Un número con los dos decimales, no "0.30000000000000004" ni un texto
+        assertTrue(json.contains("\"precio\":0.30"), json);
+        assertEquals(Precio.deCentavos(30), mapper.readValue(json, Producto.class).getPrecio());
+        assertEquals(Precio.deCentavos(1250), mapper.readValue("{\"precio\":\"12.5\"}", Producto.class).getPrecio());
+        assertEquals(Precio.deCentavos(700), mapper.readValue("{\"precio\":7}", Producto.class).getPrecio());
+    }
+
+    @Test
+    void testJson_MasDeDosDecimalesEsError() {
+        assertThrows(InvalidFormatException.class, () -> mapper.readValue("{\"precio\":10.555}", Producto.class));
+        assertThrows(InvalidFormatException.class, () -> mapper.readValue("{\"precio\":\"diez\"}", Producto.class));
+        assertThrows(InvalidFormatException.class, () -> mapper.readValue("{\"precio\":100000000}", Producto.class));
+    }
+}
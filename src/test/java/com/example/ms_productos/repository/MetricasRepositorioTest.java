@@ -0,0 +1,77 @@
+package com.example.ms_productos.repository;
+
+import com.example.ms_productos.model.Producto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MetricasRepositorioTest {
+
+    @Mock
+    private ProductoRepository repository;
+
+    @Mock
+    private ObjectProvider<MeterRegistry> proveedor;
+
+    private SimpleMeterRegistry registry;
+    private ProductoRepository medido;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        when(proveedor.getIfAvailable()).thenReturn(registry);
+        medido = (ProductoRepository) new MetricasRepositorio(proveedor)
+                .postProcessAfterInitialization(repository, "productoRepository");
+    }
+
+    private long llamadas(String metodo, String resultado) {
+        return registry.get(MetricasRepositorio.METRICA)
+                .tags("repositorio", "ProductoRepository", "metodo", metodo, "resultado", resultado)
+                .timer().count();
+    }
+
+    @Test
+    void testMono_SeMideAlSuscribirse() {
+        Producto producto = new Producto();
+        when(repository.findById(1L)).thenReturn(Mono.just(producto));
+
+        Mono<Producto> consulta = medido.findById(1L);
+        // Sin suscripción no hay consulta ni medición (los timers ya existen desde que se creó el proxy)
+        assertEquals(0, llamadas("findById", "ok"));
+
+        StepVerifier.create(consulta).expectNext(producto).verifyComplete();
+        StepVerifier.create(consulta).expectNext(producto).verifyComplete();
+        assertEquals(2, llamadas("findById", "ok"));
+    }
+
+    @Test
+    void testFlux_ErrorYCancelacion() {
+        when(repository.findByStockLessThan(10)).thenReturn(Flux.error(new IllegalStateException("caída")));
+        when(repository.findByStockLessThan(20)).thenReturn(Flux.just(new Producto(), new Producto()));
+
+        StepVerifier.create(medido.findByStockLessThan(10)).verifyError(IllegalStateException.class);
+        StepVerifier.create(medido.findByStockLessThan(20)).expectNextCount(1).thenCancel().verify();
+
+        assertEquals(1, llamadas("findByStockLessThan", "error"));
+        assertEquals(1, llamadas("findByStockLessThan", "cancelado"));
+    }
+
+    @Test
+    void testOtrosBeansNoSeTocan() {
+        Object otro = new Object();
+        assertSame(otro, new MetricasRepositorio(proveedor).postProcessAfterInitialization(otro, "otro"));
+    }
+}
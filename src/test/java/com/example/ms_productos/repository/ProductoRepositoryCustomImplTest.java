@@ -0,0 +1,346 @@
+package com.example.ms_productos.repository;
+
+import com.example.ms_productos.model.Precio;
+import com.example.ms_productos.model.Producto;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import io.r2dbc.spi.Statement;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import com.example.ms_productos.model.CampoProducto;
+import com.example.ms_productos.model.FiltroProductos;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.core.ReactiveSelectOperation;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.RowsFetchSpec;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+// Probamos el SQL "a mano" del repositorio simulando la conexión R2DBC
+@ExtendWith(MockitoExtension.class)
+class ProductoRepositoryCustomImplTest {
+
+    @Mock
+    private DatabaseClient databaseClient;
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    @Mock
+    private R2dbcConverter converter;
+
+    @Mock
+    private R2dbcEntityTemplate template;
+
+    @Mock
+    private Connection conexion;
+
+    // RETURNS_SELF: bind()/add() devuelven el mismo Statement, como el driver real
+    @Mock(answer = Answers.RETURNS_SELF)
+    private Statement insert;
+
+    @Mock(answer = Answers.RETURNS_SELF)
+    private Statement update;
+
+    private ProductoRepositoryCustomImpl repositorio;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        repositorio = new ProductoRepositoryCustomImpl(databaseClient, transactionalOperator, converter, template);
+        // La transacción y la conexión "reales" se reemplazan por la conexión simulada
+        lenient().when(transactionalOperator.transactional(ArgumentMatchers.<Mono<List<Long>>>any())).thenAnswer(inv -> inv.getArgument(0));
+        lenient().when(databaseClient.inConnection(any())).thenAnswer(inv ->
+                ((Function<Connection, Mono<?>>) inv.getArgument(0)).apply(conexion));
+    }
+
+    @Test
+    void testGuardarLote_InsertYUpdatePorLotes() {
+        // --- 1. Preparación (Arrange) ---
+        Producto nuevo1 = new Producto();
+        nuevo1.setNombre("Teclado");
+        nuevo1.setPrecio(Precio.valueOf("10.0"));
+        Producto existente = new Producto();
+        existente.setId(5L);
+        existente.setNombre("Mouse");
+        Producto nuevo2 = new Producto();
+        nuevo2.setNombre("Monitor");
+        Producto inexistente = new Producto();
+        inexistente.setId(6L);
+        inexistente.setNombre("Fantasma");
+
+        when(conexion.createStatement(ProductoRepositoryCustomImpl.INSERT_PRODUCTO)).thenReturn(insert);
+        when(conexion.createStatement(ProductoRepositoryCustomImpl.UPDATE_PRODUCTO)).thenReturn(update);
+        doReturn(Flux.just(resultadoConIds(11L, 12L))).when(insert).execute();
+        doReturn(Flux.just(resultadoConFilas(1L), resultadoConFilas(0L))).when(update).execute();
+
+        // --- 2. Ejecución (Act) ---
+        Mono<List<Long>> ids = repositorio.guardarLote(List.of(nuevo1, existente, nuevo2, inexistente));
+
+        // --- 3. Verificación (Assert) ---
+        // Mismo orden de entrada; el UPDATE que no tocó filas queda en null
+        StepVerifier.create(ids)
+                .expectNext(Arrays.asList(11L, 5L, 12L, null))
+                .verifyComplete();
+
+        // Un solo INSERT con dos juegos de parámetros (un add() entre ellos)
+        verify(insert, times(1)).add();
+        verify(insert).returnGeneratedValues("id");
+        verify(insert).bind(0, "Teclado");
+        verify(insert).bindNull(2, Long.class);
+        verify(update, times(1)).add();
+        verify(update).bind(5, 6L);
+        verify(transactionalOperator, times(1)).transactional(ArgumentMatchers.<Mono<List<Long>>>any());
+    }
+
+    @Test
+    void testGuardarLote_SoloNuevosNoEjecutaUpdate() {
+        Producto nuevo = new Producto();
+        nuevo.setNombre("Teclado");
+
+        when(conexion.createStatement(ProductoRepositoryCustomImpl.INSERT_PRODUCTO)).thenReturn(insert);
+        doReturn(Flux.just(resultadoConIds(40L))).when(insert).execute();
+
+        StepVerifier.create(repositorio.guardarLote(List.of(nuevo)))
+                .expectNext(List.of(40L))
+                .verifyComplete();
+
+        verify(conexion, never()).createStatement(ProductoRepositoryCustomImpl.UPDATE_PRODUCTO);
+    }
+
+    // El UPDATE va después del INSERT: si el INSERT falla no se llega a lanzar en esa conexión
+    @Test
+    void testGuardarLote_InsertFallaNoEjecutaUpdate() {
+        Producto nuevo = new Producto();
+        nuevo.setNombre("Teclado");
+        Producto existente = new Producto();
+        existente.setId(5L);
+        existente.setNombre("Mouse");
+
+        when(conexion.createStatement(ProductoRepositoryCustomImpl.INSERT_PRODUCTO)).thenReturn(insert);
+        doReturn(Flux.error(new IllegalStateException("violación de restricción"))).when(insert).execute();
+
+        StepVerifier.create(repositorio.guardarLote(List.of(nuevo, existente)))
+                .verifyErrorMessage("violación de restricción");
+
+        verify(conexion, never()).createStatement(ProductoRepositoryCustomImpl.UPDATE_PRODUCTO);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testActualizarAtomico_UnaSentenciaConReturning() {
+        // --- 1. Preparación (Arrange) ---
+        DatabaseClient.GenericExecuteSpec spec = mock(DatabaseClient.GenericExecuteSpec.class, Answers.RETURNS_SELF);
+        RowsFetchSpec<Producto> filas = mock(RowsFetchSpec.class);
+        Row row = mock(Row.class);
+        RowMetadata metadata = mock(RowMetadata.class);
+        Producto actualizado = new Producto();
+        actualizado.setId(5L);
+        actualizado.setVersion(8L);
+
+        when(databaseClient.sql(ProductoRepositoryCustomImpl.UPDATE_RETURNING)).thenReturn(spec);
+        // El mapper de la consulta usa el converter de Spring Data
+        when(converter.read(Producto.class, row, metadata)).thenReturn(actualizado);
+        when(spec.map(any(BiFunction.class))).thenAnswer(inv -> {
+            BiFunction<Row, RowMetadata, Producto> mapper = inv.getArgument(0);
+            when(filas.one()).thenReturn(Mono.fromSupplier(() -> mapper.apply(row, metadata)));
+            return filas;
+        });
+
+        Producto cambios = new Producto();
+        cambios.setNombre("Mouse");
+
+        // --- 2. Ejecución (Act) y 3. Verificación (Assert) ---
+        StepVerifier.create(repositorio.actualizarAtomico(5L, cambios, 7L))
+                .expectNext(actualizado)
+                .verifyComplete();
+
+        verify(spec).bind("id", 5L);
+        verify(spec).bind("version", 7L);
+        verify(spec).bindNull("precio", Long.class);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testReservarStock_UpdateCondicional() {
+        // --- 1. Preparación (Arrange) ---
+        DatabaseClient.GenericExecuteSpec spec = mock(DatabaseClient.GenericExecuteSpec.class, Answers.RETURNS_SELF);
+        RowsFetchSpec<Integer> filas = mock(RowsFetchSpec.class);
+        Row row = mock(Row.class);
+        when(row.get("stock", Integer.class)).thenReturn(4);
+
+        when(databaseClient.sql(ProductoRepositoryCustomImpl.UPDATE_RESERVA)).thenReturn(spec);
+        when(spec.map(any(BiFunction.class))).thenAnswer(inv -> {
+            BiFunction<Row, RowMetadata, Integer> mapper = inv.getArgument(0);
+            when(filas.one()).thenReturn(Mono.fromSupplier(() -> mapper.apply(row, mock(RowMetadata.class))));
+            return filas;
+        });
+
+        // --- 2. Ejecución (Act) y 3. Verificación (Assert) ---
+        StepVerifier.create(repositorio.reservarStock(2L, 6))
+                .expectNext(4)
+                .verifyComplete();
+
+        verify(spec).bind("cantidad", 6);
+        verify(spec).bind("id", 2L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBuscar_UnaConsultaConTodosLosFiltros() {
+        // --- 1. Preparación (Arrange) ---
+        ReactiveSelectOperation.ReactiveSelect<Producto> select = mock(ReactiveSelectOperation.ReactiveSelect.class);
+        Producto encontrado = new Producto();
+        when(template.select(Producto.class)).thenReturn(select);
+        when(select.matching(any(Query.class))).thenReturn(select);
+        when(select.all()).thenReturn(Flux.just(encontrado));
+
+        FiltroProductos filtro = new FiltroProductos();
+        filtro.setNombre("tecl");
+        filtro.setPrecioMin(Precio.valueOf("10.0"));
+        filtro.setLimit(20);
+
+        // --- 2. Ejecución (Act) y 3. Verificación (Assert) ---
+        StepVerifier.create(repositorio.buscar(filtro))
+                .expectNext(encontrado)
+                .verifyComplete();
+        verify(select, times(1)).matching(any(Query.class));
+    }
+
+    @Test
+    void testConsultaBusqueda_Filtros() {
+        // --- 1. Preparación (Arrange) ---
+        FiltroProductos filtro = new FiltroProductos();
+        filtro.setNombre("50%_off");
+        filtro.setModoNombre(FiltroProductos.ModoNombre.PREFIJO);
+        filtro.setPrecioMin(Precio.valueOf("10.0"));
+        filtro.setPrecioMax(Precio.valueOf("20.0"));
+        filtro.setStockMin(1);
+        filtro.setStockMax(9);
+        filtro.setActivo(true);
+        filtro.setLimit(11);
+
+        // --- 2. Ejecución (Act) ---
+        Query query = ProductoRepositoryCustomImpl.consultaBusqueda(filtro);
+
+        // --- 3. Verificación (Assert) ---
+        // Los comodines que escribe el usuario se escapan: sólo el % final es nuestro
+        assertEquals("(nombre LIKE '50\\%\\_off%') AND (precio >= '10.00') AND (precio <= '20.00') AND (stock >= 1) "
+                        + "AND (stock <= 9) AND (activo = 'true')",
+                query.getCriteria().orElseThrow().toString());
+        assertEquals(11, query.getLimit());
+        assertEquals(Sort.by(Sort.Direction.ASC, "id"), query.getSort());
+    }
+
+    @Test
+    void testConsultaBusqueda_KeysetPorPrecioDescendente() {
+        // --- 1. Preparación (Arrange) ---
+        FiltroProductos filtro = new FiltroProductos();
+        filtro.setOrden(FiltroProductos.Campo.PRECIO);
+        filtro.setDireccion(Sort.Direction.DESC);
+        filtro.setDespuesDeValor(Precio.valueOf("15.5"));
+        filtro.setDespuesDeId(42L);
+        filtro.setLimit(5);
+
+        // --- 2. Ejecución (Act) ---
+        Query query = ProductoRepositoryCustomImpl.consultaBusqueda(filtro);
+
+        // --- 3. Verificación (Assert) ---
+        // (precio < 15.50) OR (precio = 15.50 AND id < 42), orden precio DESC, id DESC
+        assertEquals("(precio < '15.50' OR (precio = '15.50' AND (id < 42)))",
+                query.getCriteria().orElseThrow().toString());
+        assertEquals(Sort.by(Sort.Direction.DESC, "precio").and(Sort.by(Sort.Direction.DESC, "id")), query.getSort());
+    }
+
+    @Test
+    void testConsultaBusqueda_KeysetConNull() {
+        // --- 1. Preparación (Arrange) ---
+        FiltroProductos ascendente = new FiltroProductos();
+        ascendente.setOrden(FiltroProductos.Campo.PRECIO);
+        ascendente.setDespuesDeValor(Precio.valueOf("15.5"));
+        ascendente.setDespuesDeId(42L);
+        // El último de la página anterior no tenía precio
+        FiltroProductos descendente = new FiltroProductos();
+        descendente.setOrden(FiltroProductos.Campo.PRECIO);
+        descendente.setDireccion(Sort.Direction.DESC);
+        descendente.setDespuesDeId(42L);
+
+        // --- 2. Ejecución (Act) y 3. Verificación (Assert) ---
+        // ASC (NULLS LAST): después de cualquier precio vienen todos los null
+        assertEquals("(precio > '15.50' OR (precio = '15.50' AND (id > 42)) OR (precio IS NULL))",
+                ProductoRepositoryCustomImpl.consultaBusqueda(ascendente).getCriteria().orElseThrow().toString());
+        // DESC (NULLS FIRST): los null que faltan y luego todos los que tienen precio
+        assertEquals("(precio IS NULL AND (id < 42) OR (precio IS NOT NULL))",
+                ProductoRepositoryCustomImpl.consultaBusqueda(descendente).getCriteria().orElseThrow().toString());
+    }
+
+    @Test
+    void testConsultaBusqueda_SoloLasColumnasPedidas() {
+        // --- 1. Preparación (Arrange) ---
+        FiltroProductos filtro = new FiltroProductos();
+        filtro.setOrden(FiltroProductos.Campo.PRECIO);
+        filtro.setCampos(EnumSet.of(CampoProducto.NOMBRE, CampoProducto.FECHA_ACTUALIZACION));
+        filtro.setLimit(5);
+
+        // --- 2. Ejecución (Act) ---
+        Query query = ProductoRepositoryCustomImpl.consultaBusqueda(filtro);
+
+        // --- 3. Verificación (Assert) ---
+        // id, version y la columna de orden siempre van (cursor y ETag); luego las pedidas
+        assertEquals(List.of("id", "version", "precio", "nombre", "updated_at"),
+                query.getColumns().stream().map(Object::toString).toList());
+    }
+
+    @Test
+    void testConsultaBusqueda_SinCamposTodasLasColumnas() {
+        FiltroProductos filtro = new FiltroProductos();
+        filtro.setLimit(5);
+
+        assertTrue(ProductoRepositoryCustomImpl.consultaBusqueda(filtro).getColumns().isEmpty());
+    }
+
+    // --- Helpers: resultados R2DBC simulados ---
+
+    @SuppressWarnings("unchecked")
+    private Result resultadoConIds(Long... ids) {
+        Result result = mock(Result.class);
+        when(result.map(any(BiFunction.class))).thenAnswer(inv -> {
+            BiFunction<Row, RowMetadata, Long> mapper = inv.getArgument(0);
+            return Flux.fromArray(ids).map(id -> {
+                Row row = mock(Row.class);
+                when(row.get("id", Long.class)).thenReturn(id);
+                return mapper.apply(row, mock(RowMetadata.class));
+            });
+        });
+        return result;
+    }
+
+    private Result resultadoConFilas(long filas) {
+        Result result = mock(Result.class);
+        when(result.getRowsUpdated()).thenReturn(Mono.just(filas));
+        return result;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.ms_productos.service;
+
+import com.example.ms_productos.repository.ProductoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AcumuladorStockTest {
+
+    @Mock
+    private ProductoRepository productoRepository;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void testAjustesEnLaVentanaSeFusionan() {
+        // --- 1. Preparación (Arrange) ---
+        AcumuladorStock acumulador = new AcumuladorStock(productoRepository, registry, Duration.ofMillis(50), 100);
+        when(productoRepository.actualizarStock(1L, 6)).thenReturn(Mono.empty());
+
+        // --- 2. Ejecución (Act) ---
+        // Tres ventas del mismo producto dentro de la ventana
+        Mono<Void> todas = Flux.merge(
+                acumulador.ajustar(1L, 1),
+                acumulador.ajustar(1L, 2),
+                acumulador.ajustar(1L, 3)).then();
+
+        // --- 3. Verificación (Assert) ---
+        StepVerifier.create(todas).expectComplete().verify(Duration.ofSeconds(5));
+        // Una sola llamada a la BD con la suma
+        verify(productoRepository, times(1)).actualizarStock(1L, 6);
+        assertEquals(3.0, registry.get("productos.stock.operaciones.por.flush").summary().max());
+        assertEquals(1, registry.get("productos.stock.flush").tag("resultado", "ok").timer().count());
+    }
+
+    @Test
+    void testLoteLlenoSeEscribeSinEsperarLaVentana() {
+        // Ventana enorme: sólo se escribe porque se alcanza max-operaciones
+        AcumuladorStock acumulador = new AcumuladorStock(productoRepository, registry, Duration.ofHours(1), 2);
+        when(productoRepository.actualizarStock(2L, 5)).thenReturn(Mono.empty());
+
+        StepVerifier.create(Flux.merge(acumulador.ajustar(2L, 4), acumulador.ajustar(2L, 1)).then())
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void testElMonoTerminaCuandoLaEscrituraTermina() {
+        // --- 1. Preparación (Arrange) ---
+        AcumuladorStock acumulador = new AcumuladorStock(productoRepository, registry, Duration.ofHours(1), 2);
+        Sinks.Empty<Void> escritura = Sinks.empty();
+        when(productoRepository.actualizarStock(3L, 2)).thenReturn(escritura.asMono());
+
+        // --- 2. Ejecución (Act) y 3. Verificación (Assert) ---
+        StepVerifier.create(Flux.merge(acumulador.ajustar(3L, 1), acumulador.ajustar(3L, 1)).then())
+                // Mientras la BD no confirma, nadie termina
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(100))
+                .then(escritura::tryEmitEmpty)
+                .verifyComplete();
+    }
+
+    @Test
+    void testErrorDelLote_CadaAjusteRecibeSuPropioError() {
+        AcumuladorStock acumulador = new AcumuladorStock(productoRepository, registry, Duration.ofHours(1), 2);
+        when(productoRepository.actualizarStock(4L, -10)).thenReturn(Mono.error(new IllegalStateException("Sin stock")));
+        // Se reintentan uno por uno: aquí tampoco alcanza para ninguno
+        when(productoRepository.actualizarStock(4L, -5)).thenReturn(Mono.error(new IllegalStateException("Sin stock")));
+
+        Mono<Void> a = acumulador.ajustar(4L, -5).cache();
+        Mono<Void> b = acumulador.ajustar(4L, -5).cache();
+        a.subscribe(null, e -> { });
+        b.subscribe(null, e -> { });
+
+        StepVerifier.create(a).expectErrorMessage("Sin stock").verify(Duration.ofSeconds(5));
+        StepVerifier.create(b).expectErrorMessage("Sin stock").verify(Duration.ofSeconds(5));
+        assertEquals(1, registry.get("productos.stock.flush").tag("resultado", "error").timer().count());
+    }
+
+    // Venta relámpago con stock 5: la suma del lote (-6) no entra, pero uno de los -3 sí
+    @Test
+    void testLoteRechazado_SeReintentaUnoPorUnoEnOrden() {
+        // --- 1. Preparación (Arrange) ---
+        AcumuladorStock acumulador = new AcumuladorStock(productoRepository, registry, Duration.ofMillis(20), 2);
+        AtomicInteger stock = new AtomicInteger(5);
+        List<Integer> llamadas = new CopyOnWriteArrayList<>();
+        // Como actualizar_stock: no deja el stock en negativo
+        when(productoRepository.actualizarStock(eq(7L), anyInt())).thenAnswer(invocacion -> Mono.defer(() -> {
+            int cantidad = invocacion.getArgument(1);
+            llamadas.add(cantidad);
+            if (stock.get() + cantidad < 0) {
+                return Mono.error(new IllegalStateException("Stock insuficiente para el producto 7"));
+            }
+            stock.addAndGet(cantidad);
+            return Mono.empty();
+        }));
+
+        // --- 2. Ejecución (Act) ---
+        // Los dos -3 llenan un lote; el +1 va en el siguiente
+        Mono<Void> primero = acumulador.ajustar(7L, -3).cache();
+        Mono<Void> segundo = acumulador.ajustar(7L, -3).cache();
+        Mono<Void> tercero = acumulador.ajustar(7L, 1).cache();
+        Flux.merge(primero, segundo, tercero).subscribe(null, e -> { });
+
+        // --- 3. Verificación (Assert) ---
+        StepVerifier.create(primero).expectComplete().verify(Duration.ofSeconds(5));
+        StepVerifier.create(segundo).expectErrorMessage("Stock insuficiente para el producto 7").verify(Duration.ofSeconds(5));
+        StepVerifier.create(tercero).expectComplete().verify(Duration.ofSeconds(5));
+        assertEquals(3, stock.get());
+        assertEquals(List.of(-6, -3, -3, 1), llamadas);
+    }
+
+    @Test
+    void testSumaQueDesbordaUnIntAbreOtroLote() {
+        AcumuladorStock acumulador = new AcumuladorStock(productoRepository, registry, Duration.ofMillis(20), 100);
+        when(productoRepository.actualizarStock(anyLong(), anyInt())).thenReturn(Mono.empty());
+
+        StepVerifier.create(Flux.merge(
+                        acumulador.ajustar(5L, Integer.MAX_VALUE),
+                        acumulador.ajustar(5L, 1)).then())
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        verify(productoRepository).actualizarStock(5L, Integer.MAX_VALUE);
+        verify(productoRepository).actualizarStock(5L, 1);
+    }
+
+    @Test
+    void testVentanaCeroVaDirectoALaBD() {
+        AcumuladorStock acumulador = new AcumuladorStock(productoRepository, registry, Duration.ZERO, 100);
+        when(productoRepository.actualizarStock(6L, 1)).thenReturn(Mono.empty());
+
+        StepVerifier.create(acumulador.ajustar(6L, 1)).verifyComplete();
+        verify(productoRepository).actualizarStock(6L, 1);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.ms_productos.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EjecutorBloqueanteTest {
+
+    private final EjecutorBloqueante ejecutor = new EjecutorBloqueante("false", 2, 10);
+
+    @AfterEach
+    void cerrar() {
+        ejecutor.destroy();
+    }
+
+    private static String dormir() throws InterruptedException {
+        Thread.sleep(1);
+        return Thread.currentThread().getName();
+    }
+
+    // Control: BlockHound está instalado y detecta el bloqueo en un hilo de Reactor
+    @Test
+    void testBloquearEnParallel_FallaConBlockHound() {
+        StepVerifier.create(Mono.fromCallable(EjecutorBloqueanteTest::dormir).subscribeOn(Schedulers.parallel()))
+                .verifyError(BlockingOperationError.class);
+    }
+
+    @Test
+    void testLlamar_DesdeParallelCorreEnElSchedulerBloqueante() {
+        Mono<String> hilo = Mono.just(1)
+                .publishOn(Schedulers.parallel())
+                .flatMap(x -> ejecutor.llamar(EjecutorBloqueanteTest::dormir));
+
+        StepVerifier.create(hilo)
+                .assertNext(nombre -> assertTrue(nombre.startsWith("productos-bloqueante"), nombre))
+                .verifyComplete();
+    }
+
+    @Test
+    void testLlamar_NullEsVacio() {
+        StepVerifier.create(ejecutor.llamar(() -> null)).verifyComplete();
+    }
+
+    @Test
+    void testHilosVirtuales_SoloDesdeJava21() {
+        boolean java21 = Runtime.version().feature() >= 21;
+
+        assertEquals(java21, EjecutorBloqueante.usarHilosVirtuales("auto"));
+        assertEquals(java21, EjecutorBloqueante.usarHilosVirtuales("true"));
+        assertFalse(EjecutorBloqueante.usarHilosVirtuales("false"));
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.ms_productos.service;
+
+import com.example.ms_productos.model.Precio;
+import com.example.ms_productos.model.Producto;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ExportadorCatalogoTest {
+
+    private ProductoService service;
+    private ExportadorCatalogo exportador;
+
+    @BeforeEach
+    void setUp() {
+        service = mock(ProductoService.class);
+        exportador = new ExportadorCatalogo(service, Jackson2ObjectMapperBuilder.json().build(), 2);
+    }
+
+    private static Producto producto(long id, String nombre, Double precio) {
+        return new Producto(id, nombre, null, precio == null ? null : Precio.deCentavos(Math.round(precio * 100)),
+                3, true, null, null, 0L);
+    }
+
+    // Junta los buffers (y los libera) como haría el cliente
+    private static byte[] bytes(Flux<DataBuffer> buffers) {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        buffers.doOnNext(buffer -> {
+            byte[] parte = new byte[buffer.readableByteCount()];
+            buffer.read(parte);
+            salida.writeBytes(parte);
+            DataBufferUtils.release(buffer);
+        }).blockLast();
+        return salida.toByteArray();
+    }
+
+    @Test
+    void testCsv_MismasColumnasQueLaImportacion() throws IOException {
+        when(service.streamAll(ExportadorCatalogo.BLOQUE_LECTURA)).thenReturn(Flux.just(
+                producto(1, "Mesa", 10.5), producto(2, "Silla, plegable", null), producto(3, "Lámpara \"LED\"", 4.0)));
+
+        String csv = new String(bytes(exportador.exportar(FormatoCatalogo.CSV, false, DefaultDataBufferFactory.sharedInstance)),
+                StandardCharsets.UTF_8);
+
+        String[] lineas = csv.split("\n");
+        assertEquals("id,nombre,descripcion,precio,stock,activo", lineas[0]);
+        assertEquals("1,Mesa,,10.50,3,true", lineas[1]);
+        assertEquals("2,\"Silla, plegable\",,,3,true", lineas[2]);
+        // Se vuelve a importar tal cual
+        LectorCsv lector = LectorCsv.desdeCabecera(lineas[0]);
+        assertEquals("Lámpara \"LED\"", lector.leer(lineas[3]).getNombre());
+        assertNull(lector.leer(lineas[2]).getPrecio());
+    }
+
+    @Test
+    void testNdjson_UnProductoPorLinea() {
+        when(service.streamAll(ExportadorCatalogo.BLOQUE_LECTURA)).thenReturn(Flux.just(
+                producto(1, "Mesa", 10.5), producto(2, "Silla", 7.0), producto(3, "Sofá", 99.0)));
+
+        String ndjson = new String(bytes(exportador.exportar(FormatoCatalogo.NDJSON, false, DefaultDataBufferFactory.sharedInstance)),
+                StandardCharsets.UTF_8);
+
+        String[] lineas = ndjson.split("\n");
+        assertEquals(3, lineas.length);
+        assertTrue(ndjson.endsWith("}\n"));
+        assertTrue(lineas[0].startsWith("{\"id\":1,\"nombre\":\"Mesa\""), lineas[0]);
+        assertTrue(lineas[2].contains("\"nombre\":\"Sofá\""), lineas[2]);
+    }
+
+    @Test
+    void testGzip_SeDescomprimeEnteroYNoEmiteBuffersVacios() throws IOException {
+        List<Producto> catalogo = new ArrayList<>();
+        for (int i = 1; i <= 1000; i++) {
+            catalogo.add(producto(i, "Producto " + i, i / 10.0));
+        }
+        when(service.streamAll(ExportadorCatalogo.BLOQUE_LECTURA)).thenReturn(Flux.fromIterable(catalogo));
+        List<Integer> tamanios = new ArrayList<>();
+
+        byte[] comprimido = bytes(exportador.exportar(FormatoCatalogo.CSV, true, DefaultDataBufferFactory.sharedInstance)
+                .doOnNext(buffer -> tamanios.add(buffer.readableByteCount())));
+
+        String csv = new String(new GZIPInputStream(new ByteArrayInputStream(comprimido)).readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals(1001, csv.split("\n").length);
+        assertTrue(csv.endsWith("1000,Producto 1000,,100.00,3,true\n"), csv.substring(csv.length() - 80));
+        assertTrue(tamanios.stream().allMatch(tamanio -> tamanio > 0));
+        // Bloques de 2 filas sin un buffer por bloque: el Deflater junta varios
+        assertTrue(tamanios.size() < 500, "Buffers: " + tamanios.size());
+    }
+
+    @Test
+    void testBackpressure_UnBufferPorBloqueYSoloLoPedido() {
+        AtomicInteger leidos = new AtomicInteger();
+        when(service.streamAll(ExportadorCatalogo.BLOQUE_LECTURA)).thenReturn(Flux.range(1, 1_000_000)
+                .map(i -> producto(i, "Producto " + i, 1.0))
+                .doOnNext(producto -> leidos.incrementAndGet()));
+        NettyDataBufferFactory netty = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+        List<DataBuffer> recibidos = new ArrayList<>();
+
+        StepVerifier.create(exportador.exportar(FormatoCatalogo.NDJSON, false, netty), 3)
+                .recordWith(() -> recibidos)
+                .expectNextCount(3)
+                .thenCancel()
+                .verify();
+
+        // Cada buffer es un bloque de filas-por-buffer (2) productos, en un ByteBuf del pool
+        assertEquals(2, recibidos.get(0).toString(StandardCharsets.UTF_8).split("\n").length);
+        assertTrue(recibidos.stream().allMatch(NettyDataBuffer.class::isInstance));
+        assertTrue(leidos.get() < 1_000, "Se leyeron " + leidos.get() + " productos");
+        recibidos.forEach(DataBufferUtils::release);
+    }
+
+    @Test
+    void testErrorDelServicio_SePropaga() {
+        when(service.streamAll(ExportadorCatalogo.BLOQUE_LECTURA))
+                .thenReturn(Flux.concat(Flux.just(producto(1, "Mesa", 1.0)), Flux.error(new IllegalStateException("BD caída"))));
+
+        StepVerifier.create(exportador.exportar(FormatoCatalogo.CSV, true, DefaultDataBufferFactory.sharedInstance))
+                .expectError(IllegalStateException.class)
+                .verify();
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.ms_productos.service;
+
+import com.example.ms_productos.model.CambioProducto;
+import com.example.ms_productos.repository.CambioProductoRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FeedCambiosTest {
+
+    @Mock
+    private CambioProductoRepository cambioRepository;
+
+    // Una transacción por evento, en orden de seq
+    private static CambioProducto cambio(long seq) {
+        return cambio(seq, 100L + seq);
+    }
+
+    private static CambioProducto cambio(long seq, long txid) {
+        return new CambioProducto(seq, 10L + seq, CambioProducto.Tipo.STOCK, 5, LocalDateTime.now(), txid);
+    }
+
+    @Test
+    void testPagina() {
+        FeedCambios feed = new FeedCambios(cambioRepository, Duration.ofSeconds(1), 100, 100);
+        when(cambioRepository.findDesde(7L, 50)).thenReturn(Flux.just(cambio(8)));
+
+        StepVerifier.create(feed.pagina(7L, 50))
+                .expectNextMatches(c -> c.getSeq() == 8L)
+                .verifyComplete();
+    }
+
+    @Test
+    void testStream_HistoricoYLuegoEnVivo() {
+        // --- 1. Preparación (Arrange) ---
+        // Lotes de 2: el histórico desde 0 viene en dos lecturas (1,2) y (3)
+        FeedCambios feed = new FeedCambios(cambioRepository, Duration.ofMillis(20), 2, 100);
+        when(cambioRepository.findUltimaSeq()).thenReturn(Mono.just(2L));
+        when(cambioRepository.findTxidDe(0L)).thenReturn(Mono.just(0L));
+        when(cambioRepository.findDesde(0L, 2)).thenReturn(Flux.just(cambio(1), cambio(2)));
+        // El histórico termina leyendo desde 2 (trae el 3); el poller arranca en 2 y vuelve a traer el 3 (repetido) y el 4
+        AtomicInteger lecturas = new AtomicInteger();
+        when(cambioRepository.findDesde(eq(2L), anyInt())).thenAnswer(inv ->
+                lecturas.incrementAndGet() == 1 ? Flux.just(cambio(3)) : Flux.just(cambio(3), cambio(4)));
+        lenient().when(cambioRepository.findDesde(eq(4L), anyInt())).thenReturn(Flux.empty());
+
+        // --- 2. Ejecución (Act) y 3. Verificación (Assert) ---
+        // Cada seq llega una sola vez y en orden
+        StepVerifier.create(feed.stream(0L))
+                .expectNextMatches(c -> c.getSeq() == 1L)
+                .expectNextMatches(c -> c.getSeq() == 2L)
+                .expectNextMatches(c -> c.getSeq() == 3L)
+                .expectNextMatches(c -> c.getSeq() == 4L)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void testStream_ErrorDeLaBDNoCortaElPoller() {
+        FeedCambios feed = new FeedCambios(cambioRepository, Duration.ofMillis(20), 100, 100);
+        when(cambioRepository.findUltimaSeq()).thenReturn(Mono.just(0L));
+        when(cambioRepository.findTxidDe(0L)).thenReturn(Mono.just(0L));
+        AtomicInteger lecturas = new AtomicInteger();
+        when(cambioRepository.findDesde(anyLong(), anyInt())).thenAnswer(inv -> {
+            int n = lecturas.incrementAndGet();
+            if (n == 1) {
+                return Flux.empty(); // histórico vacío
+            }
+            if (n == 2) {
+                return Flux.error(new IllegalStateException("BD caída"));
+            }
+            return inv.getArgument(0, Long.class) == 0L ? Flux.just(cambio(1)) : Flux.empty();
+        });
+
+        StepVerifier.create(feed.stream(0L))
+                .expectNextMatches(c -> c.getSeq() == 1L)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void testStream_OrdenDeConfirmacionAunqueLaSeqSeaMenor() {
+        // --- 1. Preparación (Arrange) ---
+        // Desde la 5 (txid 200): la 7 la confirmó una transacción más vieja (txid 201) y la 6 una
+        // más nueva (txid 202) que seguía abierta; el registro las entrega 7, 6, 8
+        FeedCambios feed = new FeedCambios(cambioRepository, Duration.ofMillis(20), 100, 100);
+        when(cambioRepository.findUltimaSeq()).thenReturn(Mono.just(7L));
+        when(cambioRepository.findTxidDe(5L)).thenReturn(Mono.just(200L));
+        when(cambioRepository.findDesde(5L, 100)).thenReturn(Flux.just(cambio(7, 201), cambio(6, 202)));
+        // El poller arrancó en la 7: trae otra vez la 6 y luego la 8
+        when(cambioRepository.findDesde(eq(7L), anyInt())).thenReturn(Flux.just(cambio(6, 202), cambio(8, 203)));
+        lenient().when(cambioRepository.findDesde(eq(8L), anyInt())).thenReturn(Flux.empty());
+
+        // --- 2. Ejecución (Act) y 3. Verificación (Assert) ---
+        // La 6 no se descarta por ser menor que la 7, ni se repite
+        StepVerifier.create(feed.stream(5L))
+                .expectNextMatches(c -> c.getSeq() == 7L)
+                .expectNextMatches(c -> c.getSeq() == 6L)
+                .expectNextMatches(c -> c.getSeq() == 8L)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+}
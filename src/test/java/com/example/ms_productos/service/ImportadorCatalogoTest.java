@@ -0,0 +1,238 @@
+package com.example.ms_productos.service;
+
+import com.example.ms_productos.model.EstadoImportacion;
+import com.example.ms_productos.model.Precio;
+import com.example.ms_productos.model.Producto;
+import com.example.ms_productos.model.ResultadoLote;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ImportadorCatalogoTest {
+
+    private ProductoService service;
+    private List<List<Producto>> bloques;
+    private ImportadorCatalogo importador;
+
+    @BeforeEach
+    void setUp() {
+        service = mock(ProductoService.class);
+        bloques = new ArrayList<>();
+        // Como saveBatch: sin nombre es error, sin id se crea, con id se actualiza (el 99 no existe)
+        when(service.saveBatch(any())).thenAnswer(invocacion -> {
+            Flux<Producto> productos = invocacion.getArgument(0);
+            return productos.collectList()
+                    .doOnNext(bloques::add)
+                    .flatMapIterable(lista -> {
+                        List<ResultadoLote> resultados = new ArrayList<>();
+                        for (int i = 0; i < lista.size(); i++) {
+                            Producto producto = lista.get(i);
+                            if (producto.getNombre() == null) {
+                                resultados.add(new ResultadoLote(i, null, ResultadoLote.Estado.ERROR, "El nombre es obligatorio"));
+                            } else if (producto.getId() == null) {
+                                resultados.add(new ResultadoLote(i, 100L + i, ResultadoLote.Estado.CREADO, null));
+                            } else if (producto.getId() == 99L) {
+                                resultados.add(new ResultadoLote(i, 99L, ResultadoLote.Estado.ERROR, "Producto no encontrado"));
+                            } else {
+                                resultados.add(new ResultadoLote(i, producto.getId(), ResultadoLote.Estado.ACTUALIZADO, null));
+                            }
+                        }
+                        return resultados;
+                    });
+        });
+        importador = importador(500);
+    }
+
+    private ImportadorCatalogo importador(int tamanioLote) {
+        return new ImportadorCatalogo(service, Jackson2ObjectMapperBuilder.json().build(), tamanioLote,
+                DataSize.ofBytes(256), 2, 10, Duration.ofHours(1));
+    }
+
+    // El texto en trozos de "tamanio" bytes: las líneas (y las ñ) quedan partidas entre buffers
+    private static Flux<DataBuffer> trozos(String texto, int tamanio) {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        List<DataBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < bytes.length; i += tamanio) {
+            byte[] trozo = new byte[Math.min(tamanio, bytes.length - i)];
+            System.arraycopy(bytes, i, trozo, 0, trozo.length);
+            buffers.add(DefaultDataBufferFactory.sharedInstance.wrap(trozo));
+        }
+        return Flux.fromIterable(buffers);
+    }
+
+    @Test
+    void testCsv_LineasPartidasEntreBuffers() {
+        String csv = "\uFEFFnombre;precio;stock;id\r\n"
+                + "Piñata;12.5;3;\r\n"
+                + "\"Café; molido\";4;10;\r\n"
+                + "\r\n"
+                + "Mesa;abc;1;\r\n"
+                + "Silla;30;2;7\r\n"
+                + ";1;1;\r\n"
+                + "Fantasma;1;1;99\r\n";
+
+        StepVerifier.create(importador.importar(FormatoCatalogo.CSV, trozos(csv, 7)))
+                .assertNext(estado -> {
+                    assertEquals(EstadoImportacion.Estado.COMPLETADA, estado.getEstado());
+                    assertEquals("CSV", estado.getFormato());
+                    assertEquals(6, estado.getFilas());
+                    assertEquals(2, estado.getCreados());
+                    assertEquals(1, estado.getActualizados());
+                    assertEquals(3, estado.getErrores());
+                    assertNotNull(estado.getFin());
+                    // Sólo los primeros max-errores (2) con detalle, con la línea del archivo
+                    assertEquals(List.of(new EstadoImportacion.ErrorFila(5, "Valor inválido para precio: abc"),
+                                    new EstadoImportacion.ErrorFila(7, "El nombre es obligatorio")),
+                            estado.getDetalleErrores());
+                })
+                .verifyComplete();
+
+        List<Producto> guardados = bloques.get(0);
+        assertEquals("Piñata", guardados.get(0).getNombre());
+        assertEquals(Precio.valueOf("12.50"), guardados.get(0).getPrecio());
+        assertNull(guardados.get(0).getId());
+        assertEquals("Café; molido", guardados.get(1).getNombre());
+        assertEquals(7L, guardados.get(2).getId());
+        // La fila sin nombre la rechaza saveBatch (validación del servicio), no el lector
+        assertNull(guardados.get(3).getNombre());
+    }
+
+    @Test
+    void testNdjson_FilaInvalidaNoCortaLaImportacion() {
+        String ndjson = "{\"nombre\":\"Uno\",\"precio\":1}\n"
+                + "{\"nombre\":\"Dos\",\"stock\":\"muchos\"}\n"
+                + "{no es json\n"
+                + "{\"id\":5,\"nombre\":\"Cinco\"}";
+
+        StepVerifier.create(importador.importar(FormatoCatalogo.NDJSON, trozos(ndjson, 5)))
+                .assertNext(estado -> {
+                    assertEquals(EstadoImportacion.Estado.COMPLETADA, estado.getEstado());
+                    assertEquals(4, estado.getFilas());
+                    assertEquals(1, estado.getCreados());
+                    assertEquals(1, estado.getActualizados());
+                    assertEquals(2, estado.getErrores());
+                    assertEquals(2, estado.getDetalleErrores().get(0).getLinea());
+                    assertEquals(3, estado.getDetalleErrores().get(1).getLinea());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void testBloquesDeTamanioLote() {
+        StringBuilder csv = new StringBuilder("nombre\n");
+        for (int i = 0; i < 5; i++) {
+            csv.append("Producto ").append(i).append('\n');
+        }
+
+        StepVerifier.create(importador(2).importar(FormatoCatalogo.CSV, trozos(csv.toString(), 16)))
+                .assertNext(estado -> assertEquals(5, estado.getCreados()))
+                .verifyComplete();
+
+        assertEquals(List.of(2, 2, 1), bloques.stream().map(List::size).toList());
+    }
+
+    @Test
+    void testCabeceraInvalida_Falla() {
+        StepVerifier.create(importador.importar(FormatoCatalogo.CSV, trozos("nombre,color\nMesa,rojo\n", 64)))
+                .expectErrorSatisfies(e -> {
+                    assertInstanceOf(IllegalArgumentException.class, e);
+                    assertTrue(e.getMessage().startsWith("Columna desconocida: color"));
+                })
+                .verify();
+
+        EstadoImportacion estado = importador.recientes().blockFirst();
+        assertEquals(EstadoImportacion.Estado.FALLIDA, estado.getEstado());
+        assertTrue(estado.getMensaje().startsWith("Columna desconocida"));
+        verify(service, never()).saveBatch(any());
+    }
+
+    @Test
+    void testLineaDemasiadoLarga_Falla() {
+        String ndjson = "{\"nombre\":\"" + "x".repeat(300) + "\"}\n";
+
+        StepVerifier.create(importador.importar(FormatoCatalogo.NDJSON, trozos(ndjson, 64)))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+    }
+
+    @Test
+    void testBackpressure_NoLeeMasMientrasGuardaUnBloque() {
+        Sinks.Empty<Void> guardado = Sinks.empty();
+        AtomicInteger llamadas = new AtomicInteger();
+        doAnswer(invocacion -> {
+            llamadas.incrementAndGet();
+            Flux<Producto> productos = invocacion.getArgument(0);
+            return productos.thenMany(guardado.asMono().thenMany(Flux.<ResultadoLote>empty()));
+        }).when(service).saveBatch(any());
+        AtomicLong leidos = new AtomicLong();
+        Flux<DataBuffer> archivo = Flux.range(0, 100_000)
+                .<DataBuffer>map(i -> DefaultDataBufferFactory.sharedInstance.wrap(("{\"nombre\":\"P" + i + "\"}\n").getBytes(StandardCharsets.UTF_8)))
+                .doOnNext(buffer -> leidos.incrementAndGet());
+        ImportadorCatalogo conLotes = importador(10);
+
+        StepVerifier.create(conLotes.importar(FormatoCatalogo.NDJSON, archivo))
+                .then(() -> {
+                    // El primer bloque no termina: sólo se leyó lo que cabe en los buffers de los operadores
+                    assertEquals(1, llamadas.get());
+                    assertTrue(leidos.get() < 1_000, "Se leyeron " + leidos.get() + " líneas");
+                    EstadoImportacion enCurso = conLotes.recientes().blockFirst();
+                    assertEquals(EstadoImportacion.Estado.EN_CURSO, enCurso.getEstado());
+                    assertEquals(10, enCurso.getFilas());
+                    assertEquals(enCurso, conLotes.estado(enCurso.getId()).block());
+                })
+                .thenCancel()
+                .verify();
+
+        assertEquals(EstadoImportacion.Estado.CANCELADA, conLotes.recientes().blockFirst().getEstado());
+    }
+
+    @Test
+    void testIdDelCliente_ConsultableAntesDeQueTermineLaSubida() {
+        Sinks.Many<DataBuffer> subida = Sinks.many().unicast().onBackpressureBuffer();
+
+        StepVerifier.create(importador.importar("catalogo-2026", FormatoCatalogo.NDJSON, subida.asFlux()))
+                .then(() -> {
+                    subida.tryEmitNext(DefaultDataBufferFactory.sharedInstance.wrap(
+                            "{\"nombre\":\"Mesa\"}\n".getBytes(StandardCharsets.UTF_8)));
+                    // La subida sigue abierta: el cliente ya puede seguirla con su id
+                    assertEquals(EstadoImportacion.Estado.EN_CURSO, importador.estado("catalogo-2026").block().getEstado());
+                    // El mismo id no se puede reutilizar, y el contenido no se lee
+                    StepVerifier.create(importador.importar("catalogo-2026", FormatoCatalogo.CSV, Flux.error(new AssertionError())))
+                            .verifyError(ImportacionExistenteException.class);
+                    subida.tryEmitComplete();
+                })
+                .assertNext(estado -> {
+                    assertEquals("catalogo-2026", estado.getId());
+                    assertEquals(EstadoImportacion.Estado.COMPLETADA, estado.getEstado());
+                    assertEquals(1, estado.getCreados());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void testFormato_PorTipoOExtension() {
+        assertEquals(FormatoCatalogo.CSV, FormatoCatalogo.de(MediaType.parseMediaType("text/csv;charset=UTF-8"), null));
+        assertEquals(FormatoCatalogo.NDJSON, FormatoCatalogo.de(MediaType.APPLICATION_NDJSON, "x.txt"));
+        assertEquals(FormatoCatalogo.CSV, FormatoCatalogo.de(MediaType.APPLICATION_OCTET_STREAM, "Catalogo.CSV"));
+        assertEquals(FormatoCatalogo.NDJSON, FormatoCatalogo.de(null, "catalogo.jsonl"));
+        assertNull(FormatoCatalogo.de(MediaType.APPLICATION_PDF, "catalogo.pdf"));
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.ms_productos.service;
+
+import com.example.ms_productos.model.AlertaStock;
+import com.example.ms_productos.model.CambioProducto;
+import com.example.ms_productos.model.Producto;
+import com.example.ms_productos.repository.ProductoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IndiceBajoStockTest {
+
+    @Mock
+    private ProductoRepository repository;
+
+    @Mock
+    private FeedCambios feedCambios;
+
+    private IndiceBajoStock indice;
+    private Sinks.Many<CambioProducto> cambios;
+
+    private static Producto producto(long id, int stock) {
+        Producto p = new Producto();
+        p.setId(id);
+        p.setNombre("P" + id);
+        p.setStock(stock);
+        return p;
+    }
+
+    private static CambioProducto cambio(long seq, long id, CambioProducto.Tipo tipo, Integer stock) {
+        return new CambioProducto(seq, id, tipo, stock, LocalDateTime.now(), null);
+    }
+
+    @BeforeEach
+    void setUp() {
+        indice = new IndiceBajoStock(repository, feedCambios, 100);
+        cambios = Sinks.many().unicast().onBackpressureBuffer();
+    }
+
+    // Carga inicial: productos 1 (stock 3) y 2 (stock 40), registro en la seq 7
+    private void cargar() {
+        when(feedCambios.ultimaSeq()).thenReturn(Mono.just(7L));
+        when(repository.findByStockLessThan(100)).thenReturn(Flux.just(producto(2L, 40), producto(1L, 3)));
+        when(feedCambios.stream(7L)).thenReturn(cambios.asFlux());
+        // La primera consulta dispara la carga
+        indice.bajoStock(10).blockLast();
+        assertTrue(indice.isListo());
+    }
+
+    @Test
+    void testBajoStock_DesdeMemoriaOrdenadoPorStock() {
+        cargar();
+
+        StepVerifier.create(indice.bajoStock(50))
+                .expectNextMatches(p -> p.getId() == 1L)
+                .expectNextMatches(p -> p.getId() == 2L)
+                .verifyComplete();
+        StepVerifier.create(indice.bajoStock(10))
+                .expectNextMatches(p -> p.getId() == 1L)
+                .verifyComplete();
+
+        // Sólo la carga fue a la BD
+        verify(repository, times(1)).findByStockLessThan(100);
+        verify(repository, never()).findByStockLessThan(50);
+    }
+
+    @Test
+    void testBajoStock_MinimoSobreElUmbralVaALaBD() {
+        cargar();
+        when(repository.findByStockLessThan(500)).thenReturn(Flux.just(producto(3L, 300)));
+
+        StepVerifier.create(indice.bajoStock(500))
+                .expectNextMatches(p -> p.getId() == 3L)
+                .verifyComplete();
+    }
+
+    // Un umbral por encima del índice parcial de V5 (stock < 100) es un error de configuración
+    @Test
+    void testUmbralMayorQueElIndice_NoArranca() {
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+                () -> new IndiceBajoStock(repository, feedCambios, 101));
+        assertTrue(error.getMessage().contains("productos.bajo-stock.umbral-maximo"));
+    }
+
+    @Test
+    void testBajoStock_SinCargarResponseDesdeLaBD() {
+        when(feedCambios.ultimaSeq()).thenReturn(Mono.never());
+        when(repository.findByStockLessThan(10)).thenReturn(Flux.just(producto(1L, 3)));
+
+        StepVerifier.create(indice.bajoStock(10))
+                .expectNextMatches(p -> p.getId() == 1L)
+                .verifyComplete();
+        assertFalse(indice.isListo());
+    }
+
+    @Test
+    void testCambios_StockEntraYSaleDelIndice() {
+        cargar();
+        // Producto 5 baja a 8 (no estaba: se lee la fila) y el 2 sube a 150 (sale)
+        when(repository.findById(5L)).thenReturn(Mono.just(producto(5L, 8)));
+        cambios.tryEmitNext(cambio(8, 5L, CambioProducto.Tipo.STOCK, 8));
+        cambios.tryEmitNext(cambio(9, 2L, CambioProducto.Tipo.STOCK, 150));
+        // El 1 pasa de 3 a 1: ya estaba, no hace falta leer la fila
+        cambios.tryEmitNext(cambio(10, 1L, CambioProducto.Tipo.STOCK, 1));
+
+        StepVerifier.create(indice.bajoStock(100))
+                .expectNextMatches(p -> p.getId() == 1L && p.getStock() == 1)
+                .expectNextMatches(p -> p.getId() == 5L && p.getStock() == 8)
+                .verifyComplete();
+        verify(repository, never()).findById(1L);
+    }
+
+    @Test
+    void testEscriturasLocales() {
+        cargar();
+        Producto nuevo = producto(6L, 2);
+        indice.actualizar(nuevo);
+        indice.actualizarStock(1L, 0);
+        indice.eliminar(2L);
+
+        StepVerifier.create(indice.bajoStock(100))
+                .expectNextMatches(p -> p.getId() == 1L && p.getStock() == 0)
+                .expectNextMatches(p -> p.getId() == 6L)
+                .verifyComplete();
+    }
+
+    @Test
+    void testAlertas_CruceDeUmbralEnAmbosSentidos() {
+        cargar();
+
+        StepVerifier.create(indice.alertas(10))
+                .then(() -> {
+                    indice.actualizarStock(2L, 9);  // 40 -> 9: baja del umbral
+                    indice.actualizarStock(1L, 2);  // 3 -> 2: ya estaba bajo, sin alerta
+                    cambios.tryEmitNext(cambio(8, 2L, CambioProducto.Tipo.STOCK, 120)); // 9 -> 120: repuesto
+                })
+                .expectNextMatches(a -> a.getProductoId() == 2L && a.getTipo() == AlertaStock.Tipo.BAJO_UMBRAL
+                        && a.getStockAnterior() == 40 && a.getStock() == 9)
+                .expectNextMatches(a -> a.getProductoId() == 2L && a.getTipo() == AlertaStock.Tipo.SOBRE_UMBRAL
+                        && a.getStock() == 120)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void testFalloDelFeed_VuelveALaBDYRecarga() {
+        cargar();
+        cambios.tryEmitError(new IllegalStateException("buffer lleno"));
+        assertFalse(indice.isListo());
+
+        // El siguiente uso vuelve a cargar el índice completo desde la BD
+        when(feedCambios.stream(7L)).thenReturn(Flux.never());
+        StepVerifier.create(indice.bajoStock(10))
+                .expectNextMatches(p -> p.getId() == 1L)
+                .verifyComplete();
+        assertTrue(indice.isListo());
+        verify(repository, times(2)).findByStockLessThan(100);
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.ms_productos.service;
+
+import com.example.ms_productos.MetricasConfig;
+import com.example.ms_productos.model.Producto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.TraceContext;
+import io.micrometer.tracing.handler.TracingObservationHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MetricasServicioTest {
+
+    private SimpleMeterRegistry meters;
+    private ObservationRegistry observaciones;
+    private ProductoService servicio;
+    private ProductoService observado;
+
+    @BeforeEach
+    void setUp() {
+        meters = new SimpleMeterRegistry();
+        observaciones = ObservationRegistry.create();
+        observaciones.observationConfig().observationHandler(new DefaultMeterObservationHandler(meters));
+        servicio = mock(ProductoService.class);
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("observaciones", observaciones);
+        beans.addBean("meters", meters);
+        MetricasServicio metricas = new MetricasServicio(beans.getBeanProvider(ObservationRegistry.class),
+                beans.getBeanProvider(MeterRegistry.class));
+        observado = (ProductoService) metricas.postProcessAfterInitialization(servicio, "productoServiceImpl");
+    }
+
+    private long llamadas(String metodo, String resultado) {
+        Timer timer = meters.find(MetricasServicio.METRICA).tags("metodo", metodo, "resultado", resultado).timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private static Producto producto(long id) {
+        Producto producto = new Producto();
+        producto.setId(id);
+        return producto;
+    }
+
+    @Test
+    void testMono_ResultadoPorSenal() {
+        when(servicio.findById(1L)).thenReturn(Mono.just(producto(1)));
+        when(servicio.findById(2L)).thenReturn(Mono.empty());
+        when(servicio.findById(3L)).thenReturn(Mono.error(new IllegalStateException("BD caída")));
+
+        StepVerifier.create(observado.findById(1L)).expectNextCount(1).verifyComplete();
+        StepVerifier.create(observado.findById(2L)).verifyComplete();
+        StepVerifier.create(observado.findById(3L)).verifyError(IllegalStateException.class);
+
+        assertEquals(1, llamadas("findById", "ok"));
+        assertEquals(1, llamadas("findById", "vacio"));
+        assertEquals(1, llamadas("findById", "error"));
+        assertNotNull(meters.find(MetricasServicio.METRICA).tags("resultado", "error", "error", "IllegalStateException").timer());
+    }
+
+    @Test
+    void testMonoVoid_VacioEsOk() {
+        when(servicio.delete(1L)).thenReturn(Mono.empty());
+
+        StepVerifier.create(observado.delete(1L)).verifyComplete();
+
+        assertEquals(1, llamadas("delete", "ok"));
+    }
+
+    @Test
+    void testFlux_CuentaFilas() {
+        when(servicio.findAll()).thenReturn(Flux.just(producto(1), producto(2), producto(3)));
+        when(servicio.findBajoStock(10)).thenReturn(Flux.just(producto(4)));
+
+        StepVerifier.create(observado.findAll()).expectNextCount(3).verifyComplete();
+        StepVerifier.create(observado.findBajoStock(10)).expectNextCount(1).verifyComplete();
+        StepVerifier.create(observado.findAll().take(1)).expectNextCount(1).verifyComplete();
+
+        assertEquals(1, llamadas("findAll", "ok"));
+        assertEquals(1, llamadas("findAll", "cancelado"));
+        assertEquals(4, meters.get(MetricasServicio.METRICA_FILAS).tag("metodo", "findAll").counter().count());
+        assertEquals(1, meters.get(MetricasServicio.METRICA_FILAS).tag("metodo", "findBajoStock").counter().count());
+    }
+
+    // Petición en curso cuya traza el tracer decidió (o no) muestrear
+    private Observation peticion(boolean muestreada) {
+        Span span = mock(Span.class);
+        TraceContext traza = mock(TraceContext.class);
+        when(span.context()).thenReturn(traza);
+        when(traza.sampled()).thenReturn(muestreada);
+        Observation peticion = Observation.start("http.server.requests", observaciones);
+        TracingObservationHandler.TracingContext tracing = new TracingObservationHandler.TracingContext();
+        tracing.setSpan(span);
+        peticion.getContext().put(TracingObservationHandler.TracingContext.class, tracing);
+        return peticion;
+    }
+
+    private Observation observacionVista(Observation peticion) {
+        AtomicReference<Observation> vista = new AtomicReference<>();
+        when(servicio.findById(1L)).thenReturn(Mono.deferContextual(contexto -> {
+            vista.set(contexto.get(ObservationThreadLocalAccessor.KEY));
+            return Mono.just(producto(1));
+        }));
+        StepVerifier.create(observado.findById(1L).contextWrite(c -> c.put(ObservationThreadLocalAccessor.KEY, peticion)))
+                .expectNextCount(1)
+                .verifyComplete();
+        peticion.stop();
+        return vista.get();
+    }
+
+    @Test
+    void testTrazaMuestreada_ObservacionHijaDeLaPeticion() {
+        Observation peticion = peticion(true);
+
+        Observation vista = observacionVista(peticion);
+
+        assertNotSame(peticion, vista);
+        assertSame(peticion, vista.getContextView().getParentObservation());
+        // El timer sale de la observación, con los mismos tags que sin ella
+        assertEquals(1, llamadas("findById", "ok"));
+        assertNotNull(meters.find(MetricasServicio.METRICA).tags("metodo", "findById", "error", "none").timer());
+    }
+
+    @Test
+    void testTrazaNoMuestreada_SoloElTimer() {
+        Observation peticion = peticion(false);
+
+        assertSame(peticion, observacionVista(peticion));
+        assertEquals(1, llamadas("findById", "ok"));
+    }
+
+    @Test
+    void testSinMeterRegistry_DevuelveElMismoBean() {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        MetricasServicio metricas = new MetricasServicio(beans.getBeanProvider(ObservationRegistry.class),
+                beans.getBeanProvider(MeterRegistry.class));
+
+        assertSame(servicio, metricas.postProcessAfterInitialization(servicio, "productoServiceImpl"));
+    }
+
+    @Test
+    void testSlo_BucketsEnElTimerDelServicio() {
+        SimpleMeterRegistry conSlo = new SimpleMeterRegistry();
+        conSlo.config().meterFilter(new MetricasConfig().sloProductos(
+                new Duration[]{Duration.ofMillis(100), Duration.ofMillis(10)}));
+
+        Timer timer = conSlo.timer(MetricasServicio.METRICA, "metodo", "findById");
+        timer.record(Duration.ofMillis(5));
+        timer.record(Duration.ofMillis(50));
+
+        var buckets = timer.takeSnapshot().histogramCounts();
+        assertEquals(2, buckets.length);
+        assertEquals(1, buckets[0].count());
+        assertEquals(2, buckets[1].count());
+        assertEquals(0, conSlo.timer("otro.timer").takeSnapshot().histogramCounts().length);
+    }
+}
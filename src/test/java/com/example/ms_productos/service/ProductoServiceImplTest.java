@@ -1,27 +1,51 @@
 package com.example.ms_productos.service;
 
 // Imports de tus clases (¡puede que necesites ajustar esto!)
+import com.example.ms_productos.PoolSaturadoException;
+import com.example.ms_productos.model.Precio;
 import com.example.ms_productos.model.Producto;
 import com.example.ms_productos.repository.ProductoRepository;
 
 // Imports de Pruebas
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.r2dbc.UncategorizedR2dbcException;
+import io.r2dbc.spi.R2dbcException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.CannotCreateTransactionException;
+import com.example.ms_productos.model.CambioProducto;
+import com.example.ms_productos.model.CampoProducto;
+import com.example.ms_productos.model.FiltroProductos;
+import com.example.ms_productos.model.ResultadoLote;
+import com.example.ms_productos.model.VersionProducto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 // Imports Reactivos
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
 // Imports estáticos de Mockito y AssertJ
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.never;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 
 
 @ExtendWith(MockitoExtension.class) // ¡Importante! Activa Mockito
@@ -31,11 +55,33 @@ class ProductoServiceImplTest {
     @Mock
     private ProductoRepository productoRepository;
 
+    // 1b. La cache es real (pequeña) para probar también el read-through
+    @Spy
+    private ProductoCache productoCache = new ProductoCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(5));
+
+    @Mock
+    private FeedCambios feedCambios;
+
     // 2. Inyectamos ese Mock en la clase que queremos probar
     @InjectMocks
     private ProductoServiceImpl productoService;
 
 
+    // 3. Los valores de @Value no los inyecta Mockito
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(productoService, "tamanioLote", 2);
+        // Ventana 0: el acumulador pasa cada ajuste directo al repositorio
+        ReflectionTestUtils.setField(productoService, "acumuladorStock",
+                new AcumuladorStock(productoRepository, new SimpleMeterRegistry(), Duration.ZERO, 1));
+        // Índice de bajo stock real sobre los mismos mocks (mientras no carga, responde desde la BD)
+        ReflectionTestUtils.setField(productoService, "indiceBajoStock",
+                new IndiceBajoStock(productoRepository, feedCambios, 100));
+        // Modo snapshot deshabilitado (como por defecto): todo sigue yendo a la BD
+        ReflectionTestUtils.setField(productoService, "snapshot",
+                new SnapshotCatalogo(productoRepository, feedCambios, new SimpleMeterRegistry(), false, 1000, Duration.ofMillis(50)));
+    }
+
     // --- ¡Nuestra Primera Prueba Unitaria! ---
 
     @Test
@@ -77,6 +123,65 @@ class ProductoServiceImplTest {
         // Verificación extra: Aseguramos que el repositorio fue llamado 1 sola vez
         verify(productoRepository, times(1)).findAll();
     }
+    @Test
+    void testFindPage_PrimeraPagina() {
+        // --- 1. Preparación (Arrange) ---
+        Producto mockProducto = new Producto();
+        mockProducto.setId(1L);
+
+        // Sin cursor se empieza desde el id 0
+        when(productoRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(10)))
+                .thenReturn(Flux.just(mockProducto));
+
+        // --- 2. Ejecución (Act) y 3. Verificación (Assert) ---
+        StepVerifier.create(productoService.findPage(null, 10))
+                .expectNextMatches(producto -> producto.getId() == 1L)
+                .verifyComplete();
+    }
+
+    // --- fields=: la página se lee con la consulta de búsqueda, sólo con esas columnas ---
+    @Test
+    void testFindPage_ConCampos() {
+        Producto parcial = new Producto();
+        parcial.setId(3L);
+        Set<CampoProducto> campos = Set.of(CampoProducto.NOMBRE);
+        when(productoRepository.buscar(any(FiltroProductos.class))).thenReturn(Flux.just(parcial));
+
+        StepVerifier.create(productoService.findPage(2L, 10, campos))
+                .expectNext(parcial)
+                .verifyComplete();
+
+        verify(productoRepository).buscar(argThat(f -> f.getCampos() == campos
+                && f.getDespuesDeId() == 2L && f.getLimit() == 10
+                && f.getOrden() == FiltroProductos.Campo.ID));
+        verify(productoRepository, never()).findByIdGreaterThanOrderByIdAsc(any(), any());
+    }
+
+    @Test
+    void testStreamAll_RecorrePorBloques() {
+        // --- 1. Preparación (Arrange) ---
+        Producto p1 = new Producto();
+        p1.setId(1L);
+        Producto p2 = new Producto();
+        p2.setId(2L);
+        Producto p3 = new Producto();
+        p3.setId(3L);
+
+        // Bloques de 2: el primero viene lleno, el segundo no (fin de la tabla)
+        when(productoRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(2)))
+                .thenReturn(Flux.just(p1, p2));
+        when(productoRepository.findByIdGreaterThanOrderByIdAsc(2L, Limit.of(2)))
+                .thenReturn(Flux.just(p3));
+
+        // --- 2. Ejecución (Act) y 3. Verificación (Assert) ---
+        StepVerifier.create(productoService.streamAll(2))
+                .expectNext(p1, p2, p3)
+                .verifyComplete();
+
+        // Nunca se hace un SELECT sin límite
+        verify(productoRepository, never()).findAll();
+    }
+
     @Test
     void testFindById_Success() {
         // --- 1. Preparación (Arrange) ---
@@ -109,6 +214,188 @@ class ProductoServiceImplTest {
     }
     // ... aquí está tu prueba testFindById_Success ...
 
+    // --- Cache: la segunda lectura no va a la BD ---
+    @Test
+    void testFindById_UsaCache() {
+        // --- 1. Preparación (Arrange) ---
+        Producto mockProducto = new Producto();
+        mockProducto.setId(7L);
+        when(productoRepository.findById(7L)).thenReturn(Mono.just(mockProducto));
+
+        // --- 2. Ejecución (Act) ---
+        StepVerifier.create(productoService.findById(7L)).expectNext(mockProducto).verifyComplete();
+        StepVerifier.create(productoService.findById(7L)).expectNext(mockProducto).verifyComplete();
+
+        // --- 3. Verificación (Assert) ---
+        verify(productoRepository, times(1)).findById(7L);
+    }
+
+    // --- GET condicional: validadores sin leer la fila ---
+    @Test
+    void testFindVersion_SinCacheConsultaSoloValidadores() {
+        // --- 1. Preparación (Arrange) ---
+        Instant fecha = Instant.parse("2026-03-01T12:00:00Z");
+        when(productoRepository.findVersionById(8L)).thenReturn(Mono.just(new VersionProducto(4L, fecha)));
+
+        // --- 2. Ejecución (Act) y 3. Verificación (Assert) ---
+        StepVerifier.create(productoService.findVersion(8L))
+                .expectNext(new VersionProducto(4L, fecha))
+                .verifyComplete();
+        verify(productoRepository, never()).findById(8L);
+    }
+
+    @Test
+    void testFindVersion_DesdeLaCache() {
+        // --- 1. Preparación (Arrange) ---
+        Producto mockProducto = new Producto();
+        mockProducto.setId(9L);
+        mockProducto.setVersion(3L);
+        when(productoRepository.findById(9L)).thenReturn(Mono.just(mockProducto));
+        productoService.findById(9L).block();
+
+        // --- 2. Ejecución (Act) y 3. Verificación (Assert) ---
+        StepVerifier.create(productoService.findVersion(9L))
+                .expectNextMatches(version -> version.getVersion() == 3L)
+                .verifyComplete();
+        verify(productoRepository, never()).findVersionById(9L);
+    }
+
+    // --- Varios ids: cache + una consulta, en el orden pedido ---
+    @Test
+    void testFindByIds_OrdenYNoEncontrados() {
+        // --- 1. Preparación (Arrange) ---
+        Producto p1 = new Producto();
+        p1.setId(1L);
+        Producto p2 = new Producto();
+        p2.setId(2L);
+        Producto p3 = new Producto();
+        p3.setId(3L);
+        // El 2 ya está en la cache
+        when(productoRepository.findById(2L)).thenReturn(Mono.just(p2));
+        productoService.findById(2L).block();
+        // La BD devuelve en cualquier orden
+        when(productoRepository.findAllByIdEn(new Long[]{3L, 9L, 1L})).thenReturn(Flux.just(p1, p3));
+
+        // --- 2. Ejecución (Act) y 3. Verificación (Assert) ---
+        StepVerifier.create(productoService.findByIds(Arrays.asList(3L, 2L, 9L, 1L, 3L)))
+                .expectNextMatches(resultado -> {
+                    assertEquals(List.of(p3, p2, p1), resultado.getProductos());
+                    assertEquals(List.of(9L), resultado.getNoEncontrados());
+                    return true;
+                })
+                .verifyComplete();
+
+        // Lo leído quedó en la cache
+        StepVerifier.create(productoService.findById(1L)).expectNext(p1).verifyComplete();
+        verify(productoRepository, never()).findById(1L);
+    }
+
+    @Test
+    void testFindByIds_TodoEnCacheNoConsulta() {
+        Producto p4 = new Producto();
+        p4.setId(4L);
+        when(productoRepository.findById(4L)).thenReturn(Mono.just(p4));
+        productoService.findById(4L).block();
+
+        StepVerifier.create(productoService.findByIds(List.of(4L)))
+                .expectNextMatches(resultado -> resultado.getProductos().equals(List.of(p4))
+                        && resultado.getNoEncontrados().isEmpty())
+                .verifyComplete();
+        verify(productoRepository, never()).findAllByIdEn(any());
+    }
+
+    // --- Cache: misses concurrentes del mismo id comparten UNA consulta ---
+    @Test
+    void testFindById_MissesConcurrentesUnaConsulta() {
+        // --- 1. Preparación (Arrange) ---
+        Producto mockProducto = new Producto();
+        mockProducto.setId(8L);
+        Sinks.One<Producto> consulta = Sinks.one();
+        when(productoRepository.findById(8L)).thenReturn(consulta.asMono());
+
+        // --- 2. Ejecución (Act) ---
+        // Dos lecturas en vuelo antes de que la BD responda
+        Mono<Producto> lectura1 = productoService.findById(8L).cache();
+        Mono<Producto> lectura2 = productoService.findById(8L).cache();
+        lectura1.subscribe();
+        lectura2.subscribe();
+        consulta.tryEmitValue(mockProducto);
+
+        // --- 3. Verificación (Assert) ---
+        StepVerifier.create(lectura1).expectNext(mockProducto).verifyComplete();
+        StepVerifier.create(lectura2).expectNext(mockProducto).verifyComplete();
+        verify(productoRepository, times(1)).findById(8L);
+    }
+
+    // --- Cache: un id inexistente no queda cacheado ---
+    @Test
+    void testFindById_NoEncontradoNoSeCachea() {
+        when(productoRepository.findById(99L)).thenReturn(Mono.empty());
+
+        StepVerifier.create(productoService.findById(99L)).verifyComplete();
+        StepVerifier.create(productoService.findById(99L)).verifyComplete();
+
+        verify(productoRepository, times(2)).findById(99L);
+    }
+
+    // --- Cache: actualizar stock invalida la entrada ---
+    @Test
+    void testActualizarStock_InvalidaCache() {
+        // --- 1. Preparación (Arrange) ---
+        Producto mockProducto = new Producto();
+        mockProducto.setId(9L);
+        when(productoRepository.findById(9L)).thenReturn(Mono.just(mockProducto));
+        when(productoRepository.actualizarStock(9L, 3)).thenReturn(Mono.empty());
+
+        // --- 2. Ejecución (Act) ---
+        StepVerifier.create(productoService.findById(9L)).expectNext(mockProducto).verifyComplete();
+        StepVerifier.create(productoService.actualizarStock(9L, 3)).verifyComplete();
+        StepVerifier.create(productoService.findById(9L)).expectNext(mockProducto).verifyComplete();
+
+        // --- 3. Verificación (Assert) ---
+        // Después del cambio de stock se vuelve a leer de la BD
+        verify(productoRepository, times(2)).findById(9L);
+        verify(productoCache, times(1)).invalidar(9L);
+    }
+
+    // --- Modo snapshot: el ETag (versión) cambia con PUT /{id}/stock ---
+    @Test
+    void testActualizarStock_EnModoSnapshotCambiaLaVersion() {
+        // --- 1. Preparación (Arrange) ---
+        SnapshotCatalogo snapshot = new SnapshotCatalogo(productoRepository, feedCambios, new SimpleMeterRegistry(),
+                true, 1000, Duration.ofMillis(50));
+        ReflectionTestUtils.setField(productoService, "snapshot", snapshot);
+        Producto antes = new Producto();
+        antes.setId(9L);
+        antes.setStock(10);
+        antes.setVersion(3L);
+        antes.setFechaActualizacion(Instant.parse("2026-03-01T12:00:00Z"));
+        // Lo que deja la BD: actualizar_stock cambia el stock y los triggers la versión y updated_at
+        Producto despues = new Producto();
+        despues.setId(9L);
+        despues.setStock(13);
+        despues.setVersion(4L);
+        despues.setFechaActualizacion(Instant.parse("2026-03-01T12:05:00Z"));
+        when(feedCambios.ultimaSeq()).thenReturn(Mono.just(0L));
+        when(feedCambios.stream(0L)).thenReturn(Flux.never());
+        when(productoRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(1000))).thenReturn(Flux.just(antes));
+        when(productoRepository.actualizarStock(9L, 3)).thenReturn(Mono.empty());
+        when(productoRepository.findById(9L)).thenReturn(Mono.just(despues));
+        snapshot.alArrancar();
+        assertEquals(new VersionProducto(3L, antes.getFechaActualizacion()), productoService.findVersion(9L).block());
+
+        // --- 2. Ejecución (Act) ---
+        StepVerifier.create(productoService.actualizarStock(9L, 3)).verifyComplete();
+
+        // --- 3. Verificación (Assert) ---
+        // Al responder el PUT la copia ya tiene la versión nueva: un If-None-Match viejo no da 304
+        StepVerifier.create(productoService.findVersion(9L))
+                .expectNext(new VersionProducto(4L, despues.getFechaActualizacion()))
+                .verifyComplete();
+        assertEquals(13, productoService.findById(9L).block().getStock());
+        verify(productoRepository, never()).findVersionById(9L);
+    }
+
 
     // --- AÑADE ESTA NUEVA PRUEBA (Camino Feliz: save) ---
     @Test
@@ -119,14 +406,14 @@ class ProductoServiceImplTest {
         // 1a. El producto que "enviamos" para guardar (no tiene ID)
         Producto productoSinGuardar = new Producto();
         productoSinGuardar.setNombre("Monitor");
-        productoSinGuardar.setPrecio(200.0);
+        productoSinGuardar.setPrecio(Precio.valueOf("200.0"));
         productoSinGuardar.setStock(15);
 
         // 1b. El producto como "devuelto" por la BD (ahora SÍ tiene ID)
         Producto productoGuardado = new Producto();
         productoGuardado.setId(10L); // ID generado por la BD
         productoGuardado.setNombre("Monitor");
-        productoGuardado.setPrecio(200.0);
+        productoGuardado.setPrecio(Precio.valueOf("200.0"));
         productoGuardado.setStock(15);
 
         // "CUANDO llamen a repository.save(CUALQUIER objeto Producto),
@@ -176,6 +463,18 @@ class ProductoServiceImplTest {
         // Verificamos que se llamó al repositorio 1 vez con los argumentos correctos
         verify(productoRepository, times(1)).actualizarStock(productoId, cantidadVendida);
     }
+
+    // --- Camino Triste: actualizar_stock no deja el stock en negativo -> StockInsuficienteException (409) ---
+    @Test
+    void testActualizarStock_SinStock() {
+        // Así llega el RAISE EXCEPTION de la función, envuelto por Spring
+        when(productoRepository.actualizarStock(1L, -5)).thenReturn(Mono.error(new UncategorizedR2dbcException(
+                "actualizar_stock", "SELECT * FROM actualizar_stock($1, $2)",
+                new R2dbcException("Stock insuficiente para el producto 1") { })));
+
+        StepVerifier.create(productoService.actualizarStock(1L, -5))
+                .verifyErrorMessage("Stock insuficiente para descontar 5 unidades del producto 1");
+    }
     @Test
     void testUpdate_Success() {
         // --- 1. Preparación (Arrange) ---
@@ -200,11 +499,8 @@ class ProductoServiceImplTest {
         productoActualizado.setNombre("Teclado Nuevo");
         productoActualizado.setStock(50);
 
-        // Mock 1: "CUANDO busquen el producto por ID, devuelve el de la BD"
-        when(productoRepository.findById(productoId)).thenReturn(Mono.just(productoEnBD));
-
-        // Mock 2: "CUANDO guarden el producto actualizado, devuelve el producto final"
-        when(productoRepository.save(any(Producto.class))).thenReturn(Mono.just(productoActualizado));
+        // Mock: "CUANDO se actualice en un solo UPDATE ... RETURNING, devuelve el producto final"
+        when(productoRepository.actualizarAtomico(productoId, productoRequest, null)).thenReturn(Mono.just(productoActualizado));
 
         // --- 2. Ejecución (Act) ---
 
@@ -222,10 +518,37 @@ class ProductoServiceImplTest {
                 })
                 .verifyComplete();
 
-        // Verificamos que se llamó a AMBOS métodos del repositorio
-        verify(productoRepository, times(1)).findById(productoId);
-        verify(productoRepository, times(1)).save(any(Producto.class));
+        // Ya no se lee antes de escribir: una sola sentencia
+        verify(productoRepository, never()).findById(productoId);
+        verify(productoRepository, never()).save(any(Producto.class));
+        verify(productoRepository, times(1)).actualizarAtomico(productoId, productoRequest, null);
+    }
+
+    @Test
+    void testUpdate_VersionDesactualizada() {
+        // --- 1. Preparación (Arrange) ---
+        Producto productoRequest = new Producto();
+        // La fila existe pero no está en la versión 3
+        when(productoRepository.actualizarAtomico(1L, productoRequest, 3L)).thenReturn(Mono.empty());
+        when(productoRepository.existsById(1L)).thenReturn(Mono.just(true));
+
+        // --- 2. Ejecución (Act) y 3. Verificación (Assert) ---
+        StepVerifier.create(productoService.update(1L, productoRequest, 3L))
+                .expectError(ConflictoVersionException.class)
+                .verify();
+    }
+
+    @Test
+    void testUpdate_ConVersionNoExiste() {
+        Producto productoRequest = new Producto();
+        when(productoRepository.actualizarAtomico(99L, productoRequest, 3L)).thenReturn(Mono.empty());
+        when(productoRepository.existsById(99L)).thenReturn(Mono.just(false));
+
+        // Vacío = 404 en el controlador
+        StepVerifier.create(productoService.update(99L, productoRequest, 3L))
+                .verifyComplete();
     }
+
     @Test
     void testDelete_Success() {
         // --- 1. Preparación (Arrange) ---
@@ -265,6 +588,8 @@ class ProductoServiceImplTest {
         // Mock: "CUANDO llamen a repository.findByStockLessThan(10),
         //       DEVUELVE nuestro producto falso"
         when(productoRepository.findByStockLessThan(stockMinimo)).thenReturn(Flux.just(mockProducto));
+        // El índice en memoria todavía no terminó de cargar: la consulta va a la BD
+        when(feedCambios.ultimaSeq()).thenReturn(Mono.never());
 
         // --- 2. Ejecución (Act) ---
 
@@ -285,5 +610,161 @@ class ProductoServiceImplTest {
         verify(productoRepository, times(1)).findByStockLessThan(stockMinimo);
     }
 
+    // --- Bajo stock con fields= y el índice sin cargar: la BD lee sólo esas columnas ---
+    @Test
+    void testFindBajoStock_ConCamposDesdeLaBD() {
+        Producto parcial = new Producto();
+        parcial.setId(5L);
+        parcial.setStock(5);
+        Set<CampoProducto> campos = Set.of(CampoProducto.STOCK);
+        when(feedCambios.ultimaSeq()).thenReturn(Mono.never());
+        when(productoRepository.buscar(any(FiltroProductos.class))).thenReturn(Flux.just(parcial));
+
+        StepVerifier.create(productoService.findBajoStock(10, campos))
+                .expectNext(parcial)
+                .verifyComplete();
+
+        // stock < 10, ordenado por stock como la consulta completa
+        verify(productoRepository).buscar(argThat(f -> f.getCampos() == campos
+                && f.getStockMax() == 9 && f.getOrden() == FiltroProductos.Campo.STOCK));
+        verify(productoRepository, never()).findByStockLessThan(10);
+    }
+
+    // --- Carga masiva: bloques de 2, resultados en orden ---
+    @Test
+    void testSaveBatch_PorBloques() {
+        // --- 1. Preparación (Arrange) ---
+        Producto nuevo1 = new Producto();
+        nuevo1.setNombre("Teclado");
+        Producto existente = new Producto();
+        existente.setId(20L);
+        existente.setNombre("Mouse");
+        Producto nuevo2 = new Producto();
+        nuevo2.setNombre("Monitor");
+
+        // Bloque 1 = [nuevo1, existente], bloque 2 = [nuevo2]
+        when(productoRepository.guardarLote(List.of(nuevo1, existente))).thenReturn(Mono.just(Arrays.asList(30L, 20L)));
+        when(productoRepository.guardarLote(List.of(nuevo2))).thenReturn(Mono.just(List.of(31L)));
+
+        // --- 2. Ejecución (Act) y 3. Verificación (Assert) ---
+        StepVerifier.create(productoService.saveBatch(Flux.just(nuevo1, existente, nuevo2)))
+                .expectNext(new ResultadoLote(0, 30L, ResultadoLote.Estado.CREADO, null))
+                .expectNext(new ResultadoLote(1, 20L, ResultadoLote.Estado.ACTUALIZADO, null))
+                .expectNext(new ResultadoLote(2, 31L, ResultadoLote.Estado.CREADO, null))
+                .verifyComplete();
+
+        // Los nuevos reciben los mismos valores por defecto que save()
+        assertEquals(true, nuevo1.getActivo());
+        assertEquals(true, nuevo2.getActivo());
+        verify(productoRepository, times(2)).guardarLote(any());
+    }
+
+    // --- Carga masiva: errores de validación y UPDATE sin fila ---
+    @Test
+    void testSaveBatch_ErroresPorProducto() {
+        // --- 1. Preparación (Arrange) ---
+        Producto sinNombre = new Producto();
+        Producto inexistente = new Producto();
+        inexistente.setId(99L);
+        inexistente.setNombre("Fantasma");
+
+        when(productoRepository.guardarLote(List.of(inexistente))).thenReturn(Mono.just(Arrays.asList((Long) null)));
+
+        // --- 2. Ejecución (Act) y 3. Verificación (Assert) ---
+        StepVerifier.create(productoService.saveBatch(Flux.just(sinNombre, inexistente)))
+                .expectNextMatches(r -> r.getIndice() == 0 && r.getEstado() == ResultadoLote.Estado.ERROR)
+                .expectNextMatches(r -> r.getIndice() == 1 && r.getEstado() == ResultadoLote.Estado.ERROR
+                        && r.getId() == 99L)
+                .verifyComplete();
+    }
+
+    // --- Carga masiva: si falla el bloque, todos sus productos quedan en ERROR ---
+    @Test
+    void testSaveBatch_FallaElBloque() {
+        // --- 1. Preparación (Arrange) ---
+        Producto p1 = new Producto();
+        p1.setNombre("A");
+        Producto p2 = new Producto();
+        p2.setNombre("B");
+        p2.setPrecio(Precio.valueOf("-1.0")); // inválido: no llega a la BD
+
+        when(productoRepository.guardarLote(List.of(p1))).thenReturn(Mono.error(new IllegalStateException("BD caída")));
+
+        // --- 2. Ejecución (Act) y 3. Verificación (Assert) ---
+        StepVerifier.create(productoService.saveBatch(Flux.just(p1, p2)))
+                .expectNext(new ResultadoLote(0, null, ResultadoLote.Estado.ERROR, "BD caída"))
+                .expectNext(new ResultadoLote(1, null, ResultadoLote.Estado.ERROR, "El precio no puede ser negativo"))
+                .verifyComplete();
+    }
+
+    // --- Carga masiva sin conexión en el pool: no es un ERROR por producto, es un 503 para el cliente ---
+    @Test
+    void testSaveBatch_PoolSaturadoSigueComoError() {
+        Producto p1 = new Producto();
+        p1.setNombre("A");
+        // Así lo entrega el R2dbcTransactionManager al abrir la transacción
+        when(productoRepository.guardarLote(List.of(p1))).thenReturn(Mono.error(new CannotCreateTransactionException(
+                "Could not open R2DBC Connection for transaction", new PoolSaturadoException("Pool de conexiones saturado", null))));
+
+        StepVerifier.create(productoService.saveBatch(Flux.just(p1)))
+                .verifyError(CannotCreateTransactionException.class);
+    }
+
+    // --- Reservas: un solo UPDATE condicional ---
+    @Test
+    void testReservarStock_Success() {
+        when(productoRepository.reservarStock(1L, 3)).thenReturn(Mono.just(7));
+
+        StepVerifier.create(productoService.reservarStock(1L, 3))
+                .expectNext(7)
+                .verifyComplete();
+
+        // En el camino feliz no hay consultas extra
+        verify(productoRepository, never()).existsById(1L);
+        verify(productoCache, times(1)).invalidar(1L);
+    }
+
+    @Test
+    void testReservarStock_SinStock() {
+        when(productoRepository.reservarStock(1L, 50)).thenReturn(Mono.empty());
+        when(productoRepository.existsById(1L)).thenReturn(Mono.just(true));
+
+        StepVerifier.create(productoService.reservarStock(1L, 50))
+                .expectError(StockInsuficienteException.class)
+                .verify();
+    }
+
+    @Test
+    void testReservarStock_NoExiste() {
+        when(productoRepository.reservarStock(99L, 1)).thenReturn(Mono.empty());
+        when(productoRepository.existsById(99L)).thenReturn(Mono.just(false));
+
+        StepVerifier.create(productoService.reservarStock(99L, 1))
+                .verifyComplete();
+    }
+
+    // --- Búsqueda: se delega entera al repositorio (una consulta) ---
+    @Test
+    void testBuscar() {
+        FiltroProductos filtro = new FiltroProductos();
+        Producto mockProducto = new Producto();
+        when(productoRepository.buscar(filtro)).thenReturn(Flux.just(mockProducto));
+
+        StepVerifier.create(productoService.buscar(filtro))
+                .expectNext(mockProducto)
+                .verifyComplete();
+    }
+
+    // --- Registro de cambios: se delega al feed ---
+    @Test
+    void testCambios() {
+        CambioProducto cambio = new CambioProducto(5L, 1L, CambioProducto.Tipo.CREADO, 3, null, null);
+        when(feedCambios.pagina(4L, 10)).thenReturn(Flux.just(cambio));
+        when(feedCambios.stream(4L)).thenReturn(Flux.just(cambio));
+
+        StepVerifier.create(productoService.findCambios(4L, 10)).expectNext(cambio).verifyComplete();
+        StepVerifier.create(productoService.streamCambios(4L)).expectNext(cambio).verifyComplete();
+    }
+
     // ¡Aquí añadiremos más @Test para los otros métodos (findById, save, etc.)!
 }
\ No newline at end of file
@@ -0,0 +1,265 @@
+package com.example.ms_productos.service;
+
+import com.example.ms_productos.model.CambioProducto;
+import com.example.ms_productos.model.FiltroProductos;
+import com.example.ms_productos.model.Precio;
+import com.example.ms_productos.model.Producto;
+import com.example.ms_productos.model.ProductosPorId;
+import com.example.ms_productos.model.VersionProducto;
+import com.example.ms_productos.repository.ProductoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SnapshotCatalogoTest {
+
+    @Mock
+    private ProductoRepository repository;
+
+    @Mock
+    private FeedCambios feedCambios;
+
+    private SnapshotCatalogo snapshot;
+    private Sinks.Many<CambioProducto> cambios;
+
+    private static Producto producto(long id, String nombre, Double precio, Integer stock) {
+        return new Producto(id, nombre, "Descripción de " + nombre,
+                precio == null ? null : Precio.deCentavos(Math.round(precio * 100)), stock, true,
+                LocalDateTime.of(2024, 1, 15, 10, 30, 0, 123_456_000), Instant.parse("2024-02-01T08:00:00.654321Z"), 1L);
+    }
+
+    private static CambioProducto cambio(long seq, long id, CambioProducto.Tipo tipo, Integer stock) {
+        return new CambioProducto(seq, id, tipo, stock, LocalDateTime.now(), null);
+    }
+
+    private static List<Long> ids(Flux<Producto> productos) {
+        return productos.map(Producto::getId).collectList().block();
+    }
+
+    @BeforeEach
+    void setUp() {
+        // Bloques de 2 filas para la carga y los cambios
+        snapshot = new SnapshotCatalogo(repository, feedCambios, new SimpleMeterRegistry(), true, 2, Duration.ofMillis(1));
+        cambios = Sinks.many().unicast().onBackpressureBuffer();
+    }
+
+    // Carga inicial en bloques de 2: 5 productos, registro en la seq 7
+    private void cargar() {
+        when(feedCambios.ultimaSeq()).thenReturn(Mono.just(7L));
+        when(repository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(2))).thenReturn(Flux.just(
+                producto(1, "Mesa de roble", 120.5, 3), producto(2, "Silla", 45.0, 40)));
+        when(repository.findByIdGreaterThanOrderByIdAsc(2L, Limit.of(2))).thenReturn(Flux.just(
+                producto(3, "Mesa plegable", null, 8), producto(5, "Lámpara", 45.0, null)));
+        when(repository.findByIdGreaterThanOrderByIdAsc(5L, Limit.of(2))).thenReturn(Flux.just(
+                producto(8, "Sofá", 999.99, 1)));
+        when(feedCambios.stream(7L)).thenReturn(cambios.asFlux());
+        snapshot.alArrancar();
+        assertTrue(snapshot.isListo());
+    }
+
+    @Test
+    void testSinCargar_RespondeDesdeLaBD() {
+        when(feedCambios.ultimaSeq()).thenReturn(Mono.never());
+
+        StepVerifier.create(snapshot.porId(1L, () -> Mono.just(producto(1, "Desde la BD", 1.0, 1))))
+                .expectNextMatches(p -> p.getNombre().equals("Desde la BD"))
+                .verifyComplete();
+        assertFalse(snapshot.isListo());
+    }
+
+    @Test
+    void testDeshabilitado_NoCargaNada() {
+        SnapshotCatalogo deshabilitado = new SnapshotCatalogo(repository, feedCambios, new SimpleMeterRegistry(),
+                false, 2, Duration.ofMillis(1));
+
+        deshabilitado.alArrancar();
+        assertEquals(List.of(9L), ids(deshabilitado.todos(() -> Flux.just(producto(9, "BD", 1.0, 1)))));
+        verifyNoInteractions(repository, feedCambios);
+    }
+
+    @Test
+    void testLecturas_DesdeMemoriaConLosMismosValores() {
+        cargar();
+
+        Producto leido = snapshot.porId(1L, Mono::empty).block();
+        assertEquals(producto(1, "Mesa de roble", 120.5, 3), leido);
+        assertEquals(List.of(1L, 2L, 3L, 5L, 8L), ids(snapshot.todos(Flux::empty)));
+        assertEquals(List.of(3L, 5L), ids(snapshot.pagina(2L, 2, Flux::empty)));
+        assertEquals(1L, snapshot.version(8L, Mono::empty).block().getVersion());
+
+        ProductosPorId porIds = snapshot.porIds(List.of(8L, 4L, 1L, 8L), Mono::empty).block();
+        assertEquals(List.of(8L, 1L), porIds.getProductos().stream().map(Producto::getId).toList());
+        assertEquals(List.of(4L), porIds.getNoEncontrados());
+        // Sólo la carga fue a la BD
+        verify(repository, never()).findById(any(Long.class));
+    }
+
+    @Test
+    void testBuscar_FiltrosOrdenYKeysetComoEnLaBD() {
+        cargar();
+        FiltroProductos filtro = new FiltroProductos();
+        filtro.setNombre(" mesa ");
+        filtro.setModoNombre(FiltroProductos.ModoNombre.PREFIJO);
+        assertEquals(List.of(1L, 3L), ids(snapshot.buscar(filtro, Flux::empty)));
+
+        // Por precio descendente: el null primero (como en PostgreSQL) y empate por id
+        FiltroProductos porPrecio = new FiltroProductos();
+        porPrecio.setOrden(FiltroProductos.Campo.PRECIO);
+        porPrecio.setDireccion(Sort.Direction.DESC);
+        porPrecio.setLimit(4);
+        assertEquals(List.of(3L, 8L, 1L, 5L), ids(snapshot.buscar(porPrecio, Flux::empty)));
+
+        // Página siguiente desde (45.00, 5): queda el 2 (45.00) y nada más; el null ya salió primero
+        porPrecio.setDespuesDeValor(Precio.valueOf("45.00"));
+        porPrecio.setDespuesDeId(5L);
+        assertEquals(List.of(2L), ids(snapshot.buscar(porPrecio, Flux::empty)));
+        // Una página que terminó en el null (3): siguen los que tienen precio
+        porPrecio.setDespuesDeValor(null);
+        porPrecio.setDespuesDeId(3L);
+        porPrecio.setLimit(2);
+        assertEquals(List.of(8L, 1L), ids(snapshot.buscar(porPrecio, Flux::empty)));
+        // En ASC los null van al final: después de (45.00, 5) vienen el 1, el 8 y el 3
+        porPrecio.setDireccion(Sort.Direction.ASC);
+        porPrecio.setDespuesDeValor(Precio.valueOf("45.00"));
+        porPrecio.setDespuesDeId(5L);
+        porPrecio.setLimit(4);
+        assertEquals(List.of(1L, 8L, 3L), ids(snapshot.buscar(porPrecio, Flux::empty)));
+
+        FiltroProductos rangos = new FiltroProductos();
+        rangos.setPrecioMin(Precio.valueOf("45"));
+        rangos.setPrecioMax(Precio.valueOf("200"));
+        rangos.setStockMin(1);
+        rangos.setDireccion(Sort.Direction.DESC);
+        assertEquals(List.of(2L, 1L), ids(snapshot.buscar(rangos, Flux::empty)));
+
+        // El orden por nombre depende de la collation de la BD
+        FiltroProductos porNombre = new FiltroProductos();
+        porNombre.setOrden(FiltroProductos.Campo.NOMBRE);
+        assertEquals(List.of(99L), ids(snapshot.buscar(porNombre, () -> Flux.just(producto(99, "BD", 1.0, 1)))));
+    }
+
+    @Test
+    void testBuscar_MuchasFilasConLimite() {
+        when(feedCambios.ultimaSeq()).thenReturn(Mono.just(0L));
+        when(feedCambios.stream(0L)).thenReturn(Flux.never());
+        SnapshotCatalogo grande = new SnapshotCatalogo(repository, feedCambios, new SimpleMeterRegistry(),
+                true, 10_000, Duration.ofMillis(1));
+        // 10.000 productos con stock (i * 37) % 1000, en un solo bloque
+        when(repository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(10_000))).thenReturn(Flux.range(1, 10_000)
+                .map(i -> producto(i, "P" + i, i / 100.0, (i * 37) % 1000)));
+        when(repository.findByIdGreaterThanOrderByIdAsc(10_000L, Limit.of(10_000))).thenReturn(Flux.empty());
+        grande.alArrancar();
+
+        FiltroProductos filtro = new FiltroProductos();
+        filtro.setOrden(FiltroProductos.Campo.STOCK);
+        filtro.setStockMax(1);
+        filtro.setLimit(15);
+        List<Producto> resultado = grande.buscar(filtro, Flux::empty).collectList().block();
+
+        // stock 0 (ids múltiplos de 1000) y luego stock 1 (973, 1973...), cada grupo por id
+        assertEquals(15, resultado.size());
+        assertEquals(List.of(1000L, 2000L, 3000L), resultado.subList(0, 3).stream().map(Producto::getId).toList());
+        assertEquals(0, resultado.get(9).getStock());
+        assertEquals(1, resultado.get(10).getStock());
+        assertEquals(973L, resultado.get(10).getId());
+    }
+
+    @Test
+    void testCambios_FilasEnUnaSolaLecturaConLaVersionNueva() {
+        cargar();
+        // El trigger de la BD también sube la versión y updated_at cuando sólo cambia el stock
+        Producto conStock = producto(1, "Mesa de roble", 120.5, 0);
+        conStock.setVersion(2L);
+        conStock.setFechaActualizacion(Instant.parse("2024-03-01T09:00:00Z"));
+        when(repository.findAllByIdEn(any())).thenReturn(Flux.just(
+                conStock, producto(2, "Silla tapizada", 50.0, 40), producto(9, "Alfombra", 80.0, 5)));
+
+        // El 1 cambia de stock, el 2 y el 9 de fila: los tres se leen de la BD; el 8 se borra
+        cambios.tryEmitNext(cambio(8, 1L, CambioProducto.Tipo.STOCK, 0));
+        cambios.tryEmitNext(cambio(9, 2L, CambioProducto.Tipo.ACTUALIZADO, 40));
+        cambios.tryEmitNext(cambio(10, 9L, CambioProducto.Tipo.CREADO, 5));
+        cambios.tryEmitNext(cambio(11, 8L, CambioProducto.Tipo.ELIMINADO, null));
+
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                assertEquals(List.of(1L, 2L, 3L, 5L, 9L), ids(snapshot.todos(Flux::empty))));
+        assertEquals(0, snapshot.porId(1L, Mono::empty).block().getStock());
+        VersionProducto version = snapshot.version(1L, Mono::empty).block();
+        assertEquals(2L, version.getVersion());
+        assertEquals(Instant.parse("2024-03-01T09:00:00Z"), version.getFechaActualizacion());
+        assertEquals("Silla tapizada", snapshot.porId(2L, Mono::empty).block().getNombre());
+        verify(repository, never()).findById(any(Long.class));
+    }
+
+    @Test
+    void testEscriturasLocales_YVersionViejaNoPisa() {
+        cargar();
+
+        Producto nuevo = producto(4, "Estante", 30.0, 12);
+        nuevo.setVersion(3L);
+        snapshot.actualizar(nuevo);
+        // Stock cambiado por esta réplica: se relee la fila (versión 4)
+        Producto conStock = producto(4, "Estante", 30.0, 2);
+        conStock.setVersion(4L);
+        when(repository.findById(4L)).thenReturn(Mono.just(conStock));
+        snapshot.refrescar(4L).block();
+        snapshot.eliminar(5L);
+        // Una lectura anterior (versión 3) que llega tarde
+        Producto viejo = producto(4, "Estante (viejo)", 30.0, 12);
+        viejo.setVersion(3L);
+        snapshot.actualizar(viejo);
+
+        Producto leido = snapshot.porId(4L, Mono::empty).block();
+        assertEquals("Estante", leido.getNombre());
+        assertEquals(2, leido.getStock());
+        assertEquals(4L, leido.getVersion());
+        assertNull(snapshot.porId(5L, Mono::empty).block());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 8L), ids(snapshot.todos(Flux::empty)));
+    }
+
+    @Test
+    void testFeedFalla_VuelveALaBDYRecargaEnElSiguienteUso() {
+        cargar();
+        cambios.tryEmitError(new IllegalStateException("BD caída"));
+        await().atMost(Duration.ofSeconds(5)).until(() -> !snapshot.isListo());
+
+        // El siguiente uso vuelve a cargar
+        when(feedCambios.ultimaSeq()).thenReturn(Mono.never());
+        StepVerifier.create(snapshot.porId(1L, () -> Mono.just(producto(1, "Desde la BD", 1.0, 1))))
+                .expectNextMatches(p -> p.getNombre().equals("Desde la BD"))
+                .verifyComplete();
+        verify(feedCambios, times(2)).ultimaSeq();
+    }
+
+    @Test
+    void testMemoria_ColumnasMasTextosPorProducto() {
+        TablaProductos tabla = new TablaProductos();
+        for (int i = 1; i <= 100_000; i++) {
+            tabla.poner(producto(i, "Producto " + (i % 100), i / 100.0, i % 500));
+        }
+
+        // 53 bytes por fila (con margen de crecimiento) más nombre y descripción
+        long porProducto = tabla.bytes() / tabla.tamanio();
+        assertEquals(100_000, tabla.tamanio());
+        assertTrue(porProducto < 80 + 2 * (40 + 40), "Bytes por producto: " + porProducto);
+    }
+}